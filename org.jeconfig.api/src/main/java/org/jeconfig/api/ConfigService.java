@@ -100,6 +100,20 @@ public interface ConfigService {
 	 */
 	<T> T load(final Class<T> configClass, final ScopePath scopePath);
 
+	/**
+	 * Loads or creates the merged configurations of many scope paths.<br>
+	 * The result is the same as calling {@link #load(Class, ScopePath)} for each scope path, but the
+	 * configurations of all involved scopes are fetched from the persister with as few requests as possible.
+	 * 
+	 * @param <T> the type of the configurations to load
+	 * @param configClass the type of the configurations to load
+	 * @param scopePaths the scope paths describing the sources of the configurations
+	 * @return the configuration objects per scope path in the iteration order of the given scope paths<br>
+	 * <br>
+	 *         <b>throws</b> StoreConfigException
+	 */
+	<T> Map<ScopePath, T> loadAll(Class<T> configClass, Collection<ScopePath> scopePaths);
+
 	/**
 	 * Saves the given configuration object into its source scope. <br>
 	 * <br>
@@ -142,6 +156,20 @@ public interface ConfigService {
 	 */
 	<T> void refresh(T config);
 
+	/**
+	 * Checks whether the repository contains newer versions of the configurations the given configuration
+	 * was merged from. Only the versions are fetched from the repository, the configurations are not loaded.<br>
+	 * <br>
+	 * Note that the check could miss modifications if persistence service caching is enabled
+	 * and the configuration is edited directly in the repository!
+	 * 
+	 * @param <T>
+	 * @param config
+	 * @return <code>true</code> if a configuration of the scope path was created, modified or deleted
+	 *         since the given configuration was loaded
+	 */
+	<T> boolean isOutdated(T config);
+
 	/**
 	 * Deletes the configuration specified by scope.
 	 * 
@@ -32,6 +32,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -181,6 +182,24 @@ public class ConfigServiceAccessor implements ConfigService {
 		return configService.load(configClass, scopePath);
 	}
 
+	@Override
+	public <T> Map<ScopePath, T> loadAll(final Class<T> configClass, final Collection<ScopePath> scopePaths) {
+		if (exceptionHandler != null) {
+			try {
+				return configService.loadAll(configClass, scopePaths);
+			} catch (final RuntimeException e) {
+				// let the exception handler decide per configuration
+				final Map<ScopePath, T> result = new LinkedHashMap<ScopePath, T>();
+				for (final ScopePath scopePath : scopePaths) {
+					result.put(scopePath, loadConfigUsingExceptionHandler(configClass, scopePath, null));
+				}
+				return result;
+			}
+		}
+
+		return configService.loadAll(configClass, scopePaths);
+	}
+
 	private <T> T loadConfigUsingExceptionHandler(
 		final Class<T> configClass,
 		final ScopePath scopePath,
@@ -337,6 +356,11 @@ public class ConfigServiceAccessor implements ConfigService {
 		} while (RefreshFailureSolutionStrategy.RETRY == strategy);
 	}
 
+	@Override
+	public <T> boolean isOutdated(final T config) {
+		return configService.isOutdated(config);
+	}
+
 	@Override
 	public Collection<ScopePath> listScopes(final String scopeName, final Map<String, String> properties) {
 		return configService.listScopes(scopeName, properties);
@@ -27,6 +27,7 @@
 
 package org.jeconfig.api;
 
+import org.jeconfig.api.cache.CachePolicy;
 import org.jeconfig.api.conversion.SimpleTypeConverterRegistry;
 import org.jeconfig.api.exception.StalenessNotifier;
 import org.jeconfig.api.scope.ScopeRegistry;
@@ -61,6 +62,38 @@ public interface ConfigSetupService {
 	 */
 	void setClientCacheEnabled(boolean enabled);
 
+	/**
+	 * Sets the policy of the client cache (e.g. the maximum number of entries or the maximum
+	 * estimated size in bytes, time-to-live and eviction listeners).<br>
+	 * All cached configurations are dropped. The default policy holds at most 200 configurations.
+	 * 
+	 * @param policy
+	 */
+	void setClientCachePolicy(CachePolicy policy);
+
+	/**
+	 * @return the policy of the client cache
+	 */
+	CachePolicy getClientCachePolicy();
+
+	/**
+	 * Enables or disables the validation cache which remembers the configuration classes
+	 * which were already validated for a scope path shape (the names of the scopes).<br>
+	 * If disabled, the configuration classes are revalidated on every load and save.<br>
+	 * The cache is enabled by default.
+	 * 
+	 * @param enabled
+	 */
+	void setValidationCacheEnabled(boolean enabled);
+
+	/**
+	 * Provides the number of validations which were skipped because the configuration class
+	 * was already validated for the shape of the scope path.
+	 * 
+	 * @return the number of validation cache hits
+	 */
+	long getValidationCacheHits();
+
 	/**
 	 * A staleness notifier which is informed when a configuration has been loaded and one or more properties were stale.<br>
 	 * Only used if the configuration has no local staleness notifier.
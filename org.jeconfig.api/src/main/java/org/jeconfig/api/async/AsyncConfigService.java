@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.api.async;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.jeconfig.api.ConfigService;
+import org.jeconfig.api.scope.ScopePath;
+
+/**
+ * Runs the operations of the {@link ConfigService} which access the persisters on an executor,
+ * so the calling thread (e.g. a UI thread) doesn't block on persister I/O.<br>
+ * The operations behave like the corresponding ones of the {@link ConfigService}; exceptions are reported by
+ * the returned futures.<br>
+ * <br>
+ * Implementations must be thread-safe.<br>
+ * <br>
+ * This interface is not intended to be implemented by clients.
+ */
+public interface AsyncConfigService {
+
+	/**
+	 * Loads or creates a merged configuration from the given scope.
+	 * 
+	 * @param <T> the type of the configuration to load
+	 * @param configClass the type of the configuration to load
+	 * @param scopePath the scope path describing the source of the configuration
+	 * @return the pending configuration object
+	 * @see ConfigService#load(Class, ScopePath)
+	 */
+	<T> ConfigFuture<T> load(Class<T> configClass, ScopePath scopePath);
+
+	/**
+	 * Loads or creates the merged configurations of many scope paths.
+	 * 
+	 * @param <T> the type of the configurations to load
+	 * @param configClass the type of the configurations to load
+	 * @param scopePaths the scope paths describing the sources of the configurations
+	 * @return the pending configuration objects per scope path
+	 * @see ConfigService#loadAll(Class, Collection)
+	 */
+	<T> ConfigFuture<Map<ScopePath, T>> loadAll(Class<T> configClass, Collection<ScopePath> scopePaths);
+
+	/**
+	 * Saves the given configuration object into its source scope.<br>
+	 * The configuration must not be modified until the save has completed.
+	 * 
+	 * @param <T> the type of the configuration to save
+	 * @param config the configuration object
+	 * @return the pending save
+	 * @see ConfigService#save(Object)
+	 */
+	<T> ConfigFuture<Void> save(T config);
+
+	/**
+	 * Saves the given configuration object into the specified scope.
+	 * 
+	 * @param <T> the type of the configuration to save
+	 * @param config the configuration object
+	 * @param destinationScopePath the scope path describing the destination
+	 * @return the pending save
+	 * @see ConfigService#copyToScopePath(Object, ScopePath)
+	 */
+	<T> ConfigFuture<Void> copyToScopePath(T config, ScopePath destinationScopePath);
+
+	/**
+	 * Refreshes the given configuration with the version of the repository.<br>
+	 * The configuration must not be accessed until the refresh has completed.
+	 * 
+	 * @param <T> the type of the configuration to refresh
+	 * @param config the configuration object
+	 * @return the pending refresh
+	 * @see ConfigService#refresh(Object)
+	 */
+	<T> ConfigFuture<Void> refresh(T config);
+
+	/**
+	 * Checks whether the repository contains newer versions of the configurations the given configuration
+	 * was merged from.
+	 * 
+	 * @param <T> the type of the configuration to check
+	 * @param config the configuration object
+	 * @return the pending check
+	 * @see ConfigService#isOutdated(Object)
+	 */
+	<T> ConfigFuture<Boolean> isOutdated(T config);
+
+	/**
+	 * Deletes the configuration specified by scope.
+	 * 
+	 * @param scopePath the scope path describing the configuration to delete
+	 * @param deleteChildren specifies whether child configurations should also be deleted
+	 * @return the pending deletion
+	 * @see ConfigService#delete(ScopePath, boolean)
+	 */
+	ConfigFuture<Void> delete(ScopePath scopePath, boolean deleteChildren);
+
+	/**
+	 * Deletes all configurations with the specified scope name and the given properties in their path.
+	 * 
+	 * @param scopeName the scope name
+	 * @param properties the properties
+	 * @return the pending deletion
+	 * @see ConfigService#deleteAllOccurences(String, Map)
+	 */
+	ConfigFuture<Void> deleteAllOccurences(String scopeName, Map<String, String> properties);
+
+	/**
+	 * Lists all scopes that contain a scope with the given name and properties.
+	 * 
+	 * @param scopeName the scope name, must not be null
+	 * @param properties the properties or empty map for all scopes with the given scopeName
+	 * @return the pending scope paths
+	 * @see ConfigService#listScopes(String, Map)
+	 */
+	ConfigFuture<Collection<ScopePath>> listScopes(String scopeName, Map<String, String> properties);
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.api.async;
+
+import java.util.concurrent.Future;
+
+/**
+ * The pending result of an operation of the {@link AsyncConfigService}.<br>
+ * Besides waiting with {@link #get()}, callers can register callbacks, so no thread has to block.<br>
+ * <br>
+ * This interface is not intended to be implemented by clients.
+ * 
+ * @param <T> the type of the result
+ */
+public interface ConfigFuture<T> extends Future<T> {
+
+	/**
+	 * Adds a callback which is notified when the operation completes.<br>
+	 * The callback is called by the thread which completes the operation or immediately by the calling thread
+	 * if the operation has already completed. Callbacks should return quickly because they delay other callbacks.
+	 * 
+	 * @param callback the callback to add
+	 */
+	void addCallback(ConfigCallback<? super T> callback);
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.api.cache;
+
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.api.scope.ScopePath;
+
+/**
+ * Gets informed when a configuration is evicted from a configuration cache.<br>
+ * Explicit invalidations (e.g. caused by saving or deleting a configuration) are not reported.<br>
+ * <br>
+ * Listeners are called synchronously by the thread which caused the eviction and therefore must be fast.
+ * Implementations must be thread-safe.
+ */
+public interface CacheEvictionListener {
+
+	/**
+	 * Called after a configuration has been evicted.
+	 * 
+	 * @param scopePath the scope path of the evicted configuration
+	 * @param config the evicted configuration; <code>null</code> if the cache remembered that no configuration exists
+	 * @param cause the reason of the eviction
+	 */
+	void configEvicted(ScopePath scopePath, ComplexConfigDTO config, EvictionCause cause);
+}
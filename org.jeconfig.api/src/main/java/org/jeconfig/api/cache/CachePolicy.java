@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.api.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jeconfig.api.util.Assert;
+
+/**
+ * Describes how a configuration cache is bounded and when its entries expire.<br>
+ * <br>
+ * A cache is either bounded by a maximum number of entries or by a maximum estimated size in bytes.
+ * Optionally entries expire a fixed time after they were written (time-to-live) and are reloaded
+ * on the first access after a fixed time (refresh-after-write). While one thread refreshes an entry,
+ * other threads still get the cached configuration.<br>
+ * <br>
+ * Use {@link Builder} to create instances.<br>
+ * <br>
+ * This class is immutable.
+ */
+public final class CachePolicy {
+	private final int maxEntries;
+	private final long maxBytes;
+	private final ConfigSizeEstimator sizeEstimator;
+	private final long expireAfterWriteMillis;
+	private final long refreshAfterWriteMillis;
+	private final List<CacheEvictionListener> evictionListeners;
+
+	private CachePolicy(final Builder builder) {
+		maxEntries = builder.maxEntries;
+		maxBytes = builder.maxBytes;
+		sizeEstimator = builder.sizeEstimator;
+		expireAfterWriteMillis = builder.expireAfterWriteMillis;
+		refreshAfterWriteMillis = builder.refreshAfterWriteMillis;
+		evictionListeners = Collections.unmodifiableList(new ArrayList<CacheEvictionListener>(builder.evictionListeners));
+	}
+
+	/**
+	 * Creates a policy which only bounds the number of entries.
+	 * 
+	 * @param maxEntries the maximum number of entries; must be positive
+	 * @return the policy
+	 */
+	public static CachePolicy maxEntries(final int maxEntries) {
+		return new Builder().maxEntries(maxEntries).create();
+	}
+
+	/**
+	 * @return the maximum number of entries or <code>-1</code> if the cache is bounded by bytes
+	 */
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * @return the maximum estimated size in bytes or <code>-1</code> if the cache is bounded by entries
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * @return <code>true</code> if the cache is bounded by the estimated size of its entries
+	 */
+	public boolean isBoundedByBytes() {
+		return maxBytes >= 0;
+	}
+
+	/**
+	 * @return the estimator used to compute the size of the entries if the cache is bounded by bytes
+	 */
+	public ConfigSizeEstimator getSizeEstimator() {
+		return sizeEstimator;
+	}
+
+	/**
+	 * @return the time-to-live of entries in milliseconds or <code>-1</code> if entries don't expire
+	 */
+	public long getExpireAfterWriteMillis() {
+		return expireAfterWriteMillis;
+	}
+
+	/**
+	 * @return the time in milliseconds after which an entry is reloaded on access or <code>-1</code> if entries are not refreshed
+	 */
+	public long getRefreshAfterWriteMillis() {
+		return refreshAfterWriteMillis;
+	}
+
+	/**
+	 * @return the eviction listeners; never <code>null</code>
+	 */
+	public List<CacheEvictionListener> getEvictionListeners() {
+		return evictionListeners;
+	}
+
+	@SuppressWarnings("nls")
+	@Override
+	public String toString() {
+		return "CachePolicy [maxEntries=" + maxEntries + ", maxBytes=" + maxBytes + ", expireAfterWriteMillis=" + expireAfterWriteMillis
+			+ ", refreshAfterWriteMillis=" + refreshAfterWriteMillis + "]";
+	}
+
+	/**
+	 * Builder to create cache policies.<br>
+	 * Implements the builder-pattern (method chaining and final create()).<br>
+	 * <br>
+	 * This class is not thread-safe.
+	 */
+	public static final class Builder {
+		private int maxEntries = -1;
+		private long maxBytes = -1;
+		private ConfigSizeEstimator sizeEstimator;
+		private long expireAfterWriteMillis = -1;
+		private long refreshAfterWriteMillis = -1;
+		private final List<CacheEvictionListener> evictionListeners = new ArrayList<CacheEvictionListener>();
+
+		/**
+		 * Bounds the cache by the number of entries.
+		 * 
+		 * @param maxEntries the maximum number of entries; must be positive
+		 * @return the builder itself for method chaining
+		 */
+		public Builder maxEntries(final int maxEntries) {
+			if (maxEntries < 1) {
+				throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries); //$NON-NLS-1$
+			}
+			this.maxEntries = maxEntries;
+			this.maxBytes = -1;
+			return this;
+		}
+
+		/**
+		 * Bounds the cache by the estimated size of the entries using the {@link DefaultConfigSizeEstimator}.
+		 * 
+		 * @param maxBytes the maximum estimated size in bytes; must be positive
+		 * @return the builder itself for method chaining
+		 */
+		public Builder maxBytes(final long maxBytes) {
+			return maxBytes(maxBytes, new DefaultConfigSizeEstimator());
+		}
+
+		/**
+		 * Bounds the cache by the estimated size of the entries.
+		 * 
+		 * @param maxBytes the maximum estimated size in bytes; must be positive
+		 * @param sizeEstimator the estimator used to compute the size of an entry
+		 * @return the builder itself for method chaining
+		 */
+		public Builder maxBytes(final long maxBytes, final ConfigSizeEstimator sizeEstimator) {
+			Assert.paramNotNull(sizeEstimator, "sizeEstimator"); //$NON-NLS-1$
+			if (maxBytes < 1) {
+				throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes); //$NON-NLS-1$
+			}
+			this.maxBytes = maxBytes;
+			this.sizeEstimator = sizeEstimator;
+			this.maxEntries = -1;
+			return this;
+		}
+
+		/**
+		 * Lets entries expire the given time after they were written.
+		 * 
+		 * @param duration must be positive
+		 * @param unit
+		 * @return the builder itself for method chaining
+		 */
+		public Builder expireAfterWrite(final long duration, final TimeUnit unit) {
+			expireAfterWriteMillis = toMillis(duration, unit);
+			return this;
+		}
+
+		/**
+		 * Lets entries be reloaded on the first access after the given time after they were written.
+		 * 
+		 * @param duration must be positive
+		 * @param unit
+		 * @return the builder itself for method chaining
+		 */
+		public Builder refreshAfterWrite(final long duration, final TimeUnit unit) {
+			refreshAfterWriteMillis = toMillis(duration, unit);
+			return this;
+		}
+
+		/**
+		 * Adds a listener which gets informed about evicted entries.
+		 * 
+		 * @param listener
+		 * @return the builder itself for method chaining
+		 */
+		public Builder addEvictionListener(final CacheEvictionListener listener) {
+			Assert.paramNotNull(listener, "listener"); //$NON-NLS-1$
+			evictionListeners.add(listener);
+			return this;
+		}
+
+		/**
+		 * Finally creates the policy.
+		 * 
+		 * @return the new policy
+		 */
+		public CachePolicy create() {
+			if (maxEntries < 0 && maxBytes < 0) {
+				throw new IllegalStateException("Either maxEntries or maxBytes must be set!"); //$NON-NLS-1$
+			}
+			return new CachePolicy(this);
+		}
+
+		private static long toMillis(final long duration, final TimeUnit unit) {
+			Assert.paramNotNull(unit, "unit"); //$NON-NLS-1$
+			if (duration < 1) {
+				throw new IllegalArgumentException("duration must be positive: " + duration); //$NON-NLS-1$
+			}
+			return Math.max(1, unit.toMillis(duration));
+		}
+	}
+}
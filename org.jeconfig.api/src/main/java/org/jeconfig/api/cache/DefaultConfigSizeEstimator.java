@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.api.cache;
+
+import java.util.Map.Entry;
+
+import org.jeconfig.api.dto.AbstractConfigDTO;
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.api.dto.ConfigDTO;
+import org.jeconfig.api.dto.ConfigDtoVisitorAdapter;
+import org.jeconfig.api.dto.ConfigListDTO;
+import org.jeconfig.api.dto.ConfigMapDTO;
+import org.jeconfig.api.dto.ConfigSetDTO;
+import org.jeconfig.api.dto.ConfigSimpleValueDTO;
+
+/**
+ * Estimates the heap size of a DTO tree by counting its nodes, collection slots and string characters.<br>
+ * The estimation assumes a 64-bit VM with compressed references; it is not exact but proportional to the
+ * real size which is sufficient to bound a cache.<br>
+ * <br>
+ * This class is thread-safe.
+ */
+public final class DefaultConfigSizeEstimator implements ConfigSizeEstimator {
+	private static final long DTO_SIZE = 64;
+	private static final long COMPLEX_DTO_SIZE = DTO_SIZE + 5 * 48;
+	private static final long COLLECTION_SIZE = 48;
+	private static final long SLOT_SIZE = 32;
+	private static final long STRING_SIZE = 40;
+
+	@Override
+	public long estimateSize(final ComplexConfigDTO config) {
+		final SizeVisitor visitor = new SizeVisitor();
+		config.visit(visitor);
+		return visitor.size;
+	}
+
+	private static long sizeOf(final String string) {
+		if (string == null) {
+			return 0;
+		}
+		return STRING_SIZE + 2L * string.length();
+	}
+
+	private static final class SizeVisitor extends ConfigDtoVisitorAdapter {
+		private long size;
+
+		private void addDto(final AbstractConfigDTO dto, final long baseSize) {
+			// property names and types are mostly interned, so they are counted as references only
+			size += baseSize + sizeOf(dto.getParentScopeName());
+		}
+
+		@Override
+		public void visitComplexDto(final ComplexConfigDTO complexDto) {
+			addDto(complexDto, COMPLEX_DTO_SIZE);
+			size += SLOT_SIZE * complexDto.getDeclaredProperties().size();
+		}
+
+		@Override
+		public void visitListDto(final ConfigListDTO listDto) {
+			addDto(listDto, DTO_SIZE + COLLECTION_SIZE);
+			size += SLOT_SIZE * listDto.getItems().size();
+		}
+
+		@Override
+		public void visitSetDto(final ConfigSetDTO setDto) {
+			addDto(setDto, DTO_SIZE + COLLECTION_SIZE);
+			size += SLOT_SIZE * setDto.getItems().size();
+		}
+
+		@Override
+		public void visitMapDto(final ConfigMapDTO mapDto) {
+			addDto(mapDto, DTO_SIZE + COLLECTION_SIZE);
+			for (final Entry<String, ConfigDTO> entry : mapDto.getMap().entrySet()) {
+				size += SLOT_SIZE + sizeOf(entry.getKey());
+			}
+		}
+
+		@Override
+		public void visitSimpleDto(final ConfigSimpleValueDTO simpleDto) {
+			addDto(simpleDto, DTO_SIZE);
+			size += sizeOf(simpleDto.getValue());
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.api.persister;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.api.scope.ScopePath;
+
+/**
+ * Optional extension of {@link ConfigPersister} for persisters which can process many
+ * configurations with one request to the repository.<br>
+ * <br>
+ * Use {@link ConfigPersisters} to call the bulk operations on any persister;
+ * it falls back to single requests if a persister doesn't implement this interface.<br>
+ * Implementations should save or update either all or none of the configurations if the
+ * repository supports transactions.<br>
+ * <br>
+ * This interface may be implemented by clients.
+ */
+public interface BulkConfigPersister extends ConfigPersister {
+
+	/**
+	 * Loads the configurations of the given scope paths.
+	 * 
+	 * @param scopePaths the scope paths to load; never <code>null</code>
+	 * @return a map which contains an entry for each given scope path; the value is <code>null</code>
+	 *         if no configuration exists for the scope path
+	 * 
+	 * <br>
+	 * <br>
+	 *         <b>throws</b> StoreConfigException if errors occur during load
+	 */
+	Map<ScopePath, ComplexConfigDTO> loadConfigurations(Collection<ScopePath> scopePaths);
+
+	/**
+	 * Saves the configurations in their defined scope paths.<br>
+	 * The configurations must not yet exist in the repository.
+	 * 
+	 * @param configurations the DTOs to save; never <code>null</code>
+	 * 
+	 * <br>
+	 * <br>
+	 *            <b>throws</b> StaleConfigException if one of the configurations already
+	 *            exists in the repository <br>
+	 *            <b>throws</b> StoreConfigException if errors occur during save
+	 */
+	void saveConfigurations(Collection<ComplexConfigDTO> configurations);
+
+	/**
+	 * Updates the configurations in the repository with the given states.<br>
+	 * The configurations must exist in the repository.
+	 * 
+	 * @param configurations the DTOs to update; never <code>null</code>
+	 * 
+	 * <br>
+	 * <br>
+	 *            <b>throws</b> StaleConfigException if one of the configurations was modified in the
+	 *            repository meanwhile or if it does not exist in the repository<br>
+	 *            <b>throws</b> StoreConfigException if errors occur during update
+	 */
+	void updateConfigurations(Collection<ComplexConfigDTO> configurations);
+}
@@ -27,6 +27,8 @@
 
 package org.jeconfig.api.persister;
 
+import org.jeconfig.api.cache.CachePolicy;
+
 /**
  * Configuration persister which manages all concrete configuration persisters.<br>
  * Uses a {@link PersisterSelector} to decide which concrete persister(s) should be used to
@@ -39,7 +41,7 @@ package org.jeconfig.api.persister;
  * If more than one persisters should be used, a custom persister selector must be set which decides
  * which persister should be used per scope path.
  */
-public interface ConfigPersistenceService extends ConfigPersister {
+public interface ConfigPersistenceService extends BulkConfigPersister, VersionedConfigPersister {
 
 	/**
 	 * Sets the selector which decides which concrete configuration persister
@@ -68,10 +70,24 @@ public interface ConfigPersistenceService extends ConfigPersister {
 	 * Enables or disables the cache which holds loaded/saved configurations.<br>
 	 * Caching is enabled by default.<br>
 	 * <br>
-	 * <b>When caching is enabled {@link #loadConfiguration} might not
-	 * return the latest configurations if they were modified directly in the data store!</b>
+	 * <b>When caching is enabled {@link #loadConfiguration}, {@link #getVersions} and {@link #loadIfNewer}
+	 * might not return the latest configurations if they were modified directly in the data store!</b>
 	 * 
 	 * @param enabled
 	 */
 	void setCacheEnabled(boolean enabled);
+
+	/**
+	 * Sets the policy of the cache (e.g. the maximum number of entries or the maximum
+	 * estimated size in bytes, time-to-live and eviction listeners).<br>
+	 * All cached configurations are dropped. The default policy holds at most 400 configurations.
+	 * 
+	 * @param policy
+	 */
+	void setCachePolicy(CachePolicy policy);
+
+	/**
+	 * @return the policy of the cache
+	 */
+	CachePolicy getCachePolicy();
 }
@@ -36,6 +36,9 @@ import org.jeconfig.api.scope.ScopePath;
 /**
  * Loads, saves, deletes and queries serialized configurations to/from a repository.<br>
  * <br>
+ * Implementations must be thread-safe: the persistence service loads the scopes of a scope path
+ * concurrently, so the methods are called by several threads at the same time.<br>
+ * <br>
  * This interface may be implemented by clients.
  */
 public interface ConfigPersister {
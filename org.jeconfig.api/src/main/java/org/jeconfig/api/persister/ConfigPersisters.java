@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.api.persister;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.api.scope.ScopePath;
+import org.jeconfig.api.util.Assert;
+
+/**
+ * Calls the bulk operations of {@link BulkConfigPersister} and the version probes of {@link VersionedConfigPersister}
+ * on any persister.
+ * If a persister doesn't support bulk operations, the operations are performed one by one.
+ * If a persister doesn't support version probes, the configurations are loaded.
+ */
+public final class ConfigPersisters {
+
+	private ConfigPersisters() {}
+
+	/**
+	 * Loads the configurations of the given scope paths.
+	 * 
+	 * @param persister
+	 * @param scopePaths
+	 * @return a map which contains an entry for each given scope path (in the iteration order of the scope paths);
+	 *         the value is <code>null</code> if no configuration exists for the scope path
+	 */
+	public static Map<ScopePath, ComplexConfigDTO> loadConfigurations(
+		final ConfigPersister persister,
+		final Collection<ScopePath> scopePaths) {
+		Assert.paramNotNull(persister, "persister"); //$NON-NLS-1$
+		Assert.paramNotNull(scopePaths, "scopePaths"); //$NON-NLS-1$
+
+		if (persister instanceof BulkConfigPersister) {
+			return ((BulkConfigPersister) persister).loadConfigurations(scopePaths);
+		}
+		final Map<ScopePath, ComplexConfigDTO> result = new LinkedHashMap<ScopePath, ComplexConfigDTO>();
+		for (final ScopePath scopePath : scopePaths) {
+			result.put(scopePath, persister.loadConfiguration(scopePath));
+		}
+		return result;
+	}
+
+	/**
+	 * Saves the configurations. If the persister doesn't support bulk operations,
+	 * the configurations saved before a failure remain saved.
+	 * 
+	 * @param persister
+	 * @param configurations
+	 */
+	public static void saveConfigurations(final ConfigPersister persister, final Collection<ComplexConfigDTO> configurations) {
+		Assert.paramNotNull(persister, "persister"); //$NON-NLS-1$
+		Assert.paramNotNull(configurations, "configurations"); //$NON-NLS-1$
+
+		if (persister instanceof BulkConfigPersister) {
+			((BulkConfigPersister) persister).saveConfigurations(configurations);
+		} else {
+			for (final ComplexConfigDTO configuration : configurations) {
+				persister.saveConfiguration(configuration);
+			}
+		}
+	}
+
+	/**
+	 * Updates the configurations. If the persister doesn't support bulk operations,
+	 * the configurations updated before a failure remain updated.
+	 * 
+	 * @param persister
+	 * @param configurations
+	 */
+	public static void updateConfigurations(final ConfigPersister persister, final Collection<ComplexConfigDTO> configurations) {
+		Assert.paramNotNull(persister, "persister"); //$NON-NLS-1$
+		Assert.paramNotNull(configurations, "configurations"); //$NON-NLS-1$
+
+		if (persister instanceof BulkConfigPersister) {
+			((BulkConfigPersister) persister).updateConfigurations(configurations);
+		} else {
+			for (final ComplexConfigDTO configuration : configurations) {
+				persister.updateConfiguration(configuration);
+			}
+		}
+	}
+
+	/**
+	 * Returns the versions of the configurations of the given scope paths.
+	 * 
+	 * @param persister
+	 * @param scopePaths
+	 * @return a map which contains an entry for each given scope path (in the iteration order of the scope paths);
+	 *         the value is <code>null</code> if no configuration exists for the scope path
+	 */
+	public static Map<ScopePath, Long> getVersions(final ConfigPersister persister, final Collection<ScopePath> scopePaths) {
+		Assert.paramNotNull(persister, "persister"); //$NON-NLS-1$
+		Assert.paramNotNull(scopePaths, "scopePaths"); //$NON-NLS-1$
+
+		if (persister instanceof VersionedConfigPersister) {
+			return ((VersionedConfigPersister) persister).getVersions(scopePaths);
+		}
+		final Map<ScopePath, Long> result = new LinkedHashMap<ScopePath, Long>();
+		for (final Map.Entry<ScopePath, ComplexConfigDTO> entry : loadConfigurations(persister, scopePaths).entrySet()) {
+			final ComplexConfigDTO config = entry.getValue();
+			result.put(entry.getKey(), config != null ? Long.valueOf(config.getVersion()) : null);
+		}
+		return result;
+	}
+
+	/**
+	 * Loads the configuration of the scope path if its version is newer than the given version.
+	 * 
+	 * @param persister
+	 * @param scopePath
+	 * @param knownVersion
+	 * @return the configuration or <code>null</code> if no configuration exists for the scope path
+	 *         or if its version is not newer than the given version
+	 */
+	public static ComplexConfigDTO loadIfNewer(
+		final ConfigPersister persister,
+		final ScopePath scopePath,
+		final long knownVersion) {
+		Assert.paramNotNull(persister, "persister"); //$NON-NLS-1$
+		Assert.paramNotNull(scopePath, "scopePath"); //$NON-NLS-1$
+
+		if (persister instanceof VersionedConfigPersister) {
+			return ((VersionedConfigPersister) persister).loadIfNewer(scopePath, knownVersion);
+		}
+		final ComplexConfigDTO config = persister.loadConfiguration(scopePath);
+		if (config != null && config.getVersion() > knownVersion) {
+			return config;
+		}
+		return null;
+	}
+}
@@ -27,31 +27,17 @@
 
 package org.jeconfig.client.internal;
 
-import java.beans.IntrospectionException;
-import java.beans.PropertyDescriptor;
-import java.lang.annotation.Annotation;
-
-import org.jeconfig.api.annotation.ConfigIdProperty;
-import org.jeconfig.api.annotation.ConfigSimpleProperty;
 import org.jeconfig.api.conversion.SimpleTypeConverter;
 import org.jeconfig.api.conversion.SimpleTypeConverterRegistry;
-import org.jeconfig.api.conversion.NoCustomSimpleTypeConverter;
-import org.jeconfig.client.proxy.ProxyUtil;
-import org.jeconfig.common.reflection.ClassInstantiation;
-import org.jeconfig.common.reflection.PropertyAccessor;
+import org.jeconfig.client.internal.metadata.ConfigClassModel;
+import org.jeconfig.client.internal.metadata.ConfigPropertyModel;
 
 public class ConfigIdPropertyUtil {
-	private final PropertyAccessor propertyAccessor = new PropertyAccessor();
 
 	public String findIdPropertyName(final Class<?> configClass) {
-		for (final PropertyDescriptor propDesc : propertyAccessor.getPropertyDescriptors(ProxyUtil.getConfigClass(configClass))) {
-			if (propDesc.getReadMethod() != null) {
-				for (final Annotation annotation : propDesc.getReadMethod().getAnnotations()) {
-					if (ConfigIdProperty.class.equals(annotation.annotationType())) {
-						return propDesc.getName();
-					}
-				}
-			}
+		final ConfigPropertyModel idProperty = ConfigClassModel.get(configClass).getIdProperty();
+		if (idProperty != null) {
+			return idProperty.getName();
 		}
 		return null;
 	}
@@ -77,35 +63,24 @@ public class ConfigIdPropertyUtil {
 		final SimpleTypeConverterRegistry simpleTypeConverterRegistry) {
 
 		if (config != null) {
-			try {
-				final PropertyDescriptor desc = new PropertyDescriptor(
-					idPropertyName,
-					ProxyUtil.getConfigClass(config.getClass()));
-				final ConfigSimpleProperty annotation = desc.getReadMethod().getAnnotation(ConfigSimpleProperty.class);
-				final SimpleTypeConverter<Object> customIdConverter = (SimpleTypeConverter<Object>) createCustomConverter(annotation.customConverter());
-				final Object obj = propertyAccessor.read(config, idPropertyName);
-				if (obj == null) {
-					throw new IllegalArgumentException("Got config which has no ID set: " + config); //$NON-NLS-1$
-				}
-				if (customIdConverter != null) {
-					return customIdConverter.convertToSerializedForm(obj);
-				} else {
-					if (!simpleTypeConverterRegistry.isTypeSupported(obj.getClass())) {
-						throw new RuntimeException("Didn't find converter for simple type: " + obj.getClass()); //$NON-NLS-1$
-					}
-					return simpleTypeConverterRegistry.convertToSerializedForm(obj);
+			final ConfigPropertyModel idProperty = ConfigClassModel.get(config.getClass()).getProperty(idPropertyName);
+			if (idProperty == null) {
+				throw new IllegalArgumentException("Didn't find property '" + idPropertyName + "' in type '" + config.getClass() + "'!"); //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$
+			}
+			final SimpleTypeConverter<Object> customIdConverter = (SimpleTypeConverter<Object>) idProperty.getCustomConverter();
+			final Object obj = idProperty.read(config);
+			if (obj == null) {
+				throw new IllegalArgumentException("Got config which has no ID set: " + config); //$NON-NLS-1$
+			}
+			if (customIdConverter != null) {
+				return customIdConverter.convertToSerializedForm(obj);
+			} else {
+				if (!simpleTypeConverterRegistry.isTypeSupported(obj.getClass())) {
+					throw new RuntimeException("Didn't find converter for simple type: " + obj.getClass()); //$NON-NLS-1$
 				}
-			} catch (final IntrospectionException e) {
-				throw new RuntimeException(e);
+				return simpleTypeConverterRegistry.convertToSerializedForm(obj);
 			}
 		}
 		return null;
 	}
-
-	private SimpleTypeConverter<?> createCustomConverter(final Class<? extends SimpleTypeConverter<?>> customConverter) {
-		if (NoCustomSimpleTypeConverter.class.equals(customConverter)) {
-			return null;
-		}
-		return new ClassInstantiation().newInstance(customConverter);
-	}
 }
@@ -28,10 +28,13 @@
 package org.jeconfig.client.internal;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -42,11 +45,14 @@ import org.jeconfig.api.ConfigUnsetter;
 import org.jeconfig.api.ScopePathListener;
 import org.jeconfig.api.annotation.ConfigClass;
 import org.jeconfig.api.annotation.DefaultConfigFactory;
+import org.jeconfig.api.annotation.NoDefaultConfigFactory;
+import org.jeconfig.api.cache.CachePolicy;
 import org.jeconfig.api.conversion.SimpleTypeConverterRegistry;
 import org.jeconfig.api.dto.ComplexConfigDTO;
 import org.jeconfig.api.exception.StalenessNotifier;
 import org.jeconfig.api.exception.StaleConfigException;
 import org.jeconfig.api.persister.ConfigPersister;
+import org.jeconfig.api.persister.ConfigPersisters;
 import org.jeconfig.api.scope.ClassScopeDescriptor;
 import org.jeconfig.api.scope.CodeDefaultScopeDescriptor;
 import org.jeconfig.api.scope.ScopePath;
@@ -55,9 +61,11 @@ import org.jeconfig.api.util.Assert;
 import org.jeconfig.client.InternalConfigService;
 import org.jeconfig.client.internal.beanvalidation.BeanValidator;
 import org.jeconfig.client.internal.conversion.SimpleTypeConverterRegistryImpl;
+import org.jeconfig.client.internal.MergedConfigCache.MergedConfig;
 import org.jeconfig.client.internal.crossreferences.CrossReferencesResolver;
 import org.jeconfig.client.internal.mapping.ConfigDTOMapper;
 import org.jeconfig.client.internal.merging.ConfigMerger;
+import org.jeconfig.client.internal.merging.StalePropertiesMergingResultImpl;
 import org.jeconfig.client.internal.migration.ClassVersionTransformationChain;
 import org.jeconfig.client.internal.validation.ConfigValidator;
 import org.jeconfig.client.proxy.ConfigListDecorator;
@@ -70,7 +78,9 @@ import org.jeconfig.client.proxy.RootConfigProxy;
 import org.jeconfig.client.proxy.ProxyUpdater;
 import org.jeconfig.client.proxy.ProxyUtil;
 import org.jeconfig.common.datastructure.CacheEntry;
-import org.jeconfig.common.datastructure.LRUCache;
+import org.jeconfig.common.datastructure.ConfigDTOCache;
+import org.jeconfig.common.datastructure.ConfigDTOCache.BulkConfigLoader;
+import org.jeconfig.common.datastructure.ConfigDTOCache.ConfigLoader;
 import org.jeconfig.common.reflection.ClassInstantiation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -88,7 +98,8 @@ public final class ConfigServiceImpl implements ConfigSetupService, InternalConf
 	private final ConfigObjectFactory proxyFactory;
 	private final ConfigDTOMapper dtoMapper;
 	private final ConfigMerger configMerger;
-	private final Map<ScopePath, CacheEntry<ComplexConfigDTO>> serializedConfigCache;
+	private final ConfigDTOCache serializedConfigCache;
+	private final MergedConfigCache mergedConfigCache;
 	private final ConfigValidator configValidator;
 	private final CrossReferencesResolver crossReferencesResolver;
 	private final ProxyUpdater proxyUpdater;
@@ -100,7 +111,8 @@ public final class ConfigServiceImpl implements ConfigSetupService, InternalConf
 		configMerger = new ConfigMerger(simpleTypeConverterRegistry);
 		proxyFactory = new ConfigProxyFactory(simpleTypeConverterRegistry);
 		proxyUpdater = new ProxyUpdater(proxyFactory, simpleTypeConverterRegistry);
-		serializedConfigCache = Collections.synchronizedMap(new LRUCache<ScopePath, CacheEntry<ComplexConfigDTO>>(CACHE_SIZE));
+		serializedConfigCache = new ConfigDTOCache(CachePolicy.maxEntries(CACHE_SIZE));
+		mergedConfigCache = new MergedConfigCache(CachePolicy.maxEntries(CACHE_SIZE));
 		configValidator = new ConfigValidator(this, this);
 		crossReferencesResolver = new CrossReferencesResolver(this);
 		dtoMapper = new ConfigDTOMapper(simpleTypeConverterRegistry, proxyFactory, proxyUpdater);
@@ -161,6 +173,86 @@ public final class ConfigServiceImpl implements ConfigSetupService, InternalConf
 		Assert.paramNotNull(configClass, "configClass"); //$NON-NLS-1$
 		Assert.paramNotNull(scopePath, "scope"); //$NON-NLS-1$
 
+		return load(configClass, scopePath, null);
+	}
+
+	@Override
+	public <T> Map<ScopePath, T> loadAll(final Class<T> configClass, final Collection<ScopePath> scopePaths) {
+		Assert.paramNotNull(configClass, "configClass"); //$NON-NLS-1$
+		Assert.paramNotNull(scopePaths, "scopePaths"); //$NON-NLS-1$
+
+		final Class<T> realClass = ProxyUtil.getConfigClass(configClass);
+		for (final ScopePath scopePath : scopePaths) {
+			Assert.paramNotNull(scopePath, "scopePath"); //$NON-NLS-1$
+			configValidator.validate(realClass, scopePath);
+		}
+
+		final Map<ScopePath, ComplexConfigDTO> prefetchedConfigs = prefetchSerializedConfigs(realClass, scopePaths);
+		final Map<ScopePath, T> result = new LinkedHashMap<ScopePath, T>();
+		for (final ScopePath scopePath : scopePaths) {
+			result.put(scopePath, load(configClass, scopePath, prefetchedConfigs));
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the serialized configurations of all persisted scopes of the given scope paths.
+	 * The configurations which are not cached are loaded with one request to the persister.
+	 * Like in {@link #getSerializedConfig(ScopePath, Class, Map)} concurrent misses are coalesced and
+	 * a concurrent save or delete isn't overwritten by the loaded configurations.
+	 * 
+	 * @return the (migrated) configurations per scope path
+	 */
+	private Map<ScopePath, ComplexConfigDTO> prefetchSerializedConfigs(final Class<?> configClass, final Collection<ScopePath> scopePaths) {
+		final Set<ScopePath> persistedPaths = new LinkedHashSet<ScopePath>();
+		for (final ScopePath scopePath : scopePaths) {
+			ScopePath currentPath = scopePath;
+			while (currentPath != null && !ClassScopeDescriptor.NAME.equals(currentPath.getLastScope().getName())) {
+				if (!CodeDefaultScopeDescriptor.NAME.equals(currentPath.getLastScope().getName())) {
+					persistedPaths.add(currentPath);
+				}
+				currentPath = currentPath.getParentPath();
+			}
+		}
+		if (persistedPaths.isEmpty()) {
+			return Collections.emptyMap();
+		}
+
+		if (Boolean.TRUE.equals(clientCacheEnabled.get())) {
+			final Map<ScopePath, CacheEntry<ComplexConfigDTO>> entries = serializedConfigCache.getAll(
+					persistedPaths,
+					new BulkConfigLoader() {
+						@Override
+						public Map<ScopePath, ComplexConfigDTO> load(final Collection<ScopePath> paths) {
+							return loadConfigurations(configClass, paths);
+						}
+					});
+			final Map<ScopePath, ComplexConfigDTO> result = new HashMap<ScopePath, ComplexConfigDTO>();
+			for (final Map.Entry<ScopePath, CacheEntry<ComplexConfigDTO>> entry : entries.entrySet()) {
+				result.put(entry.getKey(), entry.getValue().getElement());
+			}
+			return result;
+		}
+		return loadConfigurations(configClass, persistedPaths);
+	}
+
+	private Map<ScopePath, ComplexConfigDTO> loadConfigurations(
+		final Class<?> configClass,
+		final Collection<ScopePath> scopePaths) {
+		final Map<ScopePath, ComplexConfigDTO> loadedConfigs = ConfigPersisters.loadConfigurations(
+				configPersistenceServiceReference.get(),
+				scopePaths);
+		final Map<ScopePath, ComplexConfigDTO> result = new HashMap<ScopePath, ComplexConfigDTO>();
+		for (final ScopePath scopePath : scopePaths) {
+			result.put(scopePath, migrateConfigIfNeeded(scopePath, configClass, loadedConfigs.get(scopePath)));
+		}
+		return result;
+	}
+
+	/**
+	 * @param prefetchedConfigs serialized configurations which were already loaded or <code>null</code>
+	 */
+	private <T> T load(final Class<T> configClass, final ScopePath scopePath, final Map<ScopePath, ComplexConfigDTO> prefetchedConfigs) {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("loading config for scope: " + scopePath); //$NON-NLS-1$
 		}
@@ -169,13 +261,15 @@ public final class ConfigServiceImpl implements ConfigSetupService, InternalConf
 
 		configValidator.validate(realClass, scopePath);
 
-		final List<ComplexConfigDTO> configs = new ArrayList<ComplexConfigDTO>();
-		loadConfigsOfScopePath(realClass, scopePath, configs);
+		// the uncached scopes of the scope path are independent, so they are loaded together
+		// instead of one round trip per scope
+		final Map<ScopePath, ComplexConfigDTO> scopeConfigs = prefetchedConfigs != null
+				? prefetchedConfigs
+				: prefetchSerializedConfigs(realClass, Collections.singleton(scopePath));
+		final MergedConfig mergedConfig = getMergedConfig(realClass, scopePath, scopeConfigs);
+		final List<ComplexConfigDTO> configs = mergedConfig.getConfigs();
 
-		Collections.reverse(configs);
-		final ComplexConfigDTO configDTO = configMerger.merge(scopePath, configs, realClass, globalStalenessNotifier.get());
-
-		final T config = dtoMapper.deserializeRootConfig(configClass, configDTO, scopePath, configs);
+		final T config = dtoMapper.deserializeRootConfig(configClass, mergedConfig.getMergedConfig(), scopePath, configs);
 		crossReferencesResolver.resolveCrossReferences(config);
 
 		final RootConfigProxy proxy = (RootConfigProxy) config;
@@ -187,6 +281,126 @@ public final class ConfigServiceImpl implements ConfigSetupService, InternalConf
 		return config;
 	}
 
+	private MergedConfig getMergedConfig(
+		final Class<?> configClass,
+		final ScopePath scopePath,
+		final Map<ScopePath, ComplexConfigDTO> prefetchedConfigs) {
+		// the output of a default config factory has no version and may change, so it is merged on every load
+		final boolean cacheEnabled = Boolean.TRUE.equals(clientCacheEnabled.get()) && !hasDefaultConfigFactory(configClass);
+		if (cacheEnabled) {
+			final MergedConfig cachedConfig = mergedConfigCache.get(configClass, scopePath, getVersions(
+					configClass,
+					scopePath,
+					null,
+					prefetchedConfigs));
+			if (cachedConfig != null) {
+				return cachedConfig;
+			}
+		}
+
+		final List<ComplexConfigDTO> configs = new ArrayList<ComplexConfigDTO>();
+		loadConfigsOfScopePath(configClass, scopePath, configs, prefetchedConfigs);
+		final long[] versions = cacheEnabled ? getVersions(configClass, scopePath, configs, null) : null;
+
+		Collections.reverse(configs);
+		final StalePropertiesMergingResultImpl staleProperties = new StalePropertiesMergingResultImpl(scopePath);
+		final MergedConfig parentConfig = cacheEnabled ? getMergedParentConfig(configClass, scopePath, configs, versions) : null;
+		final ComplexConfigDTO configDTO;
+		if (parentConfig != null) {
+			configDTO = configMerger.mergeIntoParent(
+					scopePath,
+					parentConfig.getMergedConfig(),
+					configs.get(configs.size() - 1),
+					configClass,
+					globalStalenessNotifier.get(),
+					staleProperties);
+		} else {
+			configDTO = configMerger.merge(scopePath, configs, configClass, globalStalenessNotifier.get(), staleProperties);
+		}
+		final MergedConfig result = new MergedConfig(configDTO, configs);
+
+		// stale configurations are not cached to notify about the staleness on every load
+		if (cacheEnabled && !staleProperties.hasProperties()) {
+			mergedConfigCache.put(configClass, scopePath, versions, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the merged configuration of the parent scope path from the cache or merges and caches it,
+	 * so scope paths with the same parent (e.g. loaded by loadAll) share the merge of the parent.
+	 * 
+	 * @param configs the configurations of the scope path (root first)
+	 * @param versions the versions of the persisted scopes of the scope path (leaf first)
+	 * @return the merged configuration of the parent or <code>null</code> if the scope path must be merged completely
+	 */
+	private MergedConfig getMergedParentConfig(
+		final Class<?> configClass,
+		final ScopePath scopePath,
+		final List<ComplexConfigDTO> configs,
+		final long[] versions) {
+		final ScopePath parentPath = scopePath.getParentPath();
+		if (!isPersistedScope(scopePath) || parentPath == null || !isPersistedScope(parentPath)) {
+			return null;
+		}
+		final long[] parentVersions = Arrays.copyOfRange(versions, 1, versions.length);
+		final MergedConfig cachedConfig = mergedConfigCache.get(configClass, parentPath, parentVersions);
+		if (cachedConfig != null) {
+			return cachedConfig;
+		}
+
+		final List<ComplexConfigDTO> parentConfigs = new ArrayList<ComplexConfigDTO>(configs.subList(0, configs.size() - 1));
+		final StalePropertiesMergingResultImpl staleProperties = new StalePropertiesMergingResultImpl(parentPath);
+		final ComplexConfigDTO configDTO = configMerger.mergeWithoutStalenessNotification(
+				parentConfigs,
+				configClass,
+				staleProperties);
+		// the scope path is merged completely to notify about the stale properties
+		if (staleProperties.hasProperties()) {
+			return null;
+		}
+		final MergedConfig result = new MergedConfig(configDTO, parentConfigs);
+		mergedConfigCache.put(configClass, parentPath, parentVersions, result);
+		return result;
+	}
+
+	private static boolean isPersistedScope(final ScopePath scopePath) {
+		final String scopeName = scopePath.getLastScope().getName();
+		return !ClassScopeDescriptor.NAME.equals(scopeName) && !CodeDefaultScopeDescriptor.NAME.equals(scopeName);
+	}
+
+	/**
+	 * Returns the versions of the configurations of all persisted scopes of the scope path
+	 * (leaf first); <code>-1</code> if a scope has no configuration.
+	 * 
+	 * @param configs the configurations of the scope path (leaf first) or <code>null</code>
+	 *            to get them from the cache
+	 * @param prefetchedConfigs serialized configurations which were already loaded or <code>null</code>
+	 */
+	private long[] getVersions(
+		final Class<?> configClass,
+		final ScopePath scopePath,
+		final List<ComplexConfigDTO> configs,
+		final Map<ScopePath, ComplexConfigDTO> prefetchedConfigs) {
+		final List<Long> versions = new ArrayList<Long>();
+		int index = 0;
+		ScopePath currentPath = scopePath;
+		while (currentPath != null && !ClassScopeDescriptor.NAME.equals(currentPath.getLastScope().getName())) {
+			if (!CodeDefaultScopeDescriptor.NAME.equals(currentPath.getLastScope().getName())) {
+				final ComplexConfigDTO config = configs != null ? configs.get(index) : getSerializedConfig(currentPath, configClass, prefetchedConfigs);
+				versions.add(Long.valueOf(config != null ? config.getVersion() : -1));
+			}
+			index++;
+			currentPath = currentPath.getParentPath();
+		}
+
+		final long[] result = new long[versions.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = versions.get(i).longValue();
+		}
+		return result;
+	}
+
 	private boolean isNewConfig(final RootConfigProxy rootProxy) {
 		final ComplexConfigDTO lastConfigDTO = rootProxy.getConfigDTOs().get(rootProxy.getConfigDTOs().size() - 1);
 		return !lastConfigDTO.getDefiningScopePath().equals(rootProxy.getScopePath());
@@ -209,11 +423,51 @@ public final class ConfigServiceImpl implements ConfigSetupService, InternalConf
 		// resolve cross references again because there are not copied by the copy utility
 		crossReferencesResolver.resolveCrossReferences(config);
 
-		// update root proxy
+		// update root proxy; the DTOs tell the versions the configuration is based on
+		final RootConfigProxy refreshedProxy = (RootConfigProxy) refreshedConfig;
+		proxyUpdater.updateConfig(config, refreshedProxy.getConfigDTOs());
+		rootConfigProxy.setNew(refreshedProxy.isNew());
 		rootConfigProxy.resetDirty();
 		fireScopePathRefreshed(rootConfigProxy.getScopePath());
 	}
 
+	@Override
+	public <T> boolean isOutdated(final T config) {
+		Assert.paramNotNull(config, "config"); //$NON-NLS-1$
+
+		final RootConfigProxy rootConfigProxy = getRootConfigProxy(config);
+		final Map<ScopePath, Long> knownVersions = new HashMap<ScopePath, Long>();
+		for (final ComplexConfigDTO configDTO : rootConfigProxy.getConfigDTOs()) {
+			if (configDTO != null) {
+				knownVersions.put(configDTO.getDefiningScopePath(), Long.valueOf(configDTO.getVersion()));
+			}
+		}
+
+		final List<ScopePath> persistedPaths = new ArrayList<ScopePath>();
+		ScopePath currentPath = rootConfigProxy.getScopePath();
+		while (currentPath != null && !ClassScopeDescriptor.NAME.equals(currentPath.getLastScope().getName())) {
+			if (!CodeDefaultScopeDescriptor.NAME.equals(currentPath.getLastScope().getName())) {
+				persistedPaths.add(currentPath);
+			}
+			currentPath = currentPath.getParentPath();
+		}
+
+		// the client cache is bypassed because it holds the versions the configuration was loaded with
+		final Map<ScopePath, Long> versions = ConfigPersisters.getVersions(configPersistenceServiceReference.get(), persistedPaths);
+		for (final ScopePath scopePath : persistedPaths) {
+			final Long knownVersion = knownVersions.get(scopePath);
+			final Long version = versions.get(scopePath);
+			if (version == null) {
+				if (knownVersion != null) {
+					return true;
+				}
+			} else if (knownVersion == null || version.longValue() > knownVersion.longValue()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private void removeScopePathFromCache(final ScopePath scopePath) {
 		ScopePath currentPath = scopePath;
 		while (!CodeDefaultScopeDescriptor.NAME.equals(currentPath.getLastScope().getName())) {
@@ -225,7 +479,8 @@ public final class ConfigServiceImpl implements ConfigSetupService, InternalConf
 	private <T> void loadConfigsOfScopePath(
 		final Class<T> configClass,
 		final ScopePath scopePath,
-		final List<ComplexConfigDTO> configs) {
+		final List<ComplexConfigDTO> configs,
+		final Map<ScopePath, ComplexConfigDTO> prefetchedConfigs) {
 		if (scopePath != null) {
 			if (ClassScopeDescriptor.NAME.equals(scopePath.getLastScope().getName())) {
 				configs.add(dtoMapper.serialize(classInstantiation.newInstance(configClass), scopePath));
@@ -237,25 +492,30 @@ public final class ConfigServiceImpl implements ConfigSetupService, InternalConf
 					defaultConfigDTO = dtoMapper.serialize(defaultConfig, scopePath);
 				}
 				configs.add(defaultConfigDTO);
-				loadConfigsOfScopePath(configClass, scopePath.getParentPath(), configs);
+				loadConfigsOfScopePath(configClass, scopePath.getParentPath(), configs, prefetchedConfigs);
 			} else {
-				configs.add(getSerializedConfig(scopePath, configClass));
-				loadConfigsOfScopePath(configClass, scopePath.getParentPath(), configs);
+				configs.add(getSerializedConfig(scopePath, configClass, prefetchedConfigs));
+				loadConfigsOfScopePath(configClass, scopePath.getParentPath(), configs, prefetchedConfigs);
 			}
 		}
 	}
 
-	private ComplexConfigDTO getSerializedConfig(final ScopePath scopePath, final Class<?> configClass) {
+	private ComplexConfigDTO getSerializedConfig(
+		final ScopePath scopePath,
+		final Class<?> configClass,
+		final Map<ScopePath, ComplexConfigDTO> prefetchedConfigs) {
+		if (prefetchedConfigs != null && prefetchedConfigs.containsKey(scopePath)) {
+			return prefetchedConfigs.get(scopePath);
+		}
 		if (Boolean.TRUE.equals(clientCacheEnabled.get())) {
-			CacheEntry<ComplexConfigDTO> result = serializedConfigCache.get(scopePath);
-			if (result == null) {
-				final ComplexConfigDTO loadedConfiguration = configPersistenceServiceReference.get().loadConfiguration(scopePath);
-				final ComplexConfigDTO serialiedObjectToUse = migrateConfigIfNeeded(scopePath, configClass, loadedConfiguration);
-				result = new CacheEntry<ComplexConfigDTO>(serialiedObjectToUse);
-				serializedConfigCache.put(scopePath, result);
-			}
-
-			return result.getElement();
+			// concurrent misses of the same scope path are coalesced, so only one thread loads and migrates
+			return serializedConfigCache.get(scopePath, new ConfigLoader() {
+				@Override
+				public ComplexConfigDTO load(final ScopePath path) {
+					final ComplexConfigDTO loadedConfiguration = configPersistenceServiceReference.get().loadConfiguration(path);
+					return migrateConfigIfNeeded(path, configClass, loadedConfiguration);
+				}
+			}).getElement();
 		}
 		return configPersistenceServiceReference.get().loadConfiguration(scopePath);
 	}
@@ -286,6 +546,11 @@ public final class ConfigServiceImpl implements ConfigSetupService, InternalConf
 		return serialiedObjectToUse;
 	}
 
+	private boolean hasDefaultConfigFactory(final Class<?> configClass) {
+		final ConfigClass annotation = AnnotationUtil.getAnnotation(configClass, ConfigClass.class);
+		return annotation != null && !NoDefaultConfigFactory.class.equals(annotation.defaultConfigFactory());
+	}
+
 	@SuppressWarnings("unchecked")
 	private <T> T getDefaultConfig(final Class<T> configClass, final ScopePath scopePath) {
 		final ConfigClass annotation = AnnotationUtil.getAnnotation(configClass, ConfigClass.class);
@@ -336,7 +601,7 @@ public final class ConfigServiceImpl implements ConfigSetupService, InternalConf
 
 			// we need to update the proxy with the new DTOs
 			final List<ComplexConfigDTO> configs = new ArrayList<ComplexConfigDTO>();
-			loadConfigsOfScopePath(realClass, scopePath, configs);
+			loadConfigsOfScopePath(realClass, scopePath, configs, null);
 			Collections.reverse(configs);
 			proxyUpdater.updateConfig(config, configs);
 
@@ -385,29 +650,35 @@ public final class ConfigServiceImpl implements ConfigSetupService, InternalConf
 		if (Boolean.TRUE.equals(clientCacheEnabled.get())) {
 			final CacheEntry<ComplexConfigDTO> cacheEntry = new CacheEntry<ComplexConfigDTO>(serializedConfig);
 			serializedConfigCache.put(scopePath, cacheEntry);
+			mergedConfigCache.invalidate(scopePath);
 		}
 	}
 
 	private void removeFromCache(final ScopePath scopePath) {
 		serializedConfigCache.remove(scopePath);
+		mergedConfigCache.invalidate(scopePath);
 	}
 
 	@Override
 	public void delete(final ScopePath scopePath, final boolean deleteChildren) {
-		// clear the cache to remove the configurations which will be deleted
-		// this could be improved by removing only necessary entries
-		serializedConfigCache.clear();
-
-		configPersistenceServiceReference.get().delete(scopePath, deleteChildren);
+		try {
+			configPersistenceServiceReference.get().delete(scopePath, deleteChildren);
+		} finally {
+			// remove only the configurations which were deleted; merged configurations of child scope paths depend on them
+			serializedConfigCache.invalidate(scopePath, deleteChildren);
+			mergedConfigCache.invalidate(scopePath);
+		}
 	}
 
 	@Override
 	public void deleteAllOccurences(final String scopeName, final Map<String, String> properties) {
-		// clear the cache to remove the configurations which will be deleted
-		// this could be improved by removing only necessary entries
-		serializedConfigCache.clear();
-
-		configPersistenceServiceReference.get().deleteAllOccurences(scopeName, properties);
+		try {
+			configPersistenceServiceReference.get().deleteAllOccurences(scopeName, properties);
+		} finally {
+			// remove only the configurations which were deleted
+			serializedConfigCache.invalidateAllOccurences(scopeName, properties);
+			mergedConfigCache.invalidateAllOccurences(scopeName, properties);
+		}
 	}
 
 	@Override
@@ -443,10 +714,33 @@ public final class ConfigServiceImpl implements ConfigSetupService, InternalConf
 		if (clientCacheEnabled.compareAndSet(Boolean.valueOf(!enabled), Boolean.valueOf(enabled))) {
 			if (!enabled) {
 				serializedConfigCache.clear();
+				mergedConfigCache.clear();
 			}
 		}
 	}
 
+	@Override
+	public void setClientCachePolicy(final CachePolicy policy) {
+		Assert.paramNotNull(policy, "policy"); //$NON-NLS-1$
+		serializedConfigCache.setPolicy(policy);
+		mergedConfigCache.setPolicy(policy);
+	}
+
+	@Override
+	public CachePolicy getClientCachePolicy() {
+		return serializedConfigCache.getPolicy();
+	}
+
+	@Override
+	public void setValidationCacheEnabled(final boolean enabled) {
+		configValidator.setValidationCacheEnabled(enabled);
+	}
+
+	@Override
+	public long getValidationCacheHits() {
+		return configValidator.getValidationCacheHits();
+	}
+
 	@Override
 	public void setGlobalStalenessNotifier(final StalenessNotifier stalenessNotifier) {
 		Assert.paramNotNull(stalenessNotifier, "stalenessNotifier"); //$NON-NLS-1$
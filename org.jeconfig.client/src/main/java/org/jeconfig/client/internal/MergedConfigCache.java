@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.client.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.jeconfig.api.cache.CachePolicy;
+import org.jeconfig.api.cache.ConfigSizeEstimator;
+import org.jeconfig.api.cache.EvictionCause;
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.api.scope.ScopePath;
+import org.jeconfig.api.util.Assert;
+import org.jeconfig.common.datastructure.ConcurrentClockCache;
+import org.jeconfig.common.datastructure.EvictionListener;
+import org.jeconfig.common.datastructure.ScopePathIndex;
+import org.jeconfig.common.datastructure.Weigher;
+
+/**
+ * Caches the merged configuration DTO of a configuration class at a scope path
+ * together with the DTOs of the single scopes it was merged from.<br>
+ * An entry is identified by the configuration class, the scope path and the versions
+ * of the DTOs of all persisted scopes of the scope path. Therefore an entry is never
+ * returned after one of the contributing scopes changed. Additionally the entries of
+ * a scope path and all of its child scope paths can be invalidated explicitly (e.g. after a deletion,
+ * because a recreated configuration may get a version again); the cached scope paths are indexed,
+ * so this doesn't scan the whole cache.<br>
+ * The code default configuration has no version, so configurations of classes with a
+ * default config factory must not be cached.<br>
+ * The cache is bounded like the serialized configuration cache, but only the merged DTOs are weighed
+ * because the DTOs of the single scopes are shared with that cache.
+ * 
+ * This class is thread-safe.
+ */
+public final class MergedConfigCache {
+	private final ScopePathIndex index = new ScopePathIndex();
+	// guarded by this
+	private final Map<ScopePath, Set<Key>> keysByScopePath = new HashMap<ScopePath, Set<Key>>();
+	private volatile ConcurrentClockCache<Key, MergedConfig> cache;
+
+	public MergedConfigCache(final CachePolicy policy) {
+		setPolicy(policy);
+	}
+
+	/**
+	 * Sets a new policy. All cached entries are dropped.<br>
+	 * Refresh-after-write and eviction listeners of the policy are not used by this cache.
+	 * 
+	 * @param policy
+	 */
+	public synchronized void setPolicy(final CachePolicy policy) {
+		Assert.paramNotNull(policy, "policy"); //$NON-NLS-1$
+		final long expireAfterWriteNanos = policy.getExpireAfterWriteMillis() < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(policy.getExpireAfterWriteMillis());
+		if (policy.isBoundedByBytes()) {
+			cache = new ConcurrentClockCache<Key, MergedConfig>(
+				policy.getMaxBytes(),
+				new MergedConfigWeigher(policy.getSizeEstimator()),
+				expireAfterWriteNanos,
+				-1,
+				new UnindexingListener());
+		} else {
+			cache = new ConcurrentClockCache<Key, MergedConfig>(
+				policy.getMaxEntries(),
+				null,
+				expireAfterWriteNanos,
+				-1,
+				new UnindexingListener());
+		}
+		keysByScopePath.clear();
+		index.clear();
+	}
+
+	/**
+	 * @param configClass
+	 * @param scopePath
+	 * @param versions the versions of the DTOs of the persisted scopes from the leaf to the root
+	 * @return the cached merged configuration or <code>null</code>
+	 */
+	public MergedConfig get(final Class<?> configClass, final ScopePath scopePath, final long[] versions) {
+		return cache.get(new Key(configClass, scopePath, versions));
+	}
+
+	/**
+	 * @param configClass
+	 * @param scopePath
+	 * @param versions the versions of the DTOs of the persisted scopes from the leaf to the root
+	 * @param mergedConfig
+	 */
+	public synchronized void put(
+		final Class<?> configClass,
+		final ScopePath scopePath,
+		final long[] versions,
+		final MergedConfig mergedConfig) {
+		final Key key = new Key(configClass, scopePath, versions);
+		// indexed before the put because the put may evict the entry again
+		Set<Key> keys = keysByScopePath.get(scopePath);
+		if (keys == null) {
+			keys = new HashSet<Key>();
+			keysByScopePath.put(scopePath, keys);
+			index.add(scopePath);
+		}
+		keys.add(key);
+		cache.put(key, mergedConfig);
+	}
+
+	/**
+	 * Removes all entries which were merged from a configuration of the given scope path,
+	 * i.e. the entries of the scope path itself and of all of its child scope paths.
+	 * 
+	 * @param scopePath
+	 */
+	public synchronized void invalidate(final ScopePath scopePath) {
+		for (final ScopePath path : index.getPathsStartingWith(scopePath)) {
+			removeEntries(path);
+		}
+	}
+
+	/**
+	 * Removes all entries which were merged from a configuration of a scope path which contains
+	 * a scope with the given name and all of the given properties.
+	 * 
+	 * @param scopeName
+	 * @param properties if <code>null</code> all scopes with the name match
+	 */
+	public synchronized void invalidateAllOccurences(final String scopeName, final Map<String, String> properties) {
+		for (final ScopePath path : index.getPathsContaining(scopeName, properties)) {
+			removeEntries(path);
+		}
+	}
+
+	public synchronized void clear() {
+		cache.clear();
+		keysByScopePath.clear();
+		index.clear();
+	}
+
+	private void removeEntries(final ScopePath scopePath) {
+		index.remove(scopePath);
+		final Set<Key> keys = keysByScopePath.remove(scopePath);
+		if (keys != null) {
+			for (final Key key : keys) {
+				cache.remove(key);
+			}
+		}
+	}
+
+	private synchronized void unindex(final Key key) {
+		final Set<Key> keys = keysByScopePath.get(key.scopePath);
+		if (keys != null && keys.remove(key) && keys.isEmpty()) {
+			keysByScopePath.remove(key.scopePath);
+			index.remove(key.scopePath);
+		}
+	}
+
+	/**
+	 * A merged configuration DTO and the DTOs it was merged from (root first).
+	 * Instances must not be modified.
+	 */
+	public static final class MergedConfig {
+		private final ComplexConfigDTO mergedConfig;
+		private final List<ComplexConfigDTO> configs;
+
+		public MergedConfig(final ComplexConfigDTO mergedConfig, final List<ComplexConfigDTO> configs) {
+			this.mergedConfig = mergedConfig;
+			this.configs = Collections.unmodifiableList(configs);
+		}
+
+		public ComplexConfigDTO getMergedConfig() {
+			return mergedConfig;
+		}
+
+		public List<ComplexConfigDTO> getConfigs() {
+			return configs;
+		}
+	}
+
+	private final class UnindexingListener implements EvictionListener<Key, MergedConfig> {
+		@Override
+		public void onEviction(final Key key, final MergedConfig value, final EvictionCause cause) {
+			unindex(key);
+		}
+	}
+
+	private static final class MergedConfigWeigher implements Weigher<Key, MergedConfig> {
+		private static final long ENTRY_OVERHEAD = 128;
+
+		private final ConfigSizeEstimator sizeEstimator;
+
+		MergedConfigWeigher(final ConfigSizeEstimator sizeEstimator) {
+			this.sizeEstimator = sizeEstimator;
+		}
+
+		@Override
+		public long weigh(final Key key, final MergedConfig value) {
+			final long keySize = ENTRY_OVERHEAD + 8L * key.versions.length;
+			if (value.getMergedConfig() == null) {
+				return keySize;
+			}
+			return keySize + sizeEstimator.estimateSize(value.getMergedConfig());
+		}
+	}
+
+	private static final class Key {
+		private final Class<?> configClass;
+		private final ScopePath scopePath;
+		private final long[] versions;
+		private final int hashCode;
+
+		Key(final Class<?> configClass, final ScopePath scopePath, final long[] versions) {
+			this.configClass = configClass;
+			this.scopePath = scopePath;
+			this.versions = versions;
+
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + configClass.hashCode();
+			result = prime * result + scopePath.hashCode();
+			result = prime * result + Arrays.hashCode(versions);
+			hashCode = result;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return hashCode == other.hashCode
+				&& configClass.equals(other.configClass)
+				&& scopePath.equals(other.scopePath)
+				&& Arrays.equals(versions, other.versions);
+		}
+	}
+}
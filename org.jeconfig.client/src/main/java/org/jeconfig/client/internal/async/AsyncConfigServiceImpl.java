@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.client.internal.async;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jeconfig.api.ConfigService;
+import org.jeconfig.api.async.AsyncConfigService;
+import org.jeconfig.api.async.ConfigFuture;
+import org.jeconfig.api.scope.ScopePath;
+import org.jeconfig.api.util.Assert;
+
+/**
+ * Runs the operations of the bound {@link ConfigService} on an executor.<br>
+ * By default a pool of daemon threads is used whose idle threads terminate; the pool is shut down by
+ * {@link #close()}. An executor passed to the constructor is not shut down.<br>
+ * <br>
+ * This class is thread-safe.
+ */
+public final class AsyncConfigServiceImpl implements AsyncConfigService {
+	private static final int DEFAULT_THREAD_COUNT = 8;
+	private static final long KEEP_ALIVE_SECONDS = 60;
+
+	private final AtomicReference<ConfigService> configServiceReference;
+	private final Executor executor;
+	private final boolean ownsExecutor;
+	private final AtomicBoolean closed;
+
+	/**
+	 * Creates a new service which runs the operations on its own thread pool.
+	 * The configuration service must be bound with {@link #bindConfigService(ConfigService)}.
+	 */
+	public AsyncConfigServiceImpl() {
+		this(createDefaultExecutor(), true);
+	}
+
+	/**
+	 * Creates a new service.
+	 * 
+	 * @param configService the configuration service which executes the operations
+	 * @param executor the executor which runs the operations; isn't shut down by {@link #close()}
+	 */
+	public AsyncConfigServiceImpl(final ConfigService configService, final Executor executor) {
+		this(executor, false);
+		Assert.paramNotNull(configService, "configService"); //$NON-NLS-1$
+		configServiceReference.set(configService);
+	}
+
+	private AsyncConfigServiceImpl(final Executor executor, final boolean ownsExecutor) {
+		Assert.paramNotNull(executor, "executor"); //$NON-NLS-1$
+		this.configServiceReference = new AtomicReference<ConfigService>();
+		this.executor = executor;
+		this.ownsExecutor = ownsExecutor;
+		this.closed = new AtomicBoolean();
+	}
+
+	public void bindConfigService(final ConfigService configService) {
+		configServiceReference.set(configService);
+	}
+
+	public void unbindConfigService(final ConfigService configService) {
+		configServiceReference.compareAndSet(configService, null);
+	}
+
+	@Override
+	public <T> ConfigFuture<T> load(final Class<T> configClass, final ScopePath scopePath) {
+		Assert.paramNotNull(configClass, "configClass"); //$NON-NLS-1$
+		Assert.paramNotNull(scopePath, "scopePath"); //$NON-NLS-1$
+		return submit(new ConfigOperation<T>() {
+			@Override
+			public T execute(final ConfigService configService) {
+				return configService.load(configClass, scopePath);
+			}
+		});
+	}
+
+	@Override
+	public <T> ConfigFuture<Map<ScopePath, T>> loadAll(final Class<T> configClass, final Collection<ScopePath> scopePaths) {
+		Assert.paramNotNull(configClass, "configClass"); //$NON-NLS-1$
+		Assert.paramNotNull(scopePaths, "scopePaths"); //$NON-NLS-1$
+		return submit(new ConfigOperation<Map<ScopePath, T>>() {
+			@Override
+			public Map<ScopePath, T> execute(final ConfigService configService) {
+				return configService.loadAll(configClass, scopePaths);
+			}
+		});
+	}
+
+	@Override
+	public <T> ConfigFuture<Void> save(final T config) {
+		Assert.paramNotNull(config, "config"); //$NON-NLS-1$
+		return submit(new ConfigOperation<Void>() {
+			@Override
+			public Void execute(final ConfigService configService) {
+				configService.save(config);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public <T> ConfigFuture<Void> copyToScopePath(final T config, final ScopePath destinationScopePath) {
+		Assert.paramNotNull(config, "config"); //$NON-NLS-1$
+		Assert.paramNotNull(destinationScopePath, "destinationScopePath"); //$NON-NLS-1$
+		return submit(new ConfigOperation<Void>() {
+			@Override
+			public Void execute(final ConfigService configService) {
+				configService.copyToScopePath(config, destinationScopePath);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public <T> ConfigFuture<Void> refresh(final T config) {
+		Assert.paramNotNull(config, "config"); //$NON-NLS-1$
+		return submit(new ConfigOperation<Void>() {
+			@Override
+			public Void execute(final ConfigService configService) {
+				configService.refresh(config);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public <T> ConfigFuture<Boolean> isOutdated(final T config) {
+		Assert.paramNotNull(config, "config"); //$NON-NLS-1$
+		return submit(new ConfigOperation<Boolean>() {
+			@Override
+			public Boolean execute(final ConfigService configService) {
+				return Boolean.valueOf(configService.isOutdated(config));
+			}
+		});
+	}
+
+	@Override
+	public ConfigFuture<Void> delete(final ScopePath scopePath, final boolean deleteChildren) {
+		Assert.paramNotNull(scopePath, "scopePath"); //$NON-NLS-1$
+		return submit(new ConfigOperation<Void>() {
+			@Override
+			public Void execute(final ConfigService configService) {
+				configService.delete(scopePath, deleteChildren);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public ConfigFuture<Void> deleteAllOccurences(final String scopeName, final Map<String, String> properties) {
+		Assert.paramNotNull(scopeName, "scopeName"); //$NON-NLS-1$
+		Assert.paramNotNull(properties, "properties"); //$NON-NLS-1$
+		return submit(new ConfigOperation<Void>() {
+			@Override
+			public Void execute(final ConfigService configService) {
+				configService.deleteAllOccurences(scopeName, properties);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public ConfigFuture<Collection<ScopePath>> listScopes(final String scopeName, final Map<String, String> properties) {
+		Assert.paramNotNull(scopeName, "scopeName"); //$NON-NLS-1$
+		Assert.paramNotNull(properties, "properties"); //$NON-NLS-1$
+		return submit(new ConfigOperation<Collection<ScopePath>>() {
+			@Override
+			public Collection<ScopePath> execute(final ConfigService configService) {
+				return configService.listScopes(scopeName, properties);
+			}
+		});
+	}
+
+	/**
+	 * Closes this service; pending operations are still executed. The own thread pool is shut down.
+	 */
+	public void close() {
+		if (closed.compareAndSet(false, true) && ownsExecutor) {
+			((ExecutorService) executor).shutdown();
+		}
+	}
+
+	private <T> ConfigFuture<T> submit(final ConfigOperation<T> operation) {
+		if (closed.get()) {
+			throw new IllegalStateException("Attempt to operate on closed service!"); //$NON-NLS-1$
+		}
+		final ConfigFutureTask<T> task = new ConfigFutureTask<T>(new Callable<T>() {
+			@Override
+			public T call() {
+				final ConfigService configService = configServiceReference.get();
+				if (configService == null) {
+					throw new IllegalStateException("No configuration service is bound!"); //$NON-NLS-1$
+				}
+				return operation.execute(configService);
+			}
+		});
+		try {
+			executor.execute(task);
+		} catch (final RejectedExecutionException e) {
+			task.fail(e);
+		}
+		return task;
+	}
+
+	private static ExecutorService createDefaultExecutor() {
+		final ThreadPoolExecutor result = new ThreadPoolExecutor(
+			DEFAULT_THREAD_COUNT,
+			DEFAULT_THREAD_COUNT,
+			KEEP_ALIVE_SECONDS,
+			TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(),
+			new AsyncThreadFactory());
+		result.allowCoreThreadTimeOut(true);
+		return result;
+	}
+
+	private interface ConfigOperation<T> {
+		T execute(ConfigService configService);
+	}
+
+	private static final class AsyncThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadCount = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			final Thread thread = new Thread(runnable, "AsyncConfigService-" + threadCount.incrementAndGet()); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.client.internal.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.jeconfig.api.async.ConfigCallback;
+import org.jeconfig.api.async.ConfigFuture;
+import org.jeconfig.api.util.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A future task which notifies its callbacks when it's done.<br>
+ * <br>
+ * This class is thread-safe.
+ * 
+ * @param <T> the type of the result
+ */
+final class ConfigFutureTask<T> extends FutureTask<T> implements ConfigFuture<T> {
+	private static final Logger LOG = LoggerFactory.getLogger(ConfigFutureTask.class);
+
+	// guarded by this; null after the callbacks have been notified. Callbacks added after completion
+	// are notified immediately by the adding thread.
+	private List<ConfigCallback<? super T>> callbacks = new ArrayList<ConfigCallback<? super T>>(1);
+
+	ConfigFutureTask(final Callable<T> callable) {
+		super(callable);
+	}
+
+	@Override
+	public void addCallback(final ConfigCallback<? super T> callback) {
+		Assert.paramNotNull(callback, "callback"); //$NON-NLS-1$
+		synchronized (this) {
+			if (callbacks != null && !isDone()) {
+				callbacks.add(callback);
+				return;
+			}
+		}
+		notifyCallback(callback);
+	}
+
+	/**
+	 * Completes the task with an exception without running it.
+	 * 
+	 * @param cause the cause of the failure
+	 */
+	void fail(final Throwable cause) {
+		setException(cause);
+	}
+
+	@Override
+	protected void done() {
+		final List<ConfigCallback<? super T>> doneCallbacks;
+		synchronized (this) {
+			doneCallbacks = callbacks;
+			callbacks = null;
+		}
+		for (final ConfigCallback<? super T> callback : doneCallbacks) {
+			notifyCallback(callback);
+		}
+	}
+
+	private void notifyCallback(final ConfigCallback<? super T> callback) {
+		try {
+			final T result;
+			try {
+				result = get();
+			} catch (final ExecutionException e) {
+				callback.onFailure(e.getCause());
+				return;
+			} catch (final CancellationException e) {
+				callback.onFailure(e);
+				return;
+			} catch (final InterruptedException e) {
+				// can't happen because the task is done
+				Thread.currentThread().interrupt();
+				callback.onFailure(e);
+				return;
+			}
+			callback.onSuccess(result);
+		} catch (final RuntimeException e) {
+			LOG.error("A callback of an asynchronous configuration operation failed!", e); //$NON-NLS-1$
+		}
+	}
+}
@@ -27,7 +27,6 @@
 
 package org.jeconfig.client.internal.autorefresh;
 
-import java.util.List;
 import java.util.Map.Entry;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -37,7 +36,6 @@ import java.util.concurrent.atomic.AtomicReference;
 import org.jeconfig.api.ConfigService;
 import org.jeconfig.api.autorefresh.ConfigAutoRefreshService;
 import org.jeconfig.api.autorefresh.ConfigRefreshNotifier;
-import org.jeconfig.api.dto.ComplexConfigDTO;
 import org.jeconfig.api.exception.ConfigExceptionHandler;
 import org.jeconfig.api.scope.ScopePath;
 import org.jeconfig.api.util.Assert;
@@ -92,30 +90,14 @@ public final class ConfigAutoRefreshServiceImpl implements ConfigAutoRefreshServ
 		if (configService != null) {
 			for (final Entry<ScopePath, ConfigRefreshJobContainer<?>> entry : configs.entrySet()) {
 				final RootConfigProxy proxy = entry.getValue().getConfig();
-				final RootConfigProxy tmpProxy = configService.load(proxy.getClass(), proxy.getScopePath());
-				configService.refresh(tmpProxy);
-				if (proxy.getConfigDTOs().size() == tmpProxy.getConfigDTOs().size()) {
-					if (refreshNeeded(proxy, tmpProxy)) {
-						((ConfigRefreshNotifier<Object>) entry.getValue().getNotifier()).refreshConfig(proxy, configService);
-					}
-				} else {
+				// only the versions are probed, the notifier decides whether to load the new configuration
+				if (configService.isOutdated(proxy)) {
 					((ConfigRefreshNotifier<Object>) entry.getValue().getNotifier()).refreshConfig(proxy, configService);
 				}
 			}
 		}
 	}
 
-	private boolean refreshNeeded(final RootConfigProxy proxy, final RootConfigProxy tmpProxy) {
-		final List<ComplexConfigDTO> configDTOs = proxy.getConfigDTOs();
-		final List<ComplexConfigDTO> tmpDTOs = tmpProxy.getConfigDTOs();
-		for (int i = 0; i < proxy.getConfigDTOs().size(); i++) {
-			if (configDTOs.get(i).getVersion() < tmpDTOs.get(i).getVersion()) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 	private void ensureNotClosed() {
 		if (Boolean.TRUE.equals(closed.get())) {
 			throw new IllegalStateException("Attempt to operate on closed service!"); //$NON-NLS-1$
@@ -27,7 +27,6 @@
 
 package org.jeconfig.client.internal.crossreferences;
 
-import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
 import java.util.List;
@@ -37,7 +36,6 @@ import java.util.Set;
 import org.jeconfig.api.ConfigService;
 import org.jeconfig.api.annotation.ConfigArrayProperty;
 import org.jeconfig.api.annotation.ConfigComplexProperty;
-import org.jeconfig.api.annotation.ConfigComplexType;
 import org.jeconfig.api.annotation.ConfigCrossReference;
 import org.jeconfig.api.annotation.ConfigListProperty;
 import org.jeconfig.api.annotation.ConfigMapProperty;
@@ -46,21 +44,18 @@ import org.jeconfig.api.scope.ScopePath;
 import org.jeconfig.api.scope.ScopePathBuilder;
 import org.jeconfig.api.scope.ScopePathBuilderFactory;
 import org.jeconfig.api.scope.InstanceScopeDescriptor;
-import org.jeconfig.client.internal.AnnotationUtil;
+import org.jeconfig.client.internal.metadata.ConfigClassModel;
+import org.jeconfig.client.internal.metadata.ConfigPropertyModel;
 import org.jeconfig.client.proxy.ConfigProxy;
 import org.jeconfig.client.proxy.RootConfigProxy;
-import org.jeconfig.client.proxy.ProxyUtil;
-import org.jeconfig.common.reflection.PropertyAccessor;
 
 import javassist.util.proxy.ProxyObject;
 
 public final class CrossReferencesResolver {
 	private final ConfigService configService;
-	private final PropertyAccessor propertyAccessor;
 
 	public CrossReferencesResolver(final ConfigService configService) {
 		this.configService = configService;
-		propertyAccessor = new PropertyAccessor();
 	}
 
 	public void resolveCrossReferences(final Object config) {
@@ -77,68 +72,57 @@ public final class CrossReferencesResolver {
 
 	private void handleComplexType(final Object config) {
 		if (config != null) {
-			final Class<?> configClass = ProxyUtil.getConfigClass(config.getClass());
 			final ConfigProxy<?> proxy = (ConfigProxy<?>) config;
 			proxy.setReadOnlyCrossReferences(false);
 
-			for (final PropertyDescriptor propertyDescriptor : propertyAccessor.getPropertyDescriptors(configClass)) {
-				if (propertyDescriptor.getReadMethod() != null) {
-					for (final Annotation annotation : propertyDescriptor.getReadMethod().getAnnotations()) {
-						if (ConfigCrossReference.class.equals(annotation.annotationType())) {
-							resolveCrossReference(config, propertyDescriptor, (ConfigCrossReference) annotation);
-						} else if (ConfigComplexProperty.class.equals(annotation.annotationType())) {
-							handleComplexType(propertyAccessor.read(config, propertyDescriptor.getName()));
-						} else if (ConfigArrayProperty.class.equals(annotation.annotationType())) {
-							handleArrayProperty(config, propertyDescriptor, (ConfigArrayProperty) annotation);
-						} else if (ConfigListProperty.class.equals(annotation.annotationType())) {
-							handleListProperty(config, propertyDescriptor, (ConfigListProperty) annotation);
-						} else if (ConfigSetProperty.class.equals(annotation.annotationType())) {
-							handleSetProperty(config, propertyDescriptor, (ConfigSetProperty) annotation);
-						} else if (ConfigMapProperty.class.equals(annotation.annotationType())) {
-							handleMapProperty(config, propertyDescriptor, (ConfigMapProperty) annotation);
-						}
-					}
+			for (final ConfigPropertyModel property : ConfigClassModel.get(config.getClass()).getProperties()) {
+				if (property.isCrossReference()) {
+					resolveCrossReference(config, property);
+				}
+				final Class<? extends Annotation> annotationType = property.getAnnotationType();
+				if (ConfigComplexProperty.class.equals(annotationType)) {
+					handleComplexType(property.read(config));
+				} else if (ConfigArrayProperty.class.equals(annotationType)) {
+					handleArrayProperty(config, property);
+				} else if (ConfigListProperty.class.equals(annotationType)) {
+					handleListProperty(config, property);
+				} else if (ConfigSetProperty.class.equals(annotationType)) {
+					handleSetProperty(config, property);
+				} else if (ConfigMapProperty.class.equals(annotationType)) {
+					handleMapProperty(config, property);
 				}
 			}
 			proxy.setReadOnlyCrossReferences(true);
 		}
 	}
 
-	private void resolveCrossReference(
-		final Object config,
-		final PropertyDescriptor propDesc,
-		final ConfigCrossReference crossReferenceAnnotation) {
-
-		final Class<?> referenceClass = propDesc.getPropertyType();
-		final ScopePath referenceScope = getScope(propDesc.getPropertyType(), crossReferenceAnnotation);
+	private void resolveCrossReference(final Object config, final ConfigPropertyModel property) {
+		final Class<?> referenceClass = property.getPropertyType();
+		final ScopePath referenceScope = getScope(referenceClass, property.getCrossReferenceAnnotation());
 
 		final Object referenceConfig = configService.load(referenceClass, referenceScope);
-		propertyAccessor.write(config, propDesc.getName(), referenceConfig);
+		property.write(config, referenceConfig);
 
 		handleReadOnlyComplexType(referenceConfig);
 	}
 
 	private void handleReadOnlyComplexType(final Object referenceConfig) {
-		final Class<?> configClass = ProxyUtil.getConfigClass(referenceConfig.getClass());
 		final ConfigProxy<?> proxy = (ConfigProxy<?>) referenceConfig;
 		proxy.setReadOnly(false);
 		proxy.setReadOnlyCrossReferences(false);
 
-		for (final PropertyDescriptor propertyDescriptor : propertyAccessor.getPropertyDescriptors(configClass)) {
-			if (propertyDescriptor.getReadMethod() != null) {
-				for (final Annotation annotation : propertyDescriptor.getReadMethod().getAnnotations()) {
-					if (ConfigComplexProperty.class.equals(annotation.annotationType())) {
-						handleReadOnlyComplexType(propertyAccessor.read(referenceConfig, propertyDescriptor.getName()));
-					} else if (ConfigArrayProperty.class.equals(annotation.annotationType())) {
-						handleReadOnlyArrayProperty(referenceConfig, propertyDescriptor, (ConfigArrayProperty) annotation);
-					} else if (ConfigListProperty.class.equals(annotation.annotationType())) {
-						handleReadOnlyListProperty(referenceConfig, propertyDescriptor, (ConfigListProperty) annotation);
-					} else if (ConfigSetProperty.class.equals(annotation.annotationType())) {
-						handleReadOnlySetProperty(referenceConfig, propertyDescriptor, (ConfigSetProperty) annotation);
-					} else if (ConfigMapProperty.class.equals(annotation.annotationType())) {
-						handleReadOnlyMapProperty(referenceConfig, propertyDescriptor, (ConfigMapProperty) annotation);
-					}
-				}
+		for (final ConfigPropertyModel property : ConfigClassModel.get(referenceConfig.getClass()).getConfigProperties()) {
+			final Class<? extends Annotation> annotationType = property.getAnnotationType();
+			if (ConfigComplexProperty.class.equals(annotationType)) {
+				handleReadOnlyComplexType(property.read(referenceConfig));
+			} else if (ConfigArrayProperty.class.equals(annotationType)) {
+				handleReadOnlyArrayProperty(referenceConfig, property);
+			} else if (ConfigListProperty.class.equals(annotationType)) {
+				handleReadOnlyListProperty(referenceConfig, property);
+			} else if (ConfigSetProperty.class.equals(annotationType)) {
+				handleReadOnlySetProperty(referenceConfig, property);
+			} else if (ConfigMapProperty.class.equals(annotationType)) {
+				handleReadOnlyMapProperty(referenceConfig, property);
 			}
 		}
 		proxy.setReadOnly(true);
@@ -146,16 +130,12 @@ public final class CrossReferencesResolver {
 	}
 
 	@SuppressWarnings("unchecked")
-	private void handleReadOnlyMapProperty(
-		final Object referenceConfig,
-		final PropertyDescriptor propertyDescriptor,
-		final ConfigMapProperty annotation) {
-
-		final Map<Object, Object> map = (Map<Object, Object>) propertyAccessor.read(referenceConfig, propertyDescriptor.getName());
+	private void handleReadOnlyMapProperty(final Object referenceConfig, final ConfigPropertyModel property) {
+		final Map<Object, Object> map = (Map<Object, Object>) property.read(referenceConfig);
 		if (map != null) {
 			final ConfigProxy<?> proxy = (ConfigProxy<?>) map;
 			proxy.setReadOnly(true);
-			if (isComplexType(annotation.valueType()) || annotation.polymorph()) {
+			if (hasComplexItems(property)) {
 				for (final Object value : map.values()) {
 					handleComplexType(value);
 				}
@@ -164,16 +144,12 @@ public final class CrossReferencesResolver {
 	}
 
 	@SuppressWarnings("unchecked")
-	private void handleReadOnlySetProperty(
-		final Object referenceConfig,
-		final PropertyDescriptor propertyDescriptor,
-		final ConfigSetProperty annotation) {
-
-		final Set<Object> set = (Set<Object>) propertyAccessor.read(referenceConfig, propertyDescriptor.getName());
+	private void handleReadOnlySetProperty(final Object referenceConfig, final ConfigPropertyModel property) {
+		final Set<Object> set = (Set<Object>) property.read(referenceConfig);
 		if (set != null) {
 			final ConfigProxy<?> proxy = (ConfigProxy<?>) set;
 			proxy.setReadOnly(true);
-			if (isComplexType(annotation.itemType()) || annotation.polymorph()) {
+			if (hasComplexItems(property)) {
 				for (final Object item : set) {
 					handleReadOnlyComplexType(item);
 				}
@@ -182,16 +158,12 @@ public final class CrossReferencesResolver {
 	}
 
 	@SuppressWarnings("unchecked")
-	private void handleReadOnlyListProperty(
-		final Object referenceConfig,
-		final PropertyDescriptor propertyDescriptor,
-		final ConfigListProperty annotation) {
-
-		final List<Object> list = (List<Object>) propertyAccessor.read(referenceConfig, propertyDescriptor.getName());
+	private void handleReadOnlyListProperty(final Object referenceConfig, final ConfigPropertyModel property) {
+		final List<Object> list = (List<Object>) property.read(referenceConfig);
 		if (list != null) {
 			final ConfigProxy<?> proxy = (ConfigProxy<?>) list;
 			proxy.setReadOnly(true);
-			if (isComplexType(annotation.itemType()) || annotation.polymorph()) {
+			if (hasComplexItems(property)) {
 				for (final Object item : list) {
 					handleReadOnlyComplexType(item);
 				}
@@ -199,13 +171,9 @@ public final class CrossReferencesResolver {
 		}
 	}
 
-	private void handleReadOnlyArrayProperty(
-		final Object referenceConfig,
-		final PropertyDescriptor propertyDescriptor,
-		final ConfigArrayProperty annotation) {
-		final Class<?> itemType = propertyDescriptor.getPropertyType().getComponentType();
-		if (isComplexType(itemType) || annotation.polymorph()) {
-			final Object array = propertyAccessor.read(referenceConfig, propertyDescriptor.getName());
+	private void handleReadOnlyArrayProperty(final Object referenceConfig, final ConfigPropertyModel property) {
+		if (hasComplexItems(property)) {
+			final Object array = property.read(referenceConfig);
 			if (array != null) {
 				for (int i = 0; i < Array.getLength(array); i++) {
 					final Object current = Array.get(array, i);
@@ -215,14 +183,9 @@ public final class CrossReferencesResolver {
 		}
 	}
 
-	private void handleArrayProperty(
-		final Object config,
-		final PropertyDescriptor propertyDescriptor,
-		final ConfigArrayProperty annotation) {
-
-		final Class<?> itemType = propertyDescriptor.getPropertyType().getComponentType();
-		if (isComplexType(itemType) || annotation.polymorph()) {
-			final Object array = propertyAccessor.read(config, propertyDescriptor.getName());
+	private void handleArrayProperty(final Object config, final ConfigPropertyModel property) {
+		if (hasComplexItems(property)) {
+			final Object array = property.read(config);
 			if (array != null) {
 				for (int i = 0; i < Array.getLength(array); i++) {
 					final Object current = Array.get(array, i);
@@ -233,13 +196,9 @@ public final class CrossReferencesResolver {
 	}
 
 	@SuppressWarnings("unchecked")
-	private void handleMapProperty(
-		final Object config,
-		final PropertyDescriptor propertyDescriptor,
-		final ConfigMapProperty annotation) {
-
-		if (isComplexType(annotation.valueType()) || annotation.polymorph()) {
-			final Map<Object, Object> map = (Map<Object, Object>) propertyAccessor.read(config, propertyDescriptor.getName());
+	private void handleMapProperty(final Object config, final ConfigPropertyModel property) {
+		if (hasComplexItems(property)) {
+			final Map<Object, Object> map = (Map<Object, Object>) property.read(config);
 			if (map != null) {
 				for (final Object value : map.values()) {
 					handleComplexType(value);
@@ -249,13 +208,9 @@ public final class CrossReferencesResolver {
 	}
 
 	@SuppressWarnings("unchecked")
-	private void handleSetProperty(
-		final Object config,
-		final PropertyDescriptor propertyDescriptor,
-		final ConfigSetProperty annotation) {
-
-		if (isComplexType(annotation.itemType()) || annotation.polymorph()) {
-			final Set<Object> set = (Set<Object>) propertyAccessor.read(config, propertyDescriptor.getName());
+	private void handleSetProperty(final Object config, final ConfigPropertyModel property) {
+		if (hasComplexItems(property)) {
+			final Set<Object> set = (Set<Object>) property.read(config);
 			if (set != null) {
 				for (final Object item : set) {
 					handleComplexType(item);
@@ -265,13 +220,9 @@ public final class CrossReferencesResolver {
 	}
 
 	@SuppressWarnings("unchecked")
-	private void handleListProperty(
-		final Object config,
-		final PropertyDescriptor propertyDescriptor,
-		final ConfigListProperty annotation) {
-
-		if (isComplexType(annotation.itemType()) || annotation.polymorph()) {
-			final List<Object> list = (List<Object>) propertyAccessor.read(config, propertyDescriptor.getName());
+	private void handleListProperty(final Object config, final ConfigPropertyModel property) {
+		if (hasComplexItems(property)) {
+			final List<Object> list = (List<Object>) property.read(config);
 			if (list != null) {
 				for (final Object item : list) {
 					handleComplexType(item);
@@ -280,8 +231,8 @@ public final class CrossReferencesResolver {
 		}
 	}
 
-	private boolean isComplexType(final Class<?> type) {
-		return AnnotationUtil.getAnnotation(type, ConfigComplexType.class) != null;
+	private boolean hasComplexItems(final ConfigPropertyModel property) {
+		return property.isComplexItemType() || property.isPolymorph();
 	}
 
 	private ScopePath getScope(final Class<?> configClass, final ConfigCrossReference crossReferenceAnnotation) {
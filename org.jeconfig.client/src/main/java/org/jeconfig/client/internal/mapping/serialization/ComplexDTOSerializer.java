@@ -27,7 +27,6 @@
 
 package org.jeconfig.client.internal.mapping.serialization;
 
-import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
@@ -37,28 +36,21 @@ import java.util.Set;
 
 import org.jeconfig.api.annotation.ConfigArrayProperty;
 import org.jeconfig.api.annotation.ConfigComplexProperty;
-import org.jeconfig.api.annotation.ConfigComplexType;
 import org.jeconfig.api.annotation.ConfigListProperty;
 import org.jeconfig.api.annotation.ConfigMapProperty;
 import org.jeconfig.api.annotation.ConfigSetProperty;
 import org.jeconfig.api.annotation.ConfigSimpleProperty;
 import org.jeconfig.api.conversion.SimpleTypeConverter;
 import org.jeconfig.api.conversion.SimpleTypeConverterRegistry;
-import org.jeconfig.api.conversion.NoCustomSimpleTypeConverter;
 import org.jeconfig.api.dto.ComplexConfigDTO;
 import org.jeconfig.api.dto.ConfigDTO;
 import org.jeconfig.api.scope.ScopePath;
-import org.jeconfig.client.internal.AnnotationUtil;
-import org.jeconfig.client.internal.ConfigAnnotations;
-import org.jeconfig.client.internal.ConfigIdPropertyUtil;
+import org.jeconfig.client.internal.metadata.ConfigClassModel;
+import org.jeconfig.client.internal.metadata.ConfigPropertyModel;
 import org.jeconfig.client.proxy.ConfigProxy;
 import org.jeconfig.client.proxy.ProxyUtil;
-import org.jeconfig.common.reflection.ClassInstantiation;
-import org.jeconfig.common.reflection.PropertyAccessor;
 
 public class ComplexDTOSerializer extends AbstractDTOSerializer {
-	private final PropertyAccessor propertyAccessor = new PropertyAccessor();
-	private final ClassInstantiation classInstantiation = new ClassInstantiation();
 	private final ListDTOSerializer listDTOSerializer = new ListDTOSerializer();
 	private final SetDTOSerializer setDTOSerializer;
 	private final MapDTOSerializer mapDTOSerializer;
@@ -101,7 +93,8 @@ public class ComplexDTOSerializer extends AbstractDTOSerializer {
 			throw new IllegalArgumentException("The property name must not be null when config is not null!"); //$NON-NLS-1$
 		}
 
-		final String idPropertyName = config != null ? new ConfigIdPropertyUtil().findIdPropertyName(config.getClass()) : null;
+		final ConfigClassModel model = config != null ? ConfigClassModel.get(config.getClass()) : null;
+		final String idPropertyName = model != null && model.getIdProperty() != null ? model.getIdProperty().getName() : null;
 		final ComplexConfigDTO configDTO = new ComplexConfigDTO();
 		configDTO.setPropertyType(configPropertyType != null ? configPropertyType.getName() : null);
 		configDTO.setPropertyName(configPropertyName);
@@ -111,129 +104,115 @@ public class ComplexDTOSerializer extends AbstractDTOSerializer {
 		configDTO.setIdPropertyName(idPropertyName);
 
 		if (config != null) {
-			for (final PropertyDescriptor propertyDescriptor : propertyAccessor.getPropertyDescriptors(configPropertyType)) {
-				final Annotation annotation = getConfigPropertyAnnotation(propertyDescriptor);
-				if (annotation != null) {
-					final String propertyName = propertyDescriptor.getName();
-					final Class<?> propertyType = ProxyUtil.getConfigClass(propertyDescriptor.getPropertyType());
-					final Object propertyValue = propertyAccessor.read(config, propertyName);
-
-					if (shouldCreateWholeSubtree || shouldCreatePropertyDTO(config, propertyValue, propertyName, idPropertyName)) {
-						final List<ConfigDTO> propertyOriginalDTOs = getPropertyOriginalDTOs(originalDTOs, propertyName);
-
-						ConfigDTO propertyDTO;
-						if (ConfigSimpleProperty.class.equals(annotation.annotationType())) {
-							final ConfigSimpleProperty anno = (ConfigSimpleProperty) annotation;
-							final SimpleTypeConverter<?> customConverter = createCustomConverter(anno.customConverter());
-							propertyDTO = simpleDTOSerializer.createSimpleValueDTO(
-									propertyValue,
-									(List) propertyOriginalDTOs,
-									propertyType,
-									propertyName,
-									scopePath,
-									(SimpleTypeConverter<Object>) customConverter);
-
-						} else if (ConfigComplexProperty.class.equals(annotation.annotationType())) {
-							final ConfigComplexProperty ccp = (ConfigComplexProperty) annotation;
-							Class<?> typeToUse = propertyType;
-							if (ccp.polymorph()) {
-								if (propertyValue != null) {
-									typeToUse = ProxyUtil.getConfigClass(propertyValue.getClass());
-								} else {
-									typeToUse = null;
-								}
+			for (final ConfigPropertyModel property : ConfigClassModel.get(configPropertyType).getConfigProperties()) {
+				final Annotation annotation = property.getConfigAnnotation();
+				final String propertyName = property.getName();
+				final Class<?> propertyType = ProxyUtil.getConfigClass(property.getPropertyType());
+				final Object propertyValue = property.read(config);
+
+				if (shouldCreateWholeSubtree || shouldCreatePropertyDTO(config, propertyValue, propertyName, idPropertyName)) {
+					final List<ConfigDTO> propertyOriginalDTOs = getPropertyOriginalDTOs(originalDTOs, propertyName);
+
+					ConfigDTO propertyDTO;
+					if (ConfigSimpleProperty.class.equals(annotation.annotationType())) {
+						final SimpleTypeConverter<?> customConverter = property.getCustomConverter();
+						propertyDTO = simpleDTOSerializer.createSimpleValueDTO(
+								propertyValue,
+								(List) propertyOriginalDTOs,
+								propertyType,
+								propertyName,
+								scopePath,
+								(SimpleTypeConverter<Object>) customConverter);
+
+					} else if (ConfigComplexProperty.class.equals(annotation.annotationType())) {
+						Class<?> typeToUse = propertyType;
+						if (property.isPolymorph()) {
+							if (propertyValue != null) {
+								typeToUse = ProxyUtil.getConfigClass(propertyValue.getClass());
+							} else {
+								typeToUse = null;
 							}
-							propertyDTO = createConfigDTO(
-									propertyValue,
-									(List) propertyOriginalDTOs,
-									typeToUse,
-									propertyName,
-									ccp.polymorph(),
-									scopePath,
-									shouldCreateWholeSubtree);
-
-						} else if (ConfigListProperty.class.equals(annotation.annotationType())) {
-							final ConfigListProperty listAnno = (ConfigListProperty) annotation;
-							final SimpleTypeConverter<?> customConverter = createCustomConverter(listAnno.customConverter());
-							final boolean complex = AnnotationUtil.getAnnotation(listAnno.itemType(), ConfigComplexType.class) != null;
-							propertyDTO = listDTOSerializer.createListDTO(
-									(List) propertyValue,
-									(List) propertyOriginalDTOs,
-									propertyType,
-									propertyName,
-									complex,
-									listAnno.polymorph(),
-									scopePath,
-									listAnno.itemType(),
-									this,
-									simpleDTOSerializer,
-									(SimpleTypeConverter<Object>) customConverter);
-
-						} else if (ConfigArrayProperty.class.equals(annotation.annotationType())) {
-							final ConfigArrayProperty arrayAnno = (ConfigArrayProperty) annotation;
-							final SimpleTypeConverter<?> customConverter = createCustomConverter(arrayAnno.customConverter());
-							final List<Object> list = createListFromArray(propertyValue);
-							final boolean complex = AnnotationUtil.getAnnotation(
-									propertyType.getComponentType(),
-									ConfigComplexType.class) != null;
-							propertyDTO = listDTOSerializer.createListDTO(
-									list,
-									(List) propertyOriginalDTOs,
-									propertyType,
-									propertyName,
-									complex,
-									arrayAnno.polymorph(),
-									scopePath,
-									propertyType.getComponentType(),
-									this,
-									simpleDTOSerializer,
-									(SimpleTypeConverter<Object>) customConverter);
-
-						} else if (ConfigSetProperty.class.equals(annotation.annotationType())) {
-							final ConfigSetProperty setAnno = (ConfigSetProperty) annotation;
-							final SimpleTypeConverter<?> customConverter = createCustomConverter(setAnno.customConverter());
-							final boolean complex = AnnotationUtil.getAnnotation(setAnno.itemType(), ConfigComplexType.class) != null;
-							propertyDTO = setDTOSerializer.createSetDTO(
-									(Set) propertyValue,
-									(List) propertyOriginalDTOs,
-									propertyType,
-									propertyName,
-									complex,
-									setAnno.polymorph(),
-									scopePath,
-									setAnno.itemType(),
-									shouldCreateWholeSubtree,
-									this,
-									simpleDTOSerializer,
-									(SimpleTypeConverter<Object>) customConverter);
-
-						} else if (ConfigMapProperty.class.equals(annotation.annotationType())) {
-							final ConfigMapProperty mapAnno = (ConfigMapProperty) annotation;
-							final boolean complex = AnnotationUtil.getAnnotation(mapAnno.valueType(), ConfigComplexType.class) != null;
-							final SimpleTypeConverter<?> customValueConverter = createCustomConverter(mapAnno.customValueConverter());
-							final SimpleTypeConverter<?> customKeyConverter = createCustomConverter(mapAnno.customKeyConverter());
-							propertyDTO = mapDTOSerializer.createMapDTO(
-									(Map) propertyValue,
-									(List) propertyOriginalDTOs,
-									propertyType,
-									propertyName,
-									complex,
-									mapAnno.polymorph(),
-									scopePath,
-									mapAnno.keyType(),
-									mapAnno.valueType(),
-									shouldCreateWholeSubtree,
-									this,
-									simpleDTOSerializer,
-									(SimpleTypeConverter<Object>) customValueConverter,
-									(SimpleTypeConverter<Object>) customKeyConverter);
-
-						} else {
-							throw new IllegalStateException("Incomplete if-else block"); //$NON-NLS-1$
 						}
-
-						configDTO.addProperty(propertyDTO);
+						propertyDTO = createConfigDTO(
+								propertyValue,
+								(List) propertyOriginalDTOs,
+								typeToUse,
+								propertyName,
+								property.isPolymorph(),
+								scopePath,
+								shouldCreateWholeSubtree);
+
+					} else if (ConfigListProperty.class.equals(annotation.annotationType())) {
+						final SimpleTypeConverter<?> customConverter = property.getCustomConverter();
+						propertyDTO = listDTOSerializer.createListDTO(
+								(List) propertyValue,
+								(List) propertyOriginalDTOs,
+								propertyType,
+								propertyName,
+								property.isComplexItemType(),
+								property.isPolymorph(),
+								scopePath,
+								property.getItemType(),
+								this,
+								simpleDTOSerializer,
+								(SimpleTypeConverter<Object>) customConverter);
+
+					} else if (ConfigArrayProperty.class.equals(annotation.annotationType())) {
+						final SimpleTypeConverter<?> customConverter = property.getCustomConverter();
+						final List<Object> list = createListFromArray(propertyValue);
+						propertyDTO = listDTOSerializer.createListDTO(
+								list,
+								(List) propertyOriginalDTOs,
+								propertyType,
+								propertyName,
+								property.isComplexItemType(),
+								property.isPolymorph(),
+								scopePath,
+								property.getItemType(),
+								this,
+								simpleDTOSerializer,
+								(SimpleTypeConverter<Object>) customConverter);
+
+					} else if (ConfigSetProperty.class.equals(annotation.annotationType())) {
+						final SimpleTypeConverter<?> customConverter = property.getCustomConverter();
+						propertyDTO = setDTOSerializer.createSetDTO(
+								(Set) propertyValue,
+								(List) propertyOriginalDTOs,
+								propertyType,
+								propertyName,
+								property.isComplexItemType(),
+								property.isPolymorph(),
+								scopePath,
+								property.getItemType(),
+								shouldCreateWholeSubtree,
+								this,
+								simpleDTOSerializer,
+								(SimpleTypeConverter<Object>) customConverter);
+
+					} else if (ConfigMapProperty.class.equals(annotation.annotationType())) {
+						final SimpleTypeConverter<?> customValueConverter = property.getCustomConverter();
+						final SimpleTypeConverter<?> customKeyConverter = property.getCustomKeyConverter();
+						propertyDTO = mapDTOSerializer.createMapDTO(
+								(Map) propertyValue,
+								(List) propertyOriginalDTOs,
+								propertyType,
+								propertyName,
+								property.isComplexItemType(),
+								property.isPolymorph(),
+								scopePath,
+								property.getKeyType(),
+								property.getItemType(),
+								shouldCreateWholeSubtree,
+								this,
+								simpleDTOSerializer,
+								(SimpleTypeConverter<Object>) customValueConverter,
+								(SimpleTypeConverter<Object>) customKeyConverter);
+
+					} else {
+						throw new IllegalStateException("Incomplete if-else block"); //$NON-NLS-1$
 					}
+
+					configDTO.addProperty(propertyDTO);
 				}
 			}
 		}
@@ -243,13 +222,6 @@ public class ComplexDTOSerializer extends AbstractDTOSerializer {
 		return configDTO;
 	}
 
-	private SimpleTypeConverter<?> createCustomConverter(final Class<? extends SimpleTypeConverter<?>> customConverter) {
-		if (NoCustomSimpleTypeConverter.class.equals(customConverter)) {
-			return null;
-		}
-		return classInstantiation.newInstance(customConverter);
-	}
-
 	private List<Object> createListFromArray(final Object array) {
 		if (array != null) {
 			final List<Object> list = new ArrayList<Object>();
@@ -305,15 +277,4 @@ public class ComplexDTOSerializer extends AbstractDTOSerializer {
 
 		return false;
 	}
-
-	private Annotation getConfigPropertyAnnotation(final PropertyDescriptor propertyDescriptor) {
-		if (propertyDescriptor.getReadMethod() != null) {
-			for (final Annotation annotation : propertyDescriptor.getReadMethod().getAnnotations()) {
-				if (ConfigAnnotations.CONFIG_ANNOTATIONS.contains(annotation.annotationType())) {
-					return annotation;
-				}
-			}
-		}
-		return null;
-	}
 }
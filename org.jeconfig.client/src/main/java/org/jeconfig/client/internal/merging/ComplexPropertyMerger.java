@@ -27,13 +27,13 @@
 
 package org.jeconfig.client.internal.merging;
 
-import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
 import java.util.Map;
 
 import org.jeconfig.api.annotation.ConfigComplexProperty;
 import org.jeconfig.api.annotation.merging.ItemMergingStrategy;
 import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.client.internal.metadata.ConfigPropertyModel;
 
 public final class ComplexPropertyMerger extends AbstractPropertyMerger {
 
@@ -47,13 +47,13 @@ public final class ComplexPropertyMerger extends AbstractPropertyMerger {
 		final ComplexConfigDTO resultDTO,
 		final ComplexConfigDTO parentDTO,
 		final ComplexConfigDTO childDTO,
-		final PropertyDescriptor propertyDescriptor,
+		final ConfigPropertyModel property,
 		final Map<Class<? extends Annotation>, PropertyMerger> mergers,
 		final ComplexTypeMerger complexTypeMerger,
 		final StalePropertiesMergingResultImpl mergingResult) {
 
-		final ComplexConfigDTO parentPropertyDTO = parentDTO.getComplexProperty(propertyDescriptor.getName());
-		final ComplexConfigDTO childPropertyDTO = childDTO.getComplexProperty(propertyDescriptor.getName());
+		final ComplexConfigDTO parentPropertyDTO = parentDTO.getComplexProperty(property.getName());
+		final ComplexConfigDTO childPropertyDTO = childDTO.getComplexProperty(property.getName());
 
 		ComplexConfigDTO mergedPropertyDTO = null;
 		if (parentPropertyDTO == null) {
@@ -61,7 +61,7 @@ public final class ComplexPropertyMerger extends AbstractPropertyMerger {
 		} else if (childPropertyDTO == null) {
 			mergedPropertyDTO = parentPropertyDTO;
 		} else {
-			final ConfigComplexProperty annotation = propertyDescriptor.getReadMethod().getAnnotation(ConfigComplexProperty.class);
+			final ConfigComplexProperty annotation = property.getConfigAnnotation(ConfigComplexProperty.class);
 
 			if (isChildStale(parentPropertyDTO, childPropertyDTO)) {
 				switch (annotation.stalenessSolutionStrategy()) {
@@ -103,7 +103,7 @@ public final class ComplexPropertyMerger extends AbstractPropertyMerger {
 						mergedPropertyDTO = complexTypeMerger.merge(
 								parentPropertyDTO,
 								childPropertyDTO,
-								propertyDescriptor.getPropertyType(),
+								property.getPropertyType(),
 								mergers,
 								mergingResult);
 						break;
@@ -27,16 +27,14 @@
 
 package org.jeconfig.client.internal.merging;
 
-import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
 import java.util.Map;
 
 import org.jeconfig.api.dto.ComplexConfigDTO;
-import org.jeconfig.client.proxy.ProxyUtil;
-import org.jeconfig.common.reflection.PropertyAccessor;
+import org.jeconfig.client.internal.metadata.ConfigClassModel;
+import org.jeconfig.client.internal.metadata.ConfigPropertyModel;
 
 public final class ComplexTypeMerger {
-	private final PropertyAccessor propertyAccessor = new PropertyAccessor();
 
 	public ComplexConfigDTO merge(
 		final ComplexConfigDTO parent,
@@ -58,15 +56,10 @@ public final class ComplexTypeMerger {
 
 		final ComplexConfigDTO result = child.flatCopy();
 
-		for (final PropertyDescriptor propertyDescriptor : propertyAccessor.getPropertyDescriptors(ProxyUtil.getConfigClass(configClass))) {
-			if (propertyDescriptor.getReadMethod() != null) {
-				for (final Annotation annotation : propertyDescriptor.getReadMethod().getAnnotations()) {
-					final PropertyMerger merger = mergers.get(annotation.annotationType());
-					if (merger != null) {
-						merger.merge(result, parent, child, propertyDescriptor, mergers, this, mergingResult);
-						break;
-					}
-				}
+		for (final ConfigPropertyModel property : ConfigClassModel.get(configClass).getConfigProperties()) {
+			final PropertyMerger merger = mergers.get(property.getAnnotationType());
+			if (merger != null) {
+				merger.merge(result, parent, child, property, mergers, this, mergingResult);
 			}
 		}
 
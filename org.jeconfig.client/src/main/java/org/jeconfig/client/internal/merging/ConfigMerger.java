@@ -70,7 +70,60 @@ public final class ConfigMerger {
 	 * @return a merged new configuration object
 	 */
 	public ComplexConfigDTO mergeWithoutStalenessNotification(final List<ComplexConfigDTO> configs, final Class<?> configClass) {
-		return merge(null, configs, configClass, null, false);
+		return merge(null, configs, configClass, null, false, new StalePropertiesMergingResultImpl(null));
+	}
+
+	/**
+	 * Merges the list of configurations into one new configuration using the
+	 * merging strategies of the configuration type and its sub-types.
+	 * 
+	 * @param configs the configuration objects to be merged with their scopes
+	 * @param configClass the type of the objects (containing the annotations)
+	 * @param stalePropertiesMergingResult collects the stale properties found while merging
+	 * @return a merged new configuration object
+	 */
+	public ComplexConfigDTO mergeWithoutStalenessNotification(
+		final List<ComplexConfigDTO> configs,
+		final Class<?> configClass,
+		final StalePropertiesMergingResultImpl stalePropertiesMergingResult) {
+		return merge(null, configs, configClass, null, false, stalePropertiesMergingResult);
+	}
+
+	/**
+	 * Merges the configuration of the last scope of the scope path into the merged configuration
+	 * of the parent scope path. The result equals the merge of all configurations of the scope path
+	 * if no stale properties were found while merging the parent configuration.
+	 * 
+	 * @param scopePath
+	 * @param mergedParentConfig the merged configuration of the parent scope path
+	 * @param config the configuration of the last scope; may be <code>null</code>
+	 * @param configClass the type of the objects (containing the annotations)
+	 * @param globalStalenessNotifier
+	 * @param stalePropertiesMergingResult collects the stale properties found while merging
+	 * @return a merged new configuration object or the merged parent configuration if the configuration is <code>null</code>
+	 */
+	public ComplexConfigDTO mergeIntoParent(
+		final ScopePath scopePath,
+		final ComplexConfigDTO mergedParentConfig,
+		final ComplexConfigDTO config,
+		final Class<?> configClass,
+		final StalenessNotifier globalStalenessNotifier,
+		final StalePropertiesMergingResultImpl stalePropertiesMergingResult) {
+		Assert.paramNotNull(mergedParentConfig, "mergedParentConfig"); //$NON-NLS-1$
+		Assert.paramNotNull(configClass, "configClass"); //$NON-NLS-1$
+
+		final ConfigClass annotation = getConfigClassAnnotation(configClass);
+		if (config == null) {
+			return mergedParentConfig;
+		}
+		final ComplexConfigDTO result = complexTypeMerger.merge(
+				mergedParentConfig,
+				config,
+				configClass,
+				mergers,
+				stalePropertiesMergingResult);
+		notifyStaleness(annotation, globalStalenessNotifier, stalePropertiesMergingResult);
+		return result;
 	}
 
 	/**
@@ -88,7 +141,27 @@ public final class ConfigMerger {
 		final List<ComplexConfigDTO> configs,
 		final Class<?> configClass,
 		final StalenessNotifier globalStalenessNotifier) {
-		return merge(scopePath, configs, configClass, globalStalenessNotifier, true);
+		return merge(scopePath, configs, configClass, globalStalenessNotifier, new StalePropertiesMergingResultImpl(scopePath));
+	}
+
+	/**
+	 * Merges the list of configurations into one new configuration using the
+	 * merging strategies of the configuration type and its sub-types.
+	 * 
+	 * @param scopePath
+	 * @param configs the configuration objects to be merged with their scopes
+	 * @param configClass the type of the objects (containing the annotations)
+	 * @param globalStalenessNotifier
+	 * @param stalePropertiesMergingResult collects the stale properties found while merging
+	 * @return a merged new configuration object
+	 */
+	public ComplexConfigDTO merge(
+		final ScopePath scopePath,
+		final List<ComplexConfigDTO> configs,
+		final Class<?> configClass,
+		final StalenessNotifier globalStalenessNotifier,
+		final StalePropertiesMergingResultImpl stalePropertiesMergingResult) {
+		return merge(scopePath, configs, configClass, globalStalenessNotifier, true, stalePropertiesMergingResult);
 	}
 
 	private ComplexConfigDTO merge(
@@ -96,24 +169,40 @@ public final class ConfigMerger {
 		final List<ComplexConfigDTO> configs,
 		final Class<?> configClass,
 		final StalenessNotifier globalStalenessNotifier,
-		final boolean notifyStaleness) {
+		final boolean notifyStaleness,
+		final StalePropertiesMergingResultImpl stalePropertiesMergingResult) {
 		Assert.paramNotEmpty(configs, "configs"); //$NON-NLS-1$
 		Assert.paramNotNull(configClass, "configClass"); //$NON-NLS-1$
 
-		final ConfigClass annotation = AnnotationUtil.getAnnotation(configClass, ConfigClass.class);
-		if (annotation == null) {
-			throw new IllegalArgumentException(
-				"The configuration class must be annotated with @" + ConfigClass.class.getSimpleName()); //$NON-NLS-1$
-		}
+		final ConfigClass annotation = getConfigClassAnnotation(configClass);
 
 		if (configs.size() == 0) {
 			throw new IllegalArgumentException("Got no configs!"); //$NON-NLS-1$
 		}
 
-		final StalePropertiesMergingResultImpl stalePropertiesMergingResult = new StalePropertiesMergingResultImpl(scopePath);
 		final ComplexConfigDTO result = mergeConfigs(getConfigsToMerge(configs), configClass, stalePropertiesMergingResult);
 
-		if (notifyStaleness && stalePropertiesMergingResult.hasProperties()) {
+		if (notifyStaleness) {
+			notifyStaleness(annotation, globalStalenessNotifier, stalePropertiesMergingResult);
+		}
+
+		return result;
+	}
+
+	private ConfigClass getConfigClassAnnotation(final Class<?> configClass) {
+		final ConfigClass annotation = AnnotationUtil.getAnnotation(configClass, ConfigClass.class);
+		if (annotation == null) {
+			throw new IllegalArgumentException(
+				"The configuration class must be annotated with @" + ConfigClass.class.getSimpleName()); //$NON-NLS-1$
+		}
+		return annotation;
+	}
+
+	private void notifyStaleness(
+		final ConfigClass annotation,
+		final StalenessNotifier globalStalenessNotifier,
+		final StalePropertiesMergingResultImpl stalePropertiesMergingResult) {
+		if (stalePropertiesMergingResult.hasProperties()) {
 			StalenessNotifier stalenessNotifier = globalStalenessNotifier;
 			if (annotation.stalenessNotfier() != NoStalenessNotifier.class) {
 				stalenessNotifier = new ClassInstantiation().newInstance(annotation.stalenessNotfier());
@@ -122,8 +211,6 @@ public final class ConfigMerger {
 				stalenessNotifier.loadedStaleConfig(stalePropertiesMergingResult);
 			}
 		}
-
-		return result;
 	}
 
 	private ComplexConfigDTO mergeConfigs(
@@ -27,7 +27,6 @@
 
 package org.jeconfig.client.internal.merging;
 
-import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
 import java.util.Map;
 
@@ -35,6 +34,7 @@ import org.jeconfig.api.annotation.ConfigListProperty;
 import org.jeconfig.api.annotation.merging.ListItemMergingStrategy;
 import org.jeconfig.api.dto.ComplexConfigDTO;
 import org.jeconfig.api.dto.ConfigListDTO;
+import org.jeconfig.client.internal.metadata.ConfigPropertyModel;
 
 public final class ListPropertyMerger extends AbstractPropertyMerger {
 
@@ -48,13 +48,13 @@ public final class ListPropertyMerger extends AbstractPropertyMerger {
 		final ComplexConfigDTO resultDTO,
 		final ComplexConfigDTO parentDTO,
 		final ComplexConfigDTO childDTO,
-		final PropertyDescriptor propertyDescriptor,
+		final ConfigPropertyModel property,
 		final Map<Class<? extends Annotation>, PropertyMerger> mergers,
 		final ComplexTypeMerger complexTypeMerger,
 		final StalePropertiesMergingResultImpl mergingResult) {
 
-		final ConfigListDTO parentListDTO = parentDTO.getListProperty(propertyDescriptor.getName());
-		final ConfigListDTO childListDTO = childDTO.getListProperty(propertyDescriptor.getName());
+		final ConfigListDTO parentListDTO = parentDTO.getListProperty(property.getName());
+		final ConfigListDTO childListDTO = childDTO.getListProperty(property.getName());
 
 		ConfigListDTO resultListDTO = null;
 		if (parentListDTO == null) {
@@ -62,7 +62,7 @@ public final class ListPropertyMerger extends AbstractPropertyMerger {
 		} else if (childListDTO == null) {
 			resultListDTO = parentListDTO;
 		} else {
-			final ConfigListProperty annotation = propertyDescriptor.getReadMethod().getAnnotation(ConfigListProperty.class);
+			final ConfigListProperty annotation = property.getConfigAnnotation(ConfigListProperty.class);
 
 			if (isChildStale(parentListDTO, childListDTO)) {
 				switch (annotation.stalenessSolutionStrategy()) {
@@ -27,13 +27,11 @@
 
 package org.jeconfig.client.internal.merging;
 
-import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import org.jeconfig.api.annotation.ConfigComplexType;
 import org.jeconfig.api.annotation.ConfigMapProperty;
 import org.jeconfig.api.annotation.merging.SimpleValueMergingStrategy;
 import org.jeconfig.api.annotation.merging.ItemExistenceStrategy;
@@ -41,12 +39,11 @@ import org.jeconfig.api.annotation.merging.ItemMergingStrategy;
 import org.jeconfig.api.annotation.merging.PropertyMergingParameter;
 import org.jeconfig.api.conversion.SimpleTypeConverter;
 import org.jeconfig.api.conversion.SimpleTypeConverterRegistry;
-import org.jeconfig.api.conversion.NoCustomSimpleTypeConverter;
 import org.jeconfig.api.dto.ComplexConfigDTO;
 import org.jeconfig.api.dto.ConfigMapDTO;
 import org.jeconfig.api.dto.ConfigSimpleValueDTO;
 import org.jeconfig.api.dto.ConfigDTO;
-import org.jeconfig.client.internal.AnnotationUtil;
+import org.jeconfig.client.internal.metadata.ConfigPropertyModel;
 import org.jeconfig.common.reflection.ClassInstantiation;
 
 public final class MapPropertyMerger extends AbstractPropertyMerger {
@@ -67,13 +64,13 @@ public final class MapPropertyMerger extends AbstractPropertyMerger {
 		final ComplexConfigDTO resultConfigDTO,
 		final ComplexConfigDTO parentConfigDTO,
 		final ComplexConfigDTO childConfigDTO,
-		final PropertyDescriptor propertyDescriptor,
+		final ConfigPropertyModel property,
 		final Map<Class<? extends Annotation>, PropertyMerger> mergers,
 		final ComplexTypeMerger complexTypeMerger,
 		final StalePropertiesMergingResultImpl mergingResult) {
 
-		final ConfigMapDTO parentMapDTO = parentConfigDTO.getMapProperty(propertyDescriptor.getName());
-		final ConfigMapDTO childMapDTO = childConfigDTO.getMapProperty(propertyDescriptor.getName());
+		final ConfigMapDTO parentMapDTO = parentConfigDTO.getMapProperty(property.getName());
+		final ConfigMapDTO childMapDTO = childConfigDTO.getMapProperty(property.getName());
 
 		ConfigMapDTO resultMapDTO = null;
 		if (parentMapDTO == null) {
@@ -81,7 +78,7 @@ public final class MapPropertyMerger extends AbstractPropertyMerger {
 		} else if (childMapDTO == null) {
 			resultMapDTO = parentMapDTO;
 		} else {
-			final ConfigMapProperty annotation = propertyDescriptor.getReadMethod().getAnnotation(ConfigMapProperty.class);
+			final ConfigMapProperty annotation = property.getConfigAnnotation(ConfigMapProperty.class);
 
 			if (isChildStale(parentMapDTO, childMapDTO)) {
 				switch (annotation.stalenessSolutionStrategy()) {
@@ -113,7 +110,7 @@ public final class MapPropertyMerger extends AbstractPropertyMerger {
 							childMap,
 							mergers,
 							complexTypeMerger,
-							propertyDescriptor,
+							property,
 							parentConfigDTO,
 							childConfigDTO,
 							mergingResult);
@@ -183,12 +180,12 @@ public final class MapPropertyMerger extends AbstractPropertyMerger {
 		final Map<String, ConfigDTO> childMap,
 		final Map<Class<? extends Annotation>, PropertyMerger> mergers,
 		final ComplexTypeMerger complexTypeMerger,
-		final PropertyDescriptor propertyDescriptor,
+		final ConfigPropertyModel property,
 		final ComplexConfigDTO parentConfigDTO,
 		final ComplexConfigDTO childConfigDTO,
 		final StalePropertiesMergingResultImpl mergingResult) {
 
-		final ConfigMapProperty annotation = propertyDescriptor.getReadMethod().getAnnotation(ConfigMapProperty.class);
+		final ConfigMapProperty annotation = property.getConfigAnnotation(ConfigMapProperty.class);
 		ItemMergingStrategy mergingStrategy = annotation.mergingStrategy();
 		if (isClassOrCodeDefaultDTO(parentConfigDTO)) {
 			if (annotation.polymorph()) {
@@ -223,7 +220,7 @@ public final class MapPropertyMerger extends AbstractPropertyMerger {
 											childValueDTO,
 											mergers,
 											complexTypeMerger,
-											propertyDescriptor,
+											property,
 											parentConfigDTO,
 											childConfigDTO,
 											mergingResult));
@@ -242,16 +239,15 @@ public final class MapPropertyMerger extends AbstractPropertyMerger {
 		final ConfigDTO childValueDTO,
 		final Map<Class<? extends Annotation>, PropertyMerger> mergers,
 		final ComplexTypeMerger complexTypeMerger,
-		final PropertyDescriptor propertyDescriptor,
+		final ConfigPropertyModel property,
 		final ComplexConfigDTO parentConfigDTO,
 		final ComplexConfigDTO childConfigDTO,
 		final StalePropertiesMergingResultImpl mergingResult) {
 
-		final ConfigMapProperty annotation = propertyDescriptor.getReadMethod().getAnnotation(ConfigMapProperty.class);
+		final ConfigMapProperty annotation = property.getConfigAnnotation(ConfigMapProperty.class);
 		final Class<?> valueType = annotation.valueType();
-		final ConfigComplexType complexTypeAnnotation = AnnotationUtil.getAnnotation(valueType, ConfigComplexType.class);
 
-		if (complexTypeAnnotation != null) {
+		if (property.isComplexItemType()) {
 			if (childValueDTO != null && !(childValueDTO instanceof ComplexConfigDTO)) {
 				throw new IllegalArgumentException("Got non-complex value for complex map"); //$NON-NLS-1$
 			}
@@ -277,23 +273,21 @@ public final class MapPropertyMerger extends AbstractPropertyMerger {
 			final PropertyMergingParameter mergingParameter = new PropertyMergingParameter(
 				(ConfigSimpleValueDTO) parentValueDTO,
 				(ConfigSimpleValueDTO) childValueDTO,
-				getConverter(annotation.valueType(), annotation.customValueConverter()),
+				getConverter(property),
 				parentConfigDTO,
 				childConfigDTO,
-				propertyDescriptor.getPropertyType(),
-				propertyDescriptor.getName());
+				property.getPropertyType(),
+				property.getName());
 
 			return strategy.merge(mergingParameter);
 		}
 	}
 
-	private SimpleTypeConverter<?> getConverter(
-		final Class<?> propertyType,
-		final Class<? extends SimpleTypeConverter<?>> customConverterClass) {
-		final boolean customConverter = !NoCustomSimpleTypeConverter.class.equals(customConverterClass);
-		if (customConverter) {
-			return classInstantiation.newInstance(customConverterClass);
+	private SimpleTypeConverter<?> getConverter(final ConfigPropertyModel property) {
+		final SimpleTypeConverter<?> customConverter = property.getCustomConverter();
+		if (customConverter != null) {
+			return customConverter;
 		}
-		return converterRegistry.getConverter(propertyType);
+		return converterRegistry.getConverter(property.getItemType());
 	}
 }
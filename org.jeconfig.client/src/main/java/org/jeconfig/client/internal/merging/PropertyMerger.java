@@ -27,11 +27,11 @@
 
 package org.jeconfig.client.internal.merging;
 
-import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
 import java.util.Map;
 
 import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.client.internal.metadata.ConfigPropertyModel;
 
 public interface PropertyMerger {
 
@@ -41,7 +41,7 @@ public interface PropertyMerger {
 		final ComplexConfigDTO resultDTO,
 		final ComplexConfigDTO parentDTO,
 		final ComplexConfigDTO childDTO,
-		PropertyDescriptor propertyDescriptor,
+		ConfigPropertyModel property,
 		Map<Class<? extends Annotation>, PropertyMerger> mergers,
 		ComplexTypeMerger complexTypeMerger,
 		StalePropertiesMergingResultImpl mergingResult);
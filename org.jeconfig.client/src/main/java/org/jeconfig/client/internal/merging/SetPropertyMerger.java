@@ -27,14 +27,12 @@
 
 package org.jeconfig.client.internal.merging;
 
-import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
-import org.jeconfig.api.annotation.ConfigComplexType;
 import org.jeconfig.api.annotation.ConfigSetProperty;
 import org.jeconfig.api.annotation.merging.ItemExistenceStrategy;
 import org.jeconfig.api.annotation.merging.ItemMergingStrategy;
@@ -42,7 +40,7 @@ import org.jeconfig.api.dto.ComplexConfigDTO;
 import org.jeconfig.api.dto.ConfigSetDTO;
 import org.jeconfig.api.dto.ConfigSimpleValueDTO;
 import org.jeconfig.api.dto.ConfigDTO;
-import org.jeconfig.client.internal.AnnotationUtil;
+import org.jeconfig.client.internal.metadata.ConfigPropertyModel;
 
 public final class SetPropertyMerger extends AbstractPropertyMerger {
 
@@ -56,13 +54,13 @@ public final class SetPropertyMerger extends AbstractPropertyMerger {
 		final ComplexConfigDTO resultDTO,
 		final ComplexConfigDTO parentDTO,
 		final ComplexConfigDTO childDTO,
-		final PropertyDescriptor propertyDescriptor,
+		final ConfigPropertyModel property,
 		final Map<Class<? extends Annotation>, PropertyMerger> mergers,
 		final ComplexTypeMerger complexTypeMerger,
 		final StalePropertiesMergingResultImpl mergingResult) {
 
-		final ConfigSetDTO parentSetDTO = parentDTO.getSetProperty(propertyDescriptor.getName());
-		final ConfigSetDTO childSetDTO = childDTO.getSetProperty(propertyDescriptor.getName());
+		final ConfigSetDTO parentSetDTO = parentDTO.getSetProperty(property.getName());
+		final ConfigSetDTO childSetDTO = childDTO.getSetProperty(property.getName());
 
 		ConfigSetDTO resultSetDTO = null;
 		if (parentSetDTO == null) {
@@ -70,7 +68,7 @@ public final class SetPropertyMerger extends AbstractPropertyMerger {
 		} else if (childSetDTO == null) {
 			resultSetDTO = parentSetDTO;
 		} else {
-			final ConfigSetProperty annotation = propertyDescriptor.getReadMethod().getAnnotation(ConfigSetProperty.class);
+			final ConfigSetProperty annotation = property.getConfigAnnotation(ConfigSetProperty.class);
 
 			if (isChildStale(parentSetDTO, childSetDTO)) {
 				switch (annotation.stalenessSolutionStrategy()) {
@@ -103,7 +101,7 @@ public final class SetPropertyMerger extends AbstractPropertyMerger {
 							childContainerMap,
 							mergers,
 							complexTypeMerger,
-							propertyDescriptor,
+							property,
 							parentDTO,
 							childDTO,
 							mergingResult);
@@ -138,17 +136,15 @@ public final class SetPropertyMerger extends AbstractPropertyMerger {
 		final Map<ElementContainer, ConfigDTO> childMap,
 		final Map<Class<? extends Annotation>, PropertyMerger> mergers,
 		final ComplexTypeMerger complexTypeMerger,
-		final PropertyDescriptor propertyDescriptor,
+		final ConfigPropertyModel property,
 		final ComplexConfigDTO parentConfigDTO,
 		final ComplexConfigDTO childConfigDTO,
 		final StalePropertiesMergingResultImpl mergingResult) {
 
-		final ConfigSetProperty annotation = propertyDescriptor.getReadMethod().getAnnotation(ConfigSetProperty.class);
-		final Class<?> valueType = annotation.itemType();
-		final ConfigComplexType complexTypeAnnotation = AnnotationUtil.getAnnotation(valueType, ConfigComplexType.class);
+		final ConfigSetProperty annotation = property.getConfigAnnotation(ConfigSetProperty.class);
 		ItemMergingStrategy mergingStrategy = annotation.mergingStrategy();
 		if (isClassOrCodeDefaultDTO(parentConfigDTO)) {
-			if (annotation.polymorph() || complexTypeAnnotation == null) {
+			if (annotation.polymorph() || !property.isComplexItemType()) {
 				mergingStrategy = ItemMergingStrategy.USE_CHILD;
 			} else {
 				mergingStrategy = ItemMergingStrategy.MERGE;
@@ -179,7 +175,7 @@ public final class SetPropertyMerger extends AbstractPropertyMerger {
 									childItemDTO,
 									mergers,
 									complexTypeMerger,
-									propertyDescriptor,
+									property,
 									parentConfigDTO,
 									childConfigDTO,
 									mergingResult));
@@ -198,16 +194,15 @@ public final class SetPropertyMerger extends AbstractPropertyMerger {
 		final ConfigDTO childItemDTO,
 		final Map<Class<? extends Annotation>, PropertyMerger> mergers,
 		final ComplexTypeMerger complexTypeMerger,
-		final PropertyDescriptor propertyDescriptor,
+		final ConfigPropertyModel property,
 		final ComplexConfigDTO parentConfigDTO,
 		final ComplexConfigDTO childConfigDTO,
 		final StalePropertiesMergingResultImpl mergingResult) {
 
-		final ConfigSetProperty annotation = propertyDescriptor.getReadMethod().getAnnotation(ConfigSetProperty.class);
+		final ConfigSetProperty annotation = property.getConfigAnnotation(ConfigSetProperty.class);
 		final Class<?> valueType = annotation.itemType();
-		final ConfigComplexType complexTypeAnnotation = AnnotationUtil.getAnnotation(valueType, ConfigComplexType.class);
 
-		if (complexTypeAnnotation != null) {
+		if (property.isComplexItemType()) {
 			if (childItemDTO != null && !(childItemDTO instanceof ComplexConfigDTO)) {
 				throw new IllegalArgumentException("Got non-complex item for complex set"); //$NON-NLS-1$
 			}
@@ -27,7 +27,6 @@
 
 package org.jeconfig.client.internal.merging;
 
-import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
 import java.util.Map;
 
@@ -37,9 +36,9 @@ import org.jeconfig.api.annotation.merging.MergingStrategies;
 import org.jeconfig.api.annotation.merging.PropertyMergingParameter;
 import org.jeconfig.api.conversion.SimpleTypeConverter;
 import org.jeconfig.api.conversion.SimpleTypeConverterRegistry;
-import org.jeconfig.api.conversion.NoCustomSimpleTypeConverter;
 import org.jeconfig.api.dto.ComplexConfigDTO;
 import org.jeconfig.api.dto.ConfigSimpleValueDTO;
+import org.jeconfig.client.internal.metadata.ConfigPropertyModel;
 import org.jeconfig.common.reflection.ClassInstantiation;
 
 public final class SimplePropertyMerger extends AbstractPropertyMerger {
@@ -61,13 +60,13 @@ public final class SimplePropertyMerger extends AbstractPropertyMerger {
 		final ComplexConfigDTO resultDTO,
 		final ComplexConfigDTO parentDTO,
 		final ComplexConfigDTO childDTO,
-		final PropertyDescriptor propertyDescriptor,
+		final ConfigPropertyModel property,
 		final Map<Class<? extends Annotation>, PropertyMerger> mergers,
 		final ComplexTypeMerger complexTypeMerger,
 		final StalePropertiesMergingResultImpl mergingResult) {
 
-		final ConfigSimpleValueDTO parentValueDTO = parentDTO.getSimpleValueProperty(propertyDescriptor.getName());
-		final ConfigSimpleValueDTO childValueDTO = childDTO.getSimpleValueProperty(propertyDescriptor.getName());
+		final ConfigSimpleValueDTO parentValueDTO = parentDTO.getSimpleValueProperty(property.getName());
+		final ConfigSimpleValueDTO childValueDTO = childDTO.getSimpleValueProperty(property.getName());
 
 		ConfigSimpleValueDTO mergeResultDTO = null;
 		if (parentValueDTO == null) {
@@ -75,7 +74,7 @@ public final class SimplePropertyMerger extends AbstractPropertyMerger {
 		} else if (childValueDTO == null) {
 			mergeResultDTO = parentValueDTO;
 		} else {
-			final ConfigSimpleProperty annotation = propertyDescriptor.getReadMethod().getAnnotation(ConfigSimpleProperty.class);
+			final ConfigSimpleProperty annotation = property.getConfigAnnotation(ConfigSimpleProperty.class);
 
 			if (isChildStale(parentValueDTO, childValueDTO)) {
 				switch (annotation.stalenessSolutionStrategy()) {
@@ -97,11 +96,11 @@ public final class SimplePropertyMerger extends AbstractPropertyMerger {
 				final PropertyMergingParameter<?> mergingParam = new PropertyMergingParameter(
 					parentValueDTO,
 					childValueDTO,
-					getConverter(propertyDescriptor),
+					getConverter(property),
 					parentDTO,
 					childDTO,
-					propertyDescriptor.getPropertyType(),
-					propertyDescriptor.getName());
+					property.getPropertyType(),
+					property.getName());
 
 				SimpleValueMergingStrategy mergingStrategy = classInstantiation.newInstance(annotation.mergingStrategy());
 				if (isClassOrCodeDefaultDTO(parentValueDTO)) {
@@ -116,12 +115,11 @@ public final class SimplePropertyMerger extends AbstractPropertyMerger {
 		}
 	}
 
-	private SimpleTypeConverter<?> getConverter(final PropertyDescriptor propertyDescriptor) {
-		final ConfigSimpleProperty annotation = propertyDescriptor.getReadMethod().getAnnotation(ConfigSimpleProperty.class);
-		final boolean customConverter = !NoCustomSimpleTypeConverter.class.equals(annotation.customConverter());
-		if (customConverter) {
-			return classInstantiation.newInstance(annotation.customConverter());
+	private SimpleTypeConverter<?> getConverter(final ConfigPropertyModel property) {
+		final SimpleTypeConverter<?> customConverter = property.getCustomConverter();
+		if (customConverter != null) {
+			return customConverter;
 		}
-		return converterRegistry.getConverter(propertyDescriptor.getPropertyType());
+		return converterRegistry.getConverter(property.getPropertyType());
 	}
 }
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.client.internal.metadata;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jeconfig.api.annotation.ConfigClass;
+import org.jeconfig.api.annotation.ConfigComplexType;
+import org.jeconfig.api.util.Assert;
+import org.jeconfig.client.proxy.ProxyUtil;
+import org.jeconfig.common.reflection.IndexedPropertyAccessor;
+import org.jeconfig.common.reflection.PropertyAccessStrategy;
+
+/**
+ * The precompiled meta data of a configuration class or complex type.<br>
+ * Holds the annotated properties in a stable order (sorted by name) together with their
+ * resolved annotations, item types, polymorph flags and custom converters, so that
+ * the walkers of the client (serialization, merging, proxy updating, cross references)
+ * don't need to introspect the class and scan the annotations of its getters again and again.<br>
+ * <br>
+ * Models are cached per class. The cache references the classes weakly and the models softly, so it doesn't
+ * keep classes and their class loaders (e.g. of uninstalled bundles) alive; a model which was collected
+ * is created again on the next access.
+ * 
+ * This class is thread-safe.
+ */
+public final class ConfigClassModel {
+	private static final ConcurrentMap<ClassKey, SoftReference<ConfigClassModel>> MODELS =
+		new ConcurrentHashMap<ClassKey, SoftReference<ConfigClassModel>>();
+	private static final ReferenceQueue<Class<?>> COLLECTED_CLASSES = new ReferenceQueue<Class<?>>();
+	private static final PropertyAccessStrategy ACCESS_STRATEGY = new JavassistPropertyAccessStrategy();
+
+	private final Class<?> configClass;
+	private final ConfigClass configClassAnnotation;
+	private final boolean complexType;
+	private final List<ConfigPropertyModel> properties;
+	private final List<ConfigPropertyModel> configProperties;
+	private final Map<String, ConfigPropertyModel> propertiesByName;
+	private final ConfigPropertyModel idProperty;
+
+	/** Created on first access; the properties are accessed by their index. */
+	private volatile IndexedPropertyAccessor accessor;
+
+	private ConfigClassModel(final Class<?> configClass) {
+		this.configClass = configClass;
+		configClassAnnotation = configClass.getAnnotation(ConfigClass.class);
+		complexType = configClass.getAnnotation(ConfigComplexType.class) != null;
+
+		final List<ConfigPropertyModel> allProperties = new ArrayList<ConfigPropertyModel>();
+		final List<ConfigPropertyModel> annotatedProperties = new ArrayList<ConfigPropertyModel>();
+		final Map<String, ConfigPropertyModel> byName = new HashMap<String, ConfigPropertyModel>();
+		ConfigPropertyModel id = null;
+
+		for (final PropertyDescriptor propertyDescriptor : getSortedPropertyDescriptors(configClass)) {
+			if (propertyDescriptor.getReadMethod() != null) {
+				final ConfigPropertyModel property = new ConfigPropertyModel(this, allProperties.size(), propertyDescriptor);
+				if (property.isConfigProperty() || property.isCrossReference() || property.isIdProperty()) {
+					allProperties.add(property);
+					byName.put(property.getName(), property);
+					if (property.isConfigProperty()) {
+						annotatedProperties.add(property);
+					}
+					if (id == null && property.isIdProperty()) {
+						id = property;
+					}
+				}
+			}
+		}
+
+		properties = Collections.unmodifiableList(allProperties);
+		configProperties = Collections.unmodifiableList(annotatedProperties);
+		propertiesByName = Collections.unmodifiableMap(byName);
+		idProperty = id;
+	}
+
+	private static List<PropertyDescriptor> getSortedPropertyDescriptors(final Class<?> configClass) {
+		try {
+			final BeanInfo info = Introspector.getBeanInfo(configClass);
+			final List<PropertyDescriptor> result = new ArrayList<PropertyDescriptor>();
+			Collections.addAll(result, info.getPropertyDescriptors());
+			Collections.sort(result, new Comparator<PropertyDescriptor>() {
+				@Override
+				public int compare(final PropertyDescriptor o1, final PropertyDescriptor o2) {
+					return o1.getName().compareTo(o2.getName());
+				}
+			});
+			return result;
+		} catch (final IntrospectionException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns the model of the given configuration class or complex type.
+	 * Proxy classes are resolved to their configuration class.
+	 * 
+	 * @param configClass
+	 * @return the cached model; never <code>null</code>
+	 */
+	public static ConfigClassModel get(final Class<?> configClass) {
+		Assert.paramNotNull(configClass, "configClass"); //$NON-NLS-1$
+
+		final Class<?> realClass = ProxyUtil.getConfigClass(configClass);
+		final SoftReference<ConfigClassModel> reference = MODELS.get(new ClassKey(realClass, null));
+		final ConfigClassModel cachedModel = reference != null ? reference.get() : null;
+		if (cachedModel != null) {
+			return cachedModel;
+		}
+
+		removeCollectedClasses();
+		final ConfigClassModel model = new ConfigClassModel(realClass);
+		final ClassKey key = new ClassKey(realClass, COLLECTED_CLASSES);
+		final SoftReference<ConfigClassModel> newReference = new SoftReference<ConfigClassModel>(model);
+		while (true) {
+			final SoftReference<ConfigClassModel> existingReference = MODELS.putIfAbsent(key, newReference);
+			if (existingReference == null) {
+				return model;
+			}
+			final ConfigClassModel existing = existingReference.get();
+			if (existing != null) {
+				// ensure that only the instance in the map is used
+				return existing;
+			}
+			if (MODELS.replace(key, existingReference, newReference)) {
+				return model;
+			}
+		}
+	}
+
+	private static void removeCollectedClasses() {
+		Reference<? extends Class<?>> collected = COLLECTED_CLASSES.poll();
+		while (collected != null) {
+			MODELS.remove(collected);
+			collected = COLLECTED_CLASSES.poll();
+		}
+	}
+
+	/**
+	 * @return the configuration class (never a proxy class)
+	 */
+	public Class<?> getConfigClass() {
+		return configClass;
+	}
+
+	/**
+	 * @return the {@link ConfigClass} annotation; <code>null</code> for complex types
+	 */
+	public ConfigClass getConfigClassAnnotation() {
+		return configClassAnnotation;
+	}
+
+	/**
+	 * @return <code>true</code> if the class is annotated with {@link ConfigComplexType}
+	 */
+	public boolean isComplexType() {
+		return complexType;
+	}
+
+	/**
+	 * @return all properties which are annotated with a config property annotation,
+	 *         a cross reference annotation or the id annotation; sorted by name
+	 */
+	public List<ConfigPropertyModel> getProperties() {
+		return properties;
+	}
+
+	/**
+	 * @return the properties which are annotated with a config property annotation; sorted by name
+	 */
+	public List<ConfigPropertyModel> getConfigProperties() {
+		return configProperties;
+	}
+
+	/**
+	 * @param propertyName
+	 * @return the property with the given name or <code>null</code> if there is no such annotated property
+	 */
+	public ConfigPropertyModel getProperty(final String propertyName) {
+		return propertiesByName.get(propertyName);
+	}
+
+	/**
+	 * @return the property annotated with the id annotation; may be <code>null</code>
+	 */
+	public ConfigPropertyModel getIdProperty() {
+		return idProperty;
+	}
+
+	IndexedPropertyAccessor getAccessor() {
+		IndexedPropertyAccessor result = accessor;
+		if (result == null) {
+			// the model is unique per class, so locking it generates exactly one accessor class per config class
+			synchronized (this) {
+				result = accessor;
+				if (result == null) {
+					final PropertyDescriptor[] descriptors = new PropertyDescriptor[properties.size()];
+					for (int i = 0; i < descriptors.length; i++) {
+						descriptors[i] = properties.get(i).getPropertyDescriptor();
+					}
+					result = ACCESS_STRATEGY.createAccessor(configClass, descriptors);
+					accessor = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "ConfigClassModel [configClass=" + configClass + ", properties=" + properties + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	/**
+	 * Weakly references a class and compares it by identity. A key whose class was collected
+	 * only equals itself, so it can still be removed from the map.
+	 */
+	private static final class ClassKey extends WeakReference<Class<?>> {
+		private final int hash;
+
+		ClassKey(final Class<?> cls, final ReferenceQueue<Class<?>> queue) {
+			super(cls, queue);
+			hash = System.identityHashCode(cls);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (!(obj instanceof ClassKey)) {
+				return false;
+			}
+			final Class<?> cls = get();
+			return cls != null && cls == ((ClassKey) obj).get();
+		}
+	}
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.client.internal.metadata;
+
+import java.beans.PropertyDescriptor;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+
+import org.jeconfig.api.annotation.ConfigArrayProperty;
+import org.jeconfig.api.annotation.ConfigComplexProperty;
+import org.jeconfig.api.annotation.ConfigComplexType;
+import org.jeconfig.api.annotation.ConfigCrossReference;
+import org.jeconfig.api.annotation.ConfigIdProperty;
+import org.jeconfig.api.annotation.ConfigListProperty;
+import org.jeconfig.api.annotation.ConfigMapProperty;
+import org.jeconfig.api.annotation.ConfigSetProperty;
+import org.jeconfig.api.annotation.ConfigSimpleProperty;
+import org.jeconfig.api.conversion.NoCustomSimpleTypeConverter;
+import org.jeconfig.api.conversion.SimpleTypeConverter;
+import org.jeconfig.client.internal.ConfigAnnotations;
+import org.jeconfig.client.proxy.ProxyUtil;
+import org.jeconfig.common.reflection.ClassInstantiation;
+
+/**
+ * The precompiled meta data of a single annotated property of a configuration class.<br>
+ * Instances are created by {@link ConfigClassModel} and are immutable.
+ * 
+ * This class is thread-safe.
+ */
+public final class ConfigPropertyModel {
+	private final ConfigClassModel owner;
+	private final int index;
+	private final PropertyDescriptor propertyDescriptor;
+	private final String name;
+	private final Class<?> propertyType;
+	private final Annotation configAnnotation;
+	private final ConfigCrossReference crossReferenceAnnotation;
+	private final boolean idProperty;
+	private final boolean polymorph;
+	private final Class<?> itemType;
+	private final Class<?> keyType;
+	private final boolean complexItemType;
+	private final Class<? extends SimpleTypeConverter<?>> customConverterClass;
+	private final Class<? extends SimpleTypeConverter<?>> customKeyConverterClass;
+
+	ConfigPropertyModel(final ConfigClassModel owner, final int index, final PropertyDescriptor propertyDescriptor) {
+		this.owner = owner;
+		this.index = index;
+		this.propertyDescriptor = propertyDescriptor;
+		name = propertyDescriptor.getName();
+		propertyType = propertyDescriptor.getPropertyType();
+
+		final Method readMethod = propertyDescriptor.getReadMethod();
+		configAnnotation = findConfigAnnotation(readMethod);
+		crossReferenceAnnotation = readMethod.getAnnotation(ConfigCrossReference.class);
+		idProperty = readMethod.getAnnotation(ConfigIdProperty.class) != null;
+
+		Class<?> resolvedItemType = null;
+		Class<?> resolvedKeyType = null;
+		boolean resolvedPolymorph = false;
+		Class<? extends SimpleTypeConverter<?>> resolvedConverterClass = null;
+		Class<? extends SimpleTypeConverter<?>> resolvedKeyConverterClass = null;
+
+		if (configAnnotation instanceof ConfigSimpleProperty) {
+			resolvedConverterClass = ((ConfigSimpleProperty) configAnnotation).customConverter();
+		} else if (configAnnotation instanceof ConfigComplexProperty) {
+			resolvedItemType = propertyType;
+			resolvedPolymorph = ((ConfigComplexProperty) configAnnotation).polymorph();
+		} else if (configAnnotation instanceof ConfigArrayProperty) {
+			final ConfigArrayProperty annotation = (ConfigArrayProperty) configAnnotation;
+			resolvedItemType = propertyType != null ? propertyType.getComponentType() : null;
+			resolvedPolymorph = annotation.polymorph();
+			resolvedConverterClass = annotation.customConverter();
+		} else if (configAnnotation instanceof ConfigListProperty) {
+			final ConfigListProperty annotation = (ConfigListProperty) configAnnotation;
+			resolvedItemType = annotation.itemType();
+			resolvedPolymorph = annotation.polymorph();
+			resolvedConverterClass = annotation.customConverter();
+		} else if (configAnnotation instanceof ConfigSetProperty) {
+			final ConfigSetProperty annotation = (ConfigSetProperty) configAnnotation;
+			resolvedItemType = annotation.itemType();
+			resolvedPolymorph = annotation.polymorph();
+			resolvedConverterClass = annotation.customConverter();
+		} else if (configAnnotation instanceof ConfigMapProperty) {
+			final ConfigMapProperty annotation = (ConfigMapProperty) configAnnotation;
+			resolvedItemType = annotation.valueType();
+			resolvedKeyType = annotation.keyType();
+			resolvedPolymorph = annotation.polymorph();
+			resolvedConverterClass = annotation.customValueConverter();
+			resolvedKeyConverterClass = annotation.customKeyConverter();
+		}
+
+		itemType = resolvedItemType;
+		keyType = resolvedKeyType;
+		polymorph = resolvedPolymorph;
+		complexItemType = resolvedItemType != null
+			&& ProxyUtil.getConfigClass(resolvedItemType).getAnnotation(ConfigComplexType.class) != null;
+		customConverterClass = resolvedConverterClass;
+		customKeyConverterClass = resolvedKeyConverterClass;
+	}
+
+	private static Annotation findConfigAnnotation(final Method readMethod) {
+		for (final Annotation annotation : readMethod.getAnnotations()) {
+			if (ConfigAnnotations.CONFIG_ANNOTATIONS.contains(annotation.annotationType())) {
+				return annotation;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the name of the property
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the declared type of the property
+	 */
+	public Class<?> getPropertyType() {
+		return propertyType;
+	}
+
+	/**
+	 * @return the index of this property in {@link ConfigClassModel#getProperties()}
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Reads this property of the given configuration object (or proxy) using the
+	 * generated accessor of the owning class model.
+	 * 
+	 * @param config
+	 * @return the value of the property
+	 */
+	public Object read(final Object config) {
+		return owner.getAccessor().read(config, index);
+	}
+
+	/**
+	 * Writes this property of the given configuration object (or proxy) using the
+	 * generated accessor of the owning class model.
+	 * 
+	 * @param config
+	 * @param value
+	 */
+	public void write(final Object config, final Object value) {
+		owner.getAccessor().write(config, index, value);
+	}
+
+	/**
+	 * @return the underlying property descriptor
+	 */
+	public PropertyDescriptor getPropertyDescriptor() {
+		return propertyDescriptor;
+	}
+
+	/**
+	 * @return the getter of the property; never <code>null</code>
+	 */
+	public Method getReadMethod() {
+		return propertyDescriptor.getReadMethod();
+	}
+
+	/**
+	 * @return the setter of the property; may be <code>null</code>
+	 */
+	public Method getWriteMethod() {
+		return propertyDescriptor.getWriteMethod();
+	}
+
+	/**
+	 * @return <code>true</code> if the property is annotated with one of the {@link ConfigAnnotations#CONFIG_ANNOTATIONS}
+	 */
+	public boolean isConfigProperty() {
+		return configAnnotation != null;
+	}
+
+	/**
+	 * @return the config property annotation (one of {@link ConfigAnnotations#CONFIG_ANNOTATIONS}); may be <code>null</code>
+	 */
+	public Annotation getConfigAnnotation() {
+		return configAnnotation;
+	}
+
+	/**
+	 * @return the type of the config property annotation; <code>null</code> if this is no config property
+	 */
+	public Class<? extends Annotation> getAnnotationType() {
+		return configAnnotation != null ? configAnnotation.annotationType() : null;
+	}
+
+	/**
+	 * Returns the config property annotation if it is of the given type.
+	 * 
+	 * @param annotationType
+	 * @return the annotation or <code>null</code> if the property is not annotated with the given type
+	 */
+	@SuppressWarnings("unchecked")
+	public <A extends Annotation> A getConfigAnnotation(final Class<A> annotationType) {
+		if (configAnnotation != null && annotationType.equals(configAnnotation.annotationType())) {
+			return (A) configAnnotation;
+		}
+		return null;
+	}
+
+	/**
+	 * @return <code>true</code> if the config property annotation is a list, set or map annotation
+	 */
+	public boolean isCollectionProperty() {
+		return configAnnotation != null && ConfigAnnotations.isCollectionAnnotation(configAnnotation);
+	}
+
+	/**
+	 * @return <code>true</code> if the property is annotated with {@link ConfigCrossReference}
+	 */
+	public boolean isCrossReference() {
+		return crossReferenceAnnotation != null;
+	}
+
+	/**
+	 * @return the cross reference annotation; may be <code>null</code>
+	 */
+	public ConfigCrossReference getCrossReferenceAnnotation() {
+		return crossReferenceAnnotation;
+	}
+
+	/**
+	 * @return <code>true</code> if the property is annotated with {@link ConfigIdProperty}
+	 */
+	public boolean isIdProperty() {
+		return idProperty;
+	}
+
+	/**
+	 * @return <code>true</code> if the complex, array or collection property is polymorph
+	 */
+	public boolean isPolymorph() {
+		return polymorph;
+	}
+
+	/**
+	 * Returns the type of the elements of this property: the property type of complex properties,
+	 * the component type of arrays, the item type of lists and sets and the value type of maps.
+	 * 
+	 * @return the item type; <code>null</code> for simple properties
+	 */
+	public Class<?> getItemType() {
+		return itemType;
+	}
+
+	/**
+	 * @return the key type of map properties; <code>null</code> for all other properties
+	 */
+	public Class<?> getKeyType() {
+		return keyType;
+	}
+
+	/**
+	 * @return <code>true</code> if the item type is annotated with {@link ConfigComplexType}
+	 */
+	public boolean isComplexItemType() {
+		return complexItemType;
+	}
+
+	/**
+	 * Returns the custom converter of simple, array, list and set properties and the
+	 * custom value converter of map properties. Only the class is cached; a new instance is
+	 * created on every call because converters are not required to be thread-safe.
+	 * 
+	 * @return the custom converter or <code>null</code> if no custom converter is set
+	 */
+	public SimpleTypeConverter<?> getCustomConverter() {
+		return createConverter(customConverterClass);
+	}
+
+	/**
+	 * Returns the custom key converter of map properties. A new instance is created on every call.
+	 * 
+	 * @return the custom key converter or <code>null</code> if no custom key converter is set
+	 */
+	public SimpleTypeConverter<?> getCustomKeyConverter() {
+		return createConverter(customKeyConverterClass);
+	}
+
+	private static SimpleTypeConverter<?> createConverter(final Class<? extends SimpleTypeConverter<?>> converterClass) {
+		if (converterClass == null || NoCustomSimpleTypeConverter.class.equals(converterClass)) {
+			return null;
+		}
+		return new ClassInstantiation().newInstance(converterClass);
+	}
+
+	@Override
+	public String toString() {
+		return "ConfigPropertyModel [name=" + name + ", annotation=" + getAnnotationType() + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.client.internal.metadata;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javassist.ClassClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+
+import org.jeconfig.api.util.Assert;
+import org.jeconfig.common.reflection.IndexedPropertyAccessor;
+import org.jeconfig.common.reflection.PropertyAccessStrategy;
+import org.jeconfig.common.reflection.ReflectionPropertyAccessStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates an accessor class per bean class which calls the getters and setters directly
+ * (dispatching on the property index with a switch), so no reflective invocation and no
+ * argument arrays are needed to access a property.<br>
+ * Falls back to reflection if the bean class or one of its accessor methods is not public
+ * or if the accessor class can't be generated.
+ * <p>
+ * Exceptions thrown by the getters and setters are wrapped like by the {@link ReflectionPropertyAccessStrategy}:
+ * getter exceptions are wrapped into a RuntimeException caused by an InvocationTargetException; runtime exceptions
+ * of setters are rethrown and other setter exceptions are wrapped in the same way. Values which don't match the
+ * parameter type of the setter (including <code>null</code> for primitive parameters) cause an IllegalArgumentException.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class JavassistPropertyAccessStrategy implements PropertyAccessStrategy {
+	private static final Logger LOG = LoggerFactory.getLogger(JavassistPropertyAccessStrategy.class.getName());
+
+	private static final String ACCESSOR_CLASS_SUFFIX = "$$JeConfigAccessor$"; //$NON-NLS-1$
+	private static final String WRAP_THROWABLE =
+		"catch (Throwable t) { throw new RuntimeException(new java.lang.reflect.InvocationTargetException(t)); }\n"; //$NON-NLS-1$
+	private static final Map<Class<?>, Class<?>> WRAPPER_TYPES = new HashMap<Class<?>, Class<?>>();
+
+	static {
+		WRAPPER_TYPES.put(boolean.class, Boolean.class);
+		WRAPPER_TYPES.put(byte.class, Byte.class);
+		WRAPPER_TYPES.put(char.class, Character.class);
+		WRAPPER_TYPES.put(short.class, Short.class);
+		WRAPPER_TYPES.put(int.class, Integer.class);
+		WRAPPER_TYPES.put(long.class, Long.class);
+		WRAPPER_TYPES.put(float.class, Float.class);
+		WRAPPER_TYPES.put(double.class, Double.class);
+	}
+
+	private final AtomicInteger counter = new AtomicInteger();
+	private final PropertyAccessStrategy fallbackStrategy = new ReflectionPropertyAccessStrategy();
+
+	@Override
+	public IndexedPropertyAccessor createAccessor(final Class<?> beanClass, final PropertyDescriptor[] properties) {
+		Assert.paramNotNull(beanClass, "beanClass"); //$NON-NLS-1$
+		Assert.paramNotNull(properties, "properties"); //$NON-NLS-1$
+
+		if (beanClass.getClassLoader() != null && isAccessible(beanClass, properties)) {
+			try {
+				return generateAccessor(beanClass, properties);
+			} catch (final Exception e) {
+				LOG.debug("Failed to generate property accessor for " + beanClass + "; using reflection.", e); //$NON-NLS-1$ //$NON-NLS-2$
+			} catch (final LinkageError e) {
+				LOG.debug("Failed to load property accessor for " + beanClass + "; using reflection.", e); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		return fallbackStrategy.createAccessor(beanClass, properties);
+	}
+
+	private boolean isAccessible(final Class<?> beanClass, final PropertyDescriptor[] properties) {
+		if (!Modifier.isPublic(beanClass.getModifiers())) {
+			return false;
+		}
+		for (final PropertyDescriptor property : properties) {
+			if (!isAccessible(property.getReadMethod()) || !isAccessible(property.getWriteMethod())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isAccessible(final Method method) {
+		return method == null
+			|| (Modifier.isPublic(method.getModifiers()) && Modifier.isPublic(method.getDeclaringClass().getModifiers()));
+	}
+
+	private IndexedPropertyAccessor generateAccessor(final Class<?> beanClass, final PropertyDescriptor[] properties) throws Exception {
+		final String accessorClassName = beanClass.getName() + ACCESSOR_CLASS_SUFFIX + counter.incrementAndGet();
+
+		final ClassPool pool = new ClassPool(true);
+		pool.insertClassPath(new LoaderClassPath(beanClass.getClassLoader()));
+		pool.insertClassPath(new ClassClassPath(IndexedPropertyAccessor.class));
+
+		final CtClass accessorClass = pool.makeClass(accessorClassName);
+		try {
+			accessorClass.addInterface(pool.get(IndexedPropertyAccessor.class.getName()));
+			accessorClass.addMethod(CtNewMethod.make(createReadMethodSource(beanClass, properties), accessorClass));
+			accessorClass.addMethod(CtNewMethod.make(createWriteMethodSource(beanClass, properties), accessorClass));
+
+			final AccessorClassLoader loader = new AccessorClassLoader(beanClass.getClassLoader());
+			final Class<?> generatedClass = loader.defineAccessorClass(accessorClassName, accessorClass.toBytecode());
+			return (IndexedPropertyAccessor) generatedClass.newInstance();
+		} finally {
+			accessorClass.detach();
+		}
+	}
+
+	private String createReadMethodSource(final Class<?> beanClass, final PropertyDescriptor[] properties) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("public Object read(Object bean, int propertyIndex) {\n"); //$NON-NLS-1$
+		sb.append(getTypeName(beanClass)).append(" typedBean = (").append(getTypeName(beanClass)).append(") bean;\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		sb.append("switch (propertyIndex) {\n"); //$NON-NLS-1$
+		for (int i = 0; i < properties.length; i++) {
+			final Method readMethod = properties[i].getReadMethod();
+			sb.append("case ").append(i).append(": "); //$NON-NLS-1$ //$NON-NLS-2$
+			if (readMethod != null) {
+				final String call = "typedBean." + readMethod.getName() + "()"; //$NON-NLS-1$ //$NON-NLS-2$
+				final Class<?> wrapperType = WRAPPER_TYPES.get(readMethod.getReturnType());
+				sb.append("try { "); //$NON-NLS-1$
+				if (wrapperType != null) {
+					sb.append("return ").append(wrapperType.getName()).append(".valueOf(").append(call).append("); }\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				} else {
+					sb.append("return ").append(call).append("; }\n"); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+				sb.append(WRAP_THROWABLE);
+			} else {
+				appendMissingMethod(sb, "read", properties[i]); //$NON-NLS-1$
+			}
+		}
+		sb.append("}\n"); //$NON-NLS-1$
+		sb.append("throw new IllegalArgumentException(\"Unknown property index: \" + propertyIndex);\n"); //$NON-NLS-1$
+		sb.append("}"); //$NON-NLS-1$
+		return sb.toString();
+	}
+
+	private String createWriteMethodSource(final Class<?> beanClass, final PropertyDescriptor[] properties) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("public void write(Object bean, int propertyIndex, Object value) {\n"); //$NON-NLS-1$
+		sb.append(getTypeName(beanClass)).append(" typedBean = (").append(getTypeName(beanClass)).append(") bean;\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		sb.append("switch (propertyIndex) {\n"); //$NON-NLS-1$
+		for (int i = 0; i < properties.length; i++) {
+			final Method writeMethod = properties[i].getWriteMethod();
+			sb.append("case ").append(i).append(": "); //$NON-NLS-1$ //$NON-NLS-2$
+			if (writeMethod != null) {
+				final Class<?> paramType = writeMethod.getParameterTypes()[0];
+				final Class<?> wrapperType = WRAPPER_TYPES.get(paramType);
+				appendTypeCheck(sb, wrapperType != null ? wrapperType : paramType, wrapperType == null);
+				sb.append("try { typedBean.").append(writeMethod.getName()).append("("); //$NON-NLS-1$ //$NON-NLS-2$
+				if (wrapperType != null) {
+					sb.append("((").append(wrapperType.getName()).append(") value).").append(paramType.getName()).append("Value()"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				} else {
+					sb.append("(").append(getTypeName(paramType)).append(") value"); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+				sb.append("); }\n"); //$NON-NLS-1$
+				sb.append("catch (RuntimeException e) { throw e; }\n"); //$NON-NLS-1$
+				sb.append(WRAP_THROWABLE);
+				sb.append("return;\n"); //$NON-NLS-1$
+			} else {
+				appendMissingMethod(sb, "write", properties[i]); //$NON-NLS-1$
+			}
+		}
+		sb.append("}\n"); //$NON-NLS-1$
+		sb.append("throw new IllegalArgumentException(\"Unknown property index: \" + propertyIndex);\n"); //$NON-NLS-1$
+		sb.append("}"); //$NON-NLS-1$
+		return sb.toString();
+	}
+
+	private void appendTypeCheck(final StringBuilder sb, final Class<?> type, final boolean nullable) {
+		sb.append("if ("); //$NON-NLS-1$
+		if (nullable) {
+			sb.append("value != null && "); //$NON-NLS-1$
+		}
+		sb.append("!(value instanceof ").append(getTypeName(type)).append(")) { "); //$NON-NLS-1$ //$NON-NLS-2$
+		sb.append("throw new IllegalArgumentException(\"argument type mismatch\"); }\n"); //$NON-NLS-1$
+	}
+
+	private void appendMissingMethod(final StringBuilder sb, final String kind, final PropertyDescriptor property) {
+		sb.append("throw new IllegalArgumentException(\"Didn't find ").append(kind); //$NON-NLS-1$
+		sb.append(" method for property '").append(property.getName()).append("'.\");\n"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private String getTypeName(final Class<?> type) {
+		if (type.isArray()) {
+			return getTypeName(type.getComponentType()) + "[]"; //$NON-NLS-1$
+		}
+		return type.getName();
+	}
+
+	/**
+	 * Defines the generated accessor classes. Resolves the classes used by the bean with the class loader
+	 * of the bean and the accessor interface with the class loader of this bundle.
+	 */
+	private static final class AccessorClassLoader extends ClassLoader {
+		AccessorClassLoader(final ClassLoader beanClassLoader) {
+			super(beanClassLoader);
+		}
+
+		@Override
+		protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+			if (IndexedPropertyAccessor.class.getName().equals(name)) {
+				return IndexedPropertyAccessor.class;
+			}
+			return super.loadClass(name, resolve);
+		}
+
+		Class<?> defineAccessorClass(final String name, final byte[] bytecode) {
+			return defineClass(name, bytecode, 0, bytecode.length);
+		}
+	}
+}
@@ -30,9 +30,12 @@ package org.jeconfig.client.internal.validation;
 import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Modifier;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.jeconfig.api.annotation.ConfigClass;
 import org.jeconfig.api.annotation.ConfigComplexType;
@@ -49,11 +52,27 @@ public final class ComplexTypeValidator {
 	private final PropertyAccessor propertyAccessor = new PropertyAccessor();
 	private final ClassInstantiation classInstantiation = new ClassInstantiation();
 	private final ConfigObjectFactory configObjectFactory;
+	/** The types which passed the checks of the type itself (modifiers, constructor, equals). */
+	private final Set<Class<?>> checkedTypes = Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
+	private final AtomicBoolean rememberCheckedTypes = new AtomicBoolean(true);
 
 	public ComplexTypeValidator(final SimpleTypeConverterRegistry converterRegistry) {
 		configObjectFactory = new ConfigProxyFactory(converterRegistry);
 	}
 
+	/**
+	 * Enables or disables remembering the types which passed the checks of the type itself.
+	 * If disabled, the remembered types are discarded.
+	 * 
+	 * @param enabled
+	 */
+	public void setRememberCheckedTypes(final boolean enabled) {
+		rememberCheckedTypes.set(enabled);
+		if (!enabled) {
+			checkedTypes.clear();
+		}
+	}
+
 	public void validate(
 		final Class<?> type,
 		final Object complexConfig,
@@ -65,23 +84,13 @@ public final class ComplexTypeValidator {
 		}
 		validatedComplexTypes.add(type);
 
-		if ((type.getModifiers() & Modifier.FINAL) != 0) {
-			throw new IllegalArgumentException("The configuration class '" + type + "' must not be final!");
-		}
-
-		if ((type.getModifiers() & Modifier.PUBLIC) == 0) {
-			throw new IllegalArgumentException("The configuration class '" + type + "' must be public!");
-		}
-
-		if ((type.getEnclosingClass() != null) && (type.getModifiers() & Modifier.STATIC) == 0) {
-			throw new IllegalArgumentException("The type '"
-				+ type
-				+ "' is an inner non-static class. It can't be used as a configuration class!");
+		if (!checkedTypes.contains(type)) {
+			checkType(type);
+			if (rememberCheckedTypes.get()) {
+				checkedTypes.add(type);
+			}
 		}
 
-		checkDefaultConstructor(type);
-		checkEquals(type);
-
 		for (final PropertyDescriptor propertyDescriptor : propertyAccessor.getPropertyDescriptors(ProxyUtil.getConfigClass(type))) {
 			final Set<Annotation> propertyAnnotations = getConfigAnnotations(propertyDescriptor, validators);
 			for (final Annotation annotation : propertyAnnotations) {
@@ -102,6 +111,25 @@ public final class ComplexTypeValidator {
 		}
 	}
 
+	private void checkType(final Class<?> type) {
+		if ((type.getModifiers() & Modifier.FINAL) != 0) {
+			throw new IllegalArgumentException("The configuration class '" + type + "' must not be final!");
+		}
+
+		if ((type.getModifiers() & Modifier.PUBLIC) == 0) {
+			throw new IllegalArgumentException("The configuration class '" + type + "' must be public!");
+		}
+
+		if ((type.getEnclosingClass() != null) && (type.getModifiers() & Modifier.STATIC) == 0) {
+			throw new IllegalArgumentException("The type '"
+				+ type
+				+ "' is an inner non-static class. It can't be used as a configuration class!");
+		}
+
+		checkDefaultConstructor(type);
+		checkEquals(type);
+	}
+
 	private void checkDefaultConstructor(final Class<?> type) {
 		try {
 			type.getConstructor();
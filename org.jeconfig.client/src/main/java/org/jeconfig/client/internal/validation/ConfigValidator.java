@@ -28,10 +28,15 @@
 package org.jeconfig.client.internal.validation;
 
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.jeconfig.api.ConfigService;
 import org.jeconfig.api.ConfigSetupService;
@@ -54,9 +59,23 @@ import org.jeconfig.api.util.Assert;
 import org.jeconfig.client.internal.AnnotationUtil;
 import org.jeconfig.client.proxy.ProxyUtil;
 
+/**
+ * Validates configuration classes and objects.<br>
+ * <br>
+ * The structural validation of a configuration class is done only once per class and
+ * shape of the scope path (the names of its scopes) and remembered afterwards.
+ * Values of configuration objects (e.g. on save) and cross reference cycles of classes
+ * with cross references are validated every time.
+ * 
+ * This class is thread-safe.
+ */
 @SuppressWarnings("nls")
 public final class ConfigValidator {
 	private final Map<Class<? extends Annotation>, PropertyValidator<?>> validators;
+	/** The validated class/scope shape combinations; the value tells whether the class has cross references. */
+	private final ConcurrentHashMap<ValidatedShape, Boolean> validatedShapes = new ConcurrentHashMap<ValidatedShape, Boolean>();
+	private final AtomicBoolean validationCacheEnabled = new AtomicBoolean(true);
+	private final AtomicLong validationCacheHits = new AtomicLong();
 
 	private final ScopeRegistry scopeRegistry;
 	private final SimpleTypeConverterRegistry converterRegistry;
@@ -93,8 +112,58 @@ public final class ConfigValidator {
 		validate(configClass, null, scopePath);
 	}
 
-	@SuppressWarnings({"unchecked", "rawtypes"})
+	/**
+	 * Enables or disables remembering validated classes. If disabled, every class
+	 * is completely validated every time; the remembered classes are discarded.
+	 * 
+	 * @param enabled
+	 */
+	public void setValidationCacheEnabled(final boolean enabled) {
+		validationCacheEnabled.set(enabled);
+		complexTypeValidator.setRememberCheckedTypes(enabled);
+		if (!enabled) {
+			validatedShapes.clear();
+		}
+	}
+
+	/**
+	 * @return the number of validations which were skipped because the class was already validated
+	 */
+	public long getValidationCacheHits() {
+		return validationCacheHits.get();
+	}
+
 	private void validate(final Class<?> configClass, final Object config, final ScopePath scopePath) {
+		final ConfigClass configClassAnnotation = validateClassScope(configClass, scopePath);
+
+		final ValidatedShape shape = new ValidatedShape(ProxyUtil.getConfigClass(configClass), scopePath);
+		final boolean cacheEnabled = validationCacheEnabled.get();
+		final Boolean hasCrossReferences = cacheEnabled ? validatedShapes.get(shape) : null;
+
+		if (hasCrossReferences == null) {
+			doValidate(configClass, configClassAnnotation, config, scopePath);
+			if (cacheEnabled) {
+				validatedShapes.put(shape, Boolean.valueOf(cycleDetector.hasCrossReferences(configClass)));
+			}
+		} else {
+			validationCacheHits.incrementAndGet();
+			if (config != null) {
+				// the values of the configuration must be validated anyway
+				complexTypeValidator.validate(configClass, config, getValidators(), converterRegistry, new HashSet<Class<?>>());
+			}
+			if (hasCrossReferences.booleanValue()) {
+				// cycles depend on the properties of the scope path
+				cycleDetector.detectCycles(configClass, scopePath);
+			}
+		}
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private Map<Class<? extends Annotation>, PropertyValidator<Annotation>> getValidators() {
+		return (Map) validators;
+	}
+
+	private ConfigClass validateClassScope(final Class<?> configClass, final ScopePath scopePath) {
 		final ConfigClass configClassAnnotation = AnnotationUtil.getAnnotation(configClass, ConfigClass.class);
 		if (configClassAnnotation == null) {
 			throw new IllegalArgumentException("A configuration class must be annotated with the @"
@@ -107,11 +176,19 @@ public final class ConfigValidator {
 		if (!nonProxyConfigClass.getName().equals(scopeClassName)) {
 			throw new IllegalArgumentException("scope and config class do not match");
 		}
+		return configClassAnnotation;
+	}
+
+	private void doValidate(
+		final Class<?> configClass,
+		final ConfigClass configClassAnnotation,
+		final Object config,
+		final ScopePath scopePath) {
 
 		validateScopePath(configClass, configClassAnnotation);
 
 		final Set<Class<?>> validatedComplexTypes = new HashSet<Class<?>>();
-		complexTypeValidator.validate(configClass, config, (Map) validators, converterRegistry, validatedComplexTypes);
+		complexTypeValidator.validate(configClass, config, getValidators(), converterRegistry, validatedComplexTypes);
 
 		migrationValidator.validate(configClass);
 
@@ -161,4 +238,37 @@ public final class ConfigValidator {
 				+ "'!");
 		}
 	}
+
+	/**
+	 * A configuration class together with the names of the scopes of a scope path.
+	 */
+	private static final class ValidatedShape {
+		private final Class<?> configClass;
+		private final List<String> scopeNames;
+
+		ValidatedShape(final Class<?> configClass, final ScopePath scopePath) {
+			this.configClass = configClass;
+			scopeNames = new ArrayList<String>();
+			for (final Scope scope : scopePath.getScopes()) {
+				scopeNames.add(scope.getName());
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * configClass.hashCode() + scopeNames.hashCode();
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ValidatedShape)) {
+				return false;
+			}
+			final ValidatedShape other = (ValidatedShape) obj;
+			return configClass.equals(other.configClass) && scopeNames.equals(other.scopeNames);
+		}
+	}
 }
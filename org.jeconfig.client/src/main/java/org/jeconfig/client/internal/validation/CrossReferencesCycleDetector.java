@@ -27,28 +27,20 @@
 
 package org.jeconfig.client.internal.validation;
 
-import java.beans.PropertyDescriptor;
-import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.jeconfig.api.ConfigService;
-import org.jeconfig.api.annotation.ConfigArrayProperty;
-import org.jeconfig.api.annotation.ConfigComplexProperty;
-import org.jeconfig.api.annotation.ConfigComplexType;
 import org.jeconfig.api.annotation.ConfigCrossReference;
-import org.jeconfig.api.annotation.ConfigListProperty;
-import org.jeconfig.api.annotation.ConfigMapProperty;
-import org.jeconfig.api.annotation.ConfigSetProperty;
 import org.jeconfig.api.scope.ScopePath;
 import org.jeconfig.api.scope.ScopePathBuilder;
 import org.jeconfig.api.scope.ScopePathBuilderFactory;
 import org.jeconfig.api.scope.InstanceScopeDescriptor;
-import org.jeconfig.client.internal.AnnotationUtil;
+import org.jeconfig.client.internal.metadata.ConfigClassModel;
+import org.jeconfig.client.internal.metadata.ConfigPropertyModel;
 import org.jeconfig.client.proxy.ProxyUtil;
-import org.jeconfig.common.reflection.PropertyAccessor;
 
 /**
  * Detects cycles of cross references in configuration classes.
@@ -57,11 +49,9 @@ import org.jeconfig.common.reflection.PropertyAccessor;
  */
 public final class CrossReferencesCycleDetector {
 	private final ConfigService configService;
-	private final PropertyAccessor propertyAccessor;
 
 	public CrossReferencesCycleDetector(final ConfigService configService) {
 		this.configService = configService;
-		propertyAccessor = new PropertyAccessor();
 	}
 
 	public void detectCycles(final Class<?> configClass, final ScopePath scope) {
@@ -71,91 +61,48 @@ public final class CrossReferencesCycleDetector {
 		detectCycles(configClass, usedScopes, checkedTypes);
 	}
 
-	private void detectCycles(final Class<?> type, final List<ScopePath> usedScopes, final Set<Class<?>> checkedTypes) {
-		final Class<?> configClass = ProxyUtil.getConfigClass(type);
-		if (checkedTypes.contains(configClass)) {
-			return;
-		}
-		checkedTypes.add(configClass);
-
-		for (final PropertyDescriptor propertyDescriptor : propertyAccessor.getPropertyDescriptors(configClass)) {
-			if (propertyDescriptor.getReadMethod() != null) {
-				for (final Annotation annotation : propertyDescriptor.getReadMethod().getAnnotations()) {
-					if (ConfigCrossReference.class.equals(annotation.annotationType())) {
-						handleCrossReference(
-								propertyDescriptor.getPropertyType(),
-								(ConfigCrossReference) annotation,
-								usedScopes,
-								checkedTypes);
-					} else if (ConfigComplexProperty.class.equals(annotation.annotationType())) {
-						handleComplexType(propertyDescriptor, (ConfigComplexProperty) annotation, usedScopes, checkedTypes);
-					} else if (ConfigArrayProperty.class.equals(annotation.annotationType())) {
-						handleArrayProperty(propertyDescriptor, (ConfigArrayProperty) annotation, usedScopes, checkedTypes);
-					} else if (ConfigListProperty.class.equals(annotation.annotationType())) {
-						handleListProperty(propertyDescriptor, (ConfigListProperty) annotation, usedScopes, checkedTypes);
-					} else if (ConfigSetProperty.class.equals(annotation.annotationType())) {
-						handleSetProperty(propertyDescriptor, (ConfigSetProperty) annotation, usedScopes, checkedTypes);
-					} else if (ConfigMapProperty.class.equals(annotation.annotationType())) {
-						handleMapProperty(propertyDescriptor, (ConfigMapProperty) annotation, usedScopes, checkedTypes);
-					}
-				}
-			}
-		}
+	/**
+	 * Checks whether the given class or one of its complex types has cross references,
+	 * i.e. whether the class might be part of a cycle at all.
+	 * 
+	 * @param configClass
+	 * @return <code>true</code> if there is at least one cross reference property
+	 */
+	public boolean hasCrossReferences(final Class<?> configClass) {
+		return hasCrossReferences(configClass, new HashSet<Class<?>>());
 	}
 
-	private void handleMapProperty(
-		final PropertyDescriptor propertyDescriptor,
-		final ConfigMapProperty annotation,
-		final List<ScopePath> usedScopes,
-		final Set<Class<?>> checkedTypes) {
-
-		if (isComplexType(annotation.valueType())) {
-			detectCycles(annotation.valueType(), usedScopes, checkedTypes);
-		}
-	}
-
-	private void handleSetProperty(
-		final PropertyDescriptor propertyDescriptor,
-		final ConfigSetProperty annotation,
-		final List<ScopePath> usedScopes,
-		final Set<Class<?>> checkedTypes) {
-
-		if (isComplexType(annotation.itemType())) {
-			detectCycles(annotation.itemType(), usedScopes, checkedTypes);
+	private boolean hasCrossReferences(final Class<?> type, final Set<Class<?>> checkedTypes) {
+		final Class<?> configClass = ProxyUtil.getConfigClass(type);
+		if (!checkedTypes.add(configClass)) {
+			return false;
 		}
-	}
 
-	private void handleListProperty(
-		final PropertyDescriptor propertyDescriptor,
-		final ConfigListProperty annotation,
-		final List<ScopePath> usedScopes,
-		final Set<Class<?>> checkedTypes) {
-
-		if (isComplexType(annotation.itemType())) {
-			detectCycles(annotation.itemType(), usedScopes, checkedTypes);
+		for (final ConfigPropertyModel property : ConfigClassModel.get(configClass).getProperties()) {
+			if (property.isCrossReference()) {
+				return true;
+			}
+			if (property.isConfigProperty() && property.isComplexItemType() && hasCrossReferences(property.getItemType(), checkedTypes)) {
+				return true;
+			}
 		}
+		return false;
 	}
 
-	private void handleArrayProperty(
-		final PropertyDescriptor propertyDescriptor,
-		final ConfigArrayProperty annotation,
-		final List<ScopePath> usedScopes,
-		final Set<Class<?>> checkedTypes) {
-
-		final Class<?> itemType = propertyDescriptor.getPropertyType().getComponentType();
-		if (isComplexType(itemType)) {
-			detectCycles(itemType, usedScopes, checkedTypes);
+	private void detectCycles(final Class<?> type, final List<ScopePath> usedScopes, final Set<Class<?>> checkedTypes) {
+		final Class<?> configClass = ProxyUtil.getConfigClass(type);
+		if (checkedTypes.contains(configClass)) {
+			return;
 		}
-	}
-
-	private void handleComplexType(
-		final PropertyDescriptor propertyDescriptor,
-		final ConfigComplexProperty annotation,
-		final List<ScopePath> usedScopes,
-		final Set<Class<?>> checkedTypes) {
+		checkedTypes.add(configClass);
 
-		if (isComplexType(propertyDescriptor.getPropertyType())) {
-			detectCycles(propertyDescriptor.getPropertyType(), usedScopes, checkedTypes);
+		for (final ConfigPropertyModel property : ConfigClassModel.get(configClass).getProperties()) {
+			if (property.isCrossReference()) {
+				handleCrossReference(property.getPropertyType(), property.getCrossReferenceAnnotation(), usedScopes, checkedTypes);
+			}
+			if (property.isConfigProperty() && property.isComplexItemType()) {
+				detectCycles(property.getItemType(), usedScopes, checkedTypes);
+			}
 		}
 	}
 
@@ -203,8 +150,4 @@ public final class CrossReferencesCycleDetector {
 		}
 		return builder.create();
 	}
-
-	private boolean isComplexType(final Class<?> type) {
-		return AnnotationUtil.getAnnotation(type, ConfigComplexType.class) != null;
-	}
 }
@@ -27,14 +27,10 @@
 
 package org.jeconfig.client.proxy;
 
-import java.beans.PropertyDescriptor;
-import java.lang.annotation.Annotation;
-
-import org.jeconfig.client.internal.ConfigAnnotations;
-import org.jeconfig.common.reflection.PropertyAccessor;
+import org.jeconfig.client.internal.metadata.ConfigClassModel;
+import org.jeconfig.client.internal.metadata.ConfigPropertyModel;
 
 public final class ConfigObjectCopyUtil {
-	private final PropertyAccessor propertyAccessor = new PropertyAccessor();
 
 	public ConfigObjectCopyUtil() {}
 
@@ -54,16 +50,8 @@ public final class ConfigObjectCopyUtil {
 	}
 
 	private void doCopyConfigTree(final ConfigObjectFactory objectFactory, final Object original, final Object copy) {
-		for (final PropertyDescriptor propertyDescriptor : propertyAccessor.getPropertyDescriptors(ProxyUtil.getConfigClass(original.getClass()))) {
-			final String propertyName = propertyDescriptor.getName();
-			if (propertyDescriptor.getReadMethod() != null) {
-				for (final Annotation annotation : propertyDescriptor.getReadMethod().getAnnotations()) {
-					if (ConfigAnnotations.CONFIG_ANNOTATIONS.contains(annotation.annotationType())) {
-						final Object read = propertyAccessor.read(original, propertyName);
-						propertyAccessor.write(copy, propertyName, read);
-					}
-				}
-			}
+		for (final ConfigPropertyModel property : ConfigClassModel.get(original.getClass()).getConfigProperties()) {
+			property.write(copy, property.read(original));
 		}
 	}
 
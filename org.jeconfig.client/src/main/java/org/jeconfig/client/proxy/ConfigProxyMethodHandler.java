@@ -27,7 +27,6 @@
 
 package org.jeconfig.client.proxy;
 
-import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -39,13 +38,12 @@ import java.util.Set;
 import javassist.util.proxy.MethodHandler;
 
 import org.jeconfig.api.annotation.ConfigComplexProperty;
-import org.jeconfig.api.annotation.ConfigCrossReference;
 import org.jeconfig.api.annotation.ConfigListProperty;
 import org.jeconfig.api.annotation.ConfigMapProperty;
 import org.jeconfig.api.annotation.ConfigSetProperty;
 import org.jeconfig.api.dto.ComplexConfigDTO;
-import org.jeconfig.client.internal.ConfigAnnotations;
-import org.jeconfig.common.reflection.PropertyAccessor;
+import org.jeconfig.client.internal.metadata.ConfigClassModel;
+import org.jeconfig.client.internal.metadata.ConfigPropertyModel;
 
 public class ConfigProxyMethodHandler extends AbstractConfigProxy<ComplexConfigDTO> implements MethodHandler {
 	private static final String CROSS_REFERENCES_ARE_READONLY = "Cross References are readonly"; //$NON-NLS-1$
@@ -54,7 +52,6 @@ public class ConfigProxyMethodHandler extends AbstractConfigProxy<ComplexConfigD
 	private final Map<Method, ModifyingMethodInfo> modifyingMethods = new HashMap<Method, ConfigProxyMethodHandler.ModifyingMethodInfo>();
 	private final Set<String> propertiesWithDiff = new HashSet<String>();
 
-	private final PropertyAccessor propertyAccessor;
 	private final ProxyUpdater proxyUpdater;
 
 	private Object self;
@@ -62,22 +59,13 @@ public class ConfigProxyMethodHandler extends AbstractConfigProxy<ComplexConfigD
 	public ConfigProxyMethodHandler(final Class<?> configClass, final ProxyUpdater proxyUpdater) {
 		this.proxyUpdater = proxyUpdater;
 
-		propertyAccessor = new PropertyAccessor();
-		for (final PropertyDescriptor propertyDescriptor : propertyAccessor.getPropertyDescriptors(ProxyUtil.getConfigClass(configClass))) {
-			if (propertyDescriptor.getReadMethod() != null) {
-				for (final Annotation annotation : propertyDescriptor.getReadMethod().getAnnotations()) {
-					if (ConfigAnnotations.CONFIG_ANNOTATIONS.contains(annotation.annotationType())) {
-						if (propertyDescriptor.getWriteMethod() != null) {
-							modifyingMethods.put(propertyDescriptor.getWriteMethod(), new ModifyingMethodInfo(
-								propertyDescriptor,
-								annotation));
-						}
-					}
-					if (ConfigCrossReference.class.equals(annotation.annotationType())) {
-						if (propertyDescriptor.getWriteMethod() != null) {
-							modifyingCrossReferenceMethods.add(propertyDescriptor.getWriteMethod());
-						}
-					}
+		for (final ConfigPropertyModel property : ConfigClassModel.get(configClass).getProperties()) {
+			if (property.getWriteMethod() != null) {
+				if (property.isConfigProperty()) {
+					modifyingMethods.put(property.getWriteMethod(), new ModifyingMethodInfo(property));
+				}
+				if (property.isCrossReference()) {
+					modifyingCrossReferenceMethods.add(property.getWriteMethod());
 				}
 			}
 		}
@@ -151,15 +139,15 @@ public class ConfigProxyMethodHandler extends AbstractConfigProxy<ComplexConfigD
 	}
 
 	private boolean shouldAttachNewValue(final Object newValue, final ModifyingMethodInfo methodInfo) {
-		final Object oldValue = propertyAccessor.read(self, methodInfo.getPropertyName());
+		final Object oldValue = methodInfo.getProperty().read(self);
 
 		if (oldValue != newValue) {
-			final Annotation configPropertyAnnotation = methodInfo.getConfigPropertyAnnotation();
+			final Class<? extends Annotation> annotationType = methodInfo.getProperty().getAnnotationType();
 			if (newValue != null) {
-				if (ConfigComplexProperty.class.equals(configPropertyAnnotation.annotationType())
-					|| ConfigListProperty.class.equals(configPropertyAnnotation.annotationType())
-					|| ConfigSetProperty.class.equals(configPropertyAnnotation.annotationType())
-					|| ConfigMapProperty.class.equals(configPropertyAnnotation.annotationType())) {
+				if (ConfigComplexProperty.class.equals(annotationType)
+					|| ConfigListProperty.class.equals(annotationType)
+					|| ConfigSetProperty.class.equals(annotationType)
+					|| ConfigMapProperty.class.equals(annotationType)) {
 
 					return true;
 				}
@@ -174,10 +162,7 @@ public class ConfigProxyMethodHandler extends AbstractConfigProxy<ComplexConfigD
 		if (newValue instanceof ConfigProxy) {
 			final ConfigProxy proxy = (ConfigProxy) newValue;
 			proxy.setConfigAnnotation(methodInfo.getConfigPropertyAnnotation());
-			super.attachNewValueIfProxy(
-					newValue,
-					self,
-					ConfigAnnotations.isCollectionAnnotation(methodInfo.getConfigPropertyAnnotation()));
+			super.attachNewValueIfProxy(newValue, self, methodInfo.getProperty().isCollectionProperty());
 		} else if (!isInitializing()) {
 			throw new IllegalArgumentException(
 				"illegal argument use ConfigService.create* methods to create Config (sub)Objects for: " + newValue.getClass()); //$NON-NLS-1$
@@ -191,7 +176,7 @@ public class ConfigProxyMethodHandler extends AbstractConfigProxy<ComplexConfigD
 		} else {
 			for (final ModifyingMethodInfo methodInfo : modifyingMethods.values()) {
 				try {
-					final Object property = methodInfo.getPropertyDescriptor().getReadMethod().invoke(self, new Object[] {});
+					final Object property = methodInfo.getProperty().getReadMethod().invoke(self, new Object[] {});
 					if (property != null && property instanceof ConfigProxy) {
 						final ConfigProxy<?> proxy = (ConfigProxy<?>) property;
 						if (proxy.hasDiff()) {
@@ -207,24 +192,22 @@ public class ConfigProxyMethodHandler extends AbstractConfigProxy<ComplexConfigD
 	}
 
 	private static class ModifyingMethodInfo {
-		private final PropertyDescriptor propertyDescriptor;
-		private final Annotation configPropertyAnnotation;
+		private final ConfigPropertyModel property;
 
-		public ModifyingMethodInfo(final PropertyDescriptor propertyDescriptor, final Annotation configPropertyAnnotation) {
-			this.propertyDescriptor = propertyDescriptor;
-			this.configPropertyAnnotation = configPropertyAnnotation;
+		public ModifyingMethodInfo(final ConfigPropertyModel property) {
+			this.property = property;
 		}
 
-		public PropertyDescriptor getPropertyDescriptor() {
-			return propertyDescriptor;
+		public ConfigPropertyModel getProperty() {
+			return property;
 		}
 
 		public Annotation getConfigPropertyAnnotation() {
-			return configPropertyAnnotation;
+			return property.getConfigAnnotation();
 		}
 
 		public String getPropertyName() {
-			return propertyDescriptor.getName();
+			return property.getName();
 		}
 	}
 }
@@ -27,7 +27,6 @@
 
 package org.jeconfig.client.proxy;
 
-import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
@@ -60,15 +59,15 @@ import org.jeconfig.api.dto.ConfigDTO;
 import org.jeconfig.api.util.Assert;
 import org.jeconfig.client.internal.AnnotationUtil;
 import org.jeconfig.client.internal.ConfigIdPropertyUtil;
+import org.jeconfig.client.internal.metadata.ConfigClassModel;
+import org.jeconfig.client.internal.metadata.ConfigPropertyModel;
 import org.jeconfig.common.reflection.ClassInstantiation;
-import org.jeconfig.common.reflection.PropertyAccessor;
 
 /**
  * Scans for not wrapped collections/complex types and wraps them. updated configDto of defining scope
  */
 public final class ProxyUpdater {
 	private final ClassInstantiation classInstantiation = new ClassInstantiation();
-	private final PropertyAccessor propertyAccessor = new PropertyAccessor();
 	private final ConfigObjectFactory objectFactory;
 	private final ConfigObjectCopyUtil copyUtil;
 	private final SimpleTypeConverterRegistry simpleTypeConverterRegistry;
@@ -114,27 +113,24 @@ public final class ProxyUpdater {
 	private <T> void doUpdateConfig(final T config, final List<ComplexConfigDTO> complexDtos) {
 		updateComplexDTO(config, complexDtos);
 
-		for (final PropertyDescriptor propertyDescriptor : propertyAccessor.getPropertyDescriptors(ProxyUtil.getConfigClass(config.getClass()))) {
-			if (propertyDescriptor.getReadMethod() != null) {
-				final String propertyName = propertyDescriptor.getName();
-				for (final Annotation annotation : propertyDescriptor.getReadMethod().getAnnotations()) {
-					if (ConfigComplexProperty.class.equals(annotation.annotationType())) {
-						final List<ComplexConfigDTO> dtos = getComplexDtos(complexDtos, propertyName);
-						handleComplexProperty(config, propertyDescriptor, (ConfigComplexProperty) annotation, dtos);
-					} else if (ConfigSetProperty.class.equals(annotation.annotationType())) {
-						final List<ConfigSetDTO> dtos = getSetDtos(complexDtos, propertyName);
-						handleSetProperty(config, propertyDescriptor, annotation, dtos);
-					} else if (ConfigMapProperty.class.equals(annotation.annotationType())) {
-						final List<ConfigMapDTO> dtos = getMapDtos(complexDtos, propertyName);
-						handleMap(config, propertyDescriptor, annotation, dtos);
-					} else if (ConfigListProperty.class.equals(annotation.annotationType())) {
-						final List<ConfigListDTO> dtos = getListDtos(complexDtos, propertyName);
-						handleList(config, propertyDescriptor, annotation, dtos);
-					} else if (ConfigArrayProperty.class.equals(annotation.annotationType())) {
-						final List<ConfigListDTO> dtos = getListDtos(complexDtos, propertyName);
-						handleArray(config, propertyDescriptor, (ConfigArrayProperty) annotation, dtos);
-					}
-				}
+		for (final ConfigPropertyModel property : ConfigClassModel.get(config.getClass()).getConfigProperties()) {
+			final String propertyName = property.getName();
+			final Class<? extends Annotation> annotationType = property.getAnnotationType();
+			if (ConfigComplexProperty.class.equals(annotationType)) {
+				final List<ComplexConfigDTO> dtos = getComplexDtos(complexDtos, propertyName);
+				handleComplexProperty(config, property, dtos);
+			} else if (ConfigSetProperty.class.equals(annotationType)) {
+				final List<ConfigSetDTO> dtos = getSetDtos(complexDtos, propertyName);
+				handleSetProperty(config, property, dtos);
+			} else if (ConfigMapProperty.class.equals(annotationType)) {
+				final List<ConfigMapDTO> dtos = getMapDtos(complexDtos, propertyName);
+				handleMap(config, property, dtos);
+			} else if (ConfigListProperty.class.equals(annotationType)) {
+				final List<ConfigListDTO> dtos = getListDtos(complexDtos, propertyName);
+				handleList(config, property, dtos);
+			} else if (ConfigArrayProperty.class.equals(annotationType)) {
+				final List<ConfigListDTO> dtos = getListDtos(complexDtos, propertyName);
+				handleArray(config, property, dtos);
 			}
 		}
 	}
@@ -208,23 +204,18 @@ public final class ProxyUpdater {
 	}
 
 	@SuppressWarnings("unchecked")
-	private <T> void handleArray(
-		final T config,
-		final PropertyDescriptor propertyDescriptor,
-		final ConfigArrayProperty annotation,
-		final List<ConfigListDTO> listDTOs) {
-		final Object originalArray = propertyAccessor.read(config, propertyDescriptor.getName());
+	private <T> void handleArray(final T config, final ConfigPropertyModel property, final List<ConfigListDTO> listDTOs) {
+		final Object originalArray = property.read(config);
 		if (originalArray != null) {
-			final Class<?> arrayItemType = propertyDescriptor.getPropertyType().getComponentType();
-			final ConfigComplexType itemTypeAnnotation = AnnotationUtil.getAnnotation(arrayItemType, ConfigComplexType.class);
-			if (itemTypeAnnotation != null || annotation.polymorph()) {
+			final Class<?> arrayItemType = property.getItemType();
+			if (property.isComplexItemType() || property.isPolymorph()) {
 				for (int i = 0; i < Array.getLength(originalArray); i++) {
 					final Object obj = Array.get(originalArray, i);
 					Object item = null;
 					if (obj instanceof ConfigProxy) {
 						item = obj;
 					} else if (obj != null) {
-						if (annotation.polymorph()) {
+						if (property.isPolymorph()) {
 							item = objectFactory.createComplexProperty(ProxyUtil.getConfigClass(obj.getClass()));
 						} else {
 							item = objectFactory.createComplexProperty(arrayItemType);
@@ -241,21 +232,17 @@ public final class ProxyUpdater {
 	}
 
 	@SuppressWarnings("unchecked")
-	private <T> void handleList(
-		final T config,
-		final PropertyDescriptor propertyDescriptor,
-		final Annotation annotation,
-		final List<ConfigListDTO> listDtos) {
-		final List<Object> originalList = (List<Object>) propertyAccessor.read(config, propertyDescriptor.getName());
+	private <T> void handleList(final T config, final ConfigPropertyModel property, final List<ConfigListDTO> listDtos) {
+		final List<Object> originalList = (List<Object>) property.read(config);
 		if (originalList != null) {
 			ConfigListDecorator<Object> listDecorator;
 			if (originalList instanceof ConfigListDecorator) {
 				listDecorator = (ConfigListDecorator<Object>) originalList;
 			} else {
 				listDecorator = new ConfigListDecorator<Object>(new ArrayList<Object>());
-				propertyAccessor.write(config, propertyDescriptor.getName(), listDecorator);
+				property.write(config, listDecorator);
 			}
-			updateListProxy(listDecorator, originalList, listDtos, annotation);
+			updateListProxy(listDecorator, originalList, listDtos, property.getConfigAnnotation());
 		}
 	}
 
@@ -307,21 +294,17 @@ public final class ProxyUpdater {
 	}
 
 	@SuppressWarnings("unchecked")
-	private <T> void handleMap(
-		final T config,
-		final PropertyDescriptor propertyDescriptor,
-		final Annotation annotation,
-		final List<ConfigMapDTO> mapDtos) {
-		final Map<Object, Object> originalMap = (Map<Object, Object>) propertyAccessor.read(config, propertyDescriptor.getName());
+	private <T> void handleMap(final T config, final ConfigPropertyModel property, final List<ConfigMapDTO> mapDtos) {
+		final Map<Object, Object> originalMap = (Map<Object, Object>) property.read(config);
 		if (originalMap != null) {
 			ConfigMapDecorator<Object, Object> mapDecorator;
 			if (originalMap instanceof ConfigMapDecorator) {
 				mapDecorator = (ConfigMapDecorator<Object, Object>) originalMap;
 			} else {
 				mapDecorator = new ConfigMapDecorator<Object, Object>(new HashMap<Object, Object>(), this);
-				propertyAccessor.write(config, propertyDescriptor.getName(), mapDecorator);
+				property.write(config, mapDecorator);
 			}
-			updateMapProxy(mapDecorator, originalMap, mapDtos, annotation);
+			updateMapProxy(mapDecorator, originalMap, mapDtos, property.getConfigAnnotation());
 		}
 	}
 
@@ -393,21 +376,17 @@ public final class ProxyUpdater {
 	}
 
 	@SuppressWarnings("unchecked")
-	private <T> void handleSetProperty(
-		final T config,
-		final PropertyDescriptor propertyDescriptor,
-		final Annotation annotation,
-		final List<ConfigSetDTO> setDtos) {
-		final Set<Object> originalSet = (Set<Object>) propertyAccessor.read(config, propertyDescriptor.getName());
+	private <T> void handleSetProperty(final T config, final ConfigPropertyModel property, final List<ConfigSetDTO> setDtos) {
+		final Set<Object> originalSet = (Set<Object>) property.read(config);
 		if (originalSet != null) {
 			ConfigSetDecorator<Object> setDecorator;
 			if (originalSet instanceof ConfigSetDecorator) {
 				setDecorator = (ConfigSetDecorator<Object>) originalSet;
 			} else {
 				setDecorator = new ConfigSetDecorator<Object>(new HashSet<Object>(), this);
-				propertyAccessor.write(config, propertyDescriptor.getName(), setDecorator);
+				property.write(config, setDecorator);
 			}
-			updateSetProxy(setDecorator, originalSet, setDtos, annotation);
+			updateSetProxy(setDecorator, originalSet, setDtos, property.getConfigAnnotation());
 		}
 	}
 
@@ -507,22 +486,18 @@ public final class ProxyUpdater {
 		decorator.setConfigDTOs(dtos);
 	}
 
-	private <T> void handleComplexProperty(
-		final T config,
-		final PropertyDescriptor propertyDescriptor,
-		final ConfigComplexProperty annotation,
-		final List<ComplexConfigDTO> dtos) {
-		final Object object = propertyAccessor.read(config, propertyDescriptor.getName());
+	private <T> void handleComplexProperty(final T config, final ConfigPropertyModel property, final List<ComplexConfigDTO> dtos) {
+		final Object object = property.read(config);
 		if (object != null) {
 			if (!(object instanceof ProxyObject)) {
 				Object complexProperty = null;
-				if (annotation.polymorph()) {
+				if (property.isPolymorph()) {
 					complexProperty = objectFactory.createComplexProperty(ProxyUtil.getConfigClass(object.getClass()));
 				} else {
-					complexProperty = objectFactory.createComplexProperty(propertyDescriptor.getPropertyType());
+					complexProperty = objectFactory.createComplexProperty(property.getPropertyType());
 				}
 				copyUtil.copyConfigTree(objectFactory, object, complexProperty);
-				propertyAccessor.write(config, propertyDescriptor.getName(), complexProperty);
+				property.write(config, complexProperty);
 				updateConfig(complexProperty, dtos);
 			} else {
 				updateConfig(object, dtos);
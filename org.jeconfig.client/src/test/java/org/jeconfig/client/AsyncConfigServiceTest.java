@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.jeconfig.client;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jeconfig.api.async.ConfigCallback;
+import org.jeconfig.api.async.ConfigFuture;
+import org.jeconfig.api.persister.ConfigPersister;
+import org.jeconfig.api.scope.ScopePath;
+import org.jeconfig.client.internal.async.AsyncConfigServiceImpl;
+import org.jeconfig.server.persister.InMemoryPersister;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncConfigServiceTest extends AbstractConfigServiceTest {
+
+	private ExecutorService executor;
+	private AsyncConfigServiceImpl asyncService;
+
+	@Override
+	protected ConfigPersister createPersister() {
+		return new InMemoryPersister();
+	}
+
+	@Override
+	@Before
+	public void setUp() {
+		super.setUp();
+		executor = Executors.newFixedThreadPool(2);
+		asyncService = new AsyncConfigServiceImpl(getConfigService(), executor);
+	}
+
+	@Override
+	@After
+	public void tearDown() {
+		asyncService.close();
+		executor.shutdownNow();
+		super.tearDown();
+	}
+
+	private ScopePath getScopePath() {
+		return getConfigService().getScopePathBuilderFactory(ConfigServiceAccessorTestConfiguration.class)
+				.annotatedPath().create();
+	}
+
+	@Test
+	public void testSaveAndLoad() throws Exception {
+		final ConfigServiceAccessorTestConfiguration config = asyncService.load(
+				ConfigServiceAccessorTestConfiguration.class,
+				getScopePath()).get(5, TimeUnit.SECONDS);
+		config.setField1("async"); //$NON-NLS-1$
+		asyncService.save(config).get(5, TimeUnit.SECONDS);
+
+		final ConfigServiceAccessorTestConfiguration result = asyncService.load(
+				ConfigServiceAccessorTestConfiguration.class,
+				getScopePath()).get(5, TimeUnit.SECONDS);
+		Assert.assertEquals("async", result.getField1()); //$NON-NLS-1$
+		Assert.assertFalse(asyncService.isOutdated(result).get(5, TimeUnit.SECONDS).booleanValue());
+	}
+
+	@Test
+	public void testSuccessCallback() throws Exception {
+		final RecordingCallback<ConfigServiceAccessorTestConfiguration> callback;
+		callback = new RecordingCallback<ConfigServiceAccessorTestConfiguration>();
+		asyncService.load(ConfigServiceAccessorTestConfiguration.class, getScopePath()).addCallback(callback);
+
+		Assert.assertTrue(callback.await());
+		Assert.assertNotNull(callback.result.get());
+		Assert.assertNull(callback.failure.get());
+	}
+
+	@Test
+	public void testCallbackAddedAfterCompletion() throws Exception {
+		final ConfigFuture<ConfigServiceAccessorTestConfiguration> future = asyncService.load(
+				ConfigServiceAccessorTestConfiguration.class,
+				getScopePath());
+		final ConfigServiceAccessorTestConfiguration config = future.get(5, TimeUnit.SECONDS);
+
+		final RecordingCallback<ConfigServiceAccessorTestConfiguration> callback;
+		callback = new RecordingCallback<ConfigServiceAccessorTestConfiguration>();
+		future.addCallback(callback);
+		Assert.assertEquals(0, callback.latch.getCount());
+		Assert.assertSame(config, callback.result.get());
+	}
+
+	@Test
+	public void testFailureCallback() throws Exception {
+		final ScopePath scopePath = getScopePath();
+		asyncService.unbindConfigService(getConfigService());
+
+		final RecordingCallback<ConfigServiceAccessorTestConfiguration> callback;
+		callback = new RecordingCallback<ConfigServiceAccessorTestConfiguration>();
+		final ConfigFuture<ConfigServiceAccessorTestConfiguration> future = asyncService.load(
+				ConfigServiceAccessorTestConfiguration.class,
+				scopePath);
+		future.addCallback(callback);
+
+		Assert.assertTrue(callback.await());
+		Assert.assertTrue(callback.failure.get() instanceof IllegalStateException);
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			Assert.fail();
+		} catch (final ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullParameterFailsImmediately() {
+		asyncService.load(ConfigServiceAccessorTestConfiguration.class, null);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testClosedService() {
+		asyncService.close();
+		asyncService.load(ConfigServiceAccessorTestConfiguration.class, getScopePath());
+	}
+
+	private static final class RecordingCallback<T> implements ConfigCallback<T> {
+		private final CountDownLatch latch = new CountDownLatch(1);
+		private final AtomicReference<T> result = new AtomicReference<T>();
+		private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+		@Override
+		public void onSuccess(final T value) {
+			result.set(value);
+			latch.countDown();
+		}
+
+		@Override
+		public void onFailure(final Throwable throwable) {
+			failure.set(throwable);
+			latch.countDown();
+		}
+
+		boolean await() throws InterruptedException {
+			return latch.await(5, TimeUnit.SECONDS);
+		}
+	}
+}
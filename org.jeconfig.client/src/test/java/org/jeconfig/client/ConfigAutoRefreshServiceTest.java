@@ -80,6 +80,25 @@ public class ConfigAutoRefreshServiceTest extends AbstractConfigServiceTest {
 		Assert.assertEquals(configToRefresh.getField1(), config.getField1());
 	}
 
+	@Test
+	public void testIsOutdated() {
+		final ConfigAutoRefreshTestConfiguration config = getConfigService().load(ConfigAutoRefreshTestConfiguration.class);
+		final ConfigAutoRefreshTestConfiguration otherConfig = getConfigService().load(ConfigAutoRefreshTestConfiguration.class);
+		Assert.assertFalse(getConfigService().isOutdated(otherConfig));
+
+		config.setField1(9);
+		getConfigService().save(config);
+		Assert.assertFalse(getConfigService().isOutdated(config));
+		Assert.assertTrue(getConfigService().isOutdated(otherConfig));
+
+		getConfigService().refresh(otherConfig);
+		Assert.assertFalse(getConfigService().isOutdated(otherConfig));
+
+		config.setField1(10);
+		getConfigService().save(config);
+		Assert.assertTrue(getConfigService().isOutdated(otherConfig));
+	}
+
 	@Override
 	@After
 	public void tearDown() {
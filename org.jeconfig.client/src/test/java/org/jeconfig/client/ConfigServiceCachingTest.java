@@ -27,10 +27,22 @@
 
 package org.jeconfig.client;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import junit.framework.Assert;
 
+import org.jeconfig.api.cache.CacheEvictionListener;
+import org.jeconfig.api.cache.CachePolicy;
+import org.jeconfig.api.cache.EvictionCause;
 import org.jeconfig.api.conversion.SimpleTypeConverterRegistry;
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.api.scope.GlobalScopeDescriptor;
 import org.jeconfig.api.scope.ScopePath;
+import org.jeconfig.api.scope.ScopePathBuilder;
+import org.jeconfig.api.scope.UserScopeDescriptor;
+import org.jeconfig.client.annotation.configclass.DynamicDefaultTestConfiguration;
 import org.jeconfig.client.annotation.configclass.TestConfiguration;
 import org.jeconfig.client.internal.mapping.ConfigDTOMapper;
 import org.jeconfig.client.proxy.ConfigProxyFactory;
@@ -64,4 +76,121 @@ public class ConfigServiceCachingTest extends AbstractConfigServiceTest {
 		getConfigService().load(TestConfiguration.class);
 		Assert.assertEquals(3, getCountingDummyPersister().getLoadCount());
 	}
+
+	@Test
+	public void testMergedConfigIsUpdatedWhenParentScopeChanges() {
+		final TestConfiguration userConfiguration = getConfigService().load(TestConfiguration.class);
+		Assert.assertEquals("f1", userConfiguration.getField1()); //$NON-NLS-1$
+
+		final ScopePath globalScope = getConfigService().getScopePathBuilderFactory(TestConfiguration.class).annotatedPathUntil(
+				GlobalScopeDescriptor.NAME).create();
+		final TestConfiguration globalConfiguration = getConfigService().load(TestConfiguration.class, globalScope);
+		globalConfiguration.setField1("global"); //$NON-NLS-1$
+		getConfigService().save(globalConfiguration);
+
+		Assert.assertEquals("global", getConfigService().load(TestConfiguration.class).getField1()); //$NON-NLS-1$
+
+		globalConfiguration.setField1("changed"); //$NON-NLS-1$
+		getConfigService().save(globalConfiguration);
+
+		Assert.assertEquals("changed", getConfigService().load(TestConfiguration.class).getField1()); //$NON-NLS-1$
+	}
+
+	@Test
+	public void testDefaultConfigFactoryIsCalledOnEveryLoad() {
+		final int counter = getConfigService().load(DynamicDefaultTestConfiguration.class).getCounter();
+		Assert.assertEquals(counter + 1, getConfigService().load(DynamicDefaultTestConfiguration.class).getCounter());
+	}
+
+	@Test
+	public void testValidationCache() {
+		getConfigService().load(TestConfiguration.class);
+		final long hits = getConfigSetupService().getValidationCacheHits();
+
+		getConfigService().load(TestConfiguration.class);
+		Assert.assertEquals(hits + 1, getConfigSetupService().getValidationCacheHits());
+
+		getConfigSetupService().setValidationCacheEnabled(false);
+		getConfigService().load(TestConfiguration.class);
+		Assert.assertEquals(hits + 1, getConfigSetupService().getValidationCacheHits());
+
+		getConfigSetupService().setValidationCacheEnabled(true);
+		getConfigService().load(TestConfiguration.class);
+		getConfigService().load(TestConfiguration.class);
+		Assert.assertEquals(hits + 2, getConfigSetupService().getValidationCacheHits());
+	}
+
+	@Test
+	public void testClientCachePolicyBoundedByBytes() {
+		final List<EvictionCause> evictions = new ArrayList<EvictionCause>();
+		final CacheEvictionListener listener = new CacheEvictionListener() {
+			@Override
+			public void configEvicted(final ScopePath scopePath, final ComplexConfigDTO config, final EvictionCause cause) {
+				evictions.add(cause);
+			}
+		};
+
+		getConfigSetupService().setClientCachePolicy(new CachePolicy.Builder().maxBytes(1024 * 1024).addEvictionListener(listener).create());
+		getConfigService().load(TestConfiguration.class);
+		Assert.assertTrue(evictions.isEmpty());
+
+		// every configuration exceeds the maximum size, so nothing is kept
+		getConfigSetupService().setClientCachePolicy(new CachePolicy.Builder().maxBytes(1).addEvictionListener(listener).create());
+		getConfigService().load(TestConfiguration.class);
+		Assert.assertTrue(evictions.size() >= 3);
+		Assert.assertFalse(evictions.contains(EvictionCause.EXPIRED));
+	}
+
+	@Test
+	public void testLoadAllLoadsEachScopeOnce() {
+		final List<ScopePath> scopePaths = new ArrayList<ScopePath>();
+		for (final String userName : new String[] {"hugo", "egon", "otto"}) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			final ScopePathBuilder builder = getConfigService().getScopePathBuilderFactory(TestConfiguration.class).annotatedPath();
+			builder.addPropertyToScope(UserScopeDescriptor.NAME, UserScopeDescriptor.PROP_USER_NAME, userName);
+			scopePaths.add(builder.create());
+		}
+
+		final Map<ScopePath, TestConfiguration> configs = getConfigService().loadAll(TestConfiguration.class, scopePaths);
+		// default and global are shared by all users
+		Assert.assertEquals(2 + scopePaths.size(), getCountingDummyPersister().getLoadCount());
+		Assert.assertEquals(scopePaths, new ArrayList<ScopePath>(configs.keySet()));
+		for (final ScopePath scopePath : scopePaths) {
+			Assert.assertEquals("f1", configs.get(scopePath).getField1()); //$NON-NLS-1$
+			Assert.assertEquals(scopePath, getConfigService().getScopePath(configs.get(scopePath)));
+		}
+
+		getConfigService().loadAll(TestConfiguration.class, scopePaths);
+		Assert.assertEquals(2 + scopePaths.size(), getCountingDummyPersister().getLoadCount());
+	}
+
+	@Test
+	public void testLoadAllMergesIntoSharedParentConfig() {
+		final ScopePath globalScope = getConfigService().getScopePathBuilderFactory(TestConfiguration.class).annotatedPathUntil(
+				GlobalScopeDescriptor.NAME).create();
+		final TestConfiguration globalConfiguration = getConfigService().load(TestConfiguration.class, globalScope);
+		globalConfiguration.setField1("global"); //$NON-NLS-1$
+		getConfigService().save(globalConfiguration);
+
+		final List<ScopePath> scopePaths = new ArrayList<ScopePath>();
+		for (final String userName : new String[] {"hugo", "egon"}) { //$NON-NLS-1$ //$NON-NLS-2$
+			final ScopePathBuilder builder = getConfigService().getScopePathBuilderFactory(TestConfiguration.class).annotatedPath();
+			builder.addPropertyToScope(UserScopeDescriptor.NAME, UserScopeDescriptor.PROP_USER_NAME, userName);
+			scopePaths.add(builder.create());
+		}
+		final TestConfiguration hugoConfiguration = getConfigService().load(TestConfiguration.class, scopePaths.get(0));
+		hugoConfiguration.setField1("hugo"); //$NON-NLS-1$
+		getConfigService().save(hugoConfiguration);
+
+		Map<ScopePath, TestConfiguration> configs = getConfigService().loadAll(TestConfiguration.class, scopePaths);
+		Assert.assertEquals("hugo", configs.get(scopePaths.get(0)).getField1()); //$NON-NLS-1$
+		Assert.assertEquals("global", configs.get(scopePaths.get(1)).getField1()); //$NON-NLS-1$
+		Assert.assertEquals("global", getConfigService().load(TestConfiguration.class, globalScope).getField1()); //$NON-NLS-1$
+
+		globalConfiguration.setField1("changed"); //$NON-NLS-1$
+		getConfigService().save(globalConfiguration);
+
+		configs = getConfigService().loadAll(TestConfiguration.class, scopePaths);
+		Assert.assertEquals("changed", configs.get(scopePaths.get(1)).getField1()); //$NON-NLS-1$
+		Assert.assertEquals(globalScope, getConfigService().getScopePath(getConfigService().load(TestConfiguration.class, globalScope)));
+	}
 }
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.jeconfig.client;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.Assert;
+
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.api.persister.ConfigPersister;
+import org.jeconfig.api.scope.ScopePath;
+import org.jeconfig.server.persister.InMemoryPersister;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConfigServiceConcurrentLoadTest extends AbstractConfigServiceTest {
+
+	private ScopePath scopePath;
+
+	@Override
+	protected ConfigPersister createPersister() {
+		return new BlockingPersister();
+	}
+
+	@Override
+	@Before
+	public void setUp() {
+		super.setUp();
+		// every load reaches the persister
+		getConfigPersistenceService().setCacheEnabled(false);
+		scopePath = getConfigService().getScopePathBuilderFactory(ConfigServiceAccessorTestConfiguration.class)
+				.annotatedPath().create();
+	}
+
+	@Test
+	public void testSaveDuringLoadIsNotOverwritten() throws Exception {
+		assertSaveDuringLoadIsNotOverwritten(new Runnable() {
+			@Override
+			public void run() {
+				getConfigService().load(ConfigServiceAccessorTestConfiguration.class, scopePath);
+			}
+		});
+	}
+
+	@Test
+	public void testSaveDuringLoadAllIsNotOverwritten() throws Exception {
+		assertSaveDuringLoadIsNotOverwritten(new Runnable() {
+			@Override
+			public void run() {
+				getConfigService().loadAll(ConfigServiceAccessorTestConfiguration.class, Collections.singleton(scopePath));
+			}
+		});
+	}
+
+	private void assertSaveDuringLoadIsNotOverwritten(final Runnable load) throws Exception {
+		final ConfigServiceAccessorTestConfiguration config = getConfigService().load(
+				ConfigServiceAccessorTestConfiguration.class,
+				scopePath);
+		config.setField1("old"); //$NON-NLS-1$
+		getConfigService().save(config);
+		getConfigSetupService().setClientCacheEnabled(false);
+		getConfigSetupService().setClientCacheEnabled(true);
+
+		final BlockingPersister persister = (BlockingPersister) getPersister();
+		persister.block();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final Thread loader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					load.run();
+				} catch (final Throwable e) {
+					failure.set(e);
+				}
+			}
+		});
+		loader.start();
+		Assert.assertTrue(persister.awaitBlockedLoad());
+
+		config.setField1("new"); //$NON-NLS-1$
+		getConfigService().save(config);
+		persister.release();
+		loader.join(5000);
+		Assert.assertNull(failure.get());
+
+		Assert.assertEquals("new", getConfigService().load(ConfigServiceAccessorTestConfiguration.class, scopePath).getField1()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Blocks the first load after {@link #block()} after it has read the configurations.
+	 */
+	private static final class BlockingPersister extends InMemoryPersister {
+		private volatile CountDownLatch blockedLoad;
+		private volatile CountDownLatch release;
+
+		void block() {
+			blockedLoad = new CountDownLatch(1);
+			release = new CountDownLatch(1);
+		}
+
+		boolean awaitBlockedLoad() throws InterruptedException {
+			return blockedLoad.await(5, TimeUnit.SECONDS);
+		}
+
+		void release() {
+			release.countDown();
+		}
+
+		@Override
+		public Map<ScopePath, ComplexConfigDTO> loadConfigurations(final Collection<ScopePath> scopePaths) {
+			final Map<ScopePath, ComplexConfigDTO> result = super.loadConfigurations(scopePaths);
+			awaitRelease();
+			return result;
+		}
+
+		@Override
+		public ComplexConfigDTO loadConfiguration(final ScopePath scopePath) {
+			final ComplexConfigDTO result = super.loadConfiguration(scopePath);
+			awaitRelease();
+			return result;
+		}
+
+		private void awaitRelease() {
+			final CountDownLatch currentRelease = release;
+			if (currentRelease != null && blockedLoad.getCount() > 0) {
+				blockedLoad.countDown();
+				try {
+					currentRelease.await(5, TimeUnit.SECONDS);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+}
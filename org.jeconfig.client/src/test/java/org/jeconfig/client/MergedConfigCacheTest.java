@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.jeconfig.client;
+
+import java.util.Collections;
+
+import junit.framework.Assert;
+
+import org.jeconfig.api.cache.CachePolicy;
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.api.scope.GlobalScopeDescriptor;
+import org.jeconfig.api.scope.ScopePath;
+import org.jeconfig.api.scope.ScopePathBuilderFactory;
+import org.jeconfig.api.scope.UserScopeDescriptor;
+import org.jeconfig.client.annotation.configclass.TestConfiguration;
+import org.jeconfig.client.internal.MergedConfigCache;
+import org.jeconfig.client.internal.MergedConfigCache.MergedConfig;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MergedConfigCacheTest extends AbstractConfigServiceTest {
+	private static final long[] VERSIONS = new long[] {1, 2};
+
+	private MergedConfigCache cache;
+	private ScopePath globalPath;
+	private ScopePath userPath;
+
+	@Override
+	@Before
+	public void setUp() {
+		super.setUp();
+		cache = new MergedConfigCache(CachePolicy.maxEntries(2));
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		globalPath = factory.annotatedPathUntil(GlobalScopeDescriptor.NAME).create();
+		userPath = factory.annotatedPathUntil(UserScopeDescriptor.NAME).create();
+	}
+
+	@Test
+	public void testInvalidateRemovesChildScopePaths() {
+		final MergedConfig globalConfig = createMergedConfig();
+		cache.put(TestConfiguration.class, globalPath, VERSIONS, globalConfig);
+		cache.put(TestConfiguration.class, userPath, VERSIONS, createMergedConfig());
+
+		cache.invalidate(userPath);
+		Assert.assertSame(globalConfig, cache.get(TestConfiguration.class, globalPath, VERSIONS));
+		Assert.assertNull(cache.get(TestConfiguration.class, userPath, VERSIONS));
+
+		cache.put(TestConfiguration.class, userPath, VERSIONS, createMergedConfig());
+		cache.invalidate(globalPath);
+		Assert.assertNull(cache.get(TestConfiguration.class, globalPath, VERSIONS));
+		Assert.assertNull(cache.get(TestConfiguration.class, userPath, VERSIONS));
+	}
+
+	@Test
+	public void testInvalidateAllOccurences() {
+		cache.put(TestConfiguration.class, globalPath, VERSIONS, createMergedConfig());
+		cache.put(TestConfiguration.class, userPath, VERSIONS, createMergedConfig());
+
+		cache.invalidateAllOccurences(UserScopeDescriptor.NAME, null);
+		Assert.assertNotNull(cache.get(TestConfiguration.class, globalPath, VERSIONS));
+		Assert.assertNull(cache.get(TestConfiguration.class, userPath, VERSIONS));
+	}
+
+	@Test
+	public void testInvalidateAfterEviction() {
+		cache.put(TestConfiguration.class, userPath, VERSIONS, createMergedConfig());
+		cache.put(TestConfiguration.class, userPath, new long[] {1, 3}, createMergedConfig());
+		cache.put(TestConfiguration.class, userPath, new long[] {1, 4}, createMergedConfig());
+
+		cache.invalidate(globalPath);
+		Assert.assertNull(cache.get(TestConfiguration.class, userPath, new long[] {1, 3}));
+		Assert.assertNull(cache.get(TestConfiguration.class, userPath, new long[] {1, 4}));
+	}
+
+	private MergedConfig createMergedConfig() {
+		return new MergedConfig(new ComplexConfigDTO(), Collections.<ComplexConfigDTO> emptyList());
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.jeconfig.client.annotation.configclass;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jeconfig.api.annotation.ConfigClass;
+import org.jeconfig.api.annotation.ConfigSimpleProperty;
+import org.jeconfig.api.annotation.DefaultConfigFactory;
+import org.jeconfig.api.scope.GlobalScopeDescriptor;
+import org.jeconfig.api.scope.ScopePath;
+
+@ConfigClass(scopePath = {GlobalScopeDescriptor.NAME},
+	defaultConfigFactory = DynamicDefaultTestConfiguration.Factory.class)
+public class DynamicDefaultTestConfiguration {
+
+	private int counter;
+
+	@ConfigSimpleProperty
+	public int getCounter() {
+		return counter;
+	}
+
+	public void setCounter(final int counter) {
+		this.counter = counter;
+	}
+
+	@Override
+	public int hashCode() {
+		return counter;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof DynamicDefaultTestConfiguration)) {
+			return false;
+		}
+		return counter == ((DynamicDefaultTestConfiguration) obj).counter;
+	}
+
+	public static class Factory implements DefaultConfigFactory<DynamicDefaultTestConfiguration> {
+		private static final AtomicInteger COUNTER = new AtomicInteger();
+
+		@Override
+		public DynamicDefaultTestConfiguration createDefaultConfig(final ScopePath scopePath) {
+			final DynamicDefaultTestConfiguration config = new DynamicDefaultTestConfiguration();
+			config.setCounter(COUNTER.incrementAndGet());
+			return config;
+		}
+	}
+}
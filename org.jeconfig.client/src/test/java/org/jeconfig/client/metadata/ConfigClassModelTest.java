@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.client.metadata;
+
+import java.util.List;
+
+import org.jeconfig.api.annotation.ConfigMapProperty;
+import org.jeconfig.api.annotation.ConfigSimpleProperty;
+import org.jeconfig.client.AbstractConfigServiceTest;
+import org.jeconfig.client.annotation.map.ComplexMapTestConfiguration;
+import org.jeconfig.client.annotation.simple.CustomConverterConfig;
+import org.jeconfig.client.annotation.simple.TestConverter;
+import org.jeconfig.client.internal.metadata.ConfigClassModel;
+import org.jeconfig.client.internal.metadata.ConfigPropertyModel;
+import org.jeconfig.client.testconfigs.ComplexSubtype;
+import org.junit.Assert;
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class ConfigClassModelTest extends AbstractConfigServiceTest {
+
+	@Test
+	public void testModelIsSharedBetweenClassAndProxy() {
+		final ComplexMapTestConfiguration config = getConfigService().load(ComplexMapTestConfiguration.class);
+		Assert.assertNotSame(ComplexMapTestConfiguration.class, config.getClass());
+		Assert.assertSame(ConfigClassModel.get(ComplexMapTestConfiguration.class), ConfigClassModel.get(config.getClass()));
+	}
+
+	@Test
+	public void testComplexTypeModel() {
+		final ConfigClassModel model = ConfigClassModel.get(ComplexSubtype.class);
+		Assert.assertTrue(model.isComplexType());
+		Assert.assertNull(model.getConfigClassAnnotation());
+
+		final List<ConfigPropertyModel> properties = model.getConfigProperties();
+		Assert.assertEquals(2, properties.size());
+		Assert.assertEquals("id", properties.get(0).getName());
+		Assert.assertEquals("name", properties.get(1).getName());
+
+		final ConfigPropertyModel idProperty = model.getIdProperty();
+		Assert.assertNotNull(idProperty);
+		Assert.assertEquals("id", idProperty.getName());
+		Assert.assertEquals(ConfigSimpleProperty.class, idProperty.getAnnotationType());
+		Assert.assertNull(idProperty.getCustomConverter());
+	}
+
+	@Test
+	public void testMapPropertyModel() {
+		final ConfigClassModel model = ConfigClassModel.get(ComplexMapTestConfiguration.class);
+		Assert.assertNotNull(model.getConfigClassAnnotation());
+		Assert.assertNull(model.getIdProperty());
+
+		final ConfigPropertyModel property = model.getProperty("property");
+		Assert.assertNotNull(property);
+		Assert.assertEquals(ConfigMapProperty.class, property.getAnnotationType());
+		Assert.assertTrue(property.isCollectionProperty());
+		Assert.assertTrue(property.isComplexItemType());
+		Assert.assertEquals(ComplexSubtype.class, property.getItemType());
+		Assert.assertEquals(String.class, property.getKeyType());
+	}
+
+	@Test
+	public void testCustomConverterIsNotShared() {
+		final ConfigPropertyModel property = ConfigClassModel.get(CustomConverterConfig.class).getProperty("property");
+		Assert.assertTrue(property.getCustomConverter() instanceof TestConverter);
+		Assert.assertNotSame(property.getCustomConverter(), property.getCustomConverter());
+	}
+}
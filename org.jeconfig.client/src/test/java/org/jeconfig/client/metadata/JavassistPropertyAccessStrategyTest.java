@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.client.metadata;
+
+import java.beans.BeanInfo;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+
+import org.jeconfig.client.internal.metadata.JavassistPropertyAccessStrategy;
+import org.jeconfig.client.testconfigs.ProxyTestConfiguration;
+import org.jeconfig.common.reflection.IndexedPropertyAccessor;
+import org.jeconfig.common.reflection.ReflectionPropertyAccessStrategy;
+import org.jeconfig.common.reflection.internal.ReflectionIndexedPropertyAccessor;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class JavassistPropertyAccessStrategyTest {
+
+	private PropertyDescriptor[] properties;
+	private IndexedPropertyAccessor accessor;
+
+	@Before
+	public void setUp() throws Exception {
+		final BeanInfo beanInfo = Introspector.getBeanInfo(ProxyTestConfiguration.class);
+		properties = beanInfo.getPropertyDescriptors();
+		accessor = new JavassistPropertyAccessStrategy().createAccessor(ProxyTestConfiguration.class, properties);
+	}
+
+	@Test
+	public void testGeneratesAccessor() {
+		Assert.assertFalse(accessor instanceof ReflectionIndexedPropertyAccessor);
+	}
+
+	@Test
+	public void testReadAndWrite() {
+		final ProxyTestConfiguration config = new ProxyTestConfiguration();
+
+		accessor.write(config, indexOf("a"), Integer.valueOf(42));
+		Assert.assertEquals(42, config.getA());
+		Assert.assertEquals(Integer.valueOf(42), accessor.read(config, indexOf("a")));
+
+		accessor.write(config, indexOf("g"), Boolean.FALSE);
+		Assert.assertEquals(Boolean.FALSE, accessor.read(config, indexOf("g")));
+
+		accessor.write(config, indexOf("b"), "value");
+		Assert.assertEquals("value", config.getB());
+
+		final int[] array = new int[] {1, 2};
+		accessor.write(config, indexOf("p"), array);
+		Assert.assertSame(array, accessor.read(config, indexOf("p")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWriteReadOnlyProperty() {
+		accessor.write(new ProxyTestConfiguration(), indexOf("class"), null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownIndex() {
+		accessor.read(new ProxyTestConfiguration(), properties.length);
+	}
+
+	@Test
+	public void testFallbackForNonPublicClass() {
+		final IndexedPropertyAccessor fallback = new JavassistPropertyAccessStrategy().createAccessor(
+				NonPublicBean.class,
+				new PropertyDescriptor[0]);
+		Assert.assertTrue(fallback instanceof ReflectionIndexedPropertyAccessor);
+	}
+
+	@Test
+	public void testExceptionsAreWrappedLikeByReflection() throws Exception {
+		final PropertyDescriptor[] beanProperties = Introspector.getBeanInfo(ThrowingBean.class, Object.class)
+				.getPropertyDescriptors();
+		final IndexedPropertyAccessor generated = new JavassistPropertyAccessStrategy().createAccessor(
+				ThrowingBean.class,
+				beanProperties);
+		final IndexedPropertyAccessor reflection = new ReflectionPropertyAccessStrategy().createAccessor(
+				ThrowingBean.class,
+				beanProperties);
+		Assert.assertFalse(generated instanceof ReflectionIndexedPropertyAccessor);
+
+		for (final IndexedPropertyAccessor propertyAccessor : new IndexedPropertyAccessor[] {generated, reflection}) {
+			try {
+				propertyAccessor.read(new ThrowingBean(), 0);
+				Assert.fail();
+			} catch (final RuntimeException e) {
+				Assert.assertEquals(RuntimeException.class, e.getClass());
+				Assert.assertTrue(e.getCause() instanceof InvocationTargetException);
+				Assert.assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+			}
+			try {
+				propertyAccessor.write(new ThrowingBean(), 0, "value");
+				Assert.fail();
+			} catch (final IllegalStateException e) {
+				Assert.assertEquals("write", e.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void testInvalidValuesAreRejectedLikeByReflection() {
+		final IndexedPropertyAccessor reflection = new ReflectionPropertyAccessStrategy().createAccessor(
+				ProxyTestConfiguration.class,
+				properties);
+
+		for (final IndexedPropertyAccessor propertyAccessor : new IndexedPropertyAccessor[] {accessor, reflection}) {
+			assertWriteFails(propertyAccessor, "a", null);
+			assertWriteFails(propertyAccessor, "g", null);
+			assertWriteFails(propertyAccessor, "a", "42");
+			assertWriteFails(propertyAccessor, "b", Integer.valueOf(42));
+			assertWriteFails(propertyAccessor, "p", new long[0]);
+
+			final ProxyTestConfiguration config = new ProxyTestConfiguration();
+			config.setB("value");
+			propertyAccessor.write(config, indexOf("b"), null);
+			Assert.assertNull(config.getB());
+		}
+	}
+
+	private void assertWriteFails(final IndexedPropertyAccessor propertyAccessor, final String propertyName, final Object value) {
+		try {
+			propertyAccessor.write(new ProxyTestConfiguration(), indexOf(propertyName), value);
+			Assert.fail();
+		} catch (final IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private int indexOf(final String propertyName) {
+		for (int i = 0; i < properties.length; i++) {
+			if (properties[i].getName().equals(propertyName)) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException(propertyName);
+	}
+
+	static class NonPublicBean {}
+
+	public static class ThrowingBean {
+		public String getValue() {
+			throw new IllegalStateException("read");
+		}
+
+		public void setValue(final String value) {
+			throw new IllegalStateException("write");
+		}
+	}
+}
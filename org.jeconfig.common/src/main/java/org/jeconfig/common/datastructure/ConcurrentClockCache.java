@@ -0,0 +1,450 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.common.datastructure;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jeconfig.api.cache.EvictionCause;
+import org.jeconfig.api.util.Assert;
+
+/**
+ * A bounded concurrent cache which approximates a last recently used cache
+ * using the CLOCK (second chance) algorithm.<br>
+ * <br>
+ * Reads don't block and don't reorder anything; they only mark the entry as referenced.
+ * Writes don't block each other unless the cache must evict entries. Eviction removes
+ * the oldest entry which was not referenced since the clock hand passed it the last time.<br>
+ * <br>
+ * The cache is bounded by the total weight of its entries. By default each entry weighs 1,
+ * so the bound is the maximum number of entries. Optionally entries expire a fixed time after
+ * they were written and can be marked for refresh a fixed time after they were written
+ * (see {@link #tryStartRefresh(Object)}).<br>
+ * <br>
+ * <code>null</code> keys and values are not supported.
+ * 
+ * This class is thread-safe.
+ * 
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public final class ConcurrentClockCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+	private final long maxWeight;
+	private final Weigher<? super K, ? super V> weigher;
+	private final long expireAfterWriteNanos;
+	private final long refreshAfterWriteNanos;
+	private final EvictionListener<K, V> evictionListener;
+
+	private final ConcurrentHashMap<K, Node<K, V>> map;
+	/** The clock; contains each live node once and may contain removed nodes. */
+	private final ConcurrentLinkedQueue<Node<K, V>> clock;
+	private final AtomicInteger clockSize = new AtomicInteger();
+	private final AtomicInteger entryCount = new AtomicInteger();
+	private final AtomicLong totalWeight = new AtomicLong();
+	private final ReentrantLock evictionLock = new ReentrantLock();
+
+	/**
+	 * Creates a cache which is bounded by the number of entries.
+	 * 
+	 * @param maxEntries the maximum number of entries
+	 */
+	public ConcurrentClockCache(final int maxEntries) {
+		this(maxEntries, null, -1, -1, null);
+	}
+
+	/**
+	 * Creates a cache.
+	 * 
+	 * @param maxWeight the maximum total weight of all entries
+	 * @param weigher computes the weight of an entry; if <code>null</code> each entry weighs 1
+	 * @param expireAfterWriteNanos the time-to-live of an entry or <code>-1</code> if entries don't expire
+	 * @param refreshAfterWriteNanos the time after which an entry should be refreshed or <code>-1</code>
+	 * @param evictionListener informed about evicted entries; may be <code>null</code>
+	 */
+	public ConcurrentClockCache(
+		final long maxWeight,
+		final Weigher<? super K, ? super V> weigher,
+		final long expireAfterWriteNanos,
+		final long refreshAfterWriteNanos,
+		final EvictionListener<K, V> evictionListener) {
+		if (maxWeight < 1) {
+			throw new IllegalArgumentException("maxWeight must be at least 1: " + maxWeight); //$NON-NLS-1$
+		}
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+		this.expireAfterWriteNanos = expireAfterWriteNanos;
+		this.refreshAfterWriteNanos = refreshAfterWriteNanos;
+		this.evictionListener = evictionListener;
+		map = new ConcurrentHashMap<K, Node<K, V>>();
+		clock = new ConcurrentLinkedQueue<Node<K, V>>();
+	}
+
+	/**
+	 * @return the maximum total weight (the maximum number of entries if no weigher is used)
+	 */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * @return the current total weight of all entries
+	 */
+	public long getTotalWeight() {
+		return totalWeight.get();
+	}
+
+	@Override
+	public V get(final Object key) {
+		final Node<K, V> node = getLiveNode(key);
+		if (node == null) {
+			return null;
+		}
+		node.markReferenced();
+		return node.value;
+	}
+
+	@Override
+	public boolean containsKey(final Object key) {
+		return getLiveNode(key) != null;
+	}
+
+	/**
+	 * Checks whether the entry of the key should be refreshed. Returns <code>true</code>
+	 * at most once per written entry, i.e. only one caller is responsible for refreshing it.
+	 * The caller should put the refreshed value or remove the entry afterwards.
+	 * 
+	 * @param key
+	 * @return <code>true</code> if the caller should refresh the entry
+	 */
+	public boolean tryStartRefresh(final Object key) {
+		if (refreshAfterWriteNanos < 0) {
+			return false;
+		}
+		final Node<K, V> node = map.get(key);
+		return node != null && System.nanoTime() - node.writeTime >= refreshAfterWriteNanos && node.refreshing.compareAndSet(false, true);
+	}
+
+	@Override
+	public int size() {
+		return map.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return map.isEmpty();
+	}
+
+	@Override
+	public V put(final K key, final V value) {
+		final Node<K, V> node = createNode(key, value);
+		final Node<K, V> old = map.put(key, node);
+		added(node);
+		if (old != null) {
+			removed(old);
+		}
+		evictIfNeeded();
+		return old != null ? old.value : null;
+	}
+
+	@Override
+	public V putIfAbsent(final K key, final V value) {
+		final Node<K, V> node = createNode(key, value);
+		while (true) {
+			final Node<K, V> existing = map.putIfAbsent(key, node);
+			if (existing == null) {
+				added(node);
+				evictIfNeeded();
+				return null;
+			}
+			if (!isExpired(existing)) {
+				existing.markReferenced();
+				return existing.value;
+			}
+			expire(existing);
+		}
+	}
+
+	@Override
+	public V replace(final K key, final V value) {
+		final Node<K, V> node = createNode(key, value);
+		while (true) {
+			final Node<K, V> old = getLiveNode(key);
+			if (old == null) {
+				return null;
+			}
+			if (map.replace(key, old, node)) {
+				added(node);
+				removed(old);
+				evictIfNeeded();
+				return old.value;
+			}
+		}
+	}
+
+	@Override
+	public boolean replace(final K key, final V oldValue, final V newValue) {
+		Assert.paramNotNull(oldValue, "oldValue"); //$NON-NLS-1$
+		final Node<K, V> old = getLiveNode(key);
+		if (old == null || !old.value.equals(oldValue)) {
+			return false;
+		}
+		final Node<K, V> node = createNode(key, newValue);
+		if (map.replace(key, old, node)) {
+			added(node);
+			removed(old);
+			evictIfNeeded();
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public V remove(final Object key) {
+		final Node<K, V> node = map.remove(key);
+		if (node != null) {
+			removed(node);
+			return node.value;
+		}
+		return null;
+	}
+
+	@Override
+	public boolean remove(final Object key, final Object value) {
+		final Node<K, V> node = map.get(key);
+		if (node == null || !node.value.equals(value)) {
+			return false;
+		}
+		if (map.remove(key, node)) {
+			removed(node);
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void clear() {
+		for (final K key : map.keySet()) {
+			remove(key);
+		}
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		return new EntrySet();
+	}
+
+	private Node<K, V> createNode(final K key, final V value) {
+		Assert.paramNotNull(key, "key"); //$NON-NLS-1$
+		Assert.paramNotNull(value, "value"); //$NON-NLS-1$
+
+		final long weight = weigher != null ? weigher.weigh(key, value) : 1;
+		if (weight < 0) {
+			throw new IllegalArgumentException("Negative weight for key: " + key); //$NON-NLS-1$
+		}
+		return new Node<K, V>(key, value, weight, System.nanoTime());
+	}
+
+	private Node<K, V> getLiveNode(final Object key) {
+		final Node<K, V> node = map.get(key);
+		if (node == null) {
+			return null;
+		}
+		if (isExpired(node)) {
+			expire(node);
+			return null;
+		}
+		return node;
+	}
+
+	private boolean isExpired(final Node<K, V> node) {
+		return expireAfterWriteNanos >= 0 && System.nanoTime() - node.writeTime >= expireAfterWriteNanos;
+	}
+
+	private void expire(final Node<K, V> node) {
+		if (map.remove(node.key, node)) {
+			removed(node);
+			notifyEviction(node, EvictionCause.EXPIRED);
+		}
+	}
+
+	private void notifyEviction(final Node<K, V> node, final EvictionCause cause) {
+		if (evictionListener != null) {
+			evictionListener.onEviction(node.key, node.value, cause);
+		}
+	}
+
+	/**
+	 * Must be called once for each node added to the map.
+	 */
+	private void added(final Node<K, V> node) {
+		entryCount.incrementAndGet();
+		totalWeight.addAndGet(node.weight);
+		clock.offer(node);
+		clockSize.incrementAndGet();
+	}
+
+	/**
+	 * Must be called once for each node removed from the map by the thread which removed it.
+	 */
+	private void removed(final Node<K, V> node) {
+		node.removed = true;
+		entryCount.decrementAndGet();
+		totalWeight.addAndGet(-node.weight);
+	}
+
+	private boolean needsEviction() {
+		return totalWeight.get() > maxWeight || clockSize.get() > 2 * entryCount.get() + 16;
+	}
+
+	private void evictIfNeeded() {
+		// if another thread is evicting, it will re-check the need after releasing the lock
+		while (needsEviction() && evictionLock.tryLock()) {
+			try {
+				evict();
+			} finally {
+				evictionLock.unlock();
+			}
+		}
+	}
+
+	private void evict() {
+		while (totalWeight.get() > maxWeight) {
+			final Node<K, V> node = clock.poll();
+			if (node == null) {
+				return;
+			}
+			clockSize.decrementAndGet();
+
+			if (node.removed) {
+				continue;
+			}
+			if (isExpired(node)) {
+				expire(node);
+			} else if (node.clearReferenced()) {
+				// second chance
+				clock.offer(node);
+				clockSize.incrementAndGet();
+			} else if (map.remove(node.key, node)) {
+				removed(node);
+				notifyEviction(node, EvictionCause.SIZE);
+			}
+		}
+
+		// removed and replaced nodes stay in the clock until the hand passes them
+		if (clockSize.get() > 2 * entryCount.get() + 16) {
+			for (final Iterator<Node<K, V>> iterator = clock.iterator(); iterator.hasNext();) {
+				if (iterator.next().removed) {
+					iterator.remove();
+					clockSize.decrementAndGet();
+				}
+			}
+		}
+	}
+
+	private static final class Node<K, V> {
+		private final K key;
+		private final V value;
+		private final long weight;
+		private final long writeTime;
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+		private volatile boolean referenced;
+		private volatile boolean removed;
+
+		Node(final K key, final V value, final long weight, final long writeTime) {
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+			this.writeTime = writeTime;
+		}
+
+		void markReferenced() {
+			// avoid writing the shared flag if not necessary
+			if (!referenced) {
+				referenced = true;
+			}
+		}
+
+		boolean clearReferenced() {
+			if (referenced) {
+				referenced = false;
+				return true;
+			}
+			return false;
+		}
+	}
+
+	private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+		@Override
+		public Iterator<Map.Entry<K, V>> iterator() {
+			final Iterator<Node<K, V>> nodes = map.values().iterator();
+			return new Iterator<Map.Entry<K, V>>() {
+				private Node<K, V> current;
+
+				@Override
+				public boolean hasNext() {
+					return nodes.hasNext();
+				}
+
+				@Override
+				public Map.Entry<K, V> next() {
+					current = nodes.next();
+					return new SimpleImmutableEntry<K, V>(current.key, current.value);
+				}
+
+				@Override
+				public void remove() {
+					if (current == null) {
+						throw new IllegalStateException();
+					}
+					ConcurrentClockCache.this.remove(current.key, current.value);
+					current = null;
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return map.size();
+		}
+
+		@Override
+		public void clear() {
+			ConcurrentClockCache.this.clear();
+		}
+	}
+}
@@ -0,0 +1,479 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.common.datastructure;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.jeconfig.api.cache.CacheEvictionListener;
+import org.jeconfig.api.cache.CachePolicy;
+import org.jeconfig.api.cache.ConfigSizeEstimator;
+import org.jeconfig.api.cache.EvictionCause;
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.api.scope.Scope;
+import org.jeconfig.api.scope.ScopePath;
+import org.jeconfig.api.util.Assert;
+
+/**
+ * Caches configuration DTOs per scope path according to a {@link CachePolicy}.<br>
+ * The cache also remembers scope paths without a configuration; their entries hold <code>null</code>.<br>
+ * <br>
+ * Concurrent misses for the same scope path are coalesced (see {@link #get(ScopePath, ConfigLoader)}):
+ * only one thread loads the configuration, the other threads wait for its result.<br>
+ * <br>
+ * The cached scope paths are indexed, so the configurations of a scope path and its children or of all
+ * scope paths containing a specific scope can be invalidated without clearing the whole cache.<br>
+ * <br>
+ * This class is thread-safe.
+ */
+public final class ConfigDTOCache {
+	/** The estimated size of an entry without the DTO (key, node and cache entry). */
+	private static final long ENTRY_OVERHEAD = 128;
+
+	private final ConcurrentMap<ScopePath, LoadTask> loadsInProgress = new ConcurrentHashMap<ScopePath, LoadTask>();
+	/** Contains at least all cached scope paths (see {@link #unindex(ScopePath)}). */
+	private final ScopePathIndex index = new ScopePathIndex();
+	private volatile CachePolicy policy;
+	private volatile ConcurrentClockCache<ScopePath, CacheEntry<ComplexConfigDTO>> cache;
+
+	public ConfigDTOCache(final CachePolicy policy) {
+		setPolicy(policy);
+	}
+
+	/**
+	 * Sets a new policy. All cached configurations are dropped.
+	 * 
+	 * @param policy
+	 */
+	public void setPolicy(final CachePolicy policy) {
+		Assert.paramNotNull(policy, "policy"); //$NON-NLS-1$
+		this.policy = policy;
+		cache = createCache(policy);
+		reindex();
+	}
+
+	public CachePolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * @param scopePath
+	 * @return the cache entry or <code>null</code> if the scope path is not cached
+	 */
+	public CacheEntry<ComplexConfigDTO> get(final ScopePath scopePath) {
+		return cache.get(scopePath);
+	}
+
+	/**
+	 * Gets the configuration of the scope path from the cache or loads it with the given loader
+	 * and caches it. If the policy demands a refresh of the cached configuration, it is reloaded.<br>
+	 * If multiple threads miss the same scope path at the same time, only one of them calls the loader
+	 * and the others wait for the result. A failure of the loader is rethrown in all waiting threads.
+	 * 
+	 * @param scopePath
+	 * @param loader
+	 * @return the cache entry; never <code>null</code>
+	 */
+	public CacheEntry<ComplexConfigDTO> get(final ScopePath scopePath, final ConfigLoader loader) {
+		final CacheEntry<ComplexConfigDTO> result = cache.get(scopePath);
+		if (result != null) {
+			if (cache.tryStartRefresh(scopePath)) {
+				return load(scopePath, loader, true);
+			}
+			return result;
+		}
+		return load(scopePath, loader, false);
+	}
+
+	private CacheEntry<ComplexConfigDTO> load(final ScopePath scopePath, final ConfigLoader loader, final boolean refresh) {
+		final LoadTask task = new LoadTask(scopePath, loader, refresh);
+		final LoadTask loadInProgress = loadsInProgress.putIfAbsent(scopePath, task);
+		if (loadInProgress != null) {
+			return loadInProgress.getResult();
+		}
+		try {
+			task.run();
+		} finally {
+			loadsInProgress.remove(scopePath, task);
+		}
+		return task.getResult();
+	}
+
+	/**
+	 * Gets the configurations of the scope paths from the cache and loads all missing configurations
+	 * with one call of the given loader. Concurrent loads of the same scope paths are coalesced
+	 * like in {@link #get(ScopePath, ConfigLoader)}.
+	 * 
+	 * @param scopePaths
+	 * @param loader
+	 * @return the cache entries in the iteration order of the scope paths; never <code>null</code>
+	 */
+	public Map<ScopePath, CacheEntry<ComplexConfigDTO>> getAll(final Collection<ScopePath> scopePaths, final BulkConfigLoader loader) {
+		final Map<ScopePath, CacheEntry<ComplexConfigDTO>> cached = new LinkedHashMap<ScopePath, CacheEntry<ComplexConfigDTO>>();
+		final Map<ScopePath, LoadTask> ownLoads = new LinkedHashMap<ScopePath, LoadTask>();
+		final Map<ScopePath, LoadTask> foreignLoads = new LinkedHashMap<ScopePath, LoadTask>();
+		final PrefetchedConfigLoader prefetchedLoader = new PrefetchedConfigLoader();
+
+		final Collection<ScopePath> uniqueScopePaths = new LinkedHashSet<ScopePath>(scopePaths);
+		for (final ScopePath scopePath : uniqueScopePaths) {
+			final CacheEntry<ComplexConfigDTO> entry = cache.get(scopePath);
+			if (entry != null && !cache.tryStartRefresh(scopePath)) {
+				cached.put(scopePath, entry);
+			} else {
+				final LoadTask task = new LoadTask(scopePath, prefetchedLoader, entry != null);
+				final LoadTask loadInProgress = loadsInProgress.putIfAbsent(scopePath, task);
+				if (loadInProgress != null) {
+					foreignLoads.put(scopePath, loadInProgress);
+				} else {
+					ownLoads.put(scopePath, task);
+				}
+			}
+		}
+
+		if (!ownLoads.isEmpty()) {
+			try {
+				prefetchedLoader.configs = loader.load(ownLoads.keySet());
+			} catch (final RuntimeException e) {
+				prefetchedLoader.failure = e;
+			} catch (final Error e) {
+				prefetchedLoader.failure = e;
+			} finally {
+				// complete all own loads, otherwise threads waiting for them would block forever
+				for (final Map.Entry<ScopePath, LoadTask> entry : ownLoads.entrySet()) {
+					try {
+						entry.getValue().run();
+					} finally {
+						loadsInProgress.remove(entry.getKey(), entry.getValue());
+					}
+				}
+			}
+		}
+
+		final Map<ScopePath, CacheEntry<ComplexConfigDTO>> result = new LinkedHashMap<ScopePath, CacheEntry<ComplexConfigDTO>>();
+		for (final ScopePath scopePath : uniqueScopePaths) {
+			if (cached.containsKey(scopePath)) {
+				result.put(scopePath, cached.get(scopePath));
+			} else if (ownLoads.containsKey(scopePath)) {
+				result.put(scopePath, ownLoads.get(scopePath).getResult());
+			} else {
+				result.put(scopePath, foreignLoads.get(scopePath).getResult());
+			}
+		}
+		return result;
+	}
+
+	public void put(final ScopePath scopePath, final CacheEntry<ComplexConfigDTO> entry) {
+		discardLoadInProgress(scopePath);
+		cache.put(scopePath, entry);
+		index.add(scopePath);
+	}
+
+	public void remove(final ScopePath scopePath) {
+		discardLoadInProgress(scopePath);
+		cache.remove(scopePath);
+		unindex(scopePath);
+	}
+
+	/**
+	 * Removes the configuration of the scope path and optionally the configurations
+	 * of all scope paths starting with it.
+	 * 
+	 * @param scopePath
+	 * @param withChildren
+	 */
+	public void invalidate(final ScopePath scopePath, final boolean withChildren) {
+		if (!withChildren) {
+			remove(scopePath);
+			return;
+		}
+		for (final ScopePath path : loadsInProgress.keySet()) {
+			if (path.startsPathWith(scopePath)) {
+				discardLoadInProgress(path);
+			}
+		}
+		for (final ScopePath path : index.getPathsStartingWith(scopePath)) {
+			remove(path);
+		}
+	}
+
+	/**
+	 * Removes the configurations of all scope paths which contain a scope with the given name
+	 * and all of the given properties.
+	 * 
+	 * @param scopeName
+	 * @param properties if <code>null</code> all scopes with the name match
+	 */
+	public void invalidateAllOccurences(final String scopeName, final Map<String, String> properties) {
+		for (final ScopePath path : loadsInProgress.keySet()) {
+			if (containsScope(path, scopeName, properties)) {
+				discardLoadInProgress(path);
+			}
+		}
+		for (final ScopePath path : index.getPathsContaining(scopeName, properties)) {
+			remove(path);
+		}
+	}
+
+	public void clear() {
+		for (final ScopePath scopePath : loadsInProgress.keySet()) {
+			discardLoadInProgress(scopePath);
+		}
+		cache.clear();
+		reindex();
+	}
+
+	private static boolean containsScope(final ScopePath scopePath, final String scopeName, final Map<String, String> properties) {
+		for (final Scope scope : scopePath.getScopes()) {
+			if (scope.getName().equals(scopeName) && (properties == null || scope.containsAllProperties(properties))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes the scope path from the index unless it is still cached.<br>
+	 * Scope paths are added to the index after they were put into the cache and removed from
+	 * the index before the cache is checked. Therefore a concurrent put can't get lost and the
+	 * index always contains all cached scope paths.
+	 */
+	private void unindex(final ScopePath scopePath) {
+		index.remove(scopePath);
+		if (cache.containsKey(scopePath)) {
+			index.add(scopePath);
+		}
+	}
+
+	private void reindex() {
+		index.clear();
+		for (final ScopePath scopePath : cache.keySet()) {
+			index.add(scopePath);
+		}
+	}
+
+	/**
+	 * Prevents a running load from putting its (possibly outdated) result into the cache.
+	 * Threads which are already waiting for the load still get its result; new requests start a new load.<br>
+	 * If the load is just putting its result, this waits until it's done, so the caller's following
+	 * put or remove can't be overwritten by the load.
+	 */
+	private void discardLoadInProgress(final ScopePath scopePath) {
+		final LoadTask task = loadsInProgress.remove(scopePath);
+		if (task != null) {
+			task.discard();
+		}
+	}
+
+	/**
+	 * @return the number of cached scope paths
+	 */
+	public int size() {
+		return cache.size();
+	}
+
+	/**
+	 * @return the estimated size of all entries in bytes if the cache is bounded by bytes;
+	 *         otherwise the number of entries
+	 */
+	public long getWeight() {
+		return cache.getTotalWeight();
+	}
+
+	private ConcurrentClockCache<ScopePath, CacheEntry<ComplexConfigDTO>> createCache(final CachePolicy policy) {
+		final long maxWeight;
+		final Weigher<ScopePath, CacheEntry<ComplexConfigDTO>> weigher;
+		if (policy.isBoundedByBytes()) {
+			maxWeight = policy.getMaxBytes();
+			weigher = new DTOSizeWeigher(policy.getSizeEstimator());
+		} else {
+			maxWeight = policy.getMaxEntries();
+			weigher = null;
+		}
+
+		return new ConcurrentClockCache<ScopePath, CacheEntry<ComplexConfigDTO>>(
+			maxWeight,
+			weigher,
+			toNanos(policy.getExpireAfterWriteMillis()),
+			toNanos(policy.getRefreshAfterWriteMillis()),
+			new EvictionListenerAdapter(policy.getEvictionListeners()));
+	}
+
+	private static long toNanos(final long millis) {
+		return millis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+	/**
+	 * Loads the configuration of a scope path on a cache miss.
+	 */
+	public interface ConfigLoader {
+
+		/**
+		 * @param scopePath
+		 * @return the configuration or <code>null</code> if none exists
+		 */
+		ComplexConfigDTO load(ScopePath scopePath);
+	}
+
+	/**
+	 * Loads the configurations of many scope paths on cache misses.
+	 */
+	public interface BulkConfigLoader {
+
+		/**
+		 * @param scopePaths
+		 * @return the configurations by scope path; the configuration is <code>null</code> or missing if none exists
+		 */
+		Map<ScopePath, ComplexConfigDTO> load(Collection<ScopePath> scopePaths);
+	}
+
+	/**
+	 * Serves the result of a bulk load to the load tasks of the single scope paths.
+	 * Only used by the thread which performed the bulk load.
+	 */
+	private static final class PrefetchedConfigLoader implements ConfigLoader {
+		private Map<ScopePath, ComplexConfigDTO> configs;
+		private Throwable failure;
+
+		@Override
+		public ComplexConfigDTO load(final ScopePath scopePath) {
+			if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			}
+			if (failure instanceof Error) {
+				throw (Error) failure;
+			}
+			return configs.get(scopePath);
+		}
+	}
+
+	private final class LoadTask implements Callable<CacheEntry<ComplexConfigDTO>> {
+		private final ScopePath scopePath;
+		private final ConfigLoader loader;
+		private final boolean refresh;
+		private final FutureTask<CacheEntry<ComplexConfigDTO>> future;
+		/** Guarded by this, so the check and the update of the cache are atomic with respect to a discard. */
+		private boolean discarded;
+
+		LoadTask(final ScopePath scopePath, final ConfigLoader loader, final boolean refresh) {
+			this.scopePath = scopePath;
+			this.loader = loader;
+			this.refresh = refresh;
+			future = new FutureTask<CacheEntry<ComplexConfigDTO>>(this);
+		}
+
+		@Override
+		public CacheEntry<ComplexConfigDTO> call() {
+			try {
+				final CacheEntry<ComplexConfigDTO> result = new CacheEntry<ComplexConfigDTO>(loader.load(scopePath));
+				synchronized (this) {
+					if (!discarded) {
+						cache.put(scopePath, result);
+						index.add(scopePath);
+					}
+				}
+				return result;
+			} catch (final RuntimeException e) {
+				synchronized (this) {
+					if (refresh && !discarded) {
+						// don't keep the outdated configuration; the next access will try to load it again
+						cache.remove(scopePath);
+					}
+				}
+				throw e;
+			}
+		}
+
+		synchronized void discard() {
+			discarded = true;
+		}
+
+		void run() {
+			future.run();
+		}
+
+		CacheEntry<ComplexConfigDTO> getResult() {
+			try {
+				return future.get();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while waiting for the configuration of scope path: " + scopePath, e); //$NON-NLS-1$
+			} catch (final ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+
+	private static final class DTOSizeWeigher implements Weigher<ScopePath, CacheEntry<ComplexConfigDTO>> {
+		private final ConfigSizeEstimator sizeEstimator;
+
+		DTOSizeWeigher(final ConfigSizeEstimator sizeEstimator) {
+			this.sizeEstimator = sizeEstimator;
+		}
+
+		@Override
+		public long weigh(final ScopePath key, final CacheEntry<ComplexConfigDTO> value) {
+			final ComplexConfigDTO config = value.getElement();
+			if (config == null) {
+				return ENTRY_OVERHEAD;
+			}
+			return ENTRY_OVERHEAD + sizeEstimator.estimateSize(config);
+		}
+	}
+
+	private final class EvictionListenerAdapter implements EvictionListener<ScopePath, CacheEntry<ComplexConfigDTO>> {
+		private final List<CacheEvictionListener> listeners;
+
+		EvictionListenerAdapter(final List<CacheEvictionListener> listeners) {
+			this.listeners = listeners;
+		}
+
+		@Override
+		public void onEviction(final ScopePath key, final CacheEntry<ComplexConfigDTO> value, final EvictionCause cause) {
+			unindex(key);
+			for (final CacheEvictionListener listener : listeners) {
+				listener.configEvicted(key, value.getElement(), cause);
+			}
+		}
+	}
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.common.datastructure;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jeconfig.api.scope.Scope;
+import org.jeconfig.api.scope.ScopePath;
+import org.jeconfig.api.util.Assert;
+
+/**
+ * Index over a set of scope paths which finds the paths below a given path
+ * and the paths containing a scope with a given name efficiently.<br>
+ * <br>
+ * The paths are stored in a trie keyed by the scopes (name and properties) of the path.
+ * Additionally the paths are indexed by the names of their scopes and by the properties of their scopes.<br>
+ * <br>
+ * This class is thread-safe.
+ */
+public final class ScopePathIndex {
+	private final Node root = new Node(null, null);
+	private final Map<String, Set<ScopePath>> pathsByScopeName = new HashMap<String, Set<ScopePath>>();
+	private final Map<ScopeProperty, Set<ScopePath>> pathsByScopeProperty = new HashMap<ScopeProperty, Set<ScopePath>>();
+	private int size;
+
+	/**
+	 * Adds a scope path to the index.
+	 * 
+	 * @param scopePath
+	 */
+	public synchronized void add(final ScopePath scopePath) {
+		Assert.paramNotNull(scopePath, "scopePath"); //$NON-NLS-1$
+		Node node = root;
+		for (final Scope scope : scopePath.getScopes()) {
+			node = node.getOrCreateChild(scope);
+		}
+		if (node.path != null) {
+			return;
+		}
+		node.path = scopePath;
+		size++;
+
+		for (final Scope scope : scopePath.getScopes()) {
+			addToIndex(pathsByScopeName, scope.getName(), scopePath);
+			for (final Map.Entry<String, String> property : scope.getProperties().entrySet()) {
+				addToIndex(pathsByScopeProperty, new ScopeProperty(scope.getName(), property), scopePath);
+			}
+		}
+	}
+
+	/**
+	 * Removes a scope path from the index.
+	 * 
+	 * @param scopePath
+	 */
+	public synchronized void remove(final ScopePath scopePath) {
+		final Node node = find(scopePath);
+		if (node == null || node.path == null) {
+			return;
+		}
+		node.path = null;
+		size--;
+		node.pruneIfEmpty();
+
+		for (final Scope scope : scopePath.getScopes()) {
+			removeFromIndex(pathsByScopeName, scope.getName(), scopePath);
+			for (final Map.Entry<String, String> property : scope.getProperties().entrySet()) {
+				removeFromIndex(pathsByScopeProperty, new ScopeProperty(scope.getName(), property), scopePath);
+			}
+		}
+	}
+
+	private static <K> void addToIndex(final Map<K, Set<ScopePath>> index, final K key, final ScopePath scopePath) {
+		Set<ScopePath> paths = index.get(key);
+		if (paths == null) {
+			paths = new HashSet<ScopePath>();
+			index.put(key, paths);
+		}
+		paths.add(scopePath);
+	}
+
+	private static <K> void removeFromIndex(final Map<K, Set<ScopePath>> index, final K key, final ScopePath scopePath) {
+		final Set<ScopePath> paths = index.get(key);
+		if (paths != null) {
+			paths.remove(scopePath);
+			if (paths.isEmpty()) {
+				index.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * @param scopePath
+	 * @return <code>true</code> if the index contains the scope path
+	 */
+	public synchronized boolean contains(final ScopePath scopePath) {
+		final Node node = find(scopePath);
+		return node != null && node.path != null;
+	}
+
+	/**
+	 * Provides the given scope path (if indexed) and all indexed scope paths starting with it.
+	 * 
+	 * @param scopePath
+	 * @return a new collection
+	 */
+	public synchronized Collection<ScopePath> getPathsStartingWith(final ScopePath scopePath) {
+		final List<ScopePath> result = new ArrayList<ScopePath>();
+		final Node node = find(scopePath);
+		if (node != null) {
+			node.collectPaths(result);
+		}
+		return result;
+	}
+
+	/**
+	 * Provides all indexed scope paths which contain a scope with the given name
+	 * which has all of the given properties.
+	 * 
+	 * @param scopeName
+	 * @param properties the properties the scope must contain; if <code>null</code> all scopes with the name match
+	 * @return a new collection
+	 */
+	public synchronized Collection<ScopePath> getPathsContaining(final String scopeName, final Map<String, String> properties) {
+		final List<ScopePath> result = new ArrayList<ScopePath>();
+		if (properties == null || properties.isEmpty()) {
+			final Set<ScopePath> paths = pathsByScopeName.get(scopeName);
+			if (paths != null) {
+				result.addAll(paths);
+			}
+			return result;
+		}
+
+		final List<Set<ScopePath>> pathsByProperty = new ArrayList<Set<ScopePath>>(properties.size());
+		Set<ScopePath> smallest = null;
+		for (final Map.Entry<String, String> property : properties.entrySet()) {
+			final Set<ScopePath> paths = pathsByScopeProperty.get(new ScopeProperty(scopeName, property));
+			if (paths == null) {
+				return result;
+			}
+			pathsByProperty.add(paths);
+			if (smallest == null || paths.size() < smallest.size()) {
+				smallest = paths;
+			}
+		}
+		for (final ScopePath path : smallest) {
+			// the properties may be spread over several scopes with the name, so a single scope must contain all
+			if (containsPathInAll(pathsByProperty, path) && containsScope(path, scopeName, properties)) {
+				result.add(path);
+			}
+		}
+		return result;
+	}
+
+	private boolean containsPathInAll(final List<Set<ScopePath>> pathSets, final ScopePath path) {
+		for (final Set<ScopePath> paths : pathSets) {
+			if (!paths.contains(path)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean containsScope(final ScopePath path, final String scopeName, final Map<String, String> properties) {
+		for (final Scope scope : path.getScopes()) {
+			if (scope.getName().equals(scopeName) && scope.containsAllProperties(properties)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the number of indexed scope paths
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	public synchronized void clear() {
+		root.children = null;
+		pathsByScopeName.clear();
+		pathsByScopeProperty.clear();
+		size = 0;
+	}
+
+	private Node find(final ScopePath scopePath) {
+		Node node = root;
+		for (final Scope scope : scopePath.getScopes()) {
+			node = node.getChild(scope);
+			if (node == null) {
+				return null;
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * A property of a scope with the given name; the key of the property index.
+	 */
+	private static final class ScopeProperty {
+		private final String scopeName;
+		private final String key;
+		private final String value;
+
+		ScopeProperty(final String scopeName, final Map.Entry<String, String> property) {
+			this.scopeName = scopeName;
+			this.key = property.getKey();
+			this.value = property.getValue();
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = scopeName.hashCode();
+			result = prime * result + (key == null ? 0 : key.hashCode());
+			result = prime * result + (value == null ? 0 : value.hashCode());
+			return result;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ScopeProperty)) {
+				return false;
+			}
+			final ScopeProperty other = (ScopeProperty) obj;
+			return scopeName.equals(other.scopeName) && equal(key, other.key) && equal(value, other.value);
+		}
+
+		private static boolean equal(final String s1, final String s2) {
+			return s1 == null ? s2 == null : s1.equals(s2);
+		}
+	}
+
+	private static final class Node {
+		private final Node parent;
+		private final Scope scope;
+		private Map<Scope, Node> children;
+		private ScopePath path;
+
+		Node(final Node parent, final Scope scope) {
+			this.parent = parent;
+			this.scope = scope;
+		}
+
+		Node getChild(final Scope childScope) {
+			return children != null ? children.get(childScope) : null;
+		}
+
+		Node getOrCreateChild(final Scope childScope) {
+			if (children == null) {
+				children = new HashMap<Scope, Node>(4);
+			}
+			Node child = children.get(childScope);
+			if (child == null) {
+				child = new Node(this, childScope);
+				children.put(childScope, child);
+			}
+			return child;
+		}
+
+		void pruneIfEmpty() {
+			Node node = this;
+			while (node.parent != null && node.path == null && (node.children == null || node.children.isEmpty())) {
+				node.parent.children.remove(node.scope);
+				node = node.parent;
+			}
+		}
+
+		void collectPaths(final List<ScopePath> result) {
+			if (path != null) {
+				result.add(path);
+			}
+			if (children != null) {
+				for (final Node child : children.values()) {
+					child.collectPaths(result);
+				}
+			}
+		}
+	}
+}
@@ -32,6 +32,7 @@ import java.lang.reflect.Method;
 import java.util.Collection;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.jeconfig.api.util.Assert;
 import org.jeconfig.common.reflection.internal.ClassPropertyAccessor;
 
 /**
@@ -40,9 +41,24 @@ import org.jeconfig.common.reflection.internal.ClassPropertyAccessor;
 public final class PropertyAccessor {
 	/** The cached class property readers. Synchronized. */
 	private final ConcurrentHashMap<Class<?>, ClassPropertyAccessor<?>> accessors;
+	private final PropertyAccessStrategy accessStrategy;
 
+	/**
+	 * Creates a new property accessor which uses reflection to access the properties.
+	 */
 	public PropertyAccessor() {
+		this(new ReflectionPropertyAccessStrategy());
+	}
+
+	/**
+	 * Creates a new property accessor.
+	 * 
+	 * @param accessStrategy creates the accessors used to read and write the properties
+	 */
+	public PropertyAccessor(final PropertyAccessStrategy accessStrategy) {
+		Assert.paramNotNull(accessStrategy, "accessStrategy"); //$NON-NLS-1$
 		accessors = new ConcurrentHashMap<Class<?>, ClassPropertyAccessor<?>>();
+		this.accessStrategy = accessStrategy;
 	}
 
 	/**
@@ -56,6 +72,17 @@ public final class PropertyAccessor {
 		return getAccessor(bean.getClass()).read(bean, propertyName);
 	}
 
+	/**
+	 * Reads the property with the specified index of the specified bean.
+	 * 
+	 * @param bean
+	 * @param propertyIndex the index of the property, see {@link #getPropertyIndex(Class, String)}
+	 * @return the specified property of the specified bean
+	 */
+	public Object read(final Object bean, final int propertyIndex) {
+		return getAccessor(bean.getClass()).read(bean, propertyIndex);
+	}
+
 	/**
 	 * Writes the specified property of the specified bean.
 	 * 
@@ -67,6 +94,29 @@ public final class PropertyAccessor {
 		getAccessor(bean.getClass()).write(bean, propertyName, param);
 	}
 
+	/**
+	 * Writes the property with the specified index of the specified bean.
+	 * 
+	 * @param bean
+	 * @param propertyIndex the index of the property, see {@link #getPropertyIndex(Class, String)}
+	 * @param param
+	 */
+	public void write(final Object bean, final int propertyIndex, final Object param) {
+		getAccessor(bean.getClass()).write(bean, propertyIndex, param);
+	}
+
+	/**
+	 * Returns the index of the specified property of the specified class. The index is only
+	 * valid for beans of exactly this class.
+	 * 
+	 * @param beanClass
+	 * @param propertyName
+	 * @return the index of the property or <code>-1</code> if the class has no such property
+	 */
+	public int getPropertyIndex(final Class<?> beanClass, final String propertyName) {
+		return getAccessor(beanClass).getPropertyIndex(propertyName);
+	}
+
 	/**
 	 * Returns the type of the specified property of the specified class.
 	 * 
@@ -104,7 +154,7 @@ public final class PropertyAccessor {
 	private ClassPropertyAccessor<Object> getAccessor(final Class<?> beanClass) {
 		ClassPropertyAccessor<?> accessor = accessors.get(beanClass);
 		if (accessor == null) {
-			accessor = new ClassPropertyAccessor<Object>((Class<Object>) beanClass);
+			accessor = new ClassPropertyAccessor<Object>((Class<Object>) beanClass, accessStrategy);
 			accessors.putIfAbsent(beanClass, accessor);
 
 			// request the accessor again to ensure that only the instance in the map is used
@@ -31,13 +31,18 @@ import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.jeconfig.api.util.Assert;
+import org.jeconfig.common.reflection.IndexedPropertyAccessor;
+import org.jeconfig.common.reflection.PropertyAccessStrategy;
+import org.jeconfig.common.reflection.ReflectionPropertyAccessStrategy;
 
 /**
  * This class is thread-safe.
@@ -45,27 +50,62 @@ import org.jeconfig.api.util.Assert;
  * @param <T>
  */
 public class ClassPropertyAccessor<T> {
-	/** The cached single property descriptors. */
-	private final ConcurrentHashMap<String, PropertyDescriptor> propertyDescriptors;
+	/** The property descriptors sorted by name; the position is the index of the property. */
+	private final PropertyDescriptor[] properties;
+	/** The indices of the properties by name. Not modified after construction. */
+	private final Map<String, Integer> propertyIndices;
+	private final IndexedPropertyAccessor accessor;
 
 	/**
-	 * Creates a new ClassPropertyReader.
+	 * Creates a new ClassPropertyReader which uses reflection to access the properties.
 	 * 
 	 * @param beanClass
 	 */
 	public ClassPropertyAccessor(final Class<T> beanClass) {
-		Assert.paramNotNull(beanClass, "beanClass"); //$NON-NLS-1$
+		this(beanClass, new ReflectionPropertyAccessStrategy());
+	}
 
-		propertyDescriptors = new ConcurrentHashMap<String, PropertyDescriptor>();
+	/**
+	 * Creates a new ClassPropertyReader.
+	 * 
+	 * @param beanClass
+	 * @param accessStrategy creates the accessor used to read and write the properties
+	 */
+	public ClassPropertyAccessor(final Class<T> beanClass, final PropertyAccessStrategy accessStrategy) {
+		Assert.paramNotNull(beanClass, "beanClass"); //$NON-NLS-1$
+		Assert.paramNotNull(accessStrategy, "accessStrategy"); //$NON-NLS-1$
 
 		try {
 			final BeanInfo info = Introspector.getBeanInfo(beanClass);
-			for (final PropertyDescriptor propertyDescriptor : info.getPropertyDescriptors()) {
-				propertyDescriptors.put(propertyDescriptor.getName(), propertyDescriptor);
-			}
+			properties = info.getPropertyDescriptors().clone();
 		} catch (final IntrospectionException e) {
 			throw new RuntimeException(e);
 		}
+
+		Arrays.sort(properties, new Comparator<PropertyDescriptor>() {
+			@Override
+			public int compare(final PropertyDescriptor o1, final PropertyDescriptor o2) {
+				return o1.getName().compareTo(o2.getName());
+			}
+		});
+		propertyIndices = new HashMap<String, Integer>();
+		for (int i = 0; i < properties.length; i++) {
+			propertyIndices.put(properties[i].getName(), Integer.valueOf(i));
+		}
+
+		accessor = accessStrategy.createAccessor(beanClass, properties.clone());
+	}
+
+	/**
+	 * Returns the index of the specified property which can be used to read and write
+	 * the property without looking it up by name.
+	 * 
+	 * @param propertyName
+	 * @return the index of the property or <code>-1</code> if the class has no such property
+	 */
+	public int getPropertyIndex(final String propertyName) {
+		final Integer index = propertyIndices.get(propertyName);
+		return index != null ? index.intValue() : -1;
 	}
 
 	/**
@@ -73,7 +113,7 @@ public class ClassPropertyAccessor<T> {
 	 * @return the getter to read the specified property
 	 */
 	public Method getReadMethod(final String propertyName) {
-		final PropertyDescriptor propertyDescriptor = propertyDescriptors.get(propertyName);
+		final PropertyDescriptor propertyDescriptor = getPropertyDescriptor(propertyName);
 		if (propertyDescriptor != null && propertyDescriptor.getReadMethod() != null) {
 			return propertyDescriptor.getReadMethod();
 		}
@@ -86,7 +126,7 @@ public class ClassPropertyAccessor<T> {
 	 * @return the setter to write the specified property
 	 */
 	public Method getWriteMethod(final String propertyName) {
-		final PropertyDescriptor propertyDescriptor = propertyDescriptors.get(propertyName);
+		final PropertyDescriptor propertyDescriptor = getPropertyDescriptor(propertyName);
 		if (propertyDescriptor != null && propertyDescriptor.getWriteMethod() != null) {
 			return propertyDescriptor.getWriteMethod();
 		}
@@ -103,13 +143,22 @@ public class ClassPropertyAccessor<T> {
 	 * @return the property of the specified bean
 	 */
 	public Object read(final T bean, final String propertyName) {
-		try {
-			return getReadMethod(propertyName).invoke(bean);
-		} catch (final IllegalAccessException e) {
-			throw new RuntimeException(e);
-		} catch (final InvocationTargetException e) {
-			throw new RuntimeException(e);
+		final int index = getPropertyIndex(propertyName);
+		if (index < 0) {
+			throw new IllegalArgumentException("Didn't find read method for property '" + propertyName + "'."); //$NON-NLS-1$//$NON-NLS-2$
 		}
+		return accessor.read(bean, index);
+	}
+
+	/**
+	 * Reads the property with the specified index of the specified bean.
+	 * 
+	 * @param bean
+	 * @param propertyIndex the index of the property, see {@link #getPropertyIndex(String)}
+	 * @return the property of the specified bean
+	 */
+	public Object read(final T bean, final int propertyIndex) {
+		return accessor.read(bean, propertyIndex);
 	}
 
 	/**
@@ -120,16 +169,22 @@ public class ClassPropertyAccessor<T> {
 	 * @param param
 	 */
 	public void write(final T bean, final String propertyName, final Object param) {
-		try {
-			getWriteMethod(propertyName).invoke(bean, param);
-		} catch (final IllegalAccessException e) {
-			throw new RuntimeException(e);
-		} catch (final InvocationTargetException e) {
-			if (e.getTargetException() instanceof RuntimeException) {
-				throw (RuntimeException) e.getTargetException();
-			}
-			throw new RuntimeException(e);
+		final int index = getPropertyIndex(propertyName);
+		if (index < 0) {
+			throw new IllegalArgumentException("Didn't find write method for property '" + propertyName + "'."); //$NON-NLS-1$//$NON-NLS-2$
 		}
+		accessor.write(bean, index, param);
+	}
+
+	/**
+	 * Writes the property with the specified index of the specified bean.
+	 * 
+	 * @param bean
+	 * @param propertyIndex the index of the property, see {@link #getPropertyIndex(String)}
+	 * @param param
+	 */
+	public void write(final T bean, final int propertyIndex, final Object param) {
+		accessor.write(bean, propertyIndex, param);
 	}
 
 	/**
@@ -146,6 +201,11 @@ public class ClassPropertyAccessor<T> {
 	 * @return the propertyDescriptors
 	 */
 	public Set<PropertyDescriptor> getPropertyDescriptors() {
-		return new HashSet<PropertyDescriptor>(propertyDescriptors.values());
+		return new HashSet<PropertyDescriptor>(Arrays.asList(properties));
+	}
+
+	private PropertyDescriptor getPropertyDescriptor(final String propertyName) {
+		final int index = getPropertyIndex(propertyName);
+		return index >= 0 ? properties[index] : null;
 	}
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.common.reflection.internal;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.jeconfig.common.reflection.IndexedPropertyAccessor;
+
+/**
+ * Invokes the getters and setters of the properties using reflection.
+ * The methods are resolved once and made accessible if possible.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class ReflectionIndexedPropertyAccessor implements IndexedPropertyAccessor {
+	private final String[] names;
+	private final Method[] readMethods;
+	private final Method[] writeMethods;
+
+	public ReflectionIndexedPropertyAccessor(final PropertyDescriptor[] properties) {
+		names = new String[properties.length];
+		readMethods = new Method[properties.length];
+		writeMethods = new Method[properties.length];
+
+		for (int i = 0; i < properties.length; i++) {
+			names[i] = properties[i].getName();
+			readMethods[i] = makeAccessible(properties[i].getReadMethod());
+			writeMethods[i] = makeAccessible(properties[i].getWriteMethod());
+		}
+	}
+
+	private Method makeAccessible(final Method method) {
+		if (method != null) {
+			try {
+				method.setAccessible(true);
+			} catch (final SecurityException e) {
+				// the method is invoked with access checks then
+			}
+		}
+		return method;
+	}
+
+	@Override
+	public Object read(final Object bean, final int propertyIndex) {
+		final Method readMethod = readMethods[propertyIndex];
+		if (readMethod == null) {
+			throw new IllegalArgumentException("Didn't find read method for property '" + names[propertyIndex] + "'."); //$NON-NLS-1$//$NON-NLS-2$
+		}
+
+		try {
+			return readMethod.invoke(bean);
+		} catch (final IllegalAccessException e) {
+			throw new RuntimeException(e);
+		} catch (final InvocationTargetException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void write(final Object bean, final int propertyIndex, final Object value) {
+		final Method writeMethod = writeMethods[propertyIndex];
+		if (writeMethod == null) {
+			throw new IllegalArgumentException("Didn't find write method for property '" + names[propertyIndex] + "'."); //$NON-NLS-1$//$NON-NLS-2$
+		}
+
+		try {
+			writeMethod.invoke(bean, value);
+		} catch (final IllegalAccessException e) {
+			throw new RuntimeException(e);
+		} catch (final InvocationTargetException e) {
+			if (e.getTargetException() instanceof RuntimeException) {
+				throw (RuntimeException) e.getTargetException();
+			}
+			throw new RuntimeException(e);
+		}
+	}
+}
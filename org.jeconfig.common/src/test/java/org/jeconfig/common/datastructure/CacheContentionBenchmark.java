@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.common.datastructure;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Simple benchmark which compares the throughput of a synchronized {@link LRUCache}
+ * with the {@link ConcurrentClockCache} under contention.<br>
+ * <br>
+ * This is not a unit test; run it manually with the main method.
+ */
+public final class CacheContentionBenchmark {
+	private static final int CACHE_SIZE = 400;
+	private static final int KEY_COUNT = 1000;
+	private static final int OPERATIONS = 2000000;
+	private static final int[] THREAD_COUNTS = {1, 8, 64};
+
+	private CacheContentionBenchmark() {}
+
+	public static void main(final String[] args) throws Exception {
+		// warm up
+		for (int i = 0; i < 3; i++) {
+			run(createSynchronizedLRUCache(), 8);
+			run(new ConcurrentClockCache<Integer, Integer>(CACHE_SIZE), 8);
+		}
+
+		for (final int threadCount : THREAD_COUNTS) {
+			final long lruNanos = run(createSynchronizedLRUCache(), threadCount);
+			final long clockNanos = run(new ConcurrentClockCache<Integer, Integer>(CACHE_SIZE), threadCount);
+			System.out.println(threadCount + " threads: synchronized LRUCache " + opsPerSecond(lruNanos) //$NON-NLS-1$
+				+ " ops/s, ConcurrentClockCache " + opsPerSecond(clockNanos) + " ops/s"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	private static Map<Integer, Integer> createSynchronizedLRUCache() {
+		return Collections.synchronizedMap(new LRUCache<Integer, Integer>(CACHE_SIZE));
+	}
+
+	private static long opsPerSecond(final long nanos) {
+		return OPERATIONS * 1000000000L / Math.max(1, nanos);
+	}
+
+	private static long run(final Map<Integer, Integer> cache, final int threadCount) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threadCount);
+		final int operationsPerThread = OPERATIONS / threadCount;
+
+		for (int t = 0; t < threadCount; t++) {
+			final Random random = new Random(t);
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < operationsPerThread; i++) {
+							// skewed access: most reads hit a small set of hot keys
+							final int bound = random.nextInt(10) < 8 ? CACHE_SIZE / 4 : KEY_COUNT;
+							final Integer key = Integer.valueOf(random.nextInt(bound));
+							if (cache.get(key) == null) {
+								cache.put(key, key);
+							}
+						}
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+
+		final long startTime = System.nanoTime();
+		start.countDown();
+		done.await();
+		return System.nanoTime() - startTime;
+	}
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.common.datastructure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jeconfig.api.cache.EvictionCause;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrentClockCacheTest {
+
+	@Test
+	public void testAutomaticRemove() {
+		final ConcurrentClockCache<Integer, CacheEntry<String>> cache = new ConcurrentClockCache<Integer, CacheEntry<String>>(2);
+		cache.put(Integer.valueOf(1), new CacheEntry<String>("test")); //$NON-NLS-1$
+		cache.put(Integer.valueOf(2), new CacheEntry<String>(null));
+		final CacheEntry<String> cacheEntry = cache.get(Integer.valueOf(1));
+
+		cache.put(Integer.valueOf(3), new CacheEntry<String>(null));
+
+		// because 1 was accessed after addition of 2, 2 must be removed
+		Assert.assertEquals("test", cacheEntry.getElement()); //$NON-NLS-1$
+		Assert.assertTrue(cache.containsKey(Integer.valueOf(1)));
+		Assert.assertFalse(cache.containsKey(Integer.valueOf(2)));
+		Assert.assertTrue(cache.containsKey(Integer.valueOf(3)));
+		Assert.assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testReplaceDoesNotEvict() {
+		final ConcurrentClockCache<Integer, String> cache = new ConcurrentClockCache<Integer, String>(2);
+		cache.put(Integer.valueOf(1), "a"); //$NON-NLS-1$
+		cache.put(Integer.valueOf(2), "b"); //$NON-NLS-1$
+		for (int i = 0; i < 100; i++) {
+			Assert.assertNotNull(cache.put(Integer.valueOf(1), "a" + i)); //$NON-NLS-1$
+		}
+
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals("a99", cache.get(Integer.valueOf(1))); //$NON-NLS-1$
+		Assert.assertEquals("b", cache.get(Integer.valueOf(2))); //$NON-NLS-1$
+	}
+
+	@Test
+	public void testConcurrentMapOperations() {
+		final ConcurrentClockCache<Integer, String> cache = new ConcurrentClockCache<Integer, String>(10);
+		Assert.assertNull(cache.putIfAbsent(Integer.valueOf(1), "a")); //$NON-NLS-1$
+		Assert.assertEquals("a", cache.putIfAbsent(Integer.valueOf(1), "b")); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertFalse(cache.replace(Integer.valueOf(1), "b", "c")); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertTrue(cache.replace(Integer.valueOf(1), "a", "c")); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertNull(cache.replace(Integer.valueOf(2), "x")); //$NON-NLS-1$
+		Assert.assertFalse(cache.remove(Integer.valueOf(1), "a")); //$NON-NLS-1$
+		Assert.assertTrue(cache.remove(Integer.valueOf(1), "c")); //$NON-NLS-1$
+		Assert.assertTrue(cache.isEmpty());
+	}
+
+	@Test
+	public void testIteratorRemove() {
+		final ConcurrentClockCache<Integer, String> cache = new ConcurrentClockCache<Integer, String>(10);
+		for (int i = 0; i < 5; i++) {
+			cache.put(Integer.valueOf(i), String.valueOf(i));
+		}
+		for (final Iterator<Integer> iterator = cache.keySet().iterator(); iterator.hasNext();) {
+			if (iterator.next().intValue() % 2 == 0) {
+				iterator.remove();
+			}
+		}
+		Assert.assertEquals(2, cache.size());
+		Assert.assertTrue(cache.containsKey(Integer.valueOf(1)));
+		Assert.assertTrue(cache.containsKey(Integer.valueOf(3)));
+
+		cache.clear();
+		Assert.assertTrue(cache.isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullValueNotAllowed() {
+		new ConcurrentClockCache<Integer, String>(1).put(Integer.valueOf(1), null);
+	}
+
+	@Test
+	public void testConcurrentAccessKeepsBound() throws Exception {
+		final int maxEntries = 50;
+		final ConcurrentClockCache<Integer, Integer> cache = new ConcurrentClockCache<Integer, Integer>(maxEntries);
+		final int threadCount = 8;
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threadCount);
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+		for (int t = 0; t < threadCount; t++) {
+			final int seed = t;
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = 0; i < 20000; i++) {
+							final Integer key = Integer.valueOf((i * 31 + seed) % 500);
+							final Integer value = cache.get(key);
+							if (value != null) {
+								Assert.assertEquals(key, value);
+							} else {
+								cache.put(key, key);
+							}
+						}
+					} catch (final Throwable e) {
+						error.compareAndSet(null, e);
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		start.countDown();
+		done.await();
+
+		Assert.assertNull(error.get());
+		Assert.assertTrue(cache.size() <= maxEntries);
+	}
+
+	@Test
+	public void testWeightBound() {
+		final List<String> evicted = new ArrayList<String>();
+		final ConcurrentClockCache<String, String> cache = new ConcurrentClockCache<String, String>(10, new Weigher<String, String>() {
+			@Override
+			public long weigh(final String key, final String value) {
+				return value.length();
+			}
+		}, -1, -1, new EvictionListener<String, String>() {
+			@Override
+			public void onEviction(final String key, final String value, final EvictionCause cause) {
+				Assert.assertEquals(EvictionCause.SIZE, cause);
+				evicted.add(key);
+			}
+		});
+
+		cache.put("a", "1234"); //$NON-NLS-1$ //$NON-NLS-2$
+		cache.put("b", "1234"); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals(8, cache.getTotalWeight());
+		Assert.assertTrue(evicted.isEmpty());
+
+		cache.put("c", "1234"); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals(Collections.singletonList("a"), evicted); //$NON-NLS-1$
+		Assert.assertEquals(8, cache.getTotalWeight());
+
+		cache.put("b", "1"); //$NON-NLS-1$ //$NON-NLS-2$
+		Assert.assertEquals(5, cache.getTotalWeight());
+	}
+
+	@Test
+	public void testExpireAfterWrite() throws InterruptedException {
+		final List<EvictionCause> causes = new ArrayList<EvictionCause>();
+		final ConcurrentClockCache<Integer, String> cache = new ConcurrentClockCache<Integer, String>(
+			10,
+			null,
+			TimeUnit.MILLISECONDS.toNanos(5),
+			-1,
+			new EvictionListener<Integer, String>() {
+				@Override
+				public void onEviction(final Integer key, final String value, final EvictionCause cause) {
+					causes.add(cause);
+				}
+			});
+		cache.put(Integer.valueOf(1), "a"); //$NON-NLS-1$
+		Assert.assertEquals("a", cache.get(Integer.valueOf(1))); //$NON-NLS-1$
+
+		Thread.sleep(20);
+		Assert.assertNull(cache.get(Integer.valueOf(1)));
+		Assert.assertTrue(cache.isEmpty());
+		Assert.assertEquals(Collections.singletonList(EvictionCause.EXPIRED), causes);
+	}
+
+	@Test
+	public void testRefreshAfterWrite() throws InterruptedException {
+		final ConcurrentClockCache<Integer, String> cache = new ConcurrentClockCache<Integer, String>(
+			10,
+			null,
+			-1,
+			TimeUnit.MILLISECONDS.toNanos(5),
+			null);
+		cache.put(Integer.valueOf(1), "a"); //$NON-NLS-1$
+		Assert.assertFalse(cache.tryStartRefresh(Integer.valueOf(1)));
+
+		Thread.sleep(20);
+		Assert.assertTrue(cache.tryStartRefresh(Integer.valueOf(1)));
+		// only one caller refreshes, the others still get the old value
+		Assert.assertFalse(cache.tryStartRefresh(Integer.valueOf(1)));
+		Assert.assertEquals("a", cache.get(Integer.valueOf(1))); //$NON-NLS-1$
+
+		cache.put(Integer.valueOf(1), "b"); //$NON-NLS-1$
+		Assert.assertFalse(cache.tryStartRefresh(Integer.valueOf(1)));
+	}
+}
@@ -0,0 +1,397 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.common.datastructure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jeconfig.api.cache.CachePolicy;
+import org.jeconfig.api.cache.ConfigSizeEstimator;
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.api.scope.ClassScopeDescriptor;
+import org.jeconfig.api.scope.CodeDefaultScopeDescriptor;
+import org.jeconfig.api.scope.Scope;
+import org.jeconfig.api.scope.ScopePath;
+import org.jeconfig.api.scope.ScopePathBuilder;
+import org.jeconfig.common.datastructure.ConfigDTOCache.BulkConfigLoader;
+import org.jeconfig.common.datastructure.ConfigDTOCache.ConfigLoader;
+import org.jeconfig.common.scope.InternalScopePathBuilderFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class ConfigDTOCacheTest {
+	private final ScopePath scopePath = createScopePath();
+	private final ConfigDTOCache cache = new ConfigDTOCache(CachePolicy.maxEntries(10));
+	private final ComplexConfigDTO slowConfig = new ComplexConfigDTO();
+	private final CountDownLatch slowConfigWeighed = new CountDownLatch(1);
+	private final CountDownLatch releaseSlowConfig = new CountDownLatch(1);
+	/** Blocks the put of {@link #slowConfig} into the cache until {@link #releaseSlowConfig} is released. */
+	private final ConfigSizeEstimator slowEstimator = new ConfigSizeEstimator() {
+		@Override
+		public long estimateSize(final ComplexConfigDTO config) {
+			if (config == slowConfig) {
+				slowConfigWeighed.countDown();
+				await(releaseSlowConfig);
+			}
+			return 1;
+		}
+	};
+	private final ConfigDTOCache slowCache = new ConfigDTOCache(new CachePolicy.Builder().maxBytes(1024 * 1024, slowEstimator).create());
+
+	@Test
+	public void testConcurrentMissesAreCoalesced() throws Exception {
+		final ComplexConfigDTO config = new ComplexConfigDTO();
+		final AtomicInteger loadCount = new AtomicInteger();
+		final CountDownLatch loaderEntered = new CountDownLatch(1);
+		final CountDownLatch releaseLoader = new CountDownLatch(1);
+		final ConfigLoader loader = new ConfigLoader() {
+			@Override
+			public ComplexConfigDTO load(final ScopePath path) {
+				loadCount.incrementAndGet();
+				loaderEntered.countDown();
+				await(releaseLoader);
+				return config;
+			}
+		};
+
+		final int threadCount = 8;
+		final CountDownLatch done = new CountDownLatch(threadCount);
+		final AtomicInteger sameResults = new AtomicInteger();
+		for (int i = 0; i < threadCount; i++) {
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						if (cache.get(scopePath, loader).getElement() == config) {
+							sameResults.incrementAndGet();
+						}
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+
+		Assert.assertTrue(loaderEntered.await(10, TimeUnit.SECONDS));
+		// give the other threads the chance to join the running load
+		Thread.sleep(50);
+		releaseLoader.countDown();
+		Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+
+		Assert.assertEquals(1, loadCount.get());
+		Assert.assertEquals(threadCount, sameResults.get());
+	}
+
+	@Test
+	public void testFailedLoadIsNotCached() {
+		final AtomicInteger loadCount = new AtomicInteger();
+		final ConfigLoader loader = new ConfigLoader() {
+			@Override
+			public ComplexConfigDTO load(final ScopePath path) {
+				if (loadCount.incrementAndGet() == 1) {
+					throw new IllegalStateException("failure");
+				}
+				return null;
+			}
+		};
+
+		try {
+			cache.get(scopePath, loader);
+			Assert.fail();
+		} catch (final IllegalStateException e) {
+			Assert.assertEquals("failure", e.getMessage());
+		}
+		Assert.assertNull(cache.get(scopePath));
+
+		Assert.assertNull(cache.get(scopePath, loader).getElement());
+		Assert.assertNotNull(cache.get(scopePath));
+		Assert.assertEquals(2, loadCount.get());
+	}
+
+	@Test
+	public void testPutDiscardsLoadInProgress() throws Exception {
+		final ComplexConfigDTO loadedConfig = new ComplexConfigDTO();
+		final ComplexConfigDTO savedConfig = new ComplexConfigDTO();
+		final CountDownLatch loaderEntered = new CountDownLatch(1);
+		final CountDownLatch releaseLoader = new CountDownLatch(1);
+
+		final Thread loadingThread = new Thread() {
+			@Override
+			public void run() {
+				cache.get(scopePath, new ConfigLoader() {
+					@Override
+					public ComplexConfigDTO load(final ScopePath path) {
+						loaderEntered.countDown();
+						await(releaseLoader);
+						return loadedConfig;
+					}
+				});
+			}
+		};
+		loadingThread.start();
+
+		Assert.assertTrue(loaderEntered.await(10, TimeUnit.SECONDS));
+		cache.put(scopePath, new CacheEntry<ComplexConfigDTO>(savedConfig));
+		releaseLoader.countDown();
+		loadingThread.join(10000);
+
+		// the outdated result of the load must not replace the saved configuration
+		Assert.assertSame(savedConfig, cache.get(scopePath).getElement());
+	}
+
+	@Test
+	public void testPutWhileLoadIsCachingItsResult() throws Exception {
+		final ComplexConfigDTO savedConfig = new ComplexConfigDTO();
+		assertChangeWhileLoadIsCachingItsResult(new Runnable() {
+			@Override
+			public void run() {
+				slowCache.put(scopePath, new CacheEntry<ComplexConfigDTO>(savedConfig));
+			}
+		});
+		Assert.assertSame(savedConfig, slowCache.get(scopePath).getElement());
+	}
+
+	@Test
+	public void testRemoveWhileLoadIsCachingItsResult() throws Exception {
+		assertChangeWhileLoadIsCachingItsResult(new Runnable() {
+			@Override
+			public void run() {
+				slowCache.invalidate(scopePath, false);
+			}
+		});
+		Assert.assertNull(slowCache.get(scopePath));
+	}
+
+	/**
+	 * Runs the change while a load has passed its discard check and is putting its result into the cache.
+	 */
+	private void assertChangeWhileLoadIsCachingItsResult(final Runnable change) throws Exception {
+		final Thread loadingThread = new Thread() {
+			@Override
+			public void run() {
+				slowCache.get(scopePath, new ConfigLoader() {
+					@Override
+					public ComplexConfigDTO load(final ScopePath path) {
+						return slowConfig;
+					}
+				});
+			}
+		};
+		loadingThread.start();
+		Assert.assertTrue(slowConfigWeighed.await(10, TimeUnit.SECONDS));
+
+		final Thread changingThread = new Thread(change);
+		changingThread.start();
+		// give the change the chance to overtake the load
+		changingThread.join(100);
+		releaseSlowConfig.countDown();
+		loadingThread.join(10000);
+		changingThread.join(10000);
+	}
+
+	@Test
+	public void testInvalidateChildren() {
+		final ScopePath child = createChildScopePath(scopePath, "child");
+		final ScopePath sibling = createChildScopePath(scopePath.getParentPath(), "sibling");
+		cache.put(scopePath, new CacheEntry<ComplexConfigDTO>(null));
+		cache.put(child, new CacheEntry<ComplexConfigDTO>(null));
+		cache.put(sibling, new CacheEntry<ComplexConfigDTO>(null));
+
+		cache.invalidate(scopePath, false);
+		Assert.assertNull(cache.get(scopePath));
+		Assert.assertNotNull(cache.get(child));
+
+		cache.put(scopePath, new CacheEntry<ComplexConfigDTO>(null));
+		cache.invalidate(scopePath, true);
+		Assert.assertNull(cache.get(scopePath));
+		Assert.assertNull(cache.get(child));
+		Assert.assertNotNull(cache.get(sibling));
+	}
+
+	@Test
+	public void testInvalidateAllOccurences() {
+		final ScopePath child = createChildScopePath(scopePath, "child");
+		final ScopePath sibling = createChildScopePath(scopePath.getParentPath(), "sibling");
+		cache.put(scopePath, new CacheEntry<ComplexConfigDTO>(null));
+		cache.put(child, new CacheEntry<ComplexConfigDTO>(null));
+		cache.put(sibling, new CacheEntry<ComplexConfigDTO>(null));
+
+		cache.invalidateAllOccurences("test", null);
+		Assert.assertNull(cache.get(scopePath));
+		Assert.assertNull(cache.get(child));
+		Assert.assertNotNull(cache.get(sibling));
+	}
+
+	@Test
+	public void testInvalidateAfterEviction() {
+		final ConfigDTOCache smallCache = new ConfigDTOCache(CachePolicy.maxEntries(1));
+		final ScopePath child = createChildScopePath(scopePath, "child");
+		smallCache.put(child, new CacheEntry<ComplexConfigDTO>(null));
+		smallCache.put(scopePath, new CacheEntry<ComplexConfigDTO>(null));
+		Assert.assertEquals(1, smallCache.size());
+
+		smallCache.invalidate(scopePath, true);
+		Assert.assertEquals(0, smallCache.size());
+	}
+
+	@Test
+	public void testGetAllLoadsOnlyMissingConfigs() {
+		final ScopePath child = createChildScopePath(scopePath, "child");
+		final ScopePath sibling = createChildScopePath(scopePath.getParentPath(), "sibling");
+		final ComplexConfigDTO cachedConfig = new ComplexConfigDTO();
+		final ComplexConfigDTO loadedConfig = new ComplexConfigDTO();
+		cache.put(scopePath, new CacheEntry<ComplexConfigDTO>(cachedConfig));
+
+		final List<Collection<ScopePath>> loadedScopePaths = new ArrayList<Collection<ScopePath>>();
+		final BulkConfigLoader loader = new BulkConfigLoader() {
+			@Override
+			public Map<ScopePath, ComplexConfigDTO> load(final Collection<ScopePath> scopePaths) {
+				loadedScopePaths.add(new ArrayList<ScopePath>(scopePaths));
+				final Map<ScopePath, ComplexConfigDTO> result = new HashMap<ScopePath, ComplexConfigDTO>();
+				result.put(child, loadedConfig);
+				return result;
+			}
+		};
+
+		final Map<ScopePath, CacheEntry<ComplexConfigDTO>> result = cache.getAll(Arrays.asList(child, scopePath, sibling), loader);
+		Assert.assertEquals(Arrays.asList(child, scopePath, sibling), new ArrayList<ScopePath>(result.keySet()));
+		Assert.assertSame(loadedConfig, result.get(child).getElement());
+		Assert.assertSame(cachedConfig, result.get(scopePath).getElement());
+		Assert.assertNull(result.get(sibling).getElement());
+		Assert.assertEquals(1, loadedScopePaths.size());
+		Assert.assertEquals(Arrays.asList(child, sibling), loadedScopePaths.get(0));
+
+		// the missing configuration of the sibling is cached, too
+		cache.getAll(Arrays.asList(child, scopePath, sibling), loader);
+		Assert.assertEquals(1, loadedScopePaths.size());
+	}
+
+	@Test
+	public void testGetAllFailureIsNotCached() {
+		final ScopePath child = createChildScopePath(scopePath, "child");
+		try {
+			cache.getAll(Arrays.asList(scopePath, child), new BulkConfigLoader() {
+				@Override
+				public Map<ScopePath, ComplexConfigDTO> load(final Collection<ScopePath> scopePaths) {
+					throw new IllegalStateException("failure");
+				}
+			});
+			Assert.fail();
+		} catch (final IllegalStateException e) {
+			Assert.assertEquals("failure", e.getMessage());
+		}
+		Assert.assertNull(cache.get(scopePath));
+		Assert.assertNull(cache.get(child));
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testGetAllJoinsLoadInProgress() throws Exception {
+		final ComplexConfigDTO config = new ComplexConfigDTO();
+		final CountDownLatch loaderEntered = new CountDownLatch(1);
+		final CountDownLatch releaseLoader = new CountDownLatch(1);
+		final Thread loadingThread = new Thread() {
+			@Override
+			public void run() {
+				cache.get(scopePath, new ConfigLoader() {
+					@Override
+					public ComplexConfigDTO load(final ScopePath path) {
+						loaderEntered.countDown();
+						await(releaseLoader);
+						return config;
+					}
+				});
+			}
+		};
+		loadingThread.start();
+		Assert.assertTrue(loaderEntered.await(10, TimeUnit.SECONDS));
+
+		final ScopePath child = createChildScopePath(scopePath, "child");
+		final AtomicInteger loadCount = new AtomicInteger();
+		final Thread releasingThread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(50);
+				} catch (final InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				releaseLoader.countDown();
+			}
+		};
+		releasingThread.start();
+		final Map<ScopePath, CacheEntry<ComplexConfigDTO>> result = cache.getAll(Arrays.asList(scopePath, child), new BulkConfigLoader() {
+			@Override
+			public Map<ScopePath, ComplexConfigDTO> load(final Collection<ScopePath> scopePaths) {
+				loadCount.incrementAndGet();
+				Assert.assertEquals(Arrays.asList(child), new ArrayList<ScopePath>(scopePaths));
+				return new HashMap<ScopePath, ComplexConfigDTO>();
+			}
+		});
+		loadingThread.join(10000);
+
+		Assert.assertSame(config, result.get(scopePath).getElement());
+		Assert.assertNull(result.get(child).getElement());
+		Assert.assertEquals(1, loadCount.get());
+	}
+
+	private static ScopePath createChildScopePath(final ScopePath parent, final String scopeName) {
+		final ScopePathBuilder builder = new InternalScopePathBuilderFactory().createBuilder();
+		for (final Scope scope : parent.getScopes()) {
+			builder.append(scope.getName(), scope.getProperties());
+		}
+		builder.append(scopeName);
+		return builder.create();
+	}
+
+	private static ScopePath createScopePath() {
+		final Map<String, String> classProps = new HashMap<String, String>();
+		classProps.put(ClassScopeDescriptor.PROP_CLASS_NAME, "class.name");
+		final ScopePathBuilder builder = new InternalScopePathBuilderFactory().createBuilder();
+		builder.append(ClassScopeDescriptor.NAME, classProps);
+		builder.append(CodeDefaultScopeDescriptor.NAME);
+		builder.append("test");
+		return builder.create();
+	}
+
+	private static void await(final CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (final InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
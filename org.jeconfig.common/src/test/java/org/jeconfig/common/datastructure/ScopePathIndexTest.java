@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.common.datastructure;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.jeconfig.api.scope.ClassScopeDescriptor;
+import org.jeconfig.api.scope.CodeDefaultScopeDescriptor;
+import org.jeconfig.api.scope.ScopePath;
+import org.jeconfig.api.scope.ScopePathBuilder;
+import org.jeconfig.common.scope.InternalScopePathBuilderFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class ScopePathIndexTest {
+	private final ScopePath global = createScopePath(null);
+	private final ScopePath user1 = createScopePath("hugo");
+	private final ScopePath user2 = createScopePath("egon");
+
+	@Test
+	public void testPathsStartingWith() {
+		final ScopePathIndex index = new ScopePathIndex();
+		index.add(global);
+		index.add(user1);
+		index.add(user2);
+
+		Assert.assertEquals(new HashSet<ScopePath>(Arrays.asList(global, user1, user2)), new HashSet<ScopePath>(
+			index.getPathsStartingWith(global)));
+		Assert.assertEquals(Collections.singletonList(user1), index.getPathsStartingWith(user1));
+		Assert.assertEquals(3, index.size());
+	}
+
+	@Test
+	public void testPathsContaining() {
+		final ScopePathIndex index = new ScopePathIndex();
+		index.add(global);
+		index.add(user1);
+		index.add(user2);
+
+		Assert.assertEquals(Collections.singletonList(user1), index.getPathsContaining("user", Collections.singletonMap("name", "hugo")));
+		Assert.assertEquals(2, index.getPathsContaining("user", null).size());
+		Assert.assertEquals(3, index.getPathsContaining("global", new HashMap<String, String>()).size());
+		Assert.assertTrue(index.getPathsContaining("unknown", null).isEmpty());
+	}
+
+	@Test
+	public void testRemovePrunesTrie() {
+		final ScopePathIndex index = new ScopePathIndex();
+		index.add(user1);
+		index.add(user2);
+
+		index.remove(user1);
+		Assert.assertFalse(index.contains(user1));
+		Assert.assertTrue(index.contains(user2));
+		Assert.assertTrue(index.getPathsContaining("user", Collections.singletonMap("name", "hugo")).isEmpty());
+
+		index.remove(user2);
+		Assert.assertEquals(0, index.size());
+		Assert.assertTrue(index.getPathsStartingWith(global).isEmpty());
+		Assert.assertTrue(index.getPathsContaining("global", null).isEmpty());
+	}
+
+	@Test
+	public void testPathsContainingIntersectsProperties() {
+		final ScopePath hugoAtHome = createScopePath("hugo", "home");
+		final ScopePath hugoAtWork = createScopePath("hugo", "work");
+		final ScopePath egonAtWork = createScopePath("egon", "work");
+		final ScopePathIndex index = new ScopePathIndex();
+		index.add(user1);
+		index.add(hugoAtHome);
+		index.add(hugoAtWork);
+		index.add(egonAtWork);
+
+		final Map<String, String> hugoWork = new HashMap<String, String>();
+		hugoWork.put("name", "hugo");
+		hugoWork.put("location", "work");
+		Assert.assertEquals(Collections.singletonList(hugoAtWork), index.getPathsContaining("user", hugoWork));
+		Assert.assertEquals(
+				new HashSet<ScopePath>(Arrays.asList(user1, hugoAtHome, hugoAtWork)),
+				new HashSet<ScopePath>(index.getPathsContaining("user", Collections.singletonMap("name", "hugo"))));
+		Assert.assertEquals(
+				new HashSet<ScopePath>(Arrays.asList(hugoAtWork, egonAtWork)),
+				new HashSet<ScopePath>(index.getPathsContaining("user", Collections.singletonMap("location", "work"))));
+		Assert.assertTrue(index.getPathsContaining("global", Collections.singletonMap("location", "work")).isEmpty());
+
+		index.remove(hugoAtWork);
+		Assert.assertTrue(index.getPathsContaining("user", hugoWork).isEmpty());
+		Assert.assertEquals(
+				Collections.singletonList(egonAtWork),
+				index.getPathsContaining("user", Collections.singletonMap("location", "work")));
+
+		index.clear();
+		Assert.assertTrue(index.getPathsContaining("user", Collections.singletonMap("name", "hugo")).isEmpty());
+	}
+
+	private static ScopePath createScopePath(final String userName) {
+		return createScopePath(userName, null);
+	}
+
+	private static ScopePath createScopePath(final String userName, final String location) {
+		final Map<String, String> classProps = new HashMap<String, String>();
+		classProps.put(ClassScopeDescriptor.PROP_CLASS_NAME, "class.name");
+		final ScopePathBuilder builder = new InternalScopePathBuilderFactory().createBuilder();
+		builder.append(ClassScopeDescriptor.NAME, classProps);
+		builder.append(CodeDefaultScopeDescriptor.NAME);
+		builder.append("global");
+		if (userName != null) {
+			final Map<String, String> userProps = new HashMap<String, String>();
+			userProps.put("name", userName);
+			if (location != null) {
+				userProps.put("location", location);
+			}
+			builder.append("user", userProps);
+		}
+		return builder.create();
+	}
+}
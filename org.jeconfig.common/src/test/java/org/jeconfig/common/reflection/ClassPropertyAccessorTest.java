@@ -70,6 +70,25 @@ public class ClassPropertyAccessorTest {
 		accessor.read(testBean, "test"); //$NON-NLS-1$
 	}
 
+	@Test
+	public void testReadAndWriteByIndex() {
+		final int index = accessor.getPropertyIndex(TestBean.PROP_NAME);
+		Assert.assertTrue(index >= 0);
+		accessor.write(testBean, index, "value"); //$NON-NLS-1$
+		Assert.assertEquals("value", testBean.getName()); //$NON-NLS-1$
+		Assert.assertEquals("value", accessor.read(testBean, index)); //$NON-NLS-1$
+	}
+
+	@Test
+	public void testGetPropertyIndexOfMissingProperty() {
+		Assert.assertEquals(-1, accessor.getPropertyIndex("test")); //$NON-NLS-1$
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWriteReadOnlyPropertyByIndex() {
+		accessor.write(testBean, accessor.getPropertyIndex("class"), null); //$NON-NLS-1$
+	}
+
 	@Test
 	public void testGetPropertyType() {
 		final Class<?> propertyType = accessor.getPropertyType(TestBean.PROP_NAME);
@@ -27,17 +27,20 @@
 
 package org.jeconfig.dbpersister;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.sql.Blob;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 import javax.sql.DataSource;
@@ -45,31 +48,76 @@ import javax.sql.DataSource;
 import org.jeconfig.api.dto.ComplexConfigDTO;
 import org.jeconfig.api.exception.StaleConfigException;
 import org.jeconfig.api.exception.StoreConfigException;
-import org.jeconfig.api.persister.ConfigPersister;
+import org.jeconfig.api.persister.BulkConfigPersister;
 import org.jeconfig.api.persister.ScopePathGenerator;
+import org.jeconfig.api.persister.VersionedConfigPersister;
+import org.jeconfig.api.scope.ClassScopeDescriptor;
+import org.jeconfig.api.scope.CodeDefaultScopeDescriptor;
+import org.jeconfig.api.scope.Scope;
 import org.jeconfig.api.scope.ScopePath;
 import org.jeconfig.api.util.Assert;
+import org.jeconfig.dbpersister.internal.ConnectionPool;
+import org.jeconfig.dbpersister.internal.DbCallable;
 import org.jeconfig.dbpersister.internal.DbConfigPersisterQueryCreator;
+import org.jeconfig.dbpersister.internal.DbConnection;
 import org.jeconfig.dbpersister.internal.DbUtils;
-import org.jeconfig.dbpersister.internal.DbCallable;
 import org.jeconfig.dbpersister.internal.JdbcTemplate;
+import org.jeconfig.server.marshalling.ConfigBuffer;
+import org.jeconfig.server.marshalling.ConfigBufferPool;
 import org.jeconfig.server.marshalling.ConfigMarshaller;
 import org.jeconfig.server.persister.DefaultScopePathGenerator;
 
-public final class DbConfigPersister implements ConfigPersister {
+/**
+ * A persister implementation that stores configs in a database table.<br>
+ * The scope path column must be the primary key (or unique) of the table; saving an existing
+ * configuration relies on it.<br>
+ * The SQL statements are created once and the prepared statements are reused per connection.
+ * Loads run without an explicit transaction.<br>
+ * Version probes read only the version column, so the version column must be updated together with the configuration.<br>
+ * <br>
+ * Optionally the scopes of the scope paths are indexed in a side table (see {@link DbScopePropertyTable}),
+ * so listScopes and deleteAllOccurences don't need to scan the whole config table.
+ */
+public final class DbConfigPersister implements BulkConfigPersister, VersionedConfigPersister {
 	public static final String ID = DbConfigPersister.class.getName();
 	private static final String SCOPE_PATH_SEPARATOR = "/"; //$NON-NLS-1$
+	/**
+	 * Some databases (e.g. Oracle) limit the number of items of an IN-condition to 1000.
+	 * The item count of a query is rounded up to a power of two, so only a few statements need to be prepared.
+	 */
+	private static final int MAX_IN_ITEMS = 512;
 
-	private final DataSource dataSource;
+	private final ConnectionPool connectionPool;
 	private final DbUtils dbUtils;
 	private final DbConfigPersisterQueryCreator queryGen;
 	private final ScopePathGenerator gen;
 	private final ConfigMarshaller marshaller;
+	private final ConfigBufferPool bufferPool = new ConfigBufferPool();
 	private final String configTableName;
 	private final String scopePathColumnName;
-	private final String configColumnName;
 	private final String configVersionColumnName;
+	private final String configColumnName;
+	private final String selectQuery;
+	private final String selectIfNewerQuery;
+	private final String insertQuery;
+	private final String updateQuery;
+	private final String deleteQuery;
+	private final Map<Integer, String> selectInQueries;
+	private final Map<Integer, String> existsInQueries;
+	private final Map<Integer, String> versionInQueries;
+	private final DbScopePropertyTable scopePropertyTable;
+	private final String insertScopePropertyQuery;
+	private final String deleteScopePropertiesQuery;
+	private final String selectScopeQuery;
+	private final Map<Integer, String> deleteConfigsInQueries;
+	private final Map<Integer, String> deleteScopePropertiesInQueries;
+	// set once the driver reported Statement.SUCCESS_NO_INFO for a batch of updates
+	private volatile boolean batchUpdateCountsUnknown;
 
+	/**
+	 * Creates a persister which gets a new connection from the data source for each operation.
+	 * Use this constructor if the data source pools connections itself.
+	 */
 	public DbConfigPersister(
 		final String configTableName,
 		final String scopePathColumnName,
@@ -77,21 +125,131 @@ public final class DbConfigPersister implements ConfigPersister {
 		final String configColumnName,
 		final ConfigMarshaller marshaller,
 		final DataSource dataSource) {
+		this(configTableName, scopePathColumnName, configVersionColumnName, configColumnName, marshaller, dataSource, 0);
+	}
+
+	/**
+	 * Creates a persister which keeps up to <code>maxIdleConnections</code> connections of the data source open
+	 * for reuse. Call {@link #close()} to close them.
+	 */
+	public DbConfigPersister(
+		final String configTableName,
+		final String scopePathColumnName,
+		final String configVersionColumnName,
+		final String configColumnName,
+		final ConfigMarshaller marshaller,
+		final DataSource dataSource,
+		final int maxIdleConnections) {
+		this(
+			configTableName,
+			scopePathColumnName,
+			configVersionColumnName,
+			configColumnName,
+			marshaller,
+			dataSource,
+			maxIdleConnections,
+			null);
+	}
+
+	/**
+	 * Creates a persister which keeps up to <code>maxIdleConnections</code> connections of the data source open
+	 * for reuse and maintains the given scope property table.
+	 * 
+	 * @param scopePropertyTable the side table which indexes the scopes; <code>null</code> to search
+	 *            the scope path column with LIKE conditions
+	 */
+	public DbConfigPersister(
+		final String configTableName,
+		final String scopePathColumnName,
+		final String configVersionColumnName,
+		final String configColumnName,
+		final ConfigMarshaller marshaller,
+		final DataSource dataSource,
+		final int maxIdleConnections,
+		final DbScopePropertyTable scopePropertyTable) {
 		Assert.paramNotEmpty(configTableName, "configTableName"); //$NON-NLS-1$
 		Assert.paramNotEmpty(scopePathColumnName, "scopePathColumnName"); //$NON-NLS-1$
+		Assert.paramNotEmpty(configVersionColumnName, "configVersionColumnName"); //$NON-NLS-1$
 		Assert.paramNotEmpty(configColumnName, "configColumnName"); //$NON-NLS-1$
 		Assert.paramNotNull(marshaller, "marshaller"); //$NON-NLS-1$
 		Assert.paramNotNull(dataSource, "dataSource"); //$NON-NLS-1$
 
 		this.configTableName = configTableName;
 		this.scopePathColumnName = scopePathColumnName;
-		this.configColumnName = configColumnName;
 		this.configVersionColumnName = configVersionColumnName;
-		this.dataSource = dataSource;
+		this.configColumnName = configColumnName;
 		this.marshaller = marshaller;
+		connectionPool = new ConnectionPool(dataSource, maxIdleConnections);
 		gen = new DefaultScopePathGenerator(SCOPE_PATH_SEPARATOR);
 		queryGen = new DbConfigPersisterQueryCreator();
 		dbUtils = new DbUtils();
+
+		selectQuery = queryGen.createSelectEqualsItemQuery(configColumnName, configTableName, scopePathColumnName);
+		selectIfNewerQuery = queryGen.createSelectNewerItemQuery(
+				configColumnName,
+				configTableName,
+				scopePathColumnName,
+				configVersionColumnName);
+		insertQuery = queryGen.createInsertItemQuery(
+				configTableName,
+				scopePathColumnName,
+				configVersionColumnName,
+				configColumnName);
+		updateQuery = queryGen.createUpdateQuery(configTableName, configColumnName, scopePathColumnName, configVersionColumnName);
+		deleteQuery = queryGen.createDeleteEqualsItemQuery(configTableName, scopePathColumnName);
+		selectInQueries = new HashMap<Integer, String>();
+		existsInQueries = new HashMap<Integer, String>();
+		versionInQueries = new HashMap<Integer, String>();
+		for (int itemCount = 1; itemCount <= MAX_IN_ITEMS; itemCount *= 2) {
+			selectInQueries.put(Integer.valueOf(itemCount), queryGen.createSelectInItemsQuery(
+					configTableName,
+					scopePathColumnName,
+					itemCount,
+					scopePathColumnName,
+					configColumnName));
+			existsInQueries.put(
+					Integer.valueOf(itemCount),
+					queryGen.createSelectInItemsQuery(configTableName, scopePathColumnName, itemCount, scopePathColumnName));
+			versionInQueries.put(Integer.valueOf(itemCount), queryGen.createSelectInItemsQuery(
+					configTableName,
+					scopePathColumnName,
+					itemCount,
+					scopePathColumnName,
+					configVersionColumnName));
+		}
+
+		this.scopePropertyTable = scopePropertyTable;
+		deleteConfigsInQueries = new HashMap<Integer, String>();
+		deleteScopePropertiesInQueries = new HashMap<Integer, String>();
+		if (scopePropertyTable != null) {
+			insertScopePropertyQuery = queryGen.createInsertItemQuery(
+					scopePropertyTable.getTableName(),
+					scopePropertyTable.getScopePathColumnName(),
+					scopePropertyTable.getScopeNameColumnName(),
+					scopePropertyTable.getPropertyKeyColumnName(),
+					scopePropertyTable.getPropertyValueColumnName());
+			deleteScopePropertiesQuery = queryGen.createDeleteEqualsItemQuery(
+					scopePropertyTable.getTableName(),
+					scopePropertyTable.getScopePathColumnName());
+			selectScopeQuery = queryGen.createSelectScopeQuery(
+					scopePropertyTable.getScopePathColumnName(),
+					scopePropertyTable.getTableName(),
+					scopePropertyTable.getScopeNameColumnName(),
+					scopePropertyTable.getPropertyKeyColumnName());
+			for (int itemCount = 1; itemCount <= MAX_IN_ITEMS; itemCount *= 2) {
+				deleteConfigsInQueries.put(
+						Integer.valueOf(itemCount),
+						queryGen.createDeleteInItemsQuery(configTableName, scopePathColumnName, itemCount));
+				deleteScopePropertiesInQueries.put(Integer.valueOf(itemCount), queryGen.createDeleteInItemsQuery(
+						scopePropertyTable.getTableName(),
+						scopePropertyTable.getScopePathColumnName(),
+						itemCount));
+			}
+		} else {
+			insertScopePropertyQuery = null;
+			deleteScopePropertiesQuery = null;
+			selectScopeQuery = null;
+		}
 	}
 
 	@Override
@@ -99,46 +257,191 @@ public final class DbConfigPersister implements ConfigPersister {
 		return ID;
 	}
 
+	/**
+	 * Closes the connections which are kept for reuse.
+	 */
+	public void close() {
+		connectionPool.close();
+	}
+
 	@Override
 	public ComplexConfigDTO loadConfiguration(final ScopePath scopePath) {
 		Assert.paramNotNull(scopePath, "scope"); //$NON-NLS-1$
 
-		final ComplexConfigDTO result = new JdbcTemplate<ComplexConfigDTO>(dataSource).perform(new DbCallable() {
+		final ComplexConfigDTO result = new JdbcTemplate<ComplexConfigDTO>(connectionPool).performReadOnly(new DbCallable() {
 
 			@Override
-			public Object execute(final Connection con) throws Exception {
-				InputStream in = null;
-				PreparedStatement stmt = null;
+			public Object execute(final DbConnection con) throws Exception {
+				ResultSet resultSet = null;
 				try {
-					stmt = con.prepareStatement(queryGen.createSelectEqualsItemQuery(
-							configColumnName,
-							configTableName,
-							scopePathColumnName));
+					final PreparedStatement stmt = con.prepareStatement(selectQuery);
 					stmt.setString(1, createColumnPath(scopePath));
-					final ResultSet resultSet = stmt.executeQuery();
+					resultSet = stmt.executeQuery();
 					Blob result = null;
 					if (resultSet.next()) {
 						result = resultSet.getBlob(configColumnName);
 					}
 					if (result != null) {
-						in = result.getBinaryStream();
-						final ComplexConfigDTO configDTO = marshaller.unmarshal(in);
-						if (configDTO.getVersion() < 1) {
-							throw new StoreConfigException(
-								"Illegal config version. Must be 1 or higher. Occures at scope Path '" + configDTO.getDefiningScopePath() + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
-						}
-						return configDTO;
+						return unmarshal(result);
 					}
 					return null;
 				} finally {
-					dbUtils.closeQuietly(stmt);
-					dbUtils.closeQuietly(in);
+					dbUtils.closeQuietly(resultSet);
 				}
 			}
 		});
 		return result;
 	}
 
+	@Override
+	public Map<ScopePath, ComplexConfigDTO> loadConfigurations(final Collection<ScopePath> scopePaths) {
+		Assert.paramNotNull(scopePaths, "scopePaths"); //$NON-NLS-1$
+
+		final Map<String, ScopePath> scopePathsByColumnPath = new LinkedHashMap<String, ScopePath>();
+		for (final ScopePath scopePath : scopePaths) {
+			scopePathsByColumnPath.put(createColumnPath(scopePath), scopePath);
+		}
+		final JdbcTemplate<Map<ScopePath, ComplexConfigDTO>> template = new JdbcTemplate<Map<ScopePath, ComplexConfigDTO>>(
+			connectionPool);
+		final Map<ScopePath, ComplexConfigDTO> loadedConfigs = template.performReadOnly(new DbCallable() {
+
+			@Override
+			public Object execute(final DbConnection con) throws Exception {
+				final Map<ScopePath, ComplexConfigDTO> configs = new HashMap<ScopePath, ComplexConfigDTO>();
+				final List<String> columnPaths = new ArrayList<String>(scopePathsByColumnPath.keySet());
+				for (int start = 0; start < columnPaths.size(); start += MAX_IN_ITEMS) {
+					final List<String> items = columnPaths.subList(start, Math.min(start + MAX_IN_ITEMS, columnPaths.size()));
+					ResultSet resultSet = null;
+					try {
+						resultSet = executeInQuery(con, selectInQueries, items);
+						while (resultSet.next()) {
+							final ScopePath scopePath = scopePathsByColumnPath.get(resultSet.getString(scopePathColumnName));
+							final Blob blob = resultSet.getBlob(configColumnName);
+							if (scopePath != null && blob != null) {
+								configs.put(scopePath, unmarshal(blob));
+							}
+						}
+					} finally {
+						dbUtils.closeQuietly(resultSet);
+					}
+				}
+				return configs;
+			}
+		});
+
+		final Map<ScopePath, ComplexConfigDTO> result = new LinkedHashMap<ScopePath, ComplexConfigDTO>();
+		for (final ScopePath scopePath : scopePaths) {
+			result.put(scopePath, loadedConfigs.get(scopePath));
+		}
+		return result;
+	}
+
+	@Override
+	public Map<ScopePath, Long> getVersions(final Collection<ScopePath> scopePaths) {
+		Assert.paramNotNull(scopePaths, "scopePaths"); //$NON-NLS-1$
+
+		final Map<String, ScopePath> scopePathsByColumnPath = new LinkedHashMap<String, ScopePath>();
+		for (final ScopePath scopePath : scopePaths) {
+			scopePathsByColumnPath.put(createColumnPath(scopePath), scopePath);
+		}
+		final JdbcTemplate<Map<ScopePath, Long>> template = new JdbcTemplate<Map<ScopePath, Long>>(connectionPool);
+		final Map<ScopePath, Long> loadedVersions = template.performReadOnly(new DbCallable() {
+
+			@Override
+			public Object execute(final DbConnection con) throws Exception {
+				final Map<ScopePath, Long> versions = new HashMap<ScopePath, Long>();
+				final List<String> columnPaths = new ArrayList<String>(scopePathsByColumnPath.keySet());
+				for (int start = 0; start < columnPaths.size(); start += MAX_IN_ITEMS) {
+					final List<String> items = columnPaths.subList(start, Math.min(start + MAX_IN_ITEMS, columnPaths.size()));
+					ResultSet resultSet = null;
+					try {
+						resultSet = executeInQuery(con, versionInQueries, items);
+						while (resultSet.next()) {
+							final ScopePath scopePath = scopePathsByColumnPath.get(resultSet.getString(scopePathColumnName));
+							if (scopePath != null) {
+								versions.put(scopePath, Long.valueOf(resultSet.getLong(configVersionColumnName)));
+							}
+						}
+					} finally {
+						dbUtils.closeQuietly(resultSet);
+					}
+				}
+				return versions;
+			}
+		});
+
+		final Map<ScopePath, Long> result = new LinkedHashMap<ScopePath, Long>();
+		for (final ScopePath scopePath : scopePaths) {
+			result.put(scopePath, loadedVersions.get(scopePath));
+		}
+		return result;
+	}
+
+	@Override
+	public ComplexConfigDTO loadIfNewer(final ScopePath scopePath, final long knownVersion) {
+		Assert.paramNotNull(scopePath, "scopePath"); //$NON-NLS-1$
+
+		return new JdbcTemplate<ComplexConfigDTO>(connectionPool).performReadOnly(new DbCallable() {
+
+			@Override
+			public Object execute(final DbConnection con) throws Exception {
+				ResultSet resultSet = null;
+				try {
+					final PreparedStatement stmt = con.prepareStatement(selectIfNewerQuery);
+					stmt.setString(1, createColumnPath(scopePath));
+					stmt.setLong(2, knownVersion);
+					resultSet = stmt.executeQuery();
+					if (resultSet.next()) {
+						final Blob blob = resultSet.getBlob(configColumnName);
+						if (blob != null) {
+							return unmarshal(blob);
+						}
+					}
+					return null;
+				} finally {
+					dbUtils.closeQuietly(resultSet);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Prepares a statement with an IN-condition for the items. The item count is rounded up to the next
+	 * power of two by repeating the last item.
+	 */
+	private PreparedStatement prepareInStatement(final DbConnection con, final Map<Integer, String> queries, final List<String> items)
+			throws SQLException {
+		int itemCount = 1;
+		while (itemCount < items.size()) {
+			itemCount *= 2;
+		}
+		final PreparedStatement stmt = con.prepareStatement(queries.get(Integer.valueOf(itemCount)));
+		for (int i = 0; i < itemCount; i++) {
+			stmt.setString(i + 1, items.get(Math.min(i, items.size() - 1)));
+		}
+		return stmt;
+	}
+
+	private ResultSet executeInQuery(final DbConnection con, final Map<Integer, String> queries, final List<String> items)
+			throws SQLException {
+		return prepareInStatement(con, queries, items).executeQuery();
+	}
+
+	private ComplexConfigDTO unmarshal(final Blob blob) throws SQLException {
+		InputStream in = null;
+		try {
+			in = blob.getBinaryStream();
+			final ComplexConfigDTO configDTO = marshaller.unmarshal(in);
+			if (configDTO.getVersion() < 1) {
+				throw new StoreConfigException(
+					"Illegal config version. Must be 1 or higher. Occures at scope Path '" + configDTO.getDefiningScopePath() + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			return configDTO;
+		} finally {
+			dbUtils.closeQuietly(in);
+		}
+	}
+
 	@Override
 	public void saveConfiguration(final ComplexConfigDTO configDTO) {
 		Assert.paramNotNull(configDTO, "configDTO"); //$NON-NLS-1$
@@ -147,48 +450,30 @@ public final class DbConfigPersister implements ConfigPersister {
 			throw new StoreConfigException(
 				"Illegal config version. Must be 1 or higher. Occures at scope Path '" + configDTO.getDefiningScopePath() + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
 		}
-		new JdbcTemplate<ResultSet>(dataSource).perform(new DbCallable() {
+		new JdbcTemplate<ResultSet>(connectionPool).perform(new DbCallable() {
 
 			@Override
-			public Object execute(final Connection con) throws Exception {
-				PreparedStatement existsStmt = null;
-				PreparedStatement saveStmt = null;
-				ByteArrayOutputStream out = null;
-
+			public Object execute(final DbConnection con) throws Exception {
+				final ConfigBuffer serializedConfig = marshal(configDTO);
 				try {
-					existsStmt = con.prepareStatement(queryGen.createSelectEqualsItemQuery(
-							configColumnName,
-							configTableName,
-							scopePathColumnName));
-					existsStmt.setString(1, createColumnPath(configDTO.getDefiningScopePath()));
-					existsStmt.executeQuery();
-					final ResultSet resultSet = existsStmt.getResultSet();
-					if (resultSet.next()) {
-						throw new StaleConfigException(
-							configDTO.getDefiningScopePath(),
-							"Can't save new configuration. There exists already a file for the scope path '" + configDTO.getDefiningScopePath() + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
-					}
-					out = new ByteArrayOutputStream();
-					marshaller.marshal(out, configDTO);
-					final byte[] serializedConfigAsByteArray = out.toByteArray();
-					saveStmt = con.prepareStatement(queryGen.createInsertItemQuery(
-							configTableName,
-							scopePathColumnName,
-							configVersionColumnName,
-							configColumnName));
+					final PreparedStatement saveStmt = con.prepareStatement(insertQuery);
 					saveStmt.setString(1, createColumnPath(configDTO.getDefiningScopePath()));
 					saveStmt.setLong(2, configDTO.getVersion());
-					saveStmt.setBinaryStream(
-							3,
-							new ByteArrayInputStream(serializedConfigAsByteArray),
-							serializedConfigAsByteArray.length);
+					saveStmt.setBinaryStream(3, serializedConfig.toInputStream(), serializedConfig.size());
+					// the primary key detects existing configurations, so no additional query is needed
 					saveStmt.executeUpdate();
-					return null;
+				} catch (final SQLException e) {
+					if (dbUtils.isIntegrityConstraintViolation(e)) {
+						throw new StaleConfigException(
+							configDTO.getDefiningScopePath(),
+							"Can't save new configuration. There exists already a file for the scope path '" + configDTO.getDefiningScopePath() + "'!", e); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+					throw e;
 				} finally {
-					dbUtils.closeQuietly(out);
-					dbUtils.closeQuietly(existsStmt);
-					dbUtils.closeQuietly(saveStmt);
+					bufferPool.release(serializedConfig);
 				}
+				insertScopeProperties(con, Collections.singleton(configDTO.getDefiningScopePath()));
+				return null;
 			}
 		});
 	}
@@ -197,42 +482,278 @@ public final class DbConfigPersister implements ConfigPersister {
 	public void updateConfiguration(final ComplexConfigDTO configDTO) {
 		Assert.paramNotNull(configDTO, "configDTO"); //$NON-NLS-1$
 
-		new JdbcTemplate<ResultSet>(dataSource).perform(new DbCallable() {
+		new JdbcTemplate<ResultSet>(connectionPool).perform(new DbCallable() {
+
+			@Override
+			public Object execute(final DbConnection con) throws Exception {
+				updateSingly(con, Collections.singletonList(configDTO));
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public void saveConfigurations(final Collection<ComplexConfigDTO> configDTOs) {
+		Assert.paramNotNull(configDTOs, "configDTOs"); //$NON-NLS-1$
+
+		for (final ComplexConfigDTO configDTO : configDTOs) {
+			if (configDTO.getVersion() < 1) {
+				throw new StoreConfigException(
+					"Illegal config version. Must be 1 or higher. Occures at scope Path '" + configDTO.getDefiningScopePath() + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		// all configurations are saved in one transaction; the template rolls back if one of them fails
+		new JdbcTemplate<ResultSet>(connectionPool).perform(new DbCallable() {
 
 			@Override
-			public Object execute(final Connection con) throws Exception {
-				PreparedStatement updateStmt = null;
-				final Statement stmt = null;
-				ByteArrayOutputStream out = null;
+			public Object execute(final DbConnection con) throws Exception {
+				final Map<String, ScopePath> scopePathsByColumnPath = new LinkedHashMap<String, ScopePath>();
+				for (final ComplexConfigDTO configDTO : configDTOs) {
+					final ScopePath scopePath = configDTO.getDefiningScopePath();
+					scopePathsByColumnPath.put(createColumnPath(scopePath), scopePath);
+				}
+				final List<String> columnPaths = new ArrayList<String>(scopePathsByColumnPath.keySet());
+				for (int start = 0; start < columnPaths.size(); start += MAX_IN_ITEMS) {
+					final List<String> items = columnPaths.subList(start, Math.min(start + MAX_IN_ITEMS, columnPaths.size()));
+					ResultSet resultSet = null;
+					try {
+						resultSet = executeInQuery(con, existsInQueries, items);
+						if (resultSet.next()) {
+							final ScopePath scopePath = scopePathsByColumnPath.get(resultSet.getString(scopePathColumnName));
+							throw new StaleConfigException(
+								scopePath,
+								"Can't save new configuration. There exists already a file for the scope path '" + scopePath + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
+						}
+					} finally {
+						dbUtils.closeQuietly(resultSet);
+					}
+				}
+
+				// the batch reads the buffers when it's executed, so they are released afterwards
+				final List<ConfigBuffer> serializedConfigs = new ArrayList<ConfigBuffer>(configDTOs.size());
+				PreparedStatement saveStmt = null;
 				try {
-					updateStmt = con.prepareStatement(queryGen.createUpdateQuery(
-							configTableName,
-							configColumnName,
+					saveStmt = con.prepareStatement(insertQuery);
+					for (final ComplexConfigDTO configDTO : configDTOs) {
+						final ConfigBuffer serializedConfig = marshal(configDTO);
+						serializedConfigs.add(serializedConfig);
+						saveStmt.setString(1, createColumnPath(configDTO.getDefiningScopePath()));
+						saveStmt.setLong(2, configDTO.getVersion());
+						saveStmt.setBinaryStream(3, serializedConfig.toInputStream(), serializedConfig.size());
+						saveStmt.addBatch();
+					}
+					saveStmt.executeBatch();
+				} finally {
+					dbUtils.clearBatchQuietly(saveStmt);
+					releaseAll(serializedConfigs);
+				}
+				insertScopeProperties(con, scopePathsByColumnPath.values());
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public void updateConfigurations(final Collection<ComplexConfigDTO> configDTOs) {
+		Assert.paramNotNull(configDTOs, "configDTOs"); //$NON-NLS-1$
+
+		final List<ComplexConfigDTO> configs = new ArrayList<ComplexConfigDTO>(configDTOs);
+		// all configurations are updated in one transaction; the template rolls back if one of them fails
+		if (!batchUpdateCountsUnknown) {
+			final Boolean countsKnown = new JdbcTemplate<Boolean>(connectionPool).perform(new DbCallable() {
+
+				@Override
+				public Object execute(final DbConnection con) throws Exception {
+					return Boolean.valueOf(updateBatched(con, configs));
+				}
+			});
+			if (countsKnown.booleanValue()) {
+				return;
+			}
+			// the driver doesn't report the row counts of batches, so they are updated one by one from now on
+			batchUpdateCountsUnknown = true;
+		}
+		new JdbcTemplate<ResultSet>(connectionPool).perform(new DbCallable() {
+
+			@Override
+			public Object execute(final DbConnection con) throws Exception {
+				updateSingly(con, configs);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Updates the configurations with a batch. If the driver reports {@link Statement#SUCCESS_NO_INFO}
+	 * for one of them, the transaction is rolled back because stale configurations can't be detected.
+	 * 
+	 * @return <code>false</code> if the row counts are unknown and the updates were rolled back
+	 */
+	private boolean updateBatched(final DbConnection con, final List<ComplexConfigDTO> configs) throws SQLException {
+		final List<ConfigBuffer> serializedConfigs = new ArrayList<ConfigBuffer>(configs.size());
+		final int[] countsRowsUpdated;
+		PreparedStatement updateStmt = null;
+		try {
+			updateStmt = con.prepareStatement(updateQuery);
+			for (final ComplexConfigDTO configDTO : configs) {
+				final ConfigBuffer serializedConfig = marshal(configDTO);
+				serializedConfigs.add(serializedConfig);
+				setUpdateParameters(updateStmt, configDTO, serializedConfig);
+				updateStmt.addBatch();
+			}
+			countsRowsUpdated = updateStmt.executeBatch();
+		} finally {
+			dbUtils.clearBatchQuietly(updateStmt);
+			releaseAll(serializedConfigs);
+		}
+		for (final int countRowsUpdated : countsRowsUpdated) {
+			if (countRowsUpdated == Statement.SUCCESS_NO_INFO) {
+				con.getConnection().rollback();
+				return false;
+			}
+		}
+		for (int i = 0; i < countsRowsUpdated.length; i++) {
+			if (countsRowsUpdated[i] == 0) {
+				throw createStaleUpdateException(configs.get(i).getDefiningScopePath());
+			}
+		}
+		return true;
+	}
+
+	private void updateSingly(final DbConnection con, final List<ComplexConfigDTO> configs) throws SQLException {
+		final PreparedStatement updateStmt = con.prepareStatement(updateQuery);
+		for (final ComplexConfigDTO configDTO : configs) {
+			final ConfigBuffer serializedConfig = marshal(configDTO);
+			final int countRowsUpdated;
+			try {
+				setUpdateParameters(updateStmt, configDTO, serializedConfig);
+				countRowsUpdated = updateStmt.executeUpdate();
+			} finally {
+				bufferPool.release(serializedConfig);
+			}
+			if (countRowsUpdated < 1) {
+				throw createStaleUpdateException(configDTO.getDefiningScopePath());
+			}
+		}
+	}
+
+	private void setUpdateParameters(final PreparedStatement stmt, final ComplexConfigDTO configDTO, final ConfigBuffer buffer)
+			throws SQLException {
+		stmt.setBinaryStream(1, buffer.toInputStream(), buffer.size());
+		stmt.setLong(2, configDTO.getVersion());
+		stmt.setString(3, createColumnPath(configDTO.getDefiningScopePath()));
+		stmt.setLong(4, configDTO.getVersion());
+	}
+
+	private StaleConfigException createStaleUpdateException(final ScopePath scopePath) {
+		return new StaleConfigException(
+			scopePath,
+			"There exists no record for the scope path '" + scopePath + "' or it has been updated meanwhile!"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Marshals into a pooled buffer, so the configuration isn't copied before it's passed to the statement.
+	 * 
+	 * @return a buffer which contains the marshalled configuration; must be released after use
+	 */
+	private ConfigBuffer marshal(final ComplexConfigDTO configDTO) {
+		final ConfigBuffer buffer = bufferPool.acquire();
+		try {
+			marshaller.marshal(buffer, configDTO);
+			return buffer;
+		} catch (final RuntimeException e) {
+			bufferPool.release(buffer);
+			throw e;
+		}
+	}
+
+	private void releaseAll(final Collection<ConfigBuffer> buffers) {
+		for (final ConfigBuffer buffer : buffers) {
+			bufferPool.release(buffer);
+		}
+	}
+
+	/**
+	 * Inserts the rows of the scope property table for the scope paths. The scope properties of a scope path
+	 * never change, so updates don't need to maintain the table.
+	 */
+	private void insertScopeProperties(final DbConnection con, final Collection<ScopePath> scopePaths) throws SQLException {
+		if (scopePropertyTable == null) {
+			return;
+		}
+		final PreparedStatement stmt = con.prepareStatement(insertScopePropertyQuery);
+		try {
+			for (final ScopePath scopePath : scopePaths) {
+				addScopePropertyBatches(stmt, createColumnPath(scopePath), scopePath);
+			}
+			stmt.executeBatch();
+		} finally {
+			dbUtils.clearBatchQuietly(stmt);
+		}
+	}
+
+	private void addScopePropertyBatches(final PreparedStatement stmt, final String columnPath, final ScopePath scopePath)
+			throws SQLException {
+		for (final Scope scope : scopePath.getScopes()) {
+			if (ClassScopeDescriptor.NAME.equals(scope.getName()) || CodeDefaultScopeDescriptor.NAME.equals(scope.getName())) {
+				continue;
+			}
+			stmt.setString(1, columnPath);
+			stmt.setString(2, scope.getName());
+			stmt.setNull(3, Types.VARCHAR);
+			stmt.setNull(4, Types.VARCHAR);
+			stmt.addBatch();
+			for (final Map.Entry<String, String> property : scope.getProperties().entrySet()) {
+				stmt.setString(1, columnPath);
+				stmt.setString(2, scope.getName());
+				stmt.setString(3, property.getKey());
+				stmt.setString(4, property.getValue());
+				stmt.addBatch();
+			}
+		}
+	}
+
+	/**
+	 * Recreates the content of the scope property table from the scope paths in the config table.
+	 * Use this to index configurations which were saved without the scope property table.
+	 */
+	public void rebuildScopePropertyTable() {
+		if (scopePropertyTable == null) {
+			throw new IllegalStateException("No scope property table configured!"); //$NON-NLS-1$
+		}
+		new JdbcTemplate<ResultSet>(connectionPool).perform(new DbCallable() {
+
+			@Override
+			public Object execute(final DbConnection con) throws Exception {
+				final List<String> columnPaths = new ArrayList<String>();
+				Statement stmt = null;
+				try {
+					stmt = con.getConnection().createStatement();
+					stmt.executeUpdate(queryGen.createDeleteAllItemsQuery(scopePropertyTable.getTableName()));
+					final ResultSet resultSet = stmt.executeQuery(queryGen.createSelectItemsQuery(
 							scopePathColumnName,
-							configVersionColumnName));
-					out = new ByteArrayOutputStream();
-					marshaller.marshal(out, configDTO);
-					final byte[] serializedConfigAsByteArray = out.toByteArray();
-					updateStmt.setBinaryStream(
-							1,
-							new ByteArrayInputStream(serializedConfigAsByteArray),
-							serializedConfigAsByteArray.length);
-					updateStmt.setString(2, gen.getPathFromScopePath(configDTO.getDefiningScopePath())
-						+ SCOPE_PATH_SEPARATOR
-						+ gen.createName(configDTO.getDefiningScopePath()));
-					updateStmt.setLong(3, configDTO.getVersion());
-					final int countRowsUpdated = updateStmt.executeUpdate();
-					if (countRowsUpdated < 1) {
-						throw new StaleConfigException(
-							configDTO.getDefiningScopePath(),
-							"There exists no record for the scope path '" + configDTO.getDefiningScopePath() + "' or it has been updated meanwhile!"); //$NON-NLS-1$ //$NON-NLS-2$
+							configTableName));
+					while (resultSet.next()) {
+						columnPaths.add(resultSet.getString(scopePathColumnName));
 					}
-					return null;
 				} finally {
 					dbUtils.closeQuietly(stmt);
-					dbUtils.closeQuietly(updateStmt);
-					dbUtils.closeQuietly(out);
 				}
+				// all paths contain the empty string, so none is filtered out
+				final List<ScopePath> scopePaths = new ArrayList<ScopePath>(gen.createScopePaths(
+						columnPaths,
+						"", //$NON-NLS-1$
+						Collections.<String, String> emptyMap()));
+				final PreparedStatement insertStmt = con.prepareStatement(insertScopePropertyQuery);
+				try {
+					for (int i = 0; i < columnPaths.size(); i++) {
+						addScopePropertyBatches(insertStmt, columnPaths.get(i), scopePaths.get(i));
+					}
+					insertStmt.executeBatch();
+				} finally {
+					dbUtils.clearBatchQuietly(insertStmt);
+				}
+				return null;
 			}
 		});
 	}
@@ -241,24 +762,43 @@ public final class DbConfigPersister implements ConfigPersister {
 	public void delete(final ScopePath scope, final boolean deleteChildren) {
 		Assert.paramNotNull(scope, "scope"); //$NON-NLS-1$
 
-		new JdbcTemplate<ResultSet>(dataSource).perform(new DbCallable() {
+		new JdbcTemplate<ResultSet>(connectionPool).perform(new DbCallable() {
 
 			@Override
-			public Object execute(final Connection con) throws Exception {
-				PreparedStatement stmt = null;
-				try {
-					if (deleteChildren) {
-						stmt = con.prepareStatement(queryGen.createDeleteLikeItemQuery(
+			public Object execute(final DbConnection con) throws Exception {
+				if (deleteChildren) {
+					// the query contains the path, so the statement isn't cached
+					PreparedStatement stmt = null;
+					try {
+						stmt = con.getConnection().prepareStatement(queryGen.createDeleteLikeItemQuery(
 								configTableName,
 								scopePathColumnName,
 								gen.getPathFromScopePath(scope)));
-					} else {
-						stmt = con.prepareStatement(queryGen.createDeleteEqualsItemQuery(configTableName, scopePathColumnName));
-						stmt.setString(1, createColumnPath(scope));
+						stmt.executeUpdate();
+					} finally {
+						dbUtils.closeQuietly(stmt);
 					}
+					if (scopePropertyTable != null) {
+						PreparedStatement scopePropertiesStmt = null;
+						try {
+							scopePropertiesStmt = con.getConnection().prepareStatement(queryGen.createDeleteLikeItemQuery(
+									scopePropertyTable.getTableName(),
+									scopePropertyTable.getScopePathColumnName(),
+									gen.getPathFromScopePath(scope)));
+							scopePropertiesStmt.executeUpdate();
+						} finally {
+							dbUtils.closeQuietly(scopePropertiesStmt);
+						}
+					}
+				} else {
+					final PreparedStatement stmt = con.prepareStatement(deleteQuery);
+					stmt.setString(1, createColumnPath(scope));
 					stmt.executeUpdate();
-				} finally {
-					dbUtils.closeQuietly(stmt);
+					if (scopePropertyTable != null) {
+						final PreparedStatement scopePropertiesStmt = con.prepareStatement(deleteScopePropertiesQuery);
+						scopePropertiesStmt.setString(1, createColumnPath(scope));
+						scopePropertiesStmt.executeUpdate();
+					}
 				}
 				return null;
 			}
@@ -270,14 +810,18 @@ public final class DbConfigPersister implements ConfigPersister {
 		Assert.paramNotNull(scopeName, "scopeName"); //$NON-NLS-1$
 		Assert.paramNotNull(properties, "properties"); //$NON-NLS-1$
 
-		new JdbcTemplate<ResultSet>(dataSource).perform(new DbCallable() {
+		if (scopePropertyTable != null) {
+			deleteAllOccurencesUsingScopePropertyTable(scopeName, properties);
+			return;
+		}
+		new JdbcTemplate<ResultSet>(connectionPool).perform(new DbCallable() {
 
 			@Override
-			public Object execute(final Connection con) throws Exception {
+			public Object execute(final DbConnection con) throws Exception {
 				PreparedStatement stmt = null;
 				final String searchedPathPart = gen.buildScopeWithProperty(scopeName, properties);
 				try {
-					stmt = con.prepareStatement(queryGen.createDeleteLikeItemQuery(
+					stmt = con.getConnection().prepareStatement(queryGen.createDeleteLikeItemQuery(
 							configTableName,
 							scopePathColumnName,
 							searchedPathPart));
@@ -292,15 +836,82 @@ public final class DbConfigPersister implements ConfigPersister {
 		});
 	}
 
+	private void deleteAllOccurencesUsingScopePropertyTable(final String scopeName, final Map<String, String> properties) {
+		new JdbcTemplate<ResultSet>(connectionPool).perform(new DbCallable() {
+
+			@Override
+			public Object execute(final DbConnection con) throws Exception {
+				// select the paths first, because some databases can't delete from a table selected in a subquery
+				final List<String> columnPaths = new ArrayList<String>(selectScopePaths(con, scopeName, properties));
+				for (int start = 0; start < columnPaths.size(); start += MAX_IN_ITEMS) {
+					final List<String> items = columnPaths.subList(start, Math.min(start + MAX_IN_ITEMS, columnPaths.size()));
+					prepareInStatement(con, deleteConfigsInQueries, items).executeUpdate();
+					prepareInStatement(con, deleteScopePropertiesInQueries, items).executeUpdate();
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Selects the paths of all configurations which contain a scope with the given name and properties
+	 * from the scope property table.
+	 */
+	private Collection<String> selectScopePaths(final DbConnection con, final String scopeName, final Map<String, String> properties)
+			throws SQLException {
+		final PreparedStatement stmt;
+		if (properties.isEmpty()) {
+			stmt = con.prepareStatement(selectScopeQuery);
+			stmt.setString(1, scopeName);
+		} else {
+			stmt = con.prepareStatement(queryGen.createSelectScopeWithPropertiesQuery(
+					scopePropertyTable.getScopePathColumnName(),
+					scopePropertyTable.getTableName(),
+					scopePropertyTable.getScopeNameColumnName(),
+					scopePropertyTable.getPropertyKeyColumnName(),
+					scopePropertyTable.getPropertyValueColumnName(),
+					properties.size()));
+			stmt.setString(1, scopeName);
+			int index = 2;
+			for (final Map.Entry<String, String> property : properties.entrySet()) {
+				stmt.setString(index++, property.getKey());
+				stmt.setString(index++, property.getValue());
+			}
+		}
+		final Collection<String> paths = new LinkedList<String>();
+		ResultSet resultSet = null;
+		try {
+			resultSet = stmt.executeQuery();
+			while (resultSet.next()) {
+				paths.add(resultSet.getString(scopePropertyTable.getScopePathColumnName()));
+			}
+		} finally {
+			dbUtils.closeQuietly(resultSet);
+		}
+		return paths;
+	}
+
 	@Override
 	public Collection<ScopePath> listScopes(final String scopeName, final Map<String, String> properties) {
 		Assert.paramNotNull(scopeName, "scopeName"); //$NON-NLS-1$
 		Assert.paramNotNull(properties, "properties"); //$NON-NLS-1$
 
-		final Collection<ScopePath> result = new JdbcTemplate<Collection<ScopePath>>(dataSource).perform(new DbCallable() {
+		final JdbcTemplate<Collection<ScopePath>> template = new JdbcTemplate<Collection<ScopePath>>(connectionPool);
+		if (scopePropertyTable != null) {
+			return template.performReadOnly(new DbCallable() {
+
+				@Override
+				public Object execute(final DbConnection con) throws Exception {
+					final Collection<String> paths = selectScopePaths(con, scopeName, properties);
+					// the paths already match; the scope name alone doesn't filter any of them
+					return gen.createScopePaths(paths, scopeName, Collections.<String, String> emptyMap());
+				}
+			});
+		}
+		final Collection<ScopePath> result = template.performReadOnly(new DbCallable() {
 
 			@Override
-			public Object execute(final Connection con) throws Exception {
+			public Object execute(final DbConnection con) throws Exception {
 				final String searchedPathPart = gen.buildScopeWithProperty(scopeName, properties);
 				final Collection<String> paths = new LinkedList<String>();
 				PreparedStatement stmt = null;
@@ -310,7 +921,7 @@ public final class DbConfigPersister implements ConfigPersister {
 							configTableName,
 							scopePathColumnName,
 							searchedPathPart);
-					stmt = con.prepareStatement(createSelectLikeItemQuery);
+					stmt = con.getConnection().prepareStatement(createSelectLikeItemQuery);
 					final ResultSet resSet = stmt.executeQuery();
 					while (resSet.next()) {
 						final String result = resSet.getString(scopePathColumnName);
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel, Lukas Gross
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.dbpersister;
+
+import org.jeconfig.api.util.Assert;
+
+/**
+ * Describes the side table which indexes the scopes of the persisted scope paths for the
+ * {@link DbConfigPersister}. With this table listScopes and deleteAllOccurences use indexed
+ * equality conditions instead of LIKE conditions on the scope path column.<br>
+ * <br>
+ * The table contains one row per scope of a scope path (property key and value are <code>NULL</code>)
+ * and one row per scope property. The class and code default scopes are not indexed.<br>
+ * Example DDL:
+ * 
+ * <pre>
+ * CREATE TABLE ConfigScopes (
+ *   ScopePath VARCHAR(2000) NOT NULL,
+ *   ScopeName VARCHAR(200) NOT NULL,
+ *   PropertyKey VARCHAR(200),
+ *   PropertyValue VARCHAR(2000));
+ * CREATE INDEX ConfigScopesByProperty ON ConfigScopes (ScopeName, PropertyKey, PropertyValue);
+ * CREATE INDEX ConfigScopesByPath ON ConfigScopes (ScopePath);
+ * </pre>
+ * 
+ * Use {@link DbConfigPersister#rebuildScopePropertyTable()} to fill the table for existing configurations.
+ */
+public final class DbScopePropertyTable {
+	private final String tableName;
+	private final String scopePathColumnName;
+	private final String scopeNameColumnName;
+	private final String propertyKeyColumnName;
+	private final String propertyValueColumnName;
+
+	public DbScopePropertyTable(
+		final String tableName,
+		final String scopePathColumnName,
+		final String scopeNameColumnName,
+		final String propertyKeyColumnName,
+		final String propertyValueColumnName) {
+		Assert.paramNotEmpty(tableName, "tableName"); //$NON-NLS-1$
+		Assert.paramNotEmpty(scopePathColumnName, "scopePathColumnName"); //$NON-NLS-1$
+		Assert.paramNotEmpty(scopeNameColumnName, "scopeNameColumnName"); //$NON-NLS-1$
+		Assert.paramNotEmpty(propertyKeyColumnName, "propertyKeyColumnName"); //$NON-NLS-1$
+		Assert.paramNotEmpty(propertyValueColumnName, "propertyValueColumnName"); //$NON-NLS-1$
+		this.tableName = tableName;
+		this.scopePathColumnName = scopePathColumnName;
+		this.scopeNameColumnName = scopeNameColumnName;
+		this.propertyKeyColumnName = propertyKeyColumnName;
+		this.propertyValueColumnName = propertyValueColumnName;
+	}
+
+	public String getTableName() {
+		return tableName;
+	}
+
+	/**
+	 * @return the column which references the scope path column of the config table
+	 */
+	public String getScopePathColumnName() {
+		return scopePathColumnName;
+	}
+
+	public String getScopeNameColumnName() {
+		return scopeNameColumnName;
+	}
+
+	public String getPropertyKeyColumnName() {
+		return propertyKeyColumnName;
+	}
+
+	public String getPropertyValueColumnName() {
+		return propertyValueColumnName;
+	}
+}
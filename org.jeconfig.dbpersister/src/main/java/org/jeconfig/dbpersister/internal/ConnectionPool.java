@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel, Lukas Gross
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.dbpersister.internal;
+
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.sql.DataSource;
+
+/**
+ * Keeps a small number of idle connections (with their cached statements) of a data source for reuse.<br>
+ * With a pool size of 0, connections are closed after each use; use this if the data source pools
+ * connections itself.<br>
+ * <br>
+ * Connections which caused an error are closed instead of being reused. Idle connections are not
+ * validated, so the first use of a connection which was closed by the database fails.<br>
+ * <br>
+ * This class is thread-safe.
+ */
+public final class ConnectionPool {
+	private final DataSource dataSource;
+	private final BlockingQueue<DbConnection> idleConnections;
+
+	/**
+	 * @param dataSource
+	 * @param maxIdleConnections the maximum number of connections kept for reuse
+	 */
+	public ConnectionPool(final DataSource dataSource, final int maxIdleConnections) {
+		if (maxIdleConnections < 0) {
+			throw new IllegalArgumentException("maxIdleConnections must not be negative but was: " + maxIdleConnections); //$NON-NLS-1$
+		}
+		this.dataSource = dataSource;
+		this.idleConnections = maxIdleConnections > 0 ? new ArrayBlockingQueue<DbConnection>(maxIdleConnections) : null;
+	}
+
+	/**
+	 * @return an idle connection or a new one if none is idle
+	 * @throws SQLException
+	 */
+	public DbConnection acquire() throws SQLException {
+		if (idleConnections != null) {
+			final DbConnection con = idleConnections.poll();
+			if (con != null) {
+				return con;
+			}
+		}
+		return new DbConnection(dataSource.getConnection());
+	}
+
+	/**
+	 * Returns the connection to the pool or closes it if the pool is full.
+	 * 
+	 * @param con
+	 * @param broken whether the connection must not be reused
+	 */
+	public void release(final DbConnection con, final boolean broken) {
+		if (broken || idleConnections == null || !idleConnections.offer(con)) {
+			con.closeQuietly();
+		}
+	}
+
+	/**
+	 * Closes all idle connections.
+	 */
+	public void close() {
+		if (idleConnections != null) {
+			DbConnection con = idleConnections.poll();
+			while (con != null) {
+				con.closeQuietly();
+				con = idleConnections.poll();
+			}
+		}
+	}
+}
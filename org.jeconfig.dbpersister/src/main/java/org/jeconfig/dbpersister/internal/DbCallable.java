@@ -27,8 +27,6 @@
 
 package org.jeconfig.dbpersister.internal;
 
-import java.sql.Connection;
-
 public interface DbCallable {
-	Object execute(Connection con) throws Exception;
+	Object execute(DbConnection con) throws Exception;
 }
@@ -43,10 +43,18 @@ public final class DbConfigPersisterQueryCreator {
 	private static final String SET = "SET"; //$NON-NLS-1$
 	private static final String DELETE = "DELETE"; //$NON-NLS-1$
 	private static final String LIKE = "LIKE"; //$NON-NLS-1$
+	private static final String IN = "IN"; //$NON-NLS-1$
+	private static final String OR = "OR"; //$NON-NLS-1$
+	private static final String IS_NULL = "IS NULL"; //$NON-NLS-1$
+	private static final String DISTINCT = "DISTINCT"; //$NON-NLS-1$
+	private static final String GROUP_BY = "GROUP BY"; //$NON-NLS-1$
+	private static final String HAVING = "HAVING"; //$NON-NLS-1$
+	private static final String COUNT = "COUNT(*)"; //$NON-NLS-1$
 	private static final String WILDCARD = "%"; //$NON-NLS-1$
 	private static final String PLACEHOLDER = "?"; //$NON-NLS-1$
 	private static final String ESCAPE = "ESCAPE '\'"; //$NON-NLS-1$^
 	private static final String LESS_THAN = "<"; //$NON-NLS-1$
+	private static final String GREATER_THAN = ">"; //$NON-NLS-1$
 
 	public String createUpdateQuery(final String table, final String targetCol, final String primKey, final String versionCol) {
 		final StringBuffer sb = new StringBuffer(UPDATE + " " //$NON-NLS-1$
@@ -59,6 +67,12 @@ public final class DbConfigPersisterQueryCreator {
 			+ EQUALS
 			+ " " //$NON-NLS-1$
 			+ PLACEHOLDER
+			+ ", " //$NON-NLS-1$
+			+ versionCol
+			+ " " //$NON-NLS-1$
+			+ EQUALS
+			+ " " //$NON-NLS-1$
+			+ PLACEHOLDER
 			+ " " //$NON-NLS-1$
 			+ WHERE
 			+ " " //$NON-NLS-1$
@@ -96,6 +110,60 @@ public final class DbConfigPersisterQueryCreator {
 		return sb.toString();
 	}
 
+	/**
+	 * Creates a query which selects the select column of the row with the given key (placeholder)
+	 * if its version is greater than the given version (placeholder).
+	 */
+	public String createSelectNewerItemQuery(
+		final String selectColumn,
+		final String fromTable,
+		final String whereColumn,
+		final String versionColumn) {
+		final StringBuilder sb = new StringBuilder(createSelectEqualsItemQuery(selectColumn, fromTable, whereColumn)
+			+ " " //$NON-NLS-1$
+			+ AND
+			+ " " //$NON-NLS-1$
+			+ versionColumn
+			+ " " //$NON-NLS-1$
+			+ GREATER_THAN
+			+ " " //$NON-NLS-1$
+			+ PLACEHOLDER);
+		return sb.toString();
+	}
+
+	public String createSelectInItemsQuery(
+		final String fromTable,
+		final String whereColumn,
+		final int itemCount,
+		final String... selectColumns) {
+		final StringBuilder sb = new StringBuilder(SELECT + " "); //$NON-NLS-1$
+		for (int i = 0; i < selectColumns.length; i++) {
+			if (i > 0) {
+				sb.append(", "); //$NON-NLS-1$
+			}
+			sb.append(selectColumns[i]);
+		}
+		sb.append(" " //$NON-NLS-1$
+			+ FROM
+			+ " " //$NON-NLS-1$
+			+ fromTable
+			+ " " //$NON-NLS-1$
+			+ WHERE
+			+ " " //$NON-NLS-1$
+			+ whereColumn
+			+ " " //$NON-NLS-1$
+			+ IN
+			+ " ("); //$NON-NLS-1$
+		for (int i = 0; i < itemCount; i++) {
+			if (i > 0) {
+				sb.append(","); //$NON-NLS-1$
+			}
+			sb.append(PLACEHOLDER);
+		}
+		sb.append(")"); //$NON-NLS-1$
+		return sb.toString();
+	}
+
 	public String createSelectLikeItemQuery(
 		final String selectColumn,
 		final String fromTable,
@@ -186,4 +254,163 @@ public final class DbConfigPersisterQueryCreator {
 			+ ")"); //$NON-NLS-1$
 		return sb.toString();
 	}
+
+	/**
+	 * Creates a query which selects the distinct values of the select column of all rows
+	 * with the given scope name (placeholder) and a <code>NULL</code> key column.
+	 */
+	public String createSelectScopeQuery(
+		final String selectColumn,
+		final String fromTable,
+		final String scopeNameColumn,
+		final String keyColumn) {
+		final StringBuilder sb = new StringBuilder(SELECT + " " //$NON-NLS-1$
+			+ DISTINCT
+			+ " " //$NON-NLS-1$
+			+ selectColumn
+			+ " " //$NON-NLS-1$
+			+ FROM
+			+ " " //$NON-NLS-1$
+			+ fromTable
+			+ " " //$NON-NLS-1$
+			+ WHERE
+			+ " " //$NON-NLS-1$
+			+ scopeNameColumn
+			+ " " //$NON-NLS-1$
+			+ EQUALS
+			+ " " //$NON-NLS-1$
+			+ PLACEHOLDER
+			+ " " //$NON-NLS-1$
+			+ AND
+			+ " " //$NON-NLS-1$
+			+ keyColumn
+			+ " " //$NON-NLS-1$
+			+ IS_NULL);
+		return sb.toString();
+	}
+
+	/**
+	 * Creates a query which selects the values of the select column of all groups of rows with the given
+	 * scope name (placeholder) which contain all the given key/value pairs (placeholders).
+	 */
+	public String createSelectScopeWithPropertiesQuery(
+		final String selectColumn,
+		final String fromTable,
+		final String scopeNameColumn,
+		final String keyColumn,
+		final String valueColumn,
+		final int propertyCount) {
+		final StringBuilder sb = new StringBuilder(SELECT + " " //$NON-NLS-1$
+			+ selectColumn
+			+ " " //$NON-NLS-1$
+			+ FROM
+			+ " " //$NON-NLS-1$
+			+ fromTable
+			+ " " //$NON-NLS-1$
+			+ WHERE
+			+ " " //$NON-NLS-1$
+			+ scopeNameColumn
+			+ " " //$NON-NLS-1$
+			+ EQUALS
+			+ " " //$NON-NLS-1$
+			+ PLACEHOLDER
+			+ " " //$NON-NLS-1$
+			+ AND
+			+ " ("); //$NON-NLS-1$
+		for (int i = 0; i < propertyCount; i++) {
+			if (i > 0) {
+				sb.append(" " + OR + " "); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			sb.append("(" //$NON-NLS-1$
+				+ keyColumn
+				+ " " //$NON-NLS-1$
+				+ EQUALS
+				+ " " //$NON-NLS-1$
+				+ PLACEHOLDER
+				+ " " //$NON-NLS-1$
+				+ AND
+				+ " " //$NON-NLS-1$
+				+ valueColumn
+				+ " " //$NON-NLS-1$
+				+ EQUALS
+				+ " " //$NON-NLS-1$
+				+ PLACEHOLDER
+				+ ")"); //$NON-NLS-1$
+		}
+		sb.append(") " //$NON-NLS-1$
+			+ GROUP_BY
+			+ " " //$NON-NLS-1$
+			+ selectColumn
+			+ " " //$NON-NLS-1$
+			+ HAVING
+			+ " " //$NON-NLS-1$
+			+ COUNT
+			+ " " //$NON-NLS-1$
+			+ EQUALS
+			+ " " //$NON-NLS-1$
+			+ propertyCount);
+		return sb.toString();
+	}
+
+	public String createDeleteInItemsQuery(final String fromTable, final String whereColumn, final int itemCount) {
+		final StringBuilder sb = new StringBuilder(DELETE + " " //$NON-NLS-1$
+			+ FROM
+			+ " " //$NON-NLS-1$
+			+ fromTable
+			+ " " //$NON-NLS-1$
+			+ WHERE
+			+ " " //$NON-NLS-1$
+			+ whereColumn
+			+ " " //$NON-NLS-1$
+			+ IN
+			+ " ("); //$NON-NLS-1$
+		for (int i = 0; i < itemCount; i++) {
+			if (i > 0) {
+				sb.append(","); //$NON-NLS-1$
+			}
+			sb.append(PLACEHOLDER);
+		}
+		sb.append(")"); //$NON-NLS-1$
+		return sb.toString();
+	}
+
+	public String createInsertItemQuery(
+		final String targetTable,
+		final String firstColumn,
+		final String secColumn,
+		final String thiColumn,
+		final String fourthColumn) {
+		final StringBuilder sb = new StringBuilder(INSERT_INTO + " " //$NON-NLS-1$
+			+ targetTable
+			+ " " //$NON-NLS-1$
+			+ "(" //$NON-NLS-1$
+			+ firstColumn
+			+ ", " //$NON-NLS-1$
+			+ secColumn
+			+ ", " //$NON-NLS-1$
+			+ thiColumn
+			+ ", " //$NON-NLS-1$
+			+ fourthColumn
+			+ ")" //$NON-NLS-1$
+			+ " " //$NON-NLS-1$
+			+ VALUES
+			+ "(" //$NON-NLS-1$
+			+ PLACEHOLDER
+			+ "," //$NON-NLS-1$
+			+ PLACEHOLDER
+			+ "," //$NON-NLS-1$
+			+ PLACEHOLDER
+			+ "," //$NON-NLS-1$
+			+ PLACEHOLDER
+			+ ")"); //$NON-NLS-1$
+		return sb.toString();
+	}
+
+	public String createSelectItemsQuery(final String selectColumn, final String fromTable) {
+		return SELECT + " " + selectColumn + " " + FROM + " " + fromTable; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	public String createDeleteAllItemsQuery(final String fromTable) {
+		return DELETE + " " + FROM + " " + fromTable; //$NON-NLS-1$ //$NON-NLS-2$
+	}
 }
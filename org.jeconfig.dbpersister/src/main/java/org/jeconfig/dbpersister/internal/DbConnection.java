@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel, Lukas Gross
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.dbpersister.internal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A database connection which caches its prepared statements.<br>
+ * Cached statements must not be closed by the caller; they are closed with the connection
+ * or if they are evicted from the cache.<br>
+ * <br>
+ * This class is not thread-safe; a connection is used by one thread at a time.
+ */
+public final class DbConnection {
+	private static final int MAX_CACHED_STATEMENTS = 32;
+
+	private final Connection connection;
+	private final DbUtils dbUtils;
+	private final Map<String, PreparedStatement> statements;
+	private Boolean autoCommit;
+
+	public DbConnection(final Connection connection) {
+		this.connection = connection;
+		this.dbUtils = new DbUtils();
+		// access ordered to evict the least recently used statement
+		this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true);
+	}
+
+	/**
+	 * @return the underlying connection; statements created with it must be closed by the caller
+	 */
+	public Connection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * Provides a prepared statement for the given SQL. The statement is reused by later calls
+	 * with the same SQL and must not be closed by the caller.
+	 * 
+	 * @param sql should not contain literal values, otherwise the cache is polluted
+	 * @return the cached statement
+	 * @throws SQLException
+	 */
+	public PreparedStatement prepareStatement(final String sql) throws SQLException {
+		PreparedStatement stmt = statements.get(sql);
+		if (stmt == null) {
+			stmt = connection.prepareStatement(sql);
+			statements.put(sql, stmt);
+			if (statements.size() > MAX_CACHED_STATEMENTS) {
+				final Iterator<PreparedStatement> it = statements.values().iterator();
+				dbUtils.closeQuietly(it.next());
+				it.remove();
+			}
+		}
+		return stmt;
+	}
+
+	/**
+	 * Sets the auto-commit mode if it differs from the current one.
+	 * 
+	 * @param autoCommit
+	 * @throws SQLException
+	 */
+	public void setAutoCommit(final boolean autoCommit) throws SQLException {
+		if (this.autoCommit == null || this.autoCommit.booleanValue() != autoCommit) {
+			connection.setAutoCommit(autoCommit);
+			this.autoCommit = Boolean.valueOf(autoCommit);
+		}
+	}
+
+	/**
+	 * Closes all cached statements and the connection ignoring exceptions.
+	 */
+	public void closeQuietly() {
+		for (final PreparedStatement stmt : statements.values()) {
+			dbUtils.closeQuietly(stmt);
+		}
+		statements.clear();
+		dbUtils.closeQuietly(connection);
+	}
+}
@@ -31,6 +31,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
@@ -43,6 +44,26 @@ import org.slf4j.LoggerFactory;
  */
 public class DbUtils {
 	private static final Logger LOG = LoggerFactory.getLogger(DbConfigPersister.class);
+	private static final String INTEGRITY_CONSTRAINT_VIOLATION = "23"; //$NON-NLS-1$
+
+	/**
+	 * Checks whether the exception or one of its chained exceptions reports an integrity constraint
+	 * violation (SQLState class 23), e.g. a duplicate primary key.
+	 * 
+	 * @param e
+	 * @return <code>true</code> if an integrity constraint was violated
+	 */
+	public boolean isIntegrityConstraintViolation(final SQLException e) {
+		SQLException current = e;
+		while (current != null) {
+			final String sqlState = current.getSQLState();
+			if (sqlState != null && sqlState.startsWith(INTEGRITY_CONSTRAINT_VIOLATION)) {
+				return true;
+			}
+			current = current.getNextException();
+		}
+		return false;
+	}
 
 	/**
 	 * Closes sql connections ignoring null and exception.
@@ -74,6 +95,37 @@ public class DbUtils {
 		}
 	}
 
+	/**
+	 * Clears the batch of a statement ignoring null and exception. Cached statements are reused,
+	 * so commands which weren't executed because of an error must not remain in their batch.
+	 * 
+	 * @param stmt
+	 */
+	public void clearBatchQuietly(final Statement stmt) {
+		try {
+			if (stmt != null) {
+				stmt.clearBatch();
+			}
+		} catch (final SQLException e) {
+			LOG.trace("Clearing batch of db statement failed!", e); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Closes result sets ignoring null and exception.
+	 * 
+	 * @param resultSet
+	 */
+	public void closeQuietly(final ResultSet resultSet) {
+		try {
+			if (resultSet != null) {
+				resultSet.close();
+			}
+		} catch (final SQLException e) {
+			LOG.trace("Closing result set failed!", e); //$NON-NLS-1$
+		}
+	}
+
 	/**
 	 * Closes an inputstream ignoring null and exceptions.
 	 * 
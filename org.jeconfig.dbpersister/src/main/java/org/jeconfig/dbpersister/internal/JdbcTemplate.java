@@ -27,7 +27,6 @@
 
 package org.jeconfig.dbpersister.internal;
 
-import java.sql.Connection;
 import java.sql.SQLException;
 
 import javax.sql.DataSource;
@@ -43,55 +42,85 @@ import org.slf4j.LoggerFactory;
  */
 public class JdbcTemplate<T> {
 	private static final Logger LOG = LoggerFactory.getLogger(JdbcTemplate.class);
-	private static ThreadLocal<Connection> connectionHolder = new ThreadLocal<Connection>();
+	private static ThreadLocal<DbConnection> connectionHolder = new ThreadLocal<DbConnection>();
 
-	private final DataSource dataSource;
-	private final DbUtils dbUtils;
+	private final ConnectionPool connectionPool;
 
 	public JdbcTemplate(final DataSource dataSource) {
-		this.dataSource = dataSource;
-		this.dbUtils = new DbUtils();
+		this(new ConnectionPool(dataSource, 0));
+	}
+
+	public JdbcTemplate(final ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
 	}
 
 	/**
-	 * Configures and opens a connection to Db. Executes the given runnable.
-	 * Connection will be closed quietly after executing runnable.
+	 * Acquires a connection from the pool and executes the given runnable in a transaction.
+	 * The connection will be released after executing runnable.
 	 * 
 	 * @param runnable
 	 * @return T a ResultSet or a Collection of ScopePath
 	 */
-	@SuppressWarnings("unchecked")
 	public T perform(final DbCallable runnable) {
-		Connection con = null;
-		T result = null;
+		return perform(runnable, false);
+	}
+
+	/**
+	 * Acquires a connection from the pool and executes the given runnable without an explicit
+	 * transaction (auto-commit). Use this for runnables which only read.
+	 * 
+	 * @param runnable
+	 * @return the result of the runnable
+	 */
+	public T performReadOnly(final DbCallable runnable) {
+		return perform(runnable, true);
+	}
+
+	@SuppressWarnings("unchecked")
+	private T perform(final DbCallable runnable, final boolean readOnly) {
+		if (connectionHolder.get() != null) {
+			throw new IllegalStateException("Nested connections are not supported!"); //$NON-NLS-1$
+		}
+		DbConnection con = null;
+		boolean broken = false;
 		try {
-			con = connectionHolder.get();
-			if (con != null) {
-				throw new IllegalStateException("Nested connections are not supported!"); //$NON-NLS-1$
-			}
-			con = dataSource.getConnection();
+			con = connectionPool.acquire();
 			connectionHolder.set(con);
-			con.setAutoCommit(false);
-			result = (T) runnable.execute(con);
-			con.commit();
-		} catch (final RuntimeException e) {
-			try {
-				con.rollback();
-			} catch (final SQLException e1) {
-				LOG.warn("Error rolling back DB Connection", e1); //$NON-NLS-1$
+			con.setAutoCommit(readOnly);
+			final T result = (T) runnable.execute(con);
+			if (!readOnly) {
+				con.getConnection().commit();
 			}
+			return result;
+		} catch (final RuntimeException e) {
+			broken = !rollback(con, readOnly);
 			throw e;
 		} catch (final Exception e) {
-			try {
-				con.rollback();
-			} catch (final SQLException e1) {
-				LOG.warn("Error rolling back DB Connection", e1); //$NON-NLS-1$
-			}
+			// the connection may be unusable after a database error
+			rollback(con, readOnly);
+			broken = true;
 			throw new RuntimeException(e);
+		} catch (final Error e) {
+			broken = true;
+			throw e;
 		} finally {
 			connectionHolder.remove();
-			dbUtils.closeQuietly(con);
+			if (con != null) {
+				connectionPool.release(con, broken);
+			}
+		}
+	}
+
+	private boolean rollback(final DbConnection con, final boolean readOnly) {
+		if (con == null || readOnly) {
+			return true;
+		}
+		try {
+			con.getConnection().rollback();
+			return true;
+		} catch (final SQLException e) {
+			LOG.warn("Error rolling back DB Connection", e); //$NON-NLS-1$
+			return false;
 		}
-		return result;
 	}
 }
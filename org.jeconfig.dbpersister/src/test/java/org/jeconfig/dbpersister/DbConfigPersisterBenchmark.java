@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel, Lukas Gross
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.dbpersister;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.api.dto.ConfigSimpleValueDTO;
+import org.jeconfig.api.scope.ClassScopeDescriptor;
+import org.jeconfig.api.scope.CodeDefaultScopeDescriptor;
+import org.jeconfig.api.scope.ScopePath;
+import org.jeconfig.api.scope.ScopePathBuilder;
+import org.jeconfig.common.scope.InternalScopePathBuilderFactory;
+import org.jeconfig.server.marshalling.XStreamXmlMarshaller;
+
+/**
+ * Simple benchmark which compares the latency of loads of a {@link DbConfigPersister}
+ * with and without reused connections against an embedded H2 database.<br>
+ * <br>
+ * This is not a unit test; run it manually with the main method.
+ */
+@SuppressWarnings("nls")
+public final class DbConfigPersisterBenchmark {
+	private static final int CONFIG_COUNT = 100;
+	private static final int LOADS = 20000;
+	private static final int BULK_SIZE = 10;
+
+	private DbConfigPersisterBenchmark() {}
+
+	public static void main(final String[] args) throws Exception {
+		final JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:benchmarkdb;MODE=Oracle");
+		dataSource.setUser("SA");
+		dataSource.setPassword("");
+		// keeps the in-memory database alive
+		final Connection con = dataSource.getConnection();
+		try {
+			createTable(con);
+			final DbConfigPersister unpooled = createPersister(dataSource, 0);
+			final DbConfigPersister pooled = createPersister(dataSource, 4);
+			final List<ScopePath> scopePaths = new ArrayList<ScopePath>();
+			for (int i = 0; i < CONFIG_COUNT; i++) {
+				final ScopePath scopePath = createScopePath("user" + i);
+				unpooled.saveConfiguration(createConfig(scopePath));
+				scopePaths.add(scopePath);
+			}
+
+			// warm up
+			for (int i = 0; i < 3; i++) {
+				runLoads(unpooled, scopePaths);
+				runLoads(pooled, scopePaths);
+				runBulkLoads(unpooled, scopePaths);
+				runBulkLoads(pooled, scopePaths);
+			}
+
+			System.out.println("single loads: new connections " + runLoads(unpooled, scopePaths)
+				+ " us/load, reused connections "
+				+ runLoads(pooled, scopePaths)
+				+ " us/load");
+			System.out.println("bulk loads of " + BULK_SIZE + " configs: new connections " + runBulkLoads(unpooled, scopePaths)
+				+ " us/load, reused connections "
+				+ runBulkLoads(pooled, scopePaths)
+				+ " us/load");
+			pooled.close();
+		} finally {
+			con.close();
+		}
+	}
+
+	private static double runLoads(final DbConfigPersister persister, final List<ScopePath> scopePaths) {
+		final long start = System.nanoTime();
+		for (int i = 0; i < LOADS; i++) {
+			persister.loadConfiguration(scopePaths.get(i % scopePaths.size()));
+		}
+		return (System.nanoTime() - start) / 1000.0 / LOADS;
+	}
+
+	private static double runBulkLoads(final DbConfigPersister persister, final List<ScopePath> scopePaths) {
+		final int loads = LOADS / BULK_SIZE;
+		final long start = System.nanoTime();
+		for (int i = 0; i < loads; i++) {
+			final int from = (i * BULK_SIZE) % (scopePaths.size() - BULK_SIZE);
+			persister.loadConfigurations(scopePaths.subList(from, from + BULK_SIZE));
+		}
+		return (System.nanoTime() - start) / 1000.0 / loads;
+	}
+
+	private static void createTable(final Connection con) throws SQLException {
+		final Statement stmt = con.createStatement();
+		try {
+			stmt.execute("CREATE TABLE ConfigData (ScopePath VARCHAR(2000) NOT NULL PRIMARY KEY, "
+				+ "configVersion NUMBER(19) NOT NULL, ConfigName LONGVARBINARY NOT NULL)");
+		} finally {
+			stmt.close();
+		}
+	}
+
+	private static DbConfigPersister createPersister(final JdbcDataSource dataSource, final int maxIdleConnections) {
+		return new DbConfigPersister(
+			"ConfigData",
+			"ScopePath",
+			"configVersion",
+			"ConfigName",
+			new XStreamXmlMarshaller(),
+			dataSource,
+			maxIdleConnections);
+	}
+
+	private static ScopePath createScopePath(final String scopeName) {
+		final Map<String, String> classProps = new HashMap<String, String>();
+		classProps.put(ClassScopeDescriptor.PROP_CLASS_NAME, "class.name");
+		final ScopePathBuilder builder = new InternalScopePathBuilderFactory().createBuilder();
+		builder.append(ClassScopeDescriptor.NAME, classProps);
+		builder.append(CodeDefaultScopeDescriptor.NAME);
+		builder.append(scopeName);
+		return builder.create();
+	}
+
+	private static ComplexConfigDTO createConfig(final ScopePath scopePath) {
+		final ComplexConfigDTO config = new ComplexConfigDTO();
+		config.setPolymorph(false);
+		config.addSimpleValueProperty(new ConfigSimpleValueDTO("Integer", "field2", scopePath, "123"));
+		config.setDefiningScopePath(scopePath);
+		config.setVersion(1);
+		config.setNulled(false);
+		return config;
+	}
+}
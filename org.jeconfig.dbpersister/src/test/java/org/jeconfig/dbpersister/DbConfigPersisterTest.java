@@ -27,13 +27,25 @@
 
 package org.jeconfig.dbpersister;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.sql.DataSource;
+
 import junit.framework.Assert;
 
 import org.h2.jdbcx.JdbcDataSource;
@@ -46,8 +58,10 @@ import org.jeconfig.api.scope.CodeDefaultScopeDescriptor;
 import org.jeconfig.api.scope.DefaultScopeDescriptor;
 import org.jeconfig.api.scope.GlobalScopeDescriptor;
 import org.jeconfig.api.scope.ScopePath;
+import org.jeconfig.api.scope.ScopePathBuilder;
 import org.jeconfig.api.scope.ScopePathBuilderFactory;
 import org.jeconfig.api.scope.UserScopeDescriptor;
+import org.jeconfig.server.marshalling.ConfigMarshaller;
 import org.jeconfig.server.marshalling.XStreamXmlMarshaller;
 import org.junit.After;
 import org.junit.Before;
@@ -67,6 +81,7 @@ public class DbConfigPersisterTest extends AbstractConfigPersisterTest {
 	private final String scopePathColumnName = "ScopePath";
 	private final String configColumnName = "ConfigName";
 	private final String configVersionColumnName = "configVersion";
+	private boolean scopePropertyTableCreated;
 
 	// TODO create test for exeption when using nested connection
 	@Before
@@ -106,6 +121,9 @@ public class DbConfigPersisterTest extends AbstractConfigPersisterTest {
 	public void tearDown() throws SQLException {
 		final String deleteOldTable = "DROP TABLE " + configTableName;
 		try {
+			if (scopePropertyTableCreated) {
+				stmt.execute("DROP TABLE ConfigScopes");
+			}
 			stmt.execute(deleteOldTable);
 		} catch (final SQLException e) {
 			LOG.info("Couldn't delete test db table.", e);
@@ -254,6 +272,24 @@ public class DbConfigPersisterTest extends AbstractConfigPersisterTest {
 		persister.saveConfiguration(configuration);
 	}
 
+	@Test
+	public void testSaveConfigurationAlreadyExistsKeepsExistingConfig() {
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		final ComplexConfigDTO configuration = createTestConfigDTO(factory.annotatedPath().create());
+		persister.saveConfiguration(configuration);
+
+		final ComplexConfigDTO otherConfiguration = createTestConfigDTO(configuration.getDefiningScopePath());
+		otherConfiguration.setVersion(2);
+		try {
+			persister.saveConfiguration(otherConfiguration);
+			Assert.fail();
+		} catch (final StaleConfigException e) {
+			Assert.assertEquals(configuration.getDefiningScopePath(), e.getScopePath());
+			Assert.assertTrue(e.getCause() instanceof SQLException);
+		}
+		Assert.assertEquals(configuration, persister.loadConfiguration(configuration.getDefiningScopePath()));
+	}
+
 	@Test(expected = StoreConfigException.class)
 	public void testSaveConfigurationIllegalVersion() {
 		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
@@ -310,6 +346,316 @@ public class DbConfigPersisterTest extends AbstractConfigPersisterTest {
 		persister.updateConfiguration(configuration);
 	}
 
+	@Test
+	public void testLoadConfigurations() {
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		final ComplexConfigDTO config1 = createTestConfigDTO(factory.annotatedPathUntil(DefaultScopeDescriptor.NAME).create());
+		final ComplexConfigDTO config2 = createTestConfigDTO(factory.annotatedPath().create());
+		persister.saveConfigurations(Arrays.asList(config1, config2));
+		final ScopePath notExisting = factory.annotatedPathUntil(GlobalScopeDescriptor.NAME).create();
+
+		final Map<ScopePath, ComplexConfigDTO> result = persister.loadConfigurations(Arrays.asList(
+				config2.getDefiningScopePath(),
+				notExisting,
+				config1.getDefiningScopePath()));
+		Assert.assertEquals(3, result.size());
+		Assert.assertEquals(config2, result.get(config2.getDefiningScopePath()));
+		Assert.assertEquals(config1, result.get(config1.getDefiningScopePath()));
+		Assert.assertTrue(result.containsKey(notExisting));
+		Assert.assertNull(result.get(notExisting));
+	}
+
+	@Test
+	public void testSaveConfigurationsAlreadyExistsSavesNothing() {
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		final ComplexConfigDTO config1 = createTestConfigDTO(factory.annotatedPathUntil(DefaultScopeDescriptor.NAME).create());
+		final ComplexConfigDTO config2 = createTestConfigDTO(factory.annotatedPath().create());
+		persister.saveConfiguration(config2);
+
+		try {
+			persister.saveConfigurations(Arrays.asList(config1, config2));
+			Assert.fail();
+		} catch (final StaleConfigException e) {
+			Assert.assertEquals(config2.getDefiningScopePath(), e.getScopePath());
+		}
+		Assert.assertNull(persister.loadConfiguration(config1.getDefiningScopePath()));
+	}
+
+	@Test
+	public void testUpdateConfigurationsStaleUpdatesNothing() {
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		final ComplexConfigDTO config1 = createTestConfigDTO(factory.annotatedPathUntil(DefaultScopeDescriptor.NAME).create());
+		final ComplexConfigDTO config2 = createTestConfigDTO(factory.annotatedPath().create());
+		persister.saveConfigurations(Arrays.asList(config1, config2));
+
+		final ComplexConfigDTO updatedConfig1 = createTestConfigDTO(config1.getDefiningScopePath());
+		updatedConfig1.setVersion(2);
+		try {
+			// config2 has still the same version
+			persister.updateConfigurations(Arrays.asList(updatedConfig1, config2));
+			Assert.fail();
+		} catch (final StaleConfigException e) {
+			Assert.assertEquals(config2.getDefiningScopePath(), e.getScopePath());
+		}
+		Assert.assertEquals(1, persister.loadConfiguration(config1.getDefiningScopePath()).getVersion());
+
+		persister.updateConfigurations(Arrays.asList(updatedConfig1));
+		Assert.assertEquals(updatedConfig1, persister.loadConfiguration(config1.getDefiningScopePath()));
+	}
+
+	@Test
+	public void testUpdateConfigurationsDetectsStaleConfigsWithoutBatchRowCounts() {
+		final DbConfigPersister noInfoPersister = new DbConfigPersister(
+			configTableName,
+			scopePathColumnName,
+			configVersionColumnName,
+			configColumnName,
+			new XStreamXmlMarshaller(),
+			NoBatchRowCountsHandler.wrap(DataSource.class, dataSource));
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		final ComplexConfigDTO config1 = createTestConfigDTO(factory.annotatedPathUntil(DefaultScopeDescriptor.NAME).create());
+		final ComplexConfigDTO config2 = createTestConfigDTO(factory.annotatedPath().create());
+		noInfoPersister.saveConfigurations(Arrays.asList(config1, config2));
+
+		final ComplexConfigDTO updatedConfig1 = createTestConfigDTO(config1.getDefiningScopePath());
+		updatedConfig1.setVersion(2);
+		try {
+			// config2 has still the same version
+			noInfoPersister.updateConfigurations(Arrays.asList(updatedConfig1, config2));
+			Assert.fail();
+		} catch (final StaleConfigException e) {
+			Assert.assertEquals(config2.getDefiningScopePath(), e.getScopePath());
+		}
+		Assert.assertEquals(1, noInfoPersister.loadConfiguration(config1.getDefiningScopePath()).getVersion());
+
+		noInfoPersister.updateConfigurations(Arrays.asList(updatedConfig1));
+		Assert.assertEquals(updatedConfig1, noInfoPersister.loadConfiguration(config1.getDefiningScopePath()));
+	}
+
+	@Test
+	public void testGetVersions() {
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		final ComplexConfigDTO config1 = createTestConfigDTO(factory.annotatedPathUntil(DefaultScopeDescriptor.NAME).create());
+		final ComplexConfigDTO config2 = createTestConfigDTO(factory.annotatedPath().create());
+		persister.saveConfigurations(Arrays.asList(config1, config2));
+		final ComplexConfigDTO updatedConfig2 = createTestConfigDTO(config2.getDefiningScopePath());
+		updatedConfig2.setVersion(5);
+		persister.updateConfiguration(updatedConfig2);
+		final ScopePath notExisting = factory.annotatedPathUntil(GlobalScopeDescriptor.NAME).create();
+
+		final Map<ScopePath, Long> result = persister.getVersions(Arrays.asList(
+				config2.getDefiningScopePath(),
+				notExisting,
+				config1.getDefiningScopePath()));
+		Assert.assertEquals(
+				Arrays.asList(config2.getDefiningScopePath(), notExisting, config1.getDefiningScopePath()),
+				new ArrayList<ScopePath>(result.keySet()));
+		Assert.assertEquals(Long.valueOf(5), result.get(config2.getDefiningScopePath()));
+		Assert.assertEquals(Long.valueOf(1), result.get(config1.getDefiningScopePath()));
+		Assert.assertNull(result.get(notExisting));
+	}
+
+	@Test
+	public void testLoadIfNewer() {
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		final ComplexConfigDTO configuration = createTestConfigDTO(factory.annotatedPath().create());
+		persister.saveConfiguration(configuration);
+		final ScopePath scopePath = configuration.getDefiningScopePath();
+
+		Assert.assertNull(persister.loadIfNewer(scopePath, 1));
+		Assert.assertEquals(configuration, persister.loadIfNewer(scopePath, 0));
+
+		final ComplexConfigDTO updatedConfig = createTestConfigDTO(scopePath);
+		updatedConfig.setVersion(2);
+		persister.updateConfiguration(updatedConfig);
+		Assert.assertEquals(updatedConfig, persister.loadIfNewer(scopePath, 1));
+		Assert.assertNull(persister.loadIfNewer(factory.annotatedPathUntil(GlobalScopeDescriptor.NAME).create(), 0));
+	}
+
+	@Test
+	public void testPooledConnectionsAreReusedAfterFailures() {
+		final DbConfigPersister pooledPersister = new DbConfigPersister(
+			configTableName,
+			scopePathColumnName,
+			configVersionColumnName,
+			configColumnName,
+			new XStreamXmlMarshaller(),
+			dataSource,
+			2);
+		try {
+			final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+			final ComplexConfigDTO configuration = createTestConfigDTO(factory.annotatedPath().create());
+			pooledPersister.saveConfiguration(configuration);
+			try {
+				pooledPersister.saveConfiguration(configuration);
+				Assert.fail();
+			} catch (final StaleConfigException e) {
+				// expected; the connection must still be usable
+			}
+			Assert.assertEquals(configuration, pooledPersister.loadConfiguration(configuration.getDefiningScopePath()));
+
+			configuration.setVersion(2);
+			pooledPersister.updateConfiguration(configuration);
+			Assert.assertEquals(configuration, pooledPersister.loadConfiguration(configuration.getDefiningScopePath()));
+			Assert.assertEquals(configuration, persister.loadConfiguration(configuration.getDefiningScopePath()));
+
+			pooledPersister.delete(configuration.getDefiningScopePath(), false);
+			Assert.assertNull(pooledPersister.loadConfiguration(configuration.getDefiningScopePath()));
+		} finally {
+			pooledPersister.close();
+		}
+	}
+
+	@Test
+	public void testFailedBatchIsNotExecutedLater() {
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		final ComplexConfigDTO config1 = createTestConfigDTO(factory.annotatedPathUntil(DefaultScopeDescriptor.NAME).create());
+		final ScopePath globalPath = factory.annotatedPathUntil(GlobalScopeDescriptor.NAME).create();
+		final ComplexConfigDTO failingConfig = createTestConfigDTO(globalPath);
+		final ComplexConfigDTO config2 = createTestConfigDTO(factory.annotatedPath().create());
+		final XStreamXmlMarshaller delegate = new XStreamXmlMarshaller();
+		final ConfigMarshaller marshaller = new ConfigMarshaller() {
+			@Override
+			public void marshal(final OutputStream out, final ComplexConfigDTO configurationObject) {
+				if (configurationObject == failingConfig) {
+					throw new StoreConfigException("marshalling failed");
+				}
+				delegate.marshal(out, configurationObject);
+			}
+
+			@Override
+			public ComplexConfigDTO unmarshal(final InputStream in) {
+				return delegate.unmarshal(in);
+			}
+		};
+		final DbConfigPersister pooledPersister = new DbConfigPersister(
+			configTableName,
+			scopePathColumnName,
+			configVersionColumnName,
+			configColumnName,
+			marshaller,
+			dataSource,
+			1);
+		try {
+			try {
+				pooledPersister.saveConfigurations(Arrays.asList(config1, failingConfig));
+				Assert.fail();
+			} catch (final StoreConfigException e) {
+				// expected; the batch of the reused statement must be empty again
+			}
+			pooledPersister.saveConfigurations(Arrays.asList(config2));
+			Assert.assertNull(pooledPersister.loadConfiguration(config1.getDefiningScopePath()));
+			Assert.assertEquals(config2, pooledPersister.loadConfiguration(config2.getDefiningScopePath()));
+
+			final ComplexConfigDTO updatedConfig2 = createTestConfigDTO(config2.getDefiningScopePath());
+			updatedConfig2.setVersion(2);
+			failingConfig.setVersion(2);
+			try {
+				pooledPersister.updateConfigurations(Arrays.asList(updatedConfig2, failingConfig));
+				Assert.fail();
+			} catch (final StoreConfigException e) {
+				// expected
+			}
+			pooledPersister.saveConfigurations(Arrays.asList(config1));
+			final ComplexConfigDTO updatedConfig1 = createTestConfigDTO(config1.getDefiningScopePath());
+			updatedConfig1.setVersion(2);
+			pooledPersister.updateConfigurations(Arrays.asList(updatedConfig1));
+			Assert.assertEquals(updatedConfig1, pooledPersister.loadConfiguration(config1.getDefiningScopePath()));
+			Assert.assertEquals(config2, pooledPersister.loadConfiguration(config2.getDefiningScopePath()));
+		} finally {
+			pooledPersister.close();
+		}
+	}
+
+	@Test
+	public void testScopePropertyTableListScopes() throws SQLException {
+		final DbConfigPersister indexedPersister = createPersisterWithScopePropertyTable();
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		indexedPersister.saveConfiguration(createTestConfigDTO(factory.annotatedPathUntil(DefaultScopeDescriptor.NAME).create()));
+		indexedPersister.saveConfiguration(createTestConfigDTO(factory.annotatedPathUntil(GlobalScopeDescriptor.NAME).create()));
+		indexedPersister.saveConfigurations(Arrays.asList(
+				createTestConfigDTO(factory.annotatedPath().create()),
+				createTestConfigDTO(createUserScopePath(factory, "egon"))));
+
+		final Map<String, String> properties = new HashMap<String, String>();
+		properties.put(UserScopeDescriptor.PROP_USER_NAME, "hugo");
+		final Collection<ScopePath> userScopePaths = indexedPersister.listScopes(UserScopeDescriptor.NAME, properties);
+		Assert.assertEquals(1, userScopePaths.size());
+		Assert.assertTrue(userScopePaths.iterator().next().findScopeByName(UserScopeDescriptor.NAME).containsAllProperties(properties));
+
+		Assert.assertEquals(2, indexedPersister.listScopes(UserScopeDescriptor.NAME, new HashMap<String, String>()).size());
+		Assert.assertEquals(3, indexedPersister.listScopes(GlobalScopeDescriptor.NAME, new HashMap<String, String>()).size());
+		properties.put(UserScopeDescriptor.PROP_USER_NAME, "otto");
+		Assert.assertEquals(0, indexedPersister.listScopes(UserScopeDescriptor.NAME, properties).size());
+	}
+
+	@Test
+	public void testScopePropertyTableDeleteAllOccurences() throws SQLException {
+		final DbConfigPersister indexedPersister = createPersisterWithScopePropertyTable();
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		final ComplexConfigDTO globalConfig = createTestConfigDTO(factory.annotatedPathUntil(GlobalScopeDescriptor.NAME).create());
+		final ComplexConfigDTO hugoConfig = createTestConfigDTO(factory.annotatedPath().create());
+		final ComplexConfigDTO egonConfig = createTestConfigDTO(createUserScopePath(factory, "egon"));
+		indexedPersister.saveConfigurations(Arrays.asList(globalConfig, hugoConfig, egonConfig));
+
+		final Map<String, String> properties = new HashMap<String, String>();
+		properties.put(UserScopeDescriptor.PROP_USER_NAME, "hugo");
+		indexedPersister.deleteAllOccurences(UserScopeDescriptor.NAME, properties);
+
+		Assert.assertNull(indexedPersister.loadConfiguration(hugoConfig.getDefiningScopePath()));
+		Assert.assertEquals(egonConfig, indexedPersister.loadConfiguration(egonConfig.getDefiningScopePath()));
+		Assert.assertEquals(globalConfig, indexedPersister.loadConfiguration(globalConfig.getDefiningScopePath()));
+		// default and global of globalConfig; default, global, user and userName of egonConfig
+		Assert.assertEquals(2 + 4, countRows("ConfigScopes"));
+
+		indexedPersister.delete(globalConfig.getDefiningScopePath(), true);
+		Assert.assertEquals(0, countRows("ConfigScopes"));
+	}
+
+	@Test
+	public void testRebuildScopePropertyTable() throws SQLException {
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		persister.saveConfiguration(createTestConfigDTO(factory.annotatedPathUntil(GlobalScopeDescriptor.NAME).create()));
+		persister.saveConfiguration(createTestConfigDTO(factory.annotatedPath().create()));
+
+		final DbConfigPersister indexedPersister = createPersisterWithScopePropertyTable();
+		Assert.assertEquals(0, indexedPersister.listScopes(GlobalScopeDescriptor.NAME, new HashMap<String, String>()).size());
+		indexedPersister.rebuildScopePropertyTable();
+		Assert.assertEquals(2, indexedPersister.listScopes(GlobalScopeDescriptor.NAME, new HashMap<String, String>()).size());
+
+		final Map<String, String> properties = new HashMap<String, String>();
+		properties.put(UserScopeDescriptor.PROP_USER_NAME, "hugo");
+		Assert.assertEquals(1, indexedPersister.listScopes(UserScopeDescriptor.NAME, properties).size());
+	}
+
+	private DbConfigPersister createPersisterWithScopePropertyTable() throws SQLException {
+		stmt.execute("CREATE TABLE ConfigScopes (ScopePath VARCHAR(2000) NOT NULL, ScopeName VARCHAR(200) NOT NULL, "
+			+ "PropertyKey VARCHAR(200), PropertyValue VARCHAR(2000))");
+		stmt.execute("CREATE INDEX ConfigScopesByProperty ON ConfigScopes (ScopeName, PropertyKey, PropertyValue)");
+		scopePropertyTableCreated = true;
+		return new DbConfigPersister(
+			configTableName,
+			scopePathColumnName,
+			configVersionColumnName,
+			configColumnName,
+			new XStreamXmlMarshaller(),
+			dataSource,
+			0,
+			new DbScopePropertyTable("ConfigScopes", "ScopePath", "ScopeName", "PropertyKey", "PropertyValue"));
+	}
+
+	private ScopePath createUserScopePath(final ScopePathBuilderFactory factory, final String userName) {
+		final ScopePathBuilder builder = factory.annotatedPath();
+		builder.addPropertyToScope(UserScopeDescriptor.NAME, UserScopeDescriptor.PROP_USER_NAME, userName);
+		return builder.create();
+	}
+
+	private int countRows(final String tableName) throws SQLException {
+		final ResultSet resultSet = stmt.executeQuery("SELECT COUNT(*) FROM " + tableName);
+		resultSet.next();
+		return resultSet.getInt(1);
+	}
+
 	private ComplexConfigDTO createTestConfigDTO(final ScopePath path) {
 		final ComplexConfigDTO configuration = new ComplexConfigDTO();
 		configuration.setPolymorph(false);
@@ -319,4 +665,44 @@ public class DbConfigPersisterTest extends AbstractConfigPersisterTest {
 		configuration.setNulled(false);
 		return configuration;
 	}
+
+	/**
+	 * Delegates to a JDBC object and reports Statement.SUCCESS_NO_INFO for batches like some drivers do.
+	 */
+	private static final class NoBatchRowCountsHandler implements InvocationHandler {
+		private final Object target;
+
+		private NoBatchRowCountsHandler(final Object target) {
+			this.target = target;
+		}
+
+		static <T> T wrap(final Class<T> type, final Object target) {
+			return type.cast(Proxy.newProxyInstance(
+					NoBatchRowCountsHandler.class.getClassLoader(),
+					new Class<?>[] {type},
+					new NoBatchRowCountsHandler(target)));
+		}
+
+		@Override
+		public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+			final Object result;
+			try {
+				result = method.invoke(target, args);
+			} catch (final InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+			if (result instanceof Connection) {
+				return wrap(Connection.class, result);
+			}
+			if (result instanceof PreparedStatement) {
+				return wrap(PreparedStatement.class, result);
+			}
+			if ("executeBatch".equals(method.getName())) {
+				final int[] counts = new int[((int[]) result).length];
+				Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+				return counts;
+			}
+			return result;
+		}
+	}
 }
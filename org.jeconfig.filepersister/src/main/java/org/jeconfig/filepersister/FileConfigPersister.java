@@ -27,40 +27,97 @@
 
 package org.jeconfig.filepersister;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.FileFilterUtils;
+import org.apache.commons.io.filefilter.IOFileFilter;
 import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.jeconfig.api.dto.ComplexConfigDTO;
 import org.jeconfig.api.exception.StaleConfigException;
 import org.jeconfig.api.exception.StoreConfigException;
-import org.jeconfig.api.persister.ConfigPersister;
+import org.jeconfig.api.persister.BulkConfigPersister;
 import org.jeconfig.api.persister.ScopePathGenerator;
+import org.jeconfig.api.persister.VersionedConfigPersister;
 import org.jeconfig.api.scope.ScopePath;
 import org.jeconfig.api.util.Assert;
+import org.jeconfig.common.datastructure.ScopePathIndex;
+import org.jeconfig.filepersister.internal.StripedFileLocks;
 import org.jeconfig.server.marshalling.ConfigMarshaller;
 import org.jeconfig.server.persister.DefaultScopePathGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * A Persister implementation that stores configs in files
+ * A Persister implementation that stores configs in files.<br>
+ * Bulk loads read the files in parallel.<br>
+ * Configurations are written to a temporary file which replaces the config file when it is complete.
+ * Writes of the same config file are serialized, writes of different files run in parallel.
+ * Optionally lock files in the root directory serialize the writes of several processes; in that case
+ * only one persister per root directory may be used in a JVM.<br>
+ * Optionally the scope paths of all config files are indexed in memory, so listScopes and deleteAllOccurences
+ * don't need to scan the root directory. The index is built on first use and updated by the writes of the
+ * persister; call {@link #rebuildScopeIndex()} after the files were modified by others.<br>
+ * The versions of loaded files are remembered with their modification time and size, so version probes
+ * only read a file again if it was modified. Note that a modification by another process which keeps the
+ * size of a file isn't detected within the resolution of the file system's modification time.
  */
-public final class FileConfigPersister implements ConfigPersister {
+public final class FileConfigPersister implements BulkConfigPersister, VersionedConfigPersister {
 	public static final String ID = FileConfigPersister.class.getName();
+	/** The default number of files which are read in parallel by bulk loads. */
+	public static final int DEFAULT_PARALLEL_LOADS = 4;
 	private static final Logger LOG = LoggerFactory.getLogger(FileConfigPersister.class);
+	private static final long LOADER_KEEP_ALIVE_SECONDS = 60;
+	private static final String TEMP_FILE_SUFFIX = ".jeconfig-tmp"; //$NON-NLS-1$
+	private static final String LOCK_FILE_SUFFIX = ".jeconfig-lock"; //$NON-NLS-1$
+	private static final int WRITE_LOCK_STRIPES = 64;
+	private static final int WRITE_BUFFER_SIZE = 8192;
+	private static final int MAX_TEMP_FILE_ATTEMPTS = 3;
+	/** Accepts all files except lock files and temporary files which were left by interrupted writes. */
+	private static final IOFileFilter CONFIG_FILE_FILTER = FileFilterUtils.andFileFilter(
+			FileFilterUtils.fileFileFilter(),
+			FileFilterUtils.notFileFilter(FileFilterUtils.orFileFilter(
+					FileFilterUtils.suffixFileFilter(TEMP_FILE_SUFFIX),
+					FileFilterUtils.suffixFileFilter(LOCK_FILE_SUFFIX))));
 	private final ConfigMarshaller marshaller;
 	private final ScopePathGenerator gen;
 	private final String rootDirectory;
 	private final String fileExtension;
+	private final ThreadPoolExecutor loadExecutor;
+	private final boolean syncWrites;
+	private final boolean lockFiles;
+	private final String rootPath;
+	private final StripedFileLocks writeLocks;
+	private final ScopePathIndex scopeIndex;
+	/** Write lock: (re)building the index; read lock: modifying a file and updating the index. */
+	private final ReadWriteLock scopeIndexLock;
+	private volatile boolean scopeIndexBuilt;
+	/** Write lock: removing an empty directory; read lock: creating a temporary file in a directory. */
+	private final ReadWriteLock directoryLock;
+	private final ConcurrentHashMap<File, FileVersion> fileVersions;
 
 	/**
 	 * Creates a new FileConfigPersister
@@ -70,13 +127,115 @@ public final class FileConfigPersister implements ConfigPersister {
 	 * @param fileExtension the file extension to be used for the saved files including the "." e.g. ".xml"
 	 */
 	public FileConfigPersister(final ConfigMarshaller marshaller, final String rootDirectory, final String fileExtension) {
+		this(marshaller, rootDirectory, fileExtension, DEFAULT_PARALLEL_LOADS);
+	}
+
+	/**
+	 * Creates a new FileConfigPersister
+	 * 
+	 * @param marshaller the marshaller to be used for serialization
+	 * @param rootDirectory the root directory for config storage
+	 * @param fileExtension the file extension to be used for the saved files including the "." e.g. ".xml"
+	 * @param parallelLoads the maximum number of files which are read in parallel by bulk loads
+	 */
+	public FileConfigPersister(
+		final ConfigMarshaller marshaller,
+		final String rootDirectory,
+		final String fileExtension,
+		final int parallelLoads) {
+		this(marshaller, rootDirectory, fileExtension, parallelLoads, false);
+	}
+
+	/**
+	 * Creates a new FileConfigPersister
+	 * 
+	 * @param marshaller the marshaller to be used for serialization
+	 * @param rootDirectory the root directory for config storage
+	 * @param fileExtension the file extension to be used for the saved files including the "." e.g. ".xml"
+	 * @param parallelLoads the maximum number of files which are read in parallel by bulk loads
+	 * @param syncWrites whether written configurations are forced to the storage device before they replace
+	 *            the config files; this survives system crashes but slows down writes
+	 */
+	public FileConfigPersister(
+		final ConfigMarshaller marshaller,
+		final String rootDirectory,
+		final String fileExtension,
+		final int parallelLoads,
+		final boolean syncWrites) {
+		this(marshaller, rootDirectory, fileExtension, parallelLoads, syncWrites, false);
+	}
+
+	/**
+	 * Creates a new FileConfigPersister
+	 * 
+	 * @param marshaller the marshaller to be used for serialization
+	 * @param rootDirectory the root directory for config storage
+	 * @param fileExtension the file extension to be used for the saved files including the "." e.g. ".xml"
+	 * @param parallelLoads the maximum number of files which are read in parallel by bulk loads
+	 * @param syncWrites whether written configurations are forced to the storage device before they replace
+	 *            the config files; this survives system crashes but slows down writes
+	 * @param lockFiles whether writes are also serialized with the writes of other processes by locking files
+	 *            in the root directory
+	 */
+	public FileConfigPersister(
+		final ConfigMarshaller marshaller,
+		final String rootDirectory,
+		final String fileExtension,
+		final int parallelLoads,
+		final boolean syncWrites,
+		final boolean lockFiles) {
+		this(marshaller, rootDirectory, fileExtension, parallelLoads, syncWrites, lockFiles, false);
+	}
+
+	/**
+	 * Creates a new FileConfigPersister
+	 * 
+	 * @param marshaller the marshaller to be used for serialization
+	 * @param rootDirectory the root directory for config storage
+	 * @param fileExtension the file extension to be used for the saved files including the "." e.g. ".xml"
+	 * @param parallelLoads the maximum number of files which are read in parallel by bulk loads
+	 *            and the number of directories which are scanned in parallel to build the scope index
+	 * @param syncWrites whether written configurations are forced to the storage device before they replace
+	 *            the config files; this survives system crashes but slows down writes
+	 * @param lockFiles whether writes are also serialized with the writes of other processes by locking files
+	 *            in the root directory
+	 * @param indexScopes whether the scope paths of the config files are indexed in memory
+	 */
+	public FileConfigPersister(
+		final ConfigMarshaller marshaller,
+		final String rootDirectory,
+		final String fileExtension,
+		final int parallelLoads,
+		final boolean syncWrites,
+		final boolean lockFiles,
+		final boolean indexScopes) {
 		Assert.paramNotNull(rootDirectory, "rootDirectory"); //$NON-NLS-1$
 		Assert.paramNotNull(marshaller, "marshaller"); //$NON-NLS-1$
 		Assert.paramNotNull(fileExtension, "fileExtension"); //$NON-NLS-1$
+		if (parallelLoads < 1) {
+			throw new IllegalArgumentException("parallelLoads must be at least 1 but was: " + parallelLoads); //$NON-NLS-1$
+		}
 		this.gen = new DefaultScopePathGenerator(File.separator);
 		this.marshaller = marshaller;
 		this.fileExtension = fileExtension;
 		this.rootDirectory = rootDirectory;
+		this.syncWrites = syncWrites;
+		this.lockFiles = lockFiles;
+		this.rootPath = new File(rootDirectory).getAbsolutePath();
+		this.writeLocks = new StripedFileLocks(WRITE_LOCK_STRIPES, lockFiles ? new File(rootDirectory) : null, LOCK_FILE_SUFFIX);
+		this.fileVersions = new ConcurrentHashMap<File, FileVersion>();
+		this.scopeIndex = indexScopes ? new ScopePathIndex() : null;
+		this.scopeIndexLock = new ReentrantReadWriteLock();
+		this.directoryLock = new ReentrantReadWriteLock();
+		// idle threads terminate, so the persister doesn't need to be disposed
+		this.loadExecutor = new ThreadPoolExecutor(
+			parallelLoads,
+			parallelLoads,
+			LOADER_KEEP_ALIVE_SECONDS,
+			TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(),
+			new LoaderThreadFactory());
+		this.loadExecutor.allowCoreThreadTimeOut(true);
 	}
 
 	@Override
@@ -88,12 +247,10 @@ public final class FileConfigPersister implements ConfigPersister {
 	public ComplexConfigDTO loadConfiguration(final ScopePath scopePath) {
 		Assert.paramNotNull(scopePath, "scopePath"); //$NON-NLS-1$
 
-		final File configFile = new File(rootDirectory
-			+ File.separator
-			+ gen.getPathFromScopePath(scopePath)
-			+ File.separator
-			+ gen.createName(scopePath)
-			+ fileExtension);
+		final File configFile = getConfigFile(scopePath);
+		// the file is examined before reading, so a concurrent modification is detected by the next version probe
+		final long lastModified = configFile.lastModified();
+		final long length = configFile.length();
 		FileInputStream in = null;
 		try {
 			in = FileUtils.openInputStream(configFile);
@@ -103,8 +260,10 @@ public final class FileConfigPersister implements ConfigPersister {
 					"Illegal config version. Must be 1 or higher. Occures at scope Path '" + scopePath + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
 			}
 			configDTO.setDefiningScopePath(scopePath);
+			fileVersions.put(configFile, new FileVersion(lastModified, length, configDTO.getVersion()));
 			return configDTO;
 		} catch (final FileNotFoundException e) {
+			fileVersions.remove(configFile);
 			return null;
 		} catch (final IOException e) {
 			throw new StoreConfigException("Error while loading configuration for the scope Path '" + scopePath + "'!", e); //$NON-NLS-1$ //$NON-NLS-2$
@@ -120,56 +279,179 @@ public final class FileConfigPersister implements ConfigPersister {
 	}
 
 	@Override
-	public void updateConfiguration(final ComplexConfigDTO configDTO) {
-		Assert.paramNotNull(configDTO, "configuration"); //$NON-NLS-1$
-		final File configFile = new File(rootDirectory
-			+ File.separator
-			+ gen.getPathFromScopePath(configDTO.getDefiningScopePath())
-			+ File.separator
-			+ gen.createName(configDTO.getDefiningScopePath())
-			+ fileExtension);
+	public Map<ScopePath, ComplexConfigDTO> loadConfigurations(final Collection<ScopePath> scopePaths) {
+		Assert.paramNotNull(scopePaths, "scopePaths"); //$NON-NLS-1$
 
-		if (!configFile.exists()) {
-			throw new StaleConfigException(
-				configDTO.getDefiningScopePath(),
-				"There exists no record for the scope path '" + configDTO.getDefiningScopePath() + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
+		final Map<ScopePath, ComplexConfigDTO> result = new LinkedHashMap<ScopePath, ComplexConfigDTO>();
+		if (scopePaths.size() < 2) {
+			for (final ScopePath scopePath : scopePaths) {
+				result.put(scopePath, loadConfiguration(scopePath));
+			}
+			return result;
 		}
-		final long sourceVersion = loadConfiguration(configDTO.getDefiningScopePath()).getVersion();
-		final long destinationVersion = configDTO.getVersion();
-		if (sourceVersion >= destinationVersion) {
-			throw new StaleConfigException(
-				configDTO.getDefiningScopePath(),
-				"The saved Data has a newer or the same version. Occures at scope path '" + configDTO.getDefiningScopePath() + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		final List<Future<ComplexConfigDTO>> futures = new ArrayList<Future<ComplexConfigDTO>>(scopePaths.size());
+		try {
+			for (final ScopePath scopePath : scopePaths) {
+				futures.add(loadExecutor.submit(new Callable<ComplexConfigDTO>() {
+					@Override
+					public ComplexConfigDTO call() {
+						return loadConfiguration(scopePath);
+					}
+				}));
+			}
+			int i = 0;
+			for (final ScopePath scopePath : scopePaths) {
+				result.put(scopePath, getLoadResult(futures.get(i++), scopePath));
+			}
+			return result;
+		} finally {
+			for (final Future<ComplexConfigDTO> future : futures) {
+				future.cancel(false);
+			}
 		}
-		if (sourceVersion < 1) {
-			throw new StoreConfigException(
-				"Illegal config version. Must be 1 or higher. Occures at scope Path '" + configDTO.getDefiningScopePath() + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	@Override
+	public Map<ScopePath, Long> getVersions(final Collection<ScopePath> scopePaths) {
+		Assert.paramNotNull(scopePaths, "scopePaths"); //$NON-NLS-1$
+
+		final Map<ScopePath, Long> versions = new LinkedHashMap<ScopePath, Long>();
+		final List<ScopePath> modifiedPaths = new ArrayList<ScopePath>();
+		for (final ScopePath scopePath : scopePaths) {
+			final File configFile = getConfigFile(scopePath);
+			if (!configFile.exists()) {
+				fileVersions.remove(configFile);
+				versions.put(scopePath, null);
+			} else {
+				final FileVersion fileVersion = getUnmodifiedFileVersion(configFile);
+				if (fileVersion != null) {
+					versions.put(scopePath, Long.valueOf(fileVersion.version));
+				} else {
+					modifiedPaths.add(scopePath);
+				}
+			}
 		}
-		final boolean deleted = configFile.delete();
-		if (!deleted) {
-			throw new StoreConfigException(
-				"Couldn't update configuration. Deleting old configuration failed. Occures at scope Path '" + configDTO.getDefiningScopePath() + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
+		// the version is part of the content, so modified files must be read
+		for (final Map.Entry<ScopePath, ComplexConfigDTO> entry : loadConfigurations(modifiedPaths).entrySet()) {
+			final ComplexConfigDTO configDTO = entry.getValue();
+			versions.put(entry.getKey(), configDTO != null ? Long.valueOf(configDTO.getVersion()) : null);
+		}
+
+		final Map<ScopePath, Long> result = new LinkedHashMap<ScopePath, Long>();
+		for (final ScopePath scopePath : scopePaths) {
+			result.put(scopePath, versions.get(scopePath));
+		}
+		return result;
+	}
+
+	@Override
+	public ComplexConfigDTO loadIfNewer(final ScopePath scopePath, final long knownVersion) {
+		Assert.paramNotNull(scopePath, "scopePath"); //$NON-NLS-1$
+
+		final FileVersion fileVersion = getUnmodifiedFileVersion(getConfigFile(scopePath));
+		if (fileVersion != null && fileVersion.version <= knownVersion) {
+			return null;
+		}
+		final ComplexConfigDTO configDTO = loadConfiguration(scopePath);
+		if (configDTO != null && configDTO.getVersion() > knownVersion) {
+			return configDTO;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the remembered version of the file or <code>null</code> if the file was modified since it was read
+	 */
+	private FileVersion getUnmodifiedFileVersion(final File configFile) {
+		final FileVersion fileVersion = fileVersions.get(configFile);
+		if (fileVersion != null
+			&& fileVersion.lastModified == configFile.lastModified()
+			&& fileVersion.length == configFile.length()) {
+			return fileVersion;
 		}
-		FileOutputStream out = null;
+		return null;
+	}
+
+	private ComplexConfigDTO getLoadResult(final Future<ComplexConfigDTO> future, final ScopePath scopePath) {
 		try {
-			out = FileUtils.openOutputStream(configFile);
-			marshaller.marshal(out, configDTO);
-		} catch (final FileNotFoundException e) {
-			throw new StoreConfigException(
-				"Error while updating configuration for scope Path '" + configDTO.getDefiningScopePath() + "'!", e); //$NON-NLS-1$//$NON-NLS-2$
-		} catch (final IOException e) {
-			throw new StoreConfigException(
-				"Error while updating configuration for scope Path '" + configDTO.getDefiningScopePath() + "'!", e); //$NON-NLS-1$ //$NON-NLS-2$
+			return future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new StoreConfigException("Interrupted while loading configuration for the scope Path '" + scopePath + "'!", e); //$NON-NLS-1$ //$NON-NLS-2$
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new StoreConfigException("Error while loading configuration for the scope Path '" + scopePath + "'!", e.getCause()); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	@Override
+	public void saveConfigurations(final Collection<ComplexConfigDTO> configDTOs) {
+		Assert.paramNotNull(configDTOs, "configDTOs"); //$NON-NLS-1$
+		for (final ComplexConfigDTO configDTO : configDTOs) {
+			saveConfiguration(configDTO);
+		}
+	}
+
+	@Override
+	public void updateConfigurations(final Collection<ComplexConfigDTO> configDTOs) {
+		Assert.paramNotNull(configDTOs, "configDTOs"); //$NON-NLS-1$
+		for (final ComplexConfigDTO configDTO : configDTOs) {
+			updateConfiguration(configDTO);
+		}
+	}
+
+	@Override
+	public void updateConfiguration(final ComplexConfigDTO configDTO) {
+		Assert.paramNotNull(configDTO, "configuration"); //$NON-NLS-1$
+		final File configFile = getConfigFile(configDTO.getDefiningScopePath());
+
+		// the version check and the write must not be interleaved with other writes of the file
+		final int stripe = writeLocks.lock(getLockKey(configFile));
+		try {
+			final Long storedVersion = getStoredVersion(configFile, configDTO.getDefiningScopePath());
+			if (storedVersion == null) {
+				throw new StaleConfigException(
+					configDTO.getDefiningScopePath(),
+					"There exists no record for the scope path '" + configDTO.getDefiningScopePath() + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			final long sourceVersion = storedVersion.longValue();
+			final long destinationVersion = configDTO.getVersion();
+			if (sourceVersion >= destinationVersion) {
+				throw new StaleConfigException(
+					configDTO.getDefiningScopePath(),
+					"The saved Data has a newer or the same version. Occures at scope path '" + configDTO.getDefiningScopePath() + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			if (sourceVersion < 1) {
+				throw new StoreConfigException(
+					"Illegal config version. Must be 1 or higher. Occures at scope Path '" + configDTO.getDefiningScopePath() + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			writeConfigFile(configFile, configDTO);
 		} finally {
-			if (out != null) {
-				try {
-					out.close();
-				} catch (final IOException e) {
-					LOG.warn(
-							"Error while closing outputStream for configuration with scopepath '" + configDTO.getDefiningScopePath() + "'!", e); //$NON-NLS-1$//$NON-NLS-2$
-				}
+			writeLocks.unlock(stripe);
+		}
+	}
+
+	/**
+	 * @return the version of the stored configuration or <code>null</code> if the file doesn't exist;
+	 *         without file locks the file is only read if it was modified since this persister read or wrote it
+	 */
+	private Long getStoredVersion(final File configFile, final ScopePath scopePath) {
+		// other processes may replace the file with one of the same size within the resolution of the modification time,
+		// so with file locks the version is always read from the file
+		if (!lockFiles) {
+			final FileVersion fileVersion = getUnmodifiedFileVersion(configFile);
+			if (fileVersion != null) {
+				return Long.valueOf(fileVersion.version);
 			}
 		}
+		final ComplexConfigDTO storedConfig = loadConfiguration(scopePath);
+		return storedConfig != null ? Long.valueOf(storedConfig.getVersion()) : null;
 	}
 
 	@Override
@@ -180,44 +462,97 @@ public final class FileConfigPersister implements ConfigPersister {
 			throw new StoreConfigException(
 				"Illegal config version. Must be 1 or higher. Occures at scope Path '" + configDTO.getDefiningScopePath() + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
 		}
-		final File configFile = new File(rootDirectory
-			+ File.separator
-			+ gen.getPathFromScopePath(configDTO.getDefiningScopePath())
-			+ File.separator
-			+ gen.createName(configDTO.getDefiningScopePath())
-			+ fileExtension);
+		final File configFile = getConfigFile(configDTO.getDefiningScopePath());
 
-		if (configFile.exists()) {
-			throw new StaleConfigException(
-				configDTO.getDefiningScopePath(),
-				"Can't save new configuration. There exists already a file for the scope path '" + configDTO.getDefiningScopePath() + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
-		}
+		final int stripe = writeLocks.lock(getLockKey(configFile));
 		try {
-			configFile.getParentFile().mkdirs();
-			configFile.createNewFile();
-		} catch (final IOException e) {
-			throw new StoreConfigException(
-				"Error while creating new file. Occures at scope path '" + configDTO.getDefiningScopePath() + "'!", e); //$NON-NLS-1$ //$NON-NLS-2$
+			if (configFile.exists()) {
+				throw new StaleConfigException(
+					configDTO.getDefiningScopePath(),
+					"Can't save new configuration. There exists already a file for the scope path '" + configDTO.getDefiningScopePath() + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			writeConfigFile(configFile, configDTO);
+		} finally {
+			writeLocks.unlock(stripe);
 		}
-		FileOutputStream out = null;
+	}
+
+	/**
+	 * Writes the configuration to a temporary file in the directory of the config file and renames it
+	 * to the config file, so readers never see a partially written or missing configuration.
+	 */
+	private void writeConfigFile(final File configFile, final ComplexConfigDTO configDTO) {
+		final ScopePath scopePath = configDTO.getDefiningScopePath();
+		File tempFile = null;
 		try {
-			out = FileUtils.openOutputStream(configFile);
-			marshaller.marshal(out, configDTO);
-		} catch (final FileNotFoundException e) {
-			throw new StoreConfigException(
-				"Error while saving configuration. Occures at scope path '" + configDTO.getDefiningScopePath() + "'!", e); //$NON-NLS-1$ //$NON-NLS-2$
+			tempFile = createTempFile(configFile);
+			final FileOutputStream fileOut = new FileOutputStream(tempFile);
+			final BufferedOutputStream out = new BufferedOutputStream(fileOut, WRITE_BUFFER_SIZE);
+			try {
+				marshaller.marshal(out, configDTO);
+				out.flush();
+				if (syncWrites) {
+					fileOut.getFD().sync();
+				}
+			} finally {
+				try {
+					out.close();
+				} catch (final IOException e) {
+					LOG.warn("Error while closing outputStream for configuration with scopepath '" + scopePath + "'!", e); //$NON-NLS-1$//$NON-NLS-2$
+				}
+			}
+			// the rename keeps the modification time and the size of the temporary file
+			final FileVersion fileVersion = new FileVersion(tempFile.lastModified(), tempFile.length(), configDTO.getVersion());
+			fileVersions.remove(configFile);
+			scopeIndexLock.readLock().lock();
+			try {
+				rename(tempFile, configFile);
+				if (scopeIndexBuilt) {
+					scopeIndex.add(toScopePath(configFile));
+				}
+			} finally {
+				scopeIndexLock.readLock().unlock();
+			}
+			fileVersions.put(configFile, fileVersion);
 		} catch (final IOException e) {
-			throw new StoreConfigException("Error while saving configuration." + configDTO.getDefiningScopePath() + "'!", e); //$NON-NLS-1$ //$NON-NLS-2$
+			throw new StoreConfigException("Error while writing configuration for scope Path '" + scopePath + "'!", e); //$NON-NLS-1$//$NON-NLS-2$
 		} finally {
-			if (out != null) {
+			if (tempFile != null && tempFile.exists() && !tempFile.delete()) {
+				LOG.warn("Couldn't delete temporary file '" + tempFile + "'!"); //$NON-NLS-1$//$NON-NLS-2$
+			}
+		}
+	}
+
+	private File createTempFile(final File configFile) throws IOException {
+		final File directory = configFile.getParentFile();
+		// the temporary file keeps the directory from being removed until the config file replaces it
+		directoryLock.readLock().lock();
+		try {
+			for (int attempt = 1;; attempt++) {
+				// the directory may have been removed by a delete of another configuration, also by another process
+				directory.mkdirs();
 				try {
-					out.close();
+					return File.createTempFile(configFile.getName(), TEMP_FILE_SUFFIX, directory);
 				} catch (final IOException e) {
-					LOG.warn(
-							"Error while closing outputStream for configuration with scopepath '" + configDTO.getDefiningScopePath() + "'!", e); //$NON-NLS-1$//$NON-NLS-2$
+					if (directory.exists() || attempt >= MAX_TEMP_FILE_ATTEMPTS) {
+						throw e;
+					}
 				}
 			}
+		} finally {
+			directoryLock.readLock().unlock();
+		}
+	}
+
+	private void rename(final File source, final File target) throws IOException {
+		if (source.renameTo(target)) {
+			return;
 		}
+		// some platforms (e.g. Windows) don't replace existing files, so the rename isn't atomic there
+		if (target.exists() && target.delete() && source.renameTo(target)) {
+			return;
+		}
+		throw new IOException("Couldn't rename '" + source + "' to '" + target + "'!"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 	}
 
 	@Override
@@ -231,6 +566,11 @@ public final class FileConfigPersister implements ConfigPersister {
 
 		if (deleteChildren == false) {
 			deleteConfigFileIfExists(configFile);
+		} else if (scopeIndex != null) {
+			deleteConfigFileIfExists(configFile);
+			for (final ScopePath childPath : getScopeIndex().getPathsStartingWith(toScopePath(configFile))) {
+				deleteConfigFileIfExists(getConfigFile(childPath));
+			}
 		} else {
 			deleteConfigFileIfExists(configFile);
 			final Collection<?> configFiles = FileUtils.listFiles(
@@ -248,9 +588,15 @@ public final class FileConfigPersister implements ConfigPersister {
 		Assert.paramNotNull(scopeName, "scopeName"); //$NON-NLS-1$
 		Assert.paramNotNull(properties, "properties"); //$NON-NLS-1$
 
+		if (scopeIndex != null) {
+			for (final ScopePath scopePath : getScopeIndex().getPathsContaining(scopeName, properties)) {
+				deleteConfigFileIfExists(getConfigFile(scopePath));
+			}
+			return;
+		}
 		final Collection<?> files = FileUtils.listFiles(
 				new File(rootDirectory),
-				FileFilterUtils.fileFileFilter(),
+				CONFIG_FILE_FILTER,
 				TrueFileFilter.INSTANCE);
 		final String searchedPathPart = gen.buildScopeWithProperty(scopeName, properties);
 		for (final Object file : files) {
@@ -266,9 +612,12 @@ public final class FileConfigPersister implements ConfigPersister {
 		Assert.paramNotNull(scopeName, "scopeName"); //$NON-NLS-1$
 		Assert.paramNotNull(properties, "properties"); //$NON-NLS-1$
 
+		if (scopeIndex != null) {
+			return getScopeIndex().getPathsContaining(scopeName, properties);
+		}
 		final Collection<?> files = FileUtils.listFiles(
 				new File(rootDirectory),
-				FileFilterUtils.fileFileFilter(),
+				CONFIG_FILE_FILTER,
 				TrueFileFilter.INSTANCE);
 		final Collection<String> paths = new LinkedList<String>();
 		for (final Object file : files) {
@@ -279,21 +628,189 @@ public final class FileConfigPersister implements ConfigPersister {
 		return gen.createScopePaths(paths, scopeName, properties);
 	}
 
-	private void deleteConfigFileIfExists(final File file) {
-		if (file.exists()) {
-			final boolean deleted = file.delete();
-			if (deleted == false) {
-				throw new StoreConfigException("Error while deleting configuration."); //$NON-NLS-1$
+	/**
+	 * Rebuilds the scope index from the files in the root directory. Call this method if the files were
+	 * modified by other processes. Does nothing if the scope paths are not indexed.
+	 */
+	public void rebuildScopeIndex() {
+		if (scopeIndex != null) {
+			buildScopeIndex();
+		}
+	}
+
+	private ScopePathIndex getScopeIndex() {
+		if (!scopeIndexBuilt) {
+			buildScopeIndex();
+		}
+		return scopeIndex;
+	}
+
+	private void buildScopeIndex() {
+		// blocks writes until the index is complete, so no modification is missed
+		scopeIndexLock.writeLock().lock();
+		try {
+			scopeIndex.clear();
+			final List<Future<Collection<ScopePath>>> futures = new ArrayList<Future<Collection<ScopePath>>>();
+			try {
+				final List<String> rootPaths = new ArrayList<String>();
+				final File[] files = new File(rootPath).listFiles();
+				if (files != null) {
+					for (final File file : files) {
+						if (file.isDirectory()) {
+							futures.add(loadExecutor.submit(new Callable<Collection<ScopePath>>() {
+								@Override
+								public Collection<ScopePath> call() {
+									final List<String> paths = new ArrayList<String>();
+									collectConfigFilePaths(file, paths);
+									return toScopePaths(paths);
+								}
+							}));
+						} else if (CONFIG_FILE_FILTER.accept(file)) {
+							rootPaths.add(getRelativePath(file));
+						}
+					}
+				}
+				addToScopeIndex(toScopePaths(rootPaths));
+				for (final Future<Collection<ScopePath>> future : futures) {
+					addToScopeIndex(getScanResult(future));
+				}
+			} finally {
+				for (final Future<Collection<ScopePath>> future : futures) {
+					future.cancel(false);
+				}
+			}
+			scopeIndexBuilt = true;
+		} finally {
+			scopeIndexLock.writeLock().unlock();
+		}
+	}
+
+	private void collectConfigFilePaths(final File directory, final List<String> paths) {
+		final File[] files = directory.listFiles();
+		if (files != null) {
+			for (final File file : files) {
+				if (file.isDirectory()) {
+					collectConfigFilePaths(file, paths);
+				} else if (CONFIG_FILE_FILTER.accept(file)) {
+					paths.add(getRelativePath(file));
+				}
+			}
+		}
+	}
+
+	private void addToScopeIndex(final Collection<ScopePath> scopePaths) {
+		for (final ScopePath scopePath : scopePaths) {
+			scopeIndex.add(scopePath);
+		}
+	}
+
+	private Collection<ScopePath> getScanResult(final Future<Collection<ScopePath>> future) {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new StoreConfigException("Interrupted while scanning the configuration files!", e); //$NON-NLS-1$
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
 			}
+			throw new StoreConfigException("Error while scanning the configuration files!", e.getCause()); //$NON-NLS-1$
 		}
-		final File[] dir = file.getParentFile().listFiles();
-		if (dir != null && dir.length == 0) {
+	}
+
+	/**
+	 * Parses the scope paths like {@link #listScopes(String, Map)} does without index,
+	 * so the indexed scope paths are the same.
+	 */
+	private Collection<ScopePath> toScopePaths(final Collection<String> relativePaths) {
+		return gen.createScopePaths(relativePaths, "", Collections.<String, String> emptyMap()); //$NON-NLS-1$
+	}
+
+	private ScopePath toScopePath(final File configFile) {
+		return toScopePaths(Collections.singleton(getRelativePath(configFile))).iterator().next();
+	}
+
+	private String getRelativePath(final File file) {
+		final String path = file.getAbsolutePath();
+		return path.startsWith(rootPath) ? path.substring(rootPath.length()) : path;
+	}
+
+	private void deleteConfigFileIfExists(final File file) {
+		final int stripe = writeLocks.lock(getLockKey(file));
+		try {
+			fileVersions.remove(file);
+			scopeIndexLock.readLock().lock();
 			try {
-				FileUtils.deleteDirectory(file.getParentFile());
-			} catch (final IOException e) {
-				throw new StoreConfigException("Error while deleting configuration.", e); //$NON-NLS-1$
+				if (file.exists()) {
+					final boolean deleted = file.delete();
+					if (deleted == false) {
+						throw new StoreConfigException("Error while deleting configuration."); //$NON-NLS-1$
+					}
+				}
+				if (scopeIndexBuilt) {
+					scopeIndex.remove(toScopePath(file));
+				}
+			} finally {
+				scopeIndexLock.readLock().unlock();
+			}
+			deleteDirectoryIfEmpty(file.getParentFile());
+		} finally {
+			writeLocks.unlock(stripe);
+		}
+	}
+
+	private void deleteDirectoryIfEmpty(final File directory) {
+		directoryLock.writeLock().lock();
+		try {
+			final File[] files = directory.listFiles();
+			if (files != null && files.length == 0) {
+				// fails if another process wrote a configuration to the directory meanwhile
+				directory.delete();
 			}
+		} finally {
+			directoryLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the path of the file relative to the root directory, so it's the same in all processes
+	 */
+	private String getLockKey(final File configFile) {
+		return getRelativePath(configFile);
+	}
+
+	private File getConfigFile(final ScopePath scopePath) {
+		return new File(rootDirectory
+			+ File.separator
+			+ gen.getPathFromScopePath(scopePath)
+			+ File.separator
+			+ gen.createName(scopePath)
+			+ fileExtension);
+	}
+
+	private static final class FileVersion {
+		private final long lastModified;
+		private final long length;
+		private final long version;
+
+		FileVersion(final long lastModified, final long length, final long version) {
+			this.lastModified = lastModified;
+			this.length = length;
+			this.version = version;
 		}
 	}
 
+	private static final class LoaderThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadCount = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			final Thread thread = new Thread(runnable, "FileConfigPersister-loader-" + threadCount.incrementAndGet()); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
 }
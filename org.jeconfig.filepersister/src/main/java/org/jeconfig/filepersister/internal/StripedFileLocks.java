@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel, Lukas Gross
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.filepersister.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jeconfig.api.exception.StoreConfigException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serializes writes of the same config file. The files are mapped to a fixed number of lock stripes,
+ * so writes of different files run in parallel (unless they share a stripe).<br>
+ * Optionally each stripe is also locked with a lock file (see {@link java.nio.channels.FileChannel#lock()})
+ * to serialize writes of other processes. The stripe of a file only depends on its key,
+ * so all processes must use the same number of stripes and the same lock directory.<br>
+ * <br>
+ * This class is thread-safe.
+ */
+public final class StripedFileLocks {
+	private static final Logger LOG = LoggerFactory.getLogger(StripedFileLocks.class);
+	private static final String LOCK_FILE_PREFIX = "stripe-"; //$NON-NLS-1$
+
+	private final ReentrantLock[] locks;
+	private final RandomAccessFile[] lockFiles;
+	private final File lockDirectory;
+	private final String lockFileSuffix;
+
+	/**
+	 * @param stripes the number of lock stripes
+	 * @param lockDirectory the directory of the lock files or <code>null</code> to lock only within this JVM
+	 * @param lockFileSuffix the suffix of the lock files
+	 */
+	public StripedFileLocks(final int stripes, final File lockDirectory, final String lockFileSuffix) {
+		if (stripes < 1) {
+			throw new IllegalArgumentException("stripes must be at least 1 but was: " + stripes); //$NON-NLS-1$
+		}
+		this.lockDirectory = lockDirectory;
+		this.lockFileSuffix = lockFileSuffix;
+		locks = new ReentrantLock[stripes];
+		for (int i = 0; i < stripes; i++) {
+			locks[i] = new ReentrantLock();
+		}
+		// guarded by the lock of the stripe
+		lockFiles = new RandomAccessFile[stripes];
+	}
+
+	/**
+	 * Locks the stripe of the given key. The lock must be released with {@link #unlock(int)}.
+	 * 
+	 * @param key identifies the locked file; must be the same in all processes
+	 * @return the locked stripe
+	 */
+	public int lock(final String key) {
+		final int hash = key.hashCode();
+		final int stripe = ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % locks.length;
+		final ReentrantLock lock = locks[stripe];
+		lock.lock();
+		if (lockDirectory != null && lock.getHoldCount() == 1) {
+			try {
+				lockFiles[stripe] = lockFile(stripe);
+			} catch (final RuntimeException e) {
+				lock.unlock();
+				throw e;
+			}
+		}
+		return stripe;
+	}
+
+	private RandomAccessFile lockFile(final int stripe) {
+		final File file = new File(lockDirectory, LOCK_FILE_PREFIX + stripe + lockFileSuffix);
+		RandomAccessFile lockFile = null;
+		try {
+			lockDirectory.mkdirs();
+			lockFile = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+			// blocks until other processes released the lock; closing the file releases it
+			lockFile.getChannel().lock();
+			return lockFile;
+		} catch (final IOException e) {
+			closeQuietly(lockFile);
+			throw new StoreConfigException("Couldn't lock file '" + file + "'!", e); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	/**
+	 * Unlocks a stripe which was locked with {@link #lock(String)}.
+	 * 
+	 * @param stripe
+	 */
+	public void unlock(final int stripe) {
+		final ReentrantLock lock = locks[stripe];
+		try {
+			if (lock.getHoldCount() == 1 && lockFiles[stripe] != null) {
+				closeQuietly(lockFiles[stripe]);
+				lockFiles[stripe] = null;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void closeQuietly(final RandomAccessFile file) {
+		if (file != null) {
+			try {
+				file.close();
+			} catch (final IOException e) {
+				LOG.warn("Error while closing lock file!", e); //$NON-NLS-1$
+			}
+		}
+	}
+}
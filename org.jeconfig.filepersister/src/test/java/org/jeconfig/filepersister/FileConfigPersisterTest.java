@@ -28,9 +28,16 @@
 package org.jeconfig.filepersister;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.Assert;
 
@@ -43,6 +50,7 @@ import org.jeconfig.api.scope.CodeDefaultScopeDescriptor;
 import org.jeconfig.api.scope.DefaultScopeDescriptor;
 import org.jeconfig.api.scope.GlobalScopeDescriptor;
 import org.jeconfig.api.scope.ScopePath;
+import org.jeconfig.api.scope.ScopePathBuilder;
 import org.jeconfig.api.scope.ScopePathBuilderFactory;
 import org.jeconfig.api.scope.UserScopeDescriptor;
 import org.jeconfig.server.marshalling.XStreamXmlMarshaller;
@@ -123,6 +131,73 @@ public class FileConfigPersisterTest extends AbstractConfigPersisterTest {
 		Assert.assertEquals(configuration, result);
 	}
 
+	@Test
+	public void testLoadConfigurations() {
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		final ComplexConfigDTO config1 = createTestConfigDTO(factory.annotatedPathUntil(DefaultScopeDescriptor.NAME).create());
+		final ComplexConfigDTO config2 = createTestConfigDTO(factory.annotatedPath().create());
+		persister.saveConfigurations(Arrays.asList(config1, config2));
+		final ScopePath notExisting = factory.annotatedPathUntil(GlobalScopeDescriptor.NAME).create();
+
+		final Map<ScopePath, ComplexConfigDTO> result = persister.loadConfigurations(Arrays.asList(
+				config2.getDefiningScopePath(),
+				notExisting,
+				config1.getDefiningScopePath()));
+		Assert.assertEquals(
+				Arrays.asList(config2.getDefiningScopePath(), notExisting, config1.getDefiningScopePath()),
+				Arrays.asList(result.keySet().toArray()));
+		Assert.assertEquals(config2, result.get(config2.getDefiningScopePath()));
+		Assert.assertEquals(config1, result.get(config1.getDefiningScopePath()));
+		Assert.assertNull(result.get(notExisting));
+	}
+
+	@Test
+	public void testGetVersionsDetectsModificationsByOtherPersisters() {
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		final ComplexConfigDTO config1 = createTestConfigDTO(factory.annotatedPathUntil(DefaultScopeDescriptor.NAME).create());
+		final ComplexConfigDTO config2 = createTestConfigDTO(factory.annotatedPath().create());
+		persister.saveConfigurations(Arrays.asList(config1, config2));
+		final ScopePath notExisting = factory.annotatedPathUntil(GlobalScopeDescriptor.NAME).create();
+		final Collection<ScopePath> scopePaths = Arrays.asList(
+				config2.getDefiningScopePath(),
+				notExisting,
+				config1.getDefiningScopePath());
+
+		Map<ScopePath, Long> result = persister.getVersions(scopePaths);
+		Assert.assertEquals(Arrays.asList(scopePaths.toArray()), Arrays.asList(result.keySet().toArray()));
+		Assert.assertEquals(Long.valueOf(1), result.get(config2.getDefiningScopePath()));
+		Assert.assertEquals(Long.valueOf(1), result.get(config1.getDefiningScopePath()));
+		Assert.assertNull(result.get(notExisting));
+
+		// the new version changes the file size, so the modification is detected within the same second
+		final FileConfigPersister otherPersister = new FileConfigPersister(serializer, rootDirectory, fileExtension);
+		final ComplexConfigDTO updatedConfig2 = createTestConfigDTO(config2.getDefiningScopePath());
+		updatedConfig2.setVersion(10);
+		otherPersister.updateConfiguration(updatedConfig2);
+		otherPersister.delete(config1.getDefiningScopePath(), false);
+
+		result = persister.getVersions(scopePaths);
+		Assert.assertEquals(Long.valueOf(10), result.get(config2.getDefiningScopePath()));
+		Assert.assertNull(result.get(config1.getDefiningScopePath()));
+	}
+
+	@Test
+	public void testLoadIfNewer() {
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		final ComplexConfigDTO configuration = createTestConfigDTO(factory.annotatedPath().create());
+		persister.saveConfiguration(configuration);
+		final ScopePath scopePath = configuration.getDefiningScopePath();
+
+		Assert.assertEquals(configuration, persister.loadIfNewer(scopePath, 0));
+		Assert.assertNull(persister.loadIfNewer(scopePath, 1));
+
+		final ComplexConfigDTO updatedConfig = createTestConfigDTO(scopePath);
+		updatedConfig.setVersion(2);
+		persister.updateConfiguration(updatedConfig);
+		Assert.assertEquals(updatedConfig, persister.loadIfNewer(scopePath, 1));
+		Assert.assertNull(persister.loadIfNewer(factory.annotatedPathUntil(GlobalScopeDescriptor.NAME).create(), 0));
+	}
+
 	@Test
 	public void testUpdateConfiguration() {
 		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
@@ -163,6 +238,194 @@ public class FileConfigPersisterTest extends AbstractConfigPersisterTest {
 		persister.updateConfiguration(newConfiguration);
 	}
 
+	@Test
+	public void testUpdateConfigurationDetectsModificationsByOtherPersisters() {
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		final ComplexConfigDTO configuration = createTestConfigDTO(factory.annotatedPath().create());
+		persister.saveConfiguration(configuration);
+
+		final FileConfigPersister otherPersister = new FileConfigPersister(serializer, rootDirectory, fileExtension);
+		final ComplexConfigDTO otherConfiguration = createTestConfigDTO(configuration.getDefiningScopePath());
+		otherConfiguration.setVersion(10);
+		otherPersister.updateConfiguration(otherConfiguration);
+
+		final ComplexConfigDTO staleConfiguration = createTestConfigDTO(configuration.getDefiningScopePath());
+		staleConfiguration.setVersion(2);
+		try {
+			persister.updateConfiguration(staleConfiguration);
+			Assert.fail();
+		} catch (final StaleConfigException e) {
+			// expected
+		}
+		Assert.assertEquals(otherConfiguration, persister.loadConfiguration(configuration.getDefiningScopePath()));
+	}
+
+	@Test
+	public void testUpdateConfigurationReplacesFile() {
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		final ComplexConfigDTO configuration = createTestConfigDTO(factory.annotatedPath().create());
+		persister.saveConfiguration(configuration);
+		final ComplexConfigDTO newConfiguration = createTestConfigDTO(configuration.getDefiningScopePath());
+		newConfiguration.setVersion(2);
+		persister.updateConfiguration(newConfiguration);
+
+		final File configFile = new File(rootDirectory + File.separator + "default" //$NON-NLS-1$
+			+ File.separator
+			+ "global" //$NON-NLS-1$
+			+ File.separator
+			+ "user" //$NON-NLS-1$
+			+ File.separator
+			+ "userName-hugo" //$NON-NLS-1$
+			+ File.separator
+			+ gen.createName(configuration.getDefiningScopePath())
+			+ fileExtension);
+		// no temporary files are left
+		Assert.assertEquals(Arrays.asList(configFile), Arrays.asList(configFile.getParentFile().listFiles()));
+		Assert.assertEquals(newConfiguration, persister.loadConfiguration(configuration.getDefiningScopePath()));
+	}
+
+	@Test
+	public void testListScopesIgnoresTemporaryFiles() throws IOException {
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		final ComplexConfigDTO configuration = createTestConfigDTO(factory.annotatedPathUntil(DefaultScopeDescriptor.NAME).create());
+		persister.saveConfiguration(configuration);
+		// a temporary file of an interrupted write
+		final File configDirectory = new File(rootDirectory + File.separator + "default"); //$NON-NLS-1$
+		Assert.assertTrue(new File(configDirectory, "test" + fileExtension + "123.jeconfig-tmp").createNewFile()); //$NON-NLS-1$ //$NON-NLS-2$
+
+		final Collection<ScopePath> scopePaths = persister.listScopes(DefaultScopeDescriptor.NAME, new HashMap<String, String>());
+		Assert.assertEquals(1, scopePaths.size());
+	}
+
+	@Test
+	public void testConcurrentUpdatesOfSameConfiguration() throws Exception {
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		final ScopePath scopePath = factory.annotatedPath().create();
+		persister.saveConfiguration(createTestConfigDTO(scopePath));
+
+		final int threadCount = 4;
+		final int updatesPerThread = 25;
+		final AtomicInteger successfulUpdates = new AtomicInteger();
+		final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+		final List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < threadCount; i++) {
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < updatesPerThread; j++) {
+						final ComplexConfigDTO configuration = createTestConfigDTO(scopePath);
+						configuration.setVersion(persister.loadConfiguration(scopePath).getVersion() + 1);
+						try {
+							persister.updateConfiguration(configuration);
+							successfulUpdates.incrementAndGet();
+						} catch (final StaleConfigException e) {
+							// another thread updated the same version
+						} catch (final Throwable e) {
+							failures.add(e);
+						}
+					}
+				}
+			});
+		}
+		for (final Thread thread : threads) {
+			thread.start();
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		Assert.assertEquals(Collections.emptyList(), failures);
+		// every successful update must have incremented the version by one
+		Assert.assertEquals(1 + successfulUpdates.get(), persister.loadConfiguration(scopePath).getVersion());
+	}
+
+	@Test
+	public void testConcurrentSavesAndDeletesInSameDirectory() throws Exception {
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		final int threadCount = 4;
+		final int savesPerThread = 200;
+		final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+		final List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < threadCount; i++) {
+			// the configurations differ only in the class name, so they are stored in the same directory
+			final ScopePathBuilder builder = factory.annotatedPath();
+			builder.addPropertyToScope(ClassScopeDescriptor.NAME, ClassScopeDescriptor.PROP_CLASS_NAME, "Sibling" + i); //$NON-NLS-1$
+			final ScopePath scopePath = builder.create();
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < savesPerThread; j++) {
+						try {
+							persister.saveConfiguration(createTestConfigDTO(scopePath));
+							persister.delete(scopePath, false);
+						} catch (final Throwable e) {
+							failures.add(e);
+						}
+					}
+				}
+			});
+		}
+		for (final Thread thread : threads) {
+			thread.start();
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		Assert.assertEquals(Collections.emptyList(), failures);
+	}
+
+	@Test
+	public void testLockFiles() {
+		final FileConfigPersister lockingPersister = new FileConfigPersister(
+			serializer,
+			rootDirectory,
+			fileExtension,
+			1,
+			false,
+			true);
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		final ComplexConfigDTO configuration = createTestConfigDTO(factory.annotatedPathUntil(DefaultScopeDescriptor.NAME).create());
+		lockingPersister.saveConfiguration(configuration);
+		final ComplexConfigDTO newConfiguration = createTestConfigDTO(configuration.getDefiningScopePath());
+		newConfiguration.setVersion(2);
+		lockingPersister.updateConfiguration(newConfiguration);
+
+		Assert.assertEquals(newConfiguration, lockingPersister.loadConfiguration(configuration.getDefiningScopePath()));
+		Assert.assertEquals(1, lockingPersister.listScopes(DefaultScopeDescriptor.NAME, new HashMap<String, String>()).size());
+	}
+
+	@Test
+	public void testLockFilesDetectsSameSizeModificationsByOtherProcesses() {
+		final FileConfigPersister lockingPersister = createLockingPersister();
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		final ComplexConfigDTO configuration = createTestConfigDTO(factory.annotatedPathUntil(DefaultScopeDescriptor.NAME).create());
+		lockingPersister.saveConfiguration(configuration);
+		final File configFile = new File(rootDirectory + File.separator + "default" //$NON-NLS-1$
+			+ File.separator
+			+ gen.createName(configuration.getDefiningScopePath())
+			+ fileExtension);
+		final long lastModified = configFile.lastModified();
+		final long length = configFile.length();
+
+		// another process writes the same size within the resolution of the modification time
+		final FileConfigPersister otherPersister = createLockingPersister();
+		final ComplexConfigDTO otherConfiguration = createTestConfigDTO(configuration.getDefiningScopePath());
+		otherConfiguration.setVersion(2);
+		otherPersister.updateConfiguration(otherConfiguration);
+		Assert.assertTrue(configFile.setLastModified(lastModified));
+		Assert.assertEquals(length, configFile.length());
+
+		final ComplexConfigDTO staleConfiguration = createTestConfigDTO(configuration.getDefiningScopePath());
+		staleConfiguration.setVersion(2);
+		try {
+			lockingPersister.updateConfiguration(staleConfiguration);
+			Assert.fail();
+		} catch (final StaleConfigException e) {
+			// expected
+		}
+	}
+
 	@Test
 	public void testDeleteConfigurationDeleteChildrenFalse() {
 		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
@@ -298,6 +561,76 @@ public class FileConfigPersisterTest extends AbstractConfigPersisterTest {
 		}
 	}
 
+	@Test
+	public void testScopeIndexListScopes() {
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		persister.saveConfiguration(createTestConfigDTO(factory.annotatedPathUntil(DefaultScopeDescriptor.NAME).create()));
+		persister.saveConfiguration(createTestConfigDTO(factory.annotatedPathUntil(GlobalScopeDescriptor.NAME).create()));
+		persister.saveConfiguration(createTestConfigDTO(createUserScopePath(factory, "hugo"))); //$NON-NLS-1$
+
+		final FileConfigPersister indexingPersister = createIndexingPersister();
+		final Map<String, String> noProperties = new HashMap<String, String>();
+		// the index is built from the existing files
+		Assert.assertEquals(
+				new HashSet<ScopePath>(persister.listScopes(GlobalScopeDescriptor.NAME, noProperties)),
+				new HashSet<ScopePath>(indexingPersister.listScopes(GlobalScopeDescriptor.NAME, noProperties)));
+		Assert.assertEquals(2, indexingPersister.listScopes(GlobalScopeDescriptor.NAME, noProperties).size());
+
+		final ScopePath fritzPath = createUserScopePath(factory, "fritz"); //$NON-NLS-1$
+		indexingPersister.saveConfiguration(createTestConfigDTO(fritzPath));
+		final Map<String, String> fritzProperties = new HashMap<String, String>();
+		fritzProperties.put(UserScopeDescriptor.PROP_USER_NAME, "fritz"); //$NON-NLS-1$
+		Assert.assertEquals(
+				new HashSet<ScopePath>(persister.listScopes(UserScopeDescriptor.NAME, fritzProperties)),
+				new HashSet<ScopePath>(indexingPersister.listScopes(UserScopeDescriptor.NAME, fritzProperties)));
+		Assert.assertEquals(1, indexingPersister.listScopes(UserScopeDescriptor.NAME, fritzProperties).size());
+
+		// files written by others are found after rebuilding the index
+		persister.saveConfiguration(createTestConfigDTO(createUserScopePath(factory, "paul"))); //$NON-NLS-1$
+		Assert.assertEquals(2, indexingPersister.listScopes(UserScopeDescriptor.NAME, noProperties).size());
+		indexingPersister.rebuildScopeIndex();
+		Assert.assertEquals(3, indexingPersister.listScopes(UserScopeDescriptor.NAME, noProperties).size());
+	}
+
+	@Test
+	public void testScopeIndexDeleteAllOccurences() {
+		final ScopePathBuilderFactory factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+		final FileConfigPersister indexingPersister = createIndexingPersister();
+		final ScopePath globalPath = factory.annotatedPathUntil(GlobalScopeDescriptor.NAME).create();
+		final ScopePath hugoPath = createUserScopePath(factory, "hugo"); //$NON-NLS-1$
+		final ScopePath fritzPath = createUserScopePath(factory, "fritz"); //$NON-NLS-1$
+		indexingPersister.saveConfiguration(createTestConfigDTO(globalPath));
+		indexingPersister.saveConfiguration(createTestConfigDTO(hugoPath));
+		indexingPersister.saveConfiguration(createTestConfigDTO(fritzPath));
+
+		final Map<String, String> properties = new HashMap<String, String>();
+		properties.put(UserScopeDescriptor.PROP_USER_NAME, "hugo"); //$NON-NLS-1$
+		indexingPersister.deleteAllOccurences(UserScopeDescriptor.NAME, properties);
+
+		Assert.assertNull(indexingPersister.loadConfiguration(hugoPath));
+		Assert.assertNotNull(indexingPersister.loadConfiguration(fritzPath));
+		Assert.assertNotNull(indexingPersister.loadConfiguration(globalPath));
+		Assert.assertEquals(2, indexingPersister.listScopes(GlobalScopeDescriptor.NAME, new HashMap<String, String>()).size());
+
+		indexingPersister.delete(globalPath, true);
+		Assert.assertNull(indexingPersister.loadConfiguration(fritzPath));
+		Assert.assertTrue(indexingPersister.listScopes(GlobalScopeDescriptor.NAME, new HashMap<String, String>()).isEmpty());
+	}
+
+	private FileConfigPersister createLockingPersister() {
+		return new FileConfigPersister(serializer, rootDirectory, fileExtension, 1, false, true);
+	}
+
+	private FileConfigPersister createIndexingPersister() {
+		return new FileConfigPersister(serializer, rootDirectory, fileExtension, 2, false, false, true);
+	}
+
+	private ScopePath createUserScopePath(final ScopePathBuilderFactory factory, final String userName) {
+		final ScopePathBuilder builder = factory.annotatedPath();
+		builder.addPropertyToScope(UserScopeDescriptor.NAME, UserScopeDescriptor.PROP_USER_NAME, userName);
+		return builder.create();
+	}
+
 	private ComplexConfigDTO createTestConfigDTO(final ScopePath path) {
 		final ComplexConfigDTO configuration = new ComplexConfigDTO();
 		configuration.setPolymorph(false);
@@ -0,0 +1,723 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel, Lukas Gross
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.segmentpersister;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.api.exception.StaleConfigException;
+import org.jeconfig.api.exception.StoreConfigException;
+import org.jeconfig.api.persister.ScopePathGenerator;
+import org.jeconfig.api.persister.VersionedConfigPersister;
+import org.jeconfig.api.scope.ScopePath;
+import org.jeconfig.api.util.Assert;
+import org.jeconfig.common.datastructure.ScopePathIndex;
+import org.jeconfig.segmentpersister.internal.Segment;
+import org.jeconfig.segmentpersister.internal.SegmentRecord;
+import org.jeconfig.server.marshalling.ByteBufferInputStream;
+import org.jeconfig.server.marshalling.ConfigBuffer;
+import org.jeconfig.server.marshalling.ConfigBufferPool;
+import org.jeconfig.server.marshalling.ConfigMarshaller;
+import org.jeconfig.server.persister.DefaultScopePathGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persister implementation that appends configs to memory-mapped segment files in a directory.<br>
+ * Saves, updates and deletes append a record to the active segment. An in-memory index maps the scope paths
+ * to the records of the current configurations, so a load copies a single record from the mapped segment
+ * without opening a file. When the active segment is full, a new segment is created.<br>
+ * Replaced and deleted records are removed by compacting their segment: the current records are copied to
+ * the active segment and the segment file is deleted. Segments which are at least half garbage are compacted
+ * in the background; {@link #compact()} compacts them immediately.<br>
+ * The index is recovered by scanning the segments when the persister is created. A record which was torn
+ * by a crash ends the scan of its segment; use syncWrites if saved configurations must survive system crashes.<br>
+ * <br>
+ * The directory is locked until {@link #close()} is called, so it can only be used by one persister at a time.<br>
+ * <br>
+ * This class is thread-safe.
+ */
+public final class SegmentConfigPersister implements VersionedConfigPersister {
+	public static final String ID = SegmentConfigPersister.class.getName();
+	/** The default size of a segment file in bytes. */
+	public static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+	private static final Logger LOG = LoggerFactory.getLogger(SegmentConfigPersister.class);
+	private static final String SCOPE_PATH_SEPARATOR = "/"; //$NON-NLS-1$
+	private static final String KEY_SUFFIX = ".config"; //$NON-NLS-1$
+	private static final String SEGMENT_FILE_PREFIX = "segment-"; //$NON-NLS-1$
+	private static final String SEGMENT_FILE_SUFFIX = ".seg"; //$NON-NLS-1$
+	private static final String LOCK_FILE_NAME = "segments.lock"; //$NON-NLS-1$
+	private static final double COMPACTION_GARBAGE_RATIO = 0.5;
+	private static final long COMPACTOR_KEEP_ALIVE_SECONDS = 60;
+	private static final ByteBuffer NO_PAYLOAD = ByteBuffer.allocate(0);
+
+	private final ConfigMarshaller marshaller;
+	private final ConfigBufferPool bufferPool;
+	private final ScopePathGenerator gen;
+	private final File directory;
+	private final int segmentSize;
+	private final boolean syncWrites;
+	/** Read lock: reading records; write lock: appending records and modifying the segments. */
+	private final ReadWriteLock lock;
+	// guarded by lock
+	private final Map<String, RecordLocation> configRecords;
+	// the deletions which must be kept while older segments may contain records of the deleted configurations
+	private final Map<String, RecordLocation> deleteRecords;
+	private final SortedMap<Long, Segment> segments;
+	private Segment activeSegment;
+	private volatile boolean closed;
+	private final ScopePathIndex scopeIndex;
+	private final ThreadPoolExecutor compactionExecutor;
+	private final AtomicBoolean compactionScheduled;
+	private final RandomAccessFile lockFile;
+	private final FileLock directoryLock;
+
+	/**
+	 * Creates a new SegmentConfigPersister and recovers the configurations stored in the directory.
+	 * 
+	 * @param marshaller the marshaller to be used for serialization
+	 * @param directory the directory of the segment files
+	 */
+	public SegmentConfigPersister(final ConfigMarshaller marshaller, final String directory) {
+		this(marshaller, directory, DEFAULT_SEGMENT_SIZE, false);
+	}
+
+	/**
+	 * Creates a new SegmentConfigPersister and recovers the configurations stored in the directory.
+	 * 
+	 * @param marshaller the marshaller to be used for serialization
+	 * @param directory the directory of the segment files
+	 * @param segmentSize the size of a segment file in bytes; larger configurations get a segment of their own
+	 * @param syncWrites whether each write is forced to the storage device; this survives system crashes
+	 *            but slows down writes
+	 */
+	public SegmentConfigPersister(
+		final ConfigMarshaller marshaller,
+		final String directory,
+		final int segmentSize,
+		final boolean syncWrites) {
+		Assert.paramNotNull(marshaller, "marshaller"); //$NON-NLS-1$
+		Assert.paramNotNull(directory, "directory"); //$NON-NLS-1$
+		if (segmentSize < 1) {
+			throw new IllegalArgumentException("segmentSize must be at least 1 but was: " + segmentSize); //$NON-NLS-1$
+		}
+		this.marshaller = marshaller;
+		this.bufferPool = new ConfigBufferPool();
+		this.gen = new DefaultScopePathGenerator(SCOPE_PATH_SEPARATOR);
+		this.directory = new File(directory);
+		this.segmentSize = segmentSize;
+		this.syncWrites = syncWrites;
+		this.lock = new ReentrantReadWriteLock();
+		this.configRecords = new HashMap<String, RecordLocation>();
+		this.deleteRecords = new HashMap<String, RecordLocation>();
+		this.segments = new TreeMap<Long, Segment>();
+		this.scopeIndex = new ScopePathIndex();
+		this.compactionScheduled = new AtomicBoolean();
+		// the idle thread terminates, so only the segment files must be closed
+		this.compactionExecutor = new ThreadPoolExecutor(
+			1,
+			1,
+			COMPACTOR_KEEP_ALIVE_SECONDS,
+			TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(),
+			new CompactorThreadFactory());
+		this.compactionExecutor.allowCoreThreadTimeOut(true);
+
+		if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+			throw new StoreConfigException("Couldn't create the directory '" + directory + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		try {
+			lockFile = new RandomAccessFile(new File(this.directory, LOCK_FILE_NAME), "rw"); //$NON-NLS-1$
+		} catch (final FileNotFoundException e) {
+			throw new StoreConfigException("Couldn't create the lock file in the directory '" + directory + "'!", e); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		directoryLock = lockDirectory();
+
+		lock.writeLock().lock();
+		try {
+			recover();
+		} catch (final RuntimeException e) {
+			closeSegments();
+			throw e;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private FileLock lockDirectory() {
+		FileLock result = null;
+		try {
+			result = lockFile.getChannel().tryLock();
+		} catch (final OverlappingFileLockException e) {
+			// locked by another persister of this JVM
+			result = null;
+		} catch (final IOException e) {
+			closeLockFile();
+			throw new StoreConfigException("Error while locking the directory '" + directory + "'!", e); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		if (result == null) {
+			closeLockFile();
+			throw new StoreConfigException("The directory '" + directory + "' is used by another persister!"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return result;
+	}
+
+	/**
+	 * Replays the records of all segments in the order they were written.
+	 */
+	private void recover() {
+		final SortedMap<Long, File> segmentFiles = new TreeMap<Long, File>();
+		final File[] files = directory.listFiles();
+		if (files != null) {
+			for (final File file : files) {
+				final String name = file.getName();
+				if (name.startsWith(SEGMENT_FILE_PREFIX) && name.endsWith(SEGMENT_FILE_SUFFIX)) {
+					try {
+						final long id = Long.parseLong(name.substring(
+								SEGMENT_FILE_PREFIX.length(),
+								name.length() - SEGMENT_FILE_SUFFIX.length()));
+						segmentFiles.put(Long.valueOf(id), file);
+					} catch (final NumberFormatException e) {
+						LOG.warn("Ignoring file with invalid segment name '" + file + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+				}
+			}
+		}
+
+		for (final Map.Entry<Long, File> entry : segmentFiles.entrySet()) {
+			final Segment segment;
+			try {
+				segment = Segment.open(entry.getKey().longValue(), entry.getValue());
+			} catch (final IOException e) {
+				throw new StoreConfigException("Error while opening the segment file '" + entry.getValue() + "'!", e); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			segments.put(entry.getKey(), segment);
+			for (final SegmentRecord record : segment.recover()) {
+				final RecordLocation location = new RecordLocation(
+					segment,
+					record.getOffset(),
+					record.getLength(),
+					record.getVersion());
+				if (record.getType() == Segment.TYPE_PUT) {
+					setConfigRecord(record.getKey(), location);
+				} else {
+					setDeleteRecord(record.getKey(), location);
+				}
+			}
+		}
+
+		if (segments.isEmpty()) {
+			activeSegment = createSegment(1, segmentSize);
+		} else {
+			activeSegment = segments.get(segments.lastKey());
+			activeSegment.clearTail();
+		}
+		for (final ScopePath scopePath : gen.createScopePaths(
+				configRecords.keySet(),
+				"", //$NON-NLS-1$
+				Collections.<String, String> emptyMap())) {
+			scopeIndex.add(scopePath);
+		}
+		for (final Segment segment : segments.values()) {
+			scheduleCompactionIfNeeded(segment);
+		}
+	}
+
+	@Override
+	public String getId() {
+		return ID;
+	}
+
+	@Override
+	public void saveConfiguration(final ComplexConfigDTO configDTO) {
+		Assert.paramNotNull(configDTO, "configuration"); //$NON-NLS-1$
+
+		final ScopePath scopePath = configDTO.getDefiningScopePath();
+		if (configDTO.getVersion() < 1) {
+			throw new StoreConfigException(
+				"Illegal config version. Must be 1 or higher. Occures at scope Path '" + scopePath + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		final String key = createKey(scopePath);
+		final ScopePath indexedPath = toScopePath(key);
+		final ConfigBuffer payload = marshal(configDTO);
+		try {
+			lock.writeLock().lock();
+			try {
+				ensureOpen();
+				if (configRecords.containsKey(key)) {
+					throw new StaleConfigException(
+						scopePath,
+						"Can't save new configuration. There exists already a configuration for the scope path '" //$NON-NLS-1$
+							+ scopePath
+							+ "'!"); //$NON-NLS-1$
+				}
+				setConfigRecord(key, append(Segment.TYPE_PUT, key, configDTO.getVersion(), payload.toByteBuffer()));
+				scopeIndex.add(indexedPath);
+			} finally {
+				lock.writeLock().unlock();
+			}
+		} finally {
+			bufferPool.release(payload);
+		}
+	}
+
+	@Override
+	public void updateConfiguration(final ComplexConfigDTO configDTO) {
+		Assert.paramNotNull(configDTO, "configuration"); //$NON-NLS-1$
+
+		final ScopePath scopePath = configDTO.getDefiningScopePath();
+		final String key = createKey(scopePath);
+		final ConfigBuffer payload = marshal(configDTO);
+		try {
+			lock.writeLock().lock();
+			try {
+				ensureOpen();
+				final RecordLocation location = configRecords.get(key);
+				if (location == null) {
+					throw new StaleConfigException(scopePath, "There exists no record for the scope path '" + scopePath + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+				if (location.version >= configDTO.getVersion()) {
+					throw new StaleConfigException(
+						scopePath,
+						"The saved Data has a newer or the same version. Occures at scope path '" + scopePath + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+				setConfigRecord(key, append(Segment.TYPE_PUT, key, configDTO.getVersion(), payload.toByteBuffer()));
+			} finally {
+				lock.writeLock().unlock();
+			}
+		} finally {
+			bufferPool.release(payload);
+		}
+	}
+
+	@Override
+	public ComplexConfigDTO loadConfiguration(final ScopePath scopePath) {
+		Assert.paramNotNull(scopePath, "scopePath"); //$NON-NLS-1$
+
+		final String key = createKey(scopePath);
+		final ByteBuffer payload;
+		lock.readLock().lock();
+		try {
+			ensureOpen();
+			final RecordLocation location = configRecords.get(key);
+			if (location == null) {
+				return null;
+			}
+			payload = location.segment.getPayload(location.offset);
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		// the payload is read from the mapped segment without copying it first
+		final ComplexConfigDTO configDTO = marshaller.unmarshal(new ByteBufferInputStream(payload));
+		if (configDTO.getVersion() < 1) {
+			throw new StoreConfigException(
+				"Illegal config version. Must be 1 or higher. Occures at scope Path '" + scopePath + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		configDTO.setDefiningScopePath(scopePath);
+		return configDTO;
+	}
+
+	@Override
+	public Map<ScopePath, Long> getVersions(final Collection<ScopePath> scopePaths) {
+		Assert.paramNotNull(scopePaths, "scopePaths"); //$NON-NLS-1$
+
+		final Map<ScopePath, String> keys = new LinkedHashMap<ScopePath, String>();
+		for (final ScopePath scopePath : scopePaths) {
+			keys.put(scopePath, createKey(scopePath));
+		}
+		final Map<ScopePath, Long> result = new LinkedHashMap<ScopePath, Long>();
+		lock.readLock().lock();
+		try {
+			ensureOpen();
+			for (final Map.Entry<ScopePath, String> entry : keys.entrySet()) {
+				final RecordLocation location = configRecords.get(entry.getValue());
+				result.put(entry.getKey(), location != null ? Long.valueOf(location.version) : null);
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return result;
+	}
+
+	@Override
+	public ComplexConfigDTO loadIfNewer(final ScopePath scopePath, final long knownVersion) {
+		Assert.paramNotNull(scopePath, "scopePath"); //$NON-NLS-1$
+
+		final Long version = getVersions(Collections.singleton(scopePath)).get(scopePath);
+		if (version == null || version.longValue() <= knownVersion) {
+			return null;
+		}
+		// the configuration may have been deleted or updated meanwhile
+		final ComplexConfigDTO configDTO = loadConfiguration(scopePath);
+		if (configDTO != null && configDTO.getVersion() > knownVersion) {
+			return configDTO;
+		}
+		return null;
+	}
+
+	@Override
+	public void delete(final ScopePath scopePath, final boolean deleteChildren) {
+		Assert.paramNotNull(scopePath, "scopePath"); //$NON-NLS-1$
+
+		final String key = createKey(scopePath);
+		final ScopePath indexedPath = toScopePath(key);
+		final Collection<ScopePath> deletedPaths = new ArrayList<ScopePath>();
+		deletedPaths.add(indexedPath);
+		if (deleteChildren) {
+			deletedPaths.addAll(scopeIndex.getPathsStartingWith(indexedPath));
+		}
+		deleteConfigurations(deletedPaths);
+	}
+
+	@Override
+	public void deleteAllOccurences(final String scopeName, final Map<String, String> properties) {
+		Assert.paramNotNull(scopeName, "scopeName"); //$NON-NLS-1$
+		Assert.paramNotNull(properties, "properties"); //$NON-NLS-1$
+
+		deleteConfigurations(scopeIndex.getPathsContaining(scopeName, properties));
+	}
+
+	private void deleteConfigurations(final Collection<ScopePath> indexedPaths) {
+		final Map<String, ScopePath> keys = new LinkedHashMap<String, ScopePath>();
+		for (final ScopePath indexedPath : indexedPaths) {
+			keys.put(createKey(indexedPath), indexedPath);
+		}
+
+		lock.writeLock().lock();
+		try {
+			ensureOpen();
+			for (final Map.Entry<String, ScopePath> entry : keys.entrySet()) {
+				if (configRecords.containsKey(entry.getKey())) {
+					setDeleteRecord(entry.getKey(), append(Segment.TYPE_DELETE, entry.getKey(), 0, NO_PAYLOAD));
+					scopeIndex.remove(entry.getValue());
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public Collection<ScopePath> listScopes(final String scopeName, final Map<String, String> properties) {
+		Assert.paramNotNull(scopeName, "scopeName"); //$NON-NLS-1$
+		Assert.paramNotNull(properties, "properties"); //$NON-NLS-1$
+
+		ensureOpen();
+		return scopeIndex.getPathsContaining(scopeName, properties);
+	}
+
+	/**
+	 * Compacts all segments (except the active one) which are at least half garbage.
+	 * Blocks writes while a segment is compacted.
+	 */
+	public void compact() {
+		ensureOpen();
+		compactSegments();
+	}
+
+	/**
+	 * Closes the segment files and releases the lock of the directory.
+	 * The persister must not be used afterwards.
+	 */
+	public void close() {
+		lock.writeLock().lock();
+		try {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			compactionExecutor.shutdown();
+			closeSegments();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void closeSegments() {
+		for (final Segment segment : segments.values()) {
+			try {
+				segment.force();
+				segment.close();
+			} catch (final IOException e) {
+				LOG.warn("Error while closing the segment file '" + segment.getFile() + "'!", e); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		segments.clear();
+		try {
+			if (directoryLock != null) {
+				directoryLock.release();
+			}
+		} catch (final IOException e) {
+			LOG.warn("Error while unlocking the directory '" + directory + "'!", e); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		closeLockFile();
+	}
+
+	private void closeLockFile() {
+		try {
+			lockFile.close();
+		} catch (final IOException e) {
+			LOG.warn("Error while closing the lock file of the directory '" + directory + "'!", e); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	private void ensureOpen() {
+		if (closed) {
+			throw new StoreConfigException("The persister for the directory '" + directory + "' is closed!"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	private RecordLocation append(final byte type, final String key, final long version, final ByteBuffer payload) {
+		final byte[] encodedKey = Segment.encodeKey(key);
+		final int length = Segment.getRecordLength(encodedKey, payload.remaining());
+		int offset = activeSegment.append(type, encodedKey, version, payload);
+		if (offset < 0) {
+			rollSegment(length);
+			offset = activeSegment.append(type, encodedKey, version, payload);
+		}
+		if (syncWrites) {
+			activeSegment.force();
+		}
+		return new RecordLocation(activeSegment, offset, length, version);
+	}
+
+	private RecordLocation appendCopy(final RecordLocation location) {
+		int offset = activeSegment.appendCopy(location.segment, location.offset, location.length);
+		if (offset < 0) {
+			rollSegment(location.length);
+			offset = activeSegment.appendCopy(location.segment, location.offset, location.length);
+		}
+		return new RecordLocation(activeSegment, offset, location.length, location.version);
+	}
+
+	/**
+	 * Seals the active segment and creates a new one which has space for at least the given number of bytes.
+	 */
+	private void rollSegment(final int minCapacity) {
+		final Segment sealedSegment = activeSegment;
+		sealedSegment.force();
+		activeSegment = createSegment(sealedSegment.getId() + 1, Math.max(segmentSize, minCapacity));
+		scheduleCompactionIfNeeded(sealedSegment);
+	}
+
+	private Segment createSegment(final long id, final int capacity) {
+		final File file = new File(directory, SEGMENT_FILE_PREFIX + id + SEGMENT_FILE_SUFFIX);
+		try {
+			final Segment segment = Segment.create(id, file, capacity);
+			segments.put(Long.valueOf(id), segment);
+			return segment;
+		} catch (final IOException e) {
+			throw new StoreConfigException("Error while creating the segment file '" + file + "'!", e); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	private void setConfigRecord(final String key, final RecordLocation location) {
+		final RecordLocation replaced = configRecords.put(key, location);
+		if (replaced != null) {
+			addGarbage(replaced);
+		}
+		// a deletion which precedes the current record is no longer needed
+		deleteRecords.remove(key);
+	}
+
+	private void setDeleteRecord(final String key, final RecordLocation location) {
+		final RecordLocation deleted = configRecords.remove(key);
+		if (deleted != null) {
+			addGarbage(deleted);
+		}
+		deleteRecords.put(key, location);
+		// deletions only occupy space, they are removed when their segment is compacted
+		addGarbage(location);
+	}
+
+	private void addGarbage(final RecordLocation location) {
+		location.segment.addGarbage(location.length);
+		scheduleCompactionIfNeeded(location.segment);
+	}
+
+	private void scheduleCompactionIfNeeded(final Segment segment) {
+		if (!isCompactionCandidate(segment) || !compactionScheduled.compareAndSet(false, true)) {
+			return;
+		}
+		compactionExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				compactionScheduled.set(false);
+				try {
+					compactSegments();
+				} catch (final RuntimeException e) {
+					LOG.error("Error while compacting the segments in the directory '" + directory + "'!", e); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+			}
+		});
+	}
+
+	private boolean isCompactionCandidate(final Segment segment) {
+		// the active segment is still being filled; during recovery no segment is active yet
+		return activeSegment != null
+			&& segment != activeSegment
+			&& segment.getGarbage() >= segment.getSize() * COMPACTION_GARBAGE_RATIO;
+	}
+
+	private void compactSegments() {
+		while (true) {
+			lock.writeLock().lock();
+			try {
+				if (closed) {
+					return;
+				}
+				Segment candidate = null;
+				for (final Segment segment : segments.values()) {
+					if (isCompactionCandidate(segment)) {
+						candidate = segment;
+						break;
+					}
+				}
+				if (candidate == null) {
+					return;
+				}
+				compactSegment(candidate);
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Copies the current records of the segment to the active segment and deletes the segment.
+	 */
+	private void compactSegment(final Segment segment) {
+		for (final Map.Entry<String, RecordLocation> entry : configRecords.entrySet()) {
+			if (entry.getValue().segment == segment) {
+				entry.setValue(appendCopy(entry.getValue()));
+			}
+		}
+		// without older segments no deleted configuration can be recovered by mistake
+		final boolean hasOlderSegments = segments.firstKey().longValue() < segment.getId();
+		final Iterator<Map.Entry<String, RecordLocation>> iterator = deleteRecords.entrySet().iterator();
+		while (iterator.hasNext()) {
+			final Map.Entry<String, RecordLocation> entry = iterator.next();
+			if (entry.getValue().segment == segment) {
+				if (hasOlderSegments) {
+					final RecordLocation copy = appendCopy(entry.getValue());
+					copy.segment.addGarbage(copy.length);
+					entry.setValue(copy);
+				} else {
+					iterator.remove();
+				}
+			}
+		}
+		// the copies must be stored before the originals are deleted
+		activeSegment.force();
+
+		segments.remove(Long.valueOf(segment.getId()));
+		try {
+			segment.close();
+		} catch (final IOException e) {
+			LOG.warn("Error while closing the segment file '" + segment.getFile() + "'!", e); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		// the file can't be deleted on some platforms (e.g. Windows) until the mapping is garbage collected
+		if (!segment.getFile().delete()) {
+			LOG.warn("Couldn't delete the compacted segment file '" + segment.getFile() + "'!"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	/**
+	 * @return a buffer of the pool which contains the marshalled configuration; must be released after use
+	 */
+	private ConfigBuffer marshal(final ComplexConfigDTO configDTO) {
+		final ConfigBuffer buffer = bufferPool.acquire();
+		try {
+			marshaller.marshal(buffer, configDTO);
+			return buffer;
+		} catch (final RuntimeException e) {
+			bufferPool.release(buffer);
+			throw e;
+		}
+	}
+
+	private String createKey(final ScopePath scopePath) {
+		return gen.getPathFromScopePath(scopePath) + SCOPE_PATH_SEPARATOR + gen.createName(scopePath) + KEY_SUFFIX;
+	}
+
+	/**
+	 * Parses the key like the recovery does, so the indexed scope paths are the same.
+	 */
+	private ScopePath toScopePath(final String key) {
+		return gen.createScopePaths(
+				Collections.singleton(key),
+				"", //$NON-NLS-1$
+				Collections.<String, String> emptyMap()).iterator().next();
+	}
+
+	private static final class RecordLocation {
+		private final Segment segment;
+		private final int offset;
+		private final int length;
+		private final long version;
+
+		RecordLocation(final Segment segment, final int offset, final int length, final long version) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+			this.version = version;
+		}
+	}
+
+	private static final class CompactorThreadFactory implements ThreadFactory {
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			final Thread thread = new Thread(runnable, "SegmentConfigPersister-compactor"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
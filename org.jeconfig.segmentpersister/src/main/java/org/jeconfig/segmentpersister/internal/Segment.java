@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel, Lukas Gross
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.segmentpersister.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A memory-mapped file to which records are appended.<br>
+ * A record consists of a header (magic number, type, key length, version, payload length),
+ * the key, the payload and a CRC32 checksum of everything after the magic number.
+ * The unused rest of a segment is zero-filled, so a scan stops at the first invalid record.<br>
+ * <br>
+ * This class is not thread-safe; reads may run concurrently, but must not overlap with appends.
+ */
+public final class Segment {
+	/** A record which stores a configuration. */
+	public static final byte TYPE_PUT = 1;
+	/** A record which marks a configuration as deleted. */
+	public static final byte TYPE_DELETE = 2;
+	private static final int MAGIC = 0x4A435347;
+	private static final int HEADER_LENGTH = 21;
+	private static final int CHECKSUM_LENGTH = 4;
+	private static final int TYPE_OFFSET = 4;
+	private static final int KEY_LENGTH_OFFSET = 5;
+	private static final int VERSION_OFFSET = 9;
+	private static final int PAYLOAD_LENGTH_OFFSET = 17;
+	private static final String KEY_ENCODING = "UTF-8"; //$NON-NLS-1$
+	private static final int ZERO_BUFFER_SIZE = 8192;
+	private static final int CHECKSUM_BUFFER_SIZE = 8192;
+
+	private final long id;
+	private final File file;
+	private final RandomAccessFile randomAccessFile;
+	private final MappedByteBuffer buffer;
+	// the position of the write buffer is the end of the last record
+	private final ByteBuffer writeBuffer;
+	private int garbage;
+
+	private Segment(
+		final long id,
+		final File file,
+		final RandomAccessFile randomAccessFile,
+		final int capacity) throws IOException {
+		this.id = id;
+		this.file = file;
+		this.randomAccessFile = randomAccessFile;
+		this.buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		// readers duplicate the mapped buffer, so its position is never modified
+		this.writeBuffer = buffer.duplicate();
+	}
+
+	/**
+	 * Creates a new empty segment file.
+	 * 
+	 * @param id the ID of the segment
+	 * @param file the segment file; must not exist
+	 * @param capacity the size of the segment file in bytes
+	 * @return the created segment
+	 * @throws IOException if the file can't be created or mapped
+	 */
+	public static Segment create(final long id, final File file, final int capacity) throws IOException {
+		if (file.exists()) {
+			throw new IOException("The segment file '" + file + "' exists already!"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+		try {
+			randomAccessFile.setLength(capacity);
+			return new Segment(id, file, randomAccessFile, capacity);
+		} catch (final IOException e) {
+			randomAccessFile.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens an existing segment file. Call {@link #recover()} to find its records.
+	 * 
+	 * @param id the ID of the segment
+	 * @param file the segment file
+	 * @return the opened segment
+	 * @throws IOException if the file can't be opened or mapped
+	 */
+	public static Segment open(final long id, final File file) throws IOException {
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+		try {
+			final long length = randomAccessFile.length();
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("The segment file '" + file + "' is too large: " + length); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			return new Segment(id, file, randomAccessFile, (int) length);
+		} catch (final IOException e) {
+			randomAccessFile.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @param key the key of the record
+	 * @param payloadLength the length of the payload of the record
+	 * @return the number of bytes a record with the given key and payload occupies in a segment
+	 */
+	public static int getRecordLength(final byte[] key, final int payloadLength) {
+		return HEADER_LENGTH + key.length + payloadLength + CHECKSUM_LENGTH;
+	}
+
+	/**
+	 * Encodes a key for {@link #append(byte, byte[], long, ByteBuffer)}.
+	 * 
+	 * @param key the key
+	 * @return the encoded key
+	 */
+	public static byte[] encodeKey(final String key) {
+		try {
+			return key.getBytes(KEY_ENCODING);
+		} catch (final UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Scans the records of the segment and positions the segment after the last valid record.
+	 * A torn or corrupt record ends the scan.
+	 * 
+	 * @return the valid records in the order of the segment
+	 */
+	public List<SegmentRecord> recover() {
+		final List<SegmentRecord> records = new ArrayList<SegmentRecord>();
+		final ByteBuffer readBuffer = buffer.duplicate();
+		int offset = 0;
+		while (true) {
+			final SegmentRecord record = readRecord(readBuffer, offset);
+			if (record == null) {
+				break;
+			}
+			records.add(record);
+			offset += record.getLength();
+		}
+		writeBuffer.position(offset);
+		return records;
+	}
+
+	private SegmentRecord readRecord(final ByteBuffer readBuffer, final int offset) {
+		if (readBuffer.limit() - offset < HEADER_LENGTH + CHECKSUM_LENGTH || readBuffer.getInt(offset) != MAGIC) {
+			return null;
+		}
+		final byte type = readBuffer.get(offset + TYPE_OFFSET);
+		final int keyLength = readBuffer.getInt(offset + KEY_LENGTH_OFFSET);
+		final int payloadLength = readBuffer.getInt(offset + PAYLOAD_LENGTH_OFFSET);
+		if ((type != TYPE_PUT && type != TYPE_DELETE)
+			|| keyLength < 0
+			|| payloadLength < 0
+			|| (long) keyLength + payloadLength > readBuffer.limit() - offset - HEADER_LENGTH - CHECKSUM_LENGTH) {
+			return null;
+		}
+		final int length = HEADER_LENGTH + keyLength + payloadLength + CHECKSUM_LENGTH;
+		final byte[] record = new byte[length];
+		readBuffer.position(offset);
+		readBuffer.get(record);
+		final CRC32 checksum = new CRC32();
+		checksum.update(record, TYPE_OFFSET, length - TYPE_OFFSET - CHECKSUM_LENGTH);
+		if ((int) checksum.getValue() != readBuffer.getInt(offset + length - CHECKSUM_LENGTH)) {
+			return null;
+		}
+		final long version = readBuffer.getLong(offset + VERSION_OFFSET);
+		try {
+			return new SegmentRecord(offset, length, type, new String(record, HEADER_LENGTH, keyLength, KEY_ENCODING), version);
+		} catch (final UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Zero-fills the segment after the last record, so records which were partially written before a crash
+	 * can't be mistaken for valid records after new records were appended.
+	 */
+	public void clearTail() {
+		final ByteBuffer zeroBuffer = writeBuffer.duplicate();
+		final byte[] zeros = new byte[ZERO_BUFFER_SIZE];
+		while (zeroBuffer.hasRemaining()) {
+			zeroBuffer.put(zeros, 0, Math.min(zeros.length, zeroBuffer.remaining()));
+		}
+	}
+
+	/**
+	 * Appends a record to the segment.
+	 * 
+	 * @param type {@link #TYPE_PUT} or {@link #TYPE_DELETE}
+	 * @param key the encoded key (see {@link #encodeKey(String)})
+	 * @param version the version of the configuration
+	 * @param payload the payload from position to limit; empty for deletions. The position isn't modified.
+	 * @return the offset of the record or -1 if the segment has not enough space left
+	 */
+	public int append(final byte type, final byte[] key, final long version, final ByteBuffer payload) {
+		final int payloadLength = payload.remaining();
+		final int length = getRecordLength(key, payloadLength);
+		if (writeBuffer.remaining() < length) {
+			return -1;
+		}
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+		header.putInt(MAGIC);
+		header.put(type);
+		header.putInt(key.length);
+		header.putLong(version);
+		header.putInt(payloadLength);
+		final CRC32 checksum = new CRC32();
+		checksum.update(header.array(), TYPE_OFFSET, HEADER_LENGTH - TYPE_OFFSET);
+		checksum.update(key);
+		updateChecksum(checksum, payload);
+		header.flip();
+
+		// the payload is copied into the mapped file directly; the checksum is written last
+		final int offset = writeBuffer.position();
+		writeBuffer.put(header);
+		writeBuffer.put(key);
+		writeBuffer.put(payload.duplicate());
+		writeBuffer.putInt((int) checksum.getValue());
+		return offset;
+	}
+
+	private static void updateChecksum(final CRC32 checksum, final ByteBuffer data) {
+		if (data.hasArray()) {
+			checksum.update(data.array(), data.arrayOffset() + data.position(), data.remaining());
+			return;
+		}
+		final ByteBuffer source = data.duplicate();
+		final byte[] chunk = new byte[Math.min(source.remaining(), CHECKSUM_BUFFER_SIZE)];
+		while (source.hasRemaining()) {
+			final int length = Math.min(chunk.length, source.remaining());
+			source.get(chunk, 0, length);
+			checksum.update(chunk, 0, length);
+		}
+	}
+
+	/**
+	 * Appends a copy of a record of another segment.
+	 * 
+	 * @param source the segment which contains the record
+	 * @param offset the offset of the record in the source segment
+	 * @param length the length of the record
+	 * @return the offset of the copied record or -1 if the segment has not enough space left
+	 */
+	public int appendCopy(final Segment source, final int offset, final int length) {
+		if (writeBuffer.remaining() < length) {
+			return -1;
+		}
+		final ByteBuffer record = source.buffer.duplicate();
+		record.position(offset);
+		record.limit(offset + length);
+		final int copyOffset = writeBuffer.position();
+		writeBuffer.put(record);
+		return copyOffset;
+	}
+
+	/**
+	 * Returns the payload of a record without copying it. Records are never modified, so the payload stays
+	 * valid after the segment has been closed; the mapping is kept as long as the payload is referenced.
+	 * 
+	 * @param offset the offset of the record
+	 * @return a read-only view of the payload
+	 */
+	public ByteBuffer getPayload(final int offset) {
+		final ByteBuffer readBuffer = buffer.asReadOnlyBuffer();
+		final int payloadStart = offset + HEADER_LENGTH + readBuffer.getInt(offset + KEY_LENGTH_OFFSET);
+		readBuffer.limit(payloadStart + readBuffer.getInt(offset + PAYLOAD_LENGTH_OFFSET));
+		readBuffer.position(payloadStart);
+		return readBuffer.slice();
+	}
+
+	/**
+	 * Forces the appended records to the storage device.
+	 */
+	public void force() {
+		buffer.force();
+	}
+
+	/**
+	 * Closes the segment file. The mapping is released when the segment is garbage collected.
+	 * 
+	 * @throws IOException if the file can't be closed
+	 */
+	public void close() throws IOException {
+		randomAccessFile.close();
+	}
+
+	/**
+	 * @return the ID of the segment; segments with higher IDs contain newer records
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * @return the segment file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the number of bytes occupied by records
+	 */
+	public int getSize() {
+		return writeBuffer.position();
+	}
+
+	/**
+	 * @return the number of bytes occupied by records which are no longer needed
+	 */
+	public int getGarbage() {
+		return garbage;
+	}
+
+	/**
+	 * Adds to the number of bytes occupied by records which are no longer needed.
+	 * 
+	 * @param bytes the length of the records
+	 */
+	public void addGarbage(final int bytes) {
+		garbage += bytes;
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel, Lukas Gross
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.segmentpersister.internal;
+
+/**
+ * A record which was found while scanning a {@link Segment}.
+ */
+public final class SegmentRecord {
+	private final int offset;
+	private final int length;
+	private final byte type;
+	private final String key;
+	private final long version;
+
+	SegmentRecord(final int offset, final int length, final byte type, final String key, final long version) {
+		this.offset = offset;
+		this.length = length;
+		this.type = type;
+		this.key = key;
+		this.version = version;
+	}
+
+	/**
+	 * @return the offset of the record in the segment
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return the length of the record including header and checksum
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * @return {@link Segment#TYPE_PUT} or {@link Segment#TYPE_DELETE}
+	 */
+	public byte getType() {
+		return type;
+	}
+
+	/**
+	 * @return the key of the configuration
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return the version of the configuration; 0 for deletions
+	 */
+	public long getVersion() {
+		return version;
+	}
+}
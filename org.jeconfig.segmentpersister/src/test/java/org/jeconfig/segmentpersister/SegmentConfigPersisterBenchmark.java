@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel, Lukas Gross
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.segmentpersister;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.api.dto.ConfigSimpleValueDTO;
+import org.jeconfig.api.persister.ConfigPersister;
+import org.jeconfig.api.scope.ClassScopeDescriptor;
+import org.jeconfig.api.scope.CodeDefaultScopeDescriptor;
+import org.jeconfig.api.scope.ScopePath;
+import org.jeconfig.api.scope.ScopePathBuilder;
+import org.jeconfig.common.scope.InternalScopePathBuilderFactory;
+import org.jeconfig.filepersister.FileConfigPersister;
+import org.jeconfig.server.marshalling.XStreamXmlMarshaller;
+
+/**
+ * Simple benchmark which compares the latency of saves, updates, loads and listScopes
+ * of a {@link SegmentConfigPersister} and a {@link FileConfigPersister}.<br>
+ * <br>
+ * This is not a unit test; run it manually with the main method.
+ * The first argument may specify the directory for the files (default: the temp directory).
+ */
+@SuppressWarnings("nls")
+public final class SegmentConfigPersisterBenchmark {
+	private static final int CONFIG_COUNT = 2000;
+	private static final int LOADS = 20000;
+	private static final int LIST_SCOPES = 20;
+
+	private SegmentConfigPersisterBenchmark() {}
+
+	public static void main(final String[] args) throws Exception {
+		final File baseDirectory = new File(args.length > 0 ? args[0] : System.getProperty("java.io.tmpdir"));
+		final File fileDirectory = new File(baseDirectory, "jeconfig-benchmark-files");
+		final File segmentDirectory = new File(baseDirectory, "jeconfig-benchmark-segments");
+		final XStreamXmlMarshaller marshaller = new XStreamXmlMarshaller();
+		final List<ScopePath> scopePaths = new ArrayList<ScopePath>();
+		for (int i = 0; i < CONFIG_COUNT; i++) {
+			scopePaths.add(createScopePath("user" + i));
+		}
+
+		final FileConfigPersister filePersister = new FileConfigPersister(marshaller, fileDirectory.getAbsolutePath(), ".xml");
+		final SegmentConfigPersister segmentPersister = new SegmentConfigPersister(
+			marshaller,
+			segmentDirectory.getAbsolutePath());
+		try {
+			// warm up
+			for (int i = 0; i < 2; i++) {
+				run(filePersister, fileDirectory, scopePaths, false);
+				run(segmentPersister, segmentDirectory, scopePaths, false);
+			}
+
+			System.out.println("FileConfigPersister:");
+			run(filePersister, fileDirectory, scopePaths, true);
+			System.out.println("SegmentConfigPersister:");
+			run(segmentPersister, segmentDirectory, scopePaths, true);
+		} finally {
+			segmentPersister.close();
+		}
+		FileUtils.deleteDirectory(fileDirectory);
+		FileUtils.deleteDirectory(segmentDirectory);
+	}
+
+	private static void run(
+		final ConfigPersister persister,
+		final File directory,
+		final List<ScopePath> scopePaths,
+		final boolean print) throws IOException {
+		long start = System.nanoTime();
+		for (final ScopePath scopePath : scopePaths) {
+			persister.saveConfiguration(createConfig(scopePath, 1));
+		}
+		final double saves = (System.nanoTime() - start) / 1000.0 / scopePaths.size();
+
+		start = System.nanoTime();
+		for (final ScopePath scopePath : scopePaths) {
+			persister.updateConfiguration(createConfig(scopePath, 2));
+		}
+		final double updates = (System.nanoTime() - start) / 1000.0 / scopePaths.size();
+
+		start = System.nanoTime();
+		for (int i = 0; i < LOADS; i++) {
+			persister.loadConfiguration(scopePaths.get(i % scopePaths.size()));
+		}
+		final double loads = (System.nanoTime() - start) / 1000.0 / LOADS;
+
+		start = System.nanoTime();
+		for (int i = 0; i < LIST_SCOPES; i++) {
+			persister.listScopes("user" + i, new HashMap<String, String>());
+		}
+		final double listScopes = (System.nanoTime() - start) / 1000.0 / LIST_SCOPES;
+
+		if (print) {
+			System.out.println("  save " + saves + " us, update " + updates + " us, load " + loads + " us, listScopes "
+				+ listScopes + " us, files " + FileUtils.listFiles(directory, null, true).size());
+		}
+		for (final ScopePath scopePath : scopePaths) {
+			persister.delete(scopePath, false);
+		}
+	}
+
+	private static ScopePath createScopePath(final String scopeName) {
+		final Map<String, String> classProps = new HashMap<String, String>();
+		classProps.put(ClassScopeDescriptor.PROP_CLASS_NAME, "class.name");
+		final ScopePathBuilder builder = new InternalScopePathBuilderFactory().createBuilder();
+		builder.append(ClassScopeDescriptor.NAME, classProps);
+		builder.append(CodeDefaultScopeDescriptor.NAME);
+		builder.append(scopeName);
+		return builder.create();
+	}
+
+	private static ComplexConfigDTO createConfig(final ScopePath scopePath, final long version) {
+		final ComplexConfigDTO config = new ComplexConfigDTO();
+		config.setPolymorph(false);
+		config.addSimpleValueProperty(new ConfigSimpleValueDTO("Integer", "field2", scopePath, "123"));
+		config.setDefiningScopePath(scopePath);
+		config.setVersion(version);
+		config.setNulled(false);
+		return config;
+	}
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel, Lukas Gross
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.segmentpersister;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.api.dto.ConfigSimpleValueDTO;
+import org.jeconfig.api.exception.StaleConfigException;
+import org.jeconfig.api.exception.StoreConfigException;
+import org.jeconfig.api.scope.DefaultScopeDescriptor;
+import org.jeconfig.api.scope.GlobalScopeDescriptor;
+import org.jeconfig.api.scope.ScopePath;
+import org.jeconfig.api.scope.ScopePathBuilder;
+import org.jeconfig.api.scope.ScopePathBuilderFactory;
+import org.jeconfig.api.scope.UserScopeDescriptor;
+import org.jeconfig.server.marshalling.XStreamXmlMarshaller;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+@SuppressWarnings("nls")
+public class SegmentConfigPersisterTest extends AbstractConfigPersisterTest {
+	private static final int SMALL_SEGMENT_SIZE = 4096;
+
+	// CHECKSTYLE:OFF
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	// CHECKSTYLE:ON
+
+	private final XStreamXmlMarshaller marshaller = new XStreamXmlMarshaller();
+	private String directory;
+	private SegmentConfigPersister persister;
+	private ScopePathBuilderFactory factory;
+
+	@Before
+	public void setUp() {
+		directory = folder.getRoot().getAbsolutePath();
+		persister = new SegmentConfigPersister(marshaller, directory);
+		factory = getConfigService().getScopePathBuilderFactory(TestConfiguration.class);
+	}
+
+	@After
+	public void tearDown() {
+		persister.close();
+	}
+
+	@Test
+	public void testSaveAndLoadConfiguration() {
+		final ScopePath path = factory.annotatedPath().create();
+		final ComplexConfigDTO configuration = createTestConfigDTO(path, 1);
+		persister.saveConfiguration(configuration);
+
+		Assert.assertEquals(configuration, persister.loadConfiguration(path));
+		Assert.assertNull(persister.loadConfiguration(factory.annotatedPathUntil(GlobalScopeDescriptor.NAME).create()));
+	}
+
+	@Test(expected = StaleConfigException.class)
+	public void testSaveConfigurationAlreadyExists() {
+		final ScopePath path = factory.annotatedPath().create();
+		persister.saveConfiguration(createTestConfigDTO(path, 1));
+		persister.saveConfiguration(createTestConfigDTO(path, 1));
+	}
+
+	@Test(expected = StoreConfigException.class)
+	public void testSaveConfigurationWithIllegalVersion() {
+		persister.saveConfiguration(createTestConfigDTO(factory.annotatedPath().create(), 0));
+	}
+
+	@Test
+	public void testUpdateConfiguration() {
+		final ScopePath path = factory.annotatedPath().create();
+		persister.saveConfiguration(createTestConfigDTO(path, 1));
+		final ComplexConfigDTO update = createTestConfigDTO(path, 2);
+		update.addSimpleValueProperty(new ConfigSimpleValueDTO("String", "field1", path, "updated"));
+		persister.updateConfiguration(update);
+
+		Assert.assertEquals(update, persister.loadConfiguration(path));
+	}
+
+	@Test(expected = StaleConfigException.class)
+	public void testUpdateConfigurationWithSameVersion() {
+		final ScopePath path = factory.annotatedPath().create();
+		persister.saveConfiguration(createTestConfigDTO(path, 1));
+		persister.updateConfiguration(createTestConfigDTO(path, 1));
+	}
+
+	@Test(expected = StaleConfigException.class)
+	public void testUpdateConfigurationNotExisting() {
+		persister.updateConfiguration(createTestConfigDTO(factory.annotatedPath().create(), 2));
+	}
+
+	@Test
+	public void testDelete() {
+		final ScopePath globalPath = factory.annotatedPathUntil(GlobalScopeDescriptor.NAME).create();
+		final ScopePath userPath = factory.annotatedPath().create();
+		persister.saveConfiguration(createTestConfigDTO(globalPath, 1));
+		persister.saveConfiguration(createTestConfigDTO(userPath, 1));
+
+		persister.delete(globalPath, false);
+		Assert.assertNull(persister.loadConfiguration(globalPath));
+		Assert.assertNotNull(persister.loadConfiguration(userPath));
+
+		persister.saveConfiguration(createTestConfigDTO(globalPath, 1));
+		persister.delete(globalPath, true);
+		Assert.assertNull(persister.loadConfiguration(globalPath));
+		Assert.assertNull(persister.loadConfiguration(userPath));
+	}
+
+	@Test
+	public void testDeleteAllOccurences() {
+		final ScopePath globalPath = factory.annotatedPathUntil(GlobalScopeDescriptor.NAME).create();
+		final ScopePath hugoPath = createUserScopePath("hugo");
+		final ScopePath fritzPath = createUserScopePath("fritz");
+		persister.saveConfiguration(createTestConfigDTO(globalPath, 1));
+		persister.saveConfiguration(createTestConfigDTO(hugoPath, 1));
+		persister.saveConfiguration(createTestConfigDTO(fritzPath, 1));
+
+		final Map<String, String> properties = new HashMap<String, String>();
+		properties.put(UserScopeDescriptor.PROP_USER_NAME, "hugo");
+		persister.deleteAllOccurences(UserScopeDescriptor.NAME, properties);
+
+		Assert.assertNull(persister.loadConfiguration(hugoPath));
+		Assert.assertNotNull(persister.loadConfiguration(fritzPath));
+		Assert.assertNotNull(persister.loadConfiguration(globalPath));
+	}
+
+	@Test
+	public void testListScopes() {
+		persister.saveConfiguration(createTestConfigDTO(factory.annotatedPathUntil(DefaultScopeDescriptor.NAME).create(), 1));
+		persister.saveConfiguration(createTestConfigDTO(createUserScopePath("hugo"), 1));
+		persister.saveConfiguration(createTestConfigDTO(createUserScopePath("fritz"), 1));
+
+		final Map<String, String> properties = new HashMap<String, String>();
+		Assert.assertEquals(3, persister.listScopes(DefaultScopeDescriptor.NAME, properties).size());
+		Assert.assertEquals(2, persister.listScopes(UserScopeDescriptor.NAME, properties).size());
+		properties.put(UserScopeDescriptor.PROP_USER_NAME, "fritz");
+		final Collection<ScopePath> fritzScopes = persister.listScopes(UserScopeDescriptor.NAME, properties);
+		Assert.assertEquals(1, fritzScopes.size());
+		Assert.assertEquals(
+				"fritz",
+				fritzScopes.iterator().next().findScopeByName(UserScopeDescriptor.NAME).getProperty(
+						UserScopeDescriptor.PROP_USER_NAME));
+	}
+
+	@Test
+	public void testGetVersionsAndLoadIfNewer() {
+		final ScopePath path = factory.annotatedPath().create();
+		final ScopePath notExisting = factory.annotatedPathUntil(GlobalScopeDescriptor.NAME).create();
+		persister.saveConfiguration(createTestConfigDTO(path, 1));
+		persister.updateConfiguration(createTestConfigDTO(path, 3));
+
+		final Map<ScopePath, Long> versions = persister.getVersions(Arrays.asList(path, notExisting));
+		Assert.assertEquals(Long.valueOf(3), versions.get(path));
+		Assert.assertTrue(versions.containsKey(notExisting));
+		Assert.assertNull(versions.get(notExisting));
+
+		Assert.assertNull(persister.loadIfNewer(path, 3));
+		Assert.assertEquals(3, persister.loadIfNewer(path, 2).getVersion());
+		Assert.assertNull(persister.loadIfNewer(notExisting, 0));
+	}
+
+	@Test
+	public void testRecovery() {
+		final ScopePath globalPath = factory.annotatedPathUntil(GlobalScopeDescriptor.NAME).create();
+		final ScopePath hugoPath = createUserScopePath("hugo");
+		final ScopePath fritzPath = createUserScopePath("fritz");
+		persister.saveConfiguration(createTestConfigDTO(globalPath, 1));
+		persister.saveConfiguration(createTestConfigDTO(hugoPath, 1));
+		persister.saveConfiguration(createTestConfigDTO(fritzPath, 1));
+		final ComplexConfigDTO update = createTestConfigDTO(hugoPath, 2);
+		persister.updateConfiguration(update);
+		persister.delete(fritzPath, false);
+		final Collection<ScopePath> scopes = persister.listScopes(DefaultScopeDescriptor.NAME, new HashMap<String, String>());
+		persister.close();
+
+		persister = new SegmentConfigPersister(marshaller, directory);
+		Assert.assertEquals(update, persister.loadConfiguration(hugoPath));
+		Assert.assertNotNull(persister.loadConfiguration(globalPath));
+		Assert.assertNull(persister.loadConfiguration(fritzPath));
+		Assert.assertEquals(
+				new HashSet<ScopePath>(scopes),
+				new HashSet<ScopePath>(persister.listScopes(DefaultScopeDescriptor.NAME, new HashMap<String, String>())));
+	}
+
+	@Test
+	public void testRecoveryIgnoresTornRecord() throws IOException {
+		final ScopePath globalPath = factory.annotatedPathUntil(GlobalScopeDescriptor.NAME).create();
+		final ScopePath userPath = factory.annotatedPath().create();
+		persister.saveConfiguration(createTestConfigDTO(globalPath, 1));
+		persister.saveConfiguration(createTestConfigDTO(userPath, 1));
+		persister.close();
+
+		// corrupts the last byte of the second record
+		final File segmentFile = getSegmentFiles(folder.getRoot())[0];
+		final RandomAccessFile file = new RandomAccessFile(segmentFile, "rw");
+		try {
+			long end = file.length() - 1;
+			while (end > 0) {
+				file.seek(end);
+				if (file.read() != 0) {
+					break;
+				}
+				end--;
+			}
+			file.seek(end);
+			file.write(0);
+		} finally {
+			file.close();
+		}
+
+		persister = new SegmentConfigPersister(marshaller, directory);
+		Assert.assertNotNull(persister.loadConfiguration(globalPath));
+		Assert.assertNull(persister.loadConfiguration(userPath));
+
+		// the torn record is overwritten
+		persister.saveConfiguration(createTestConfigDTO(userPath, 1));
+		persister.close();
+		persister = new SegmentConfigPersister(marshaller, directory);
+		Assert.assertNotNull(persister.loadConfiguration(globalPath));
+		Assert.assertNotNull(persister.loadConfiguration(userPath));
+	}
+
+	@Test
+	public void testCompaction() throws IOException {
+		persister.close();
+		final File smallSegmentDirectory = folder.newFolder("small");
+		persister = new SegmentConfigPersister(marshaller, smallSegmentDirectory.getAbsolutePath(), SMALL_SEGMENT_SIZE, false);
+		final ScopePath globalPath = factory.annotatedPathUntil(GlobalScopeDescriptor.NAME).create();
+		final ScopePath userPath = factory.annotatedPath().create();
+		final ScopePath deletedPath = createUserScopePath("fritz");
+		persister.saveConfiguration(createTestConfigDTO(globalPath, 1));
+		persister.saveConfiguration(createTestConfigDTO(deletedPath, 1));
+		persister.delete(deletedPath, false);
+		final int updates = 100;
+		persister.saveConfiguration(createTestConfigDTO(userPath, 1));
+		for (int i = 2; i <= updates; i++) {
+			persister.updateConfiguration(createTestConfigDTO(userPath, i));
+		}
+
+		// the replaced records are removed from the sealed segments
+		persister.compact();
+		Assert.assertFalse(new File(smallSegmentDirectory, "segment-1.seg").exists());
+		Assert.assertTrue(getSegmentFiles(smallSegmentDirectory).length <= 2);
+		Assert.assertEquals(updates, persister.loadConfiguration(userPath).getVersion());
+		Assert.assertNotNull(persister.loadConfiguration(globalPath));
+		Assert.assertNull(persister.loadConfiguration(deletedPath));
+
+		persister.close();
+		persister = new SegmentConfigPersister(marshaller, smallSegmentDirectory.getAbsolutePath(), SMALL_SEGMENT_SIZE, false);
+		Assert.assertEquals(updates, persister.loadConfiguration(userPath).getVersion());
+		Assert.assertNotNull(persister.loadConfiguration(globalPath));
+		Assert.assertNull(persister.loadConfiguration(deletedPath));
+	}
+
+	@Test
+	public void testLargeConfiguration() throws IOException {
+		persister.close();
+		persister = new SegmentConfigPersister(marshaller, folder.newFolder("small").getAbsolutePath(), SMALL_SEGMENT_SIZE, true);
+		final ScopePath path = factory.annotatedPath().create();
+		final ComplexConfigDTO configuration = createTestConfigDTO(path, 1);
+		final StringBuilder value = new StringBuilder();
+		for (int i = 0; i < SMALL_SEGMENT_SIZE; i++) {
+			value.append('x');
+		}
+		configuration.addSimpleValueProperty(new ConfigSimpleValueDTO("String", "field1", path, value.toString()));
+		persister.saveConfiguration(configuration);
+
+		Assert.assertEquals(configuration, persister.loadConfiguration(path));
+	}
+
+	@Test(expected = StoreConfigException.class)
+	public void testDirectoryIsLocked() {
+		new SegmentConfigPersister(marshaller, directory);
+	}
+
+	@Test(expected = StoreConfigException.class)
+	public void testClosedPersister() {
+		persister.close();
+		persister.loadConfiguration(factory.annotatedPath().create());
+	}
+
+	private File[] getSegmentFiles(final File segmentDirectory) {
+		return segmentDirectory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(final File dir, final String name) {
+				return name.endsWith(".seg");
+			}
+		});
+	}
+
+	private ScopePath createUserScopePath(final String userName) {
+		final ScopePathBuilder builder = factory.annotatedPath();
+		builder.addPropertyToScope(UserScopeDescriptor.NAME, UserScopeDescriptor.PROP_USER_NAME, userName);
+		return builder.create();
+	}
+
+	private ComplexConfigDTO createTestConfigDTO(final ScopePath path, final long version) {
+		final ComplexConfigDTO configuration = new ComplexConfigDTO();
+		configuration.setPolymorph(false);
+		configuration.setDefiningScopePath(path);
+		configuration.setVersion(version);
+		configuration.setClassVersion(1);
+		configuration.setNulled(false);
+		return configuration;
+	}
+}
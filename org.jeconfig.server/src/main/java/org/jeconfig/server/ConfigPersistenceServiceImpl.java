@@ -27,22 +27,42 @@
 
 package org.jeconfig.server;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.jeconfig.api.cache.CachePolicy;
 import org.jeconfig.api.dto.ComplexConfigDTO;
 import org.jeconfig.api.exception.StaleConfigException;
+import org.jeconfig.api.persister.BulkConfigPersister;
 import org.jeconfig.api.persister.ConfigPersistenceService;
 import org.jeconfig.api.persister.ConfigPersister;
+import org.jeconfig.api.persister.ConfigPersisters;
 import org.jeconfig.api.persister.PersisterSelector;
 import org.jeconfig.api.scope.ScopePath;
 import org.jeconfig.api.util.Assert;
 import org.jeconfig.common.datastructure.CacheEntry;
-import org.jeconfig.common.datastructure.LRUCache;
+import org.jeconfig.common.datastructure.ConfigDTOCache;
+import org.jeconfig.common.datastructure.ConfigDTOCache.BulkConfigLoader;
+import org.jeconfig.common.datastructure.ConfigDTOCache.ConfigLoader;
 import org.jeconfig.server.persister.DefaultPersisterSelector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,22 +70,58 @@ import org.slf4j.LoggerFactory;
 /**
  * Configuration persistence service.
  * 
- * Persister which delegates to a persister which is chosen by a persister selector.
+ * Persister which delegates to a persister which is chosen by a persister selector.<br>
+ * The scopes of a scope path are loaded concurrently. By default a pool of daemon threads is used whose idle
+ * threads terminate; the pool is shut down by {@link #close()}. An executor passed to the constructor
+ * is not shut down.
  */
 public final class ConfigPersistenceServiceImpl implements ConfigPersistenceService {
 	private static final Logger LOG = LoggerFactory.getLogger(ConfigPersistenceServiceImpl.class);
 	private static final int CACHE_SIZE = 400;
+	private static final int MAX_PARALLEL_LOADS = 4;
+	private static final long LOADER_KEEP_ALIVE_SECONDS = 60;
 
 	private final Map<String, ConfigPersister> configPersisters;
 	private final AtomicReference<PersisterSelector> persisterSelector;
-	private final Map<ScopePath, CacheEntry<ComplexConfigDTO>> configCache;
+	private final ConfigDTOCache configCache;
 	private final AtomicReference<Boolean> cacheEnabled = new AtomicReference<Boolean>(Boolean.TRUE);
+	private final Executor loadExecutor;
+	private final boolean ownsLoadExecutor;
 
+	/**
+	 * Creates a new service which loads on its own thread pool.
+	 */
 	public ConfigPersistenceServiceImpl() {
+		this(createDefaultLoadExecutor(), true);
+	}
+
+	/**
+	 * Creates a new service.
+	 * 
+	 * @param loadExecutor the executor which runs the concurrent loads; isn't shut down by {@link #close()}.
+	 *            Loads which are rejected by the executor are run by the calling thread.
+	 */
+	public ConfigPersistenceServiceImpl(final Executor loadExecutor) {
+		this(loadExecutor, false);
+	}
+
+	private ConfigPersistenceServiceImpl(final Executor loadExecutor, final boolean ownsLoadExecutor) {
+		Assert.paramNotNull(loadExecutor, "loadExecutor"); //$NON-NLS-1$
+		this.loadExecutor = loadExecutor;
+		this.ownsLoadExecutor = ownsLoadExecutor;
 		configPersisters = new ConcurrentHashMap<String, ConfigPersister>();
 		persisterSelector = new AtomicReference<PersisterSelector>();
 		persisterSelector.set(new DefaultPersisterSelector());
-		configCache = Collections.synchronizedMap(new LRUCache<ScopePath, CacheEntry<ComplexConfigDTO>>(CACHE_SIZE));
+		configCache = new ConfigDTOCache(CachePolicy.maxEntries(CACHE_SIZE));
+	}
+
+	/**
+	 * Shuts down the own thread pool; later loads run in the calling thread.
+	 */
+	public void close() {
+		if (ownsLoadExecutor) {
+			((ExecutorService) loadExecutor).shutdown();
+		}
 	}
 
 	@Override
@@ -120,27 +176,29 @@ public final class ConfigPersistenceServiceImpl implements ConfigPersistenceServ
 
 	@Override
 	public void delete(final ScopePath scopePath, final boolean deleteChildren) {
-		// clear the cache to remove the configurations which will be deleted
-		// this could be improved by removing only necessary entries
-		configCache.clear();
-
-		if (deleteChildren) {
-			for (final ConfigPersister persister : configPersisters.values()) {
-				persister.delete(scopePath, deleteChildren);
+		try {
+			if (deleteChildren) {
+				for (final ConfigPersister persister : configPersisters.values()) {
+					persister.delete(scopePath, deleteChildren);
+				}
+			} else {
+				getPersisterForScopePath(scopePath).delete(scopePath, deleteChildren);
 			}
-		} else {
-			getPersisterForScopePath(scopePath).delete(scopePath, deleteChildren);
+		} finally {
+			// remove only the configurations which were deleted
+			configCache.invalidate(scopePath, deleteChildren);
 		}
 	}
 
 	@Override
 	public void deleteAllOccurences(final String scopeName, final Map<String, String> properties) {
-		// clear the cache to remove the configurations which will be deleted
-		// this could be improved by removing only necessary entries
-		configCache.clear();
-
-		for (final ConfigPersister persister : configPersisters.values()) {
-			persister.deleteAllOccurences(scopeName, properties);
+		try {
+			for (final ConfigPersister persister : configPersisters.values()) {
+				persister.deleteAllOccurences(scopeName, properties);
+			}
+		} finally {
+			// remove only the configurations which were deleted
+			configCache.invalidateAllOccurences(scopeName, properties);
 		}
 	}
 
@@ -163,15 +221,173 @@ public final class ConfigPersistenceServiceImpl implements ConfigPersistenceServ
 	@Override
 	public ComplexConfigDTO loadConfiguration(final ScopePath scopePath) {
 		if (Boolean.TRUE.equals(cacheEnabled.get())) {
-			CacheEntry<ComplexConfigDTO> result = configCache.get(scopePath);
-			if (result == null) {
-				result = new CacheEntry<ComplexConfigDTO>(getPersisterForScopePath(scopePath).loadConfiguration(scopePath));
-				configCache.put(scopePath, result);
+			// concurrent misses of the same scope path are coalesced, so only one thread hits the persister
+			return configCache.get(scopePath, new ConfigLoader() {
+				@Override
+				public ComplexConfigDTO load(final ScopePath path) {
+					return getPersisterForScopePath(path).loadConfiguration(path);
+				}
+			}).getElement();
+		}
+		return getPersisterForScopePath(scopePath).loadConfiguration(scopePath);
+	}
+
+	@Override
+	public Map<ScopePath, ComplexConfigDTO> loadConfigurations(final Collection<ScopePath> scopePaths) {
+		Assert.paramNotNull(scopePaths, "scopePaths"); //$NON-NLS-1$
+		if (Boolean.TRUE.equals(cacheEnabled.get())) {
+			// only the missing configurations are loaded; concurrent misses are coalesced like in loadConfiguration()
+			final Map<ScopePath, CacheEntry<ComplexConfigDTO>> entries = configCache.getAll(scopePaths, new BulkConfigLoader() {
+				@Override
+				public Map<ScopePath, ComplexConfigDTO> load(final Collection<ScopePath> paths) {
+					return loadFromPersisters(paths);
+				}
+			});
+			final Map<ScopePath, ComplexConfigDTO> result = new LinkedHashMap<ScopePath, ComplexConfigDTO>();
+			for (final Map.Entry<ScopePath, CacheEntry<ComplexConfigDTO>> entry : entries.entrySet()) {
+				result.put(entry.getKey(), entry.getValue().getElement());
 			}
+			return result;
+		}
+		return loadFromPersisters(scopePaths);
+	}
 
-			return result.getElement();
+	/**
+	 * Loads the configurations with one call per bulk persister and one call per scope path otherwise.
+	 * The calls are independent, so they run concurrently on the load executor and loading the scopes
+	 * of a scope path takes about one round trip.
+	 */
+	private Map<ScopePath, ComplexConfigDTO> loadFromPersisters(final Collection<ScopePath> scopePaths) {
+		final List<FutureTask<Map<ScopePath, ComplexConfigDTO>>> loads;
+		loads = new ArrayList<FutureTask<Map<ScopePath, ComplexConfigDTO>>>();
+		for (final Map.Entry<ConfigPersister, List<ScopePath>> entry : groupByPersister(scopePaths).entrySet()) {
+			final ConfigPersister persister = entry.getKey();
+			if (persister instanceof BulkConfigPersister) {
+				loads.add(createLoad(persister, entry.getValue()));
+			} else {
+				for (final ScopePath scopePath : entry.getValue()) {
+					loads.add(createLoad(persister, Collections.singletonList(scopePath)));
+				}
+			}
+		}
+		for (int i = 1; i < loads.size(); i++) {
+			try {
+				loadExecutor.execute(loads.get(i));
+			} catch (final RejectedExecutionException e) {
+				break;
+			}
+		}
+		// the calling thread runs the loads which weren't started by the executor yet;
+		// running a started load is a no-op
+		for (final FutureTask<Map<ScopePath, ComplexConfigDTO>> load : loads) {
+			load.run();
+		}
+		final Map<ScopePath, ComplexConfigDTO> loadedConfigs = new HashMap<ScopePath, ComplexConfigDTO>();
+		for (final FutureTask<Map<ScopePath, ComplexConfigDTO>> load : loads) {
+			loadedConfigs.putAll(getLoadResult(load));
+		}
+		final Map<ScopePath, ComplexConfigDTO> result = new LinkedHashMap<ScopePath, ComplexConfigDTO>();
+		for (final ScopePath scopePath : scopePaths) {
+			result.put(scopePath, loadedConfigs.get(scopePath));
+		}
+		return result;
+	}
+
+	private static FutureTask<Map<ScopePath, ComplexConfigDTO>> createLoad(
+		final ConfigPersister persister,
+		final Collection<ScopePath> scopePaths) {
+		return new FutureTask<Map<ScopePath, ComplexConfigDTO>>(new Callable<Map<ScopePath, ComplexConfigDTO>>() {
+			@Override
+			public Map<ScopePath, ComplexConfigDTO> call() {
+				return ConfigPersisters.loadConfigurations(persister, scopePaths);
+			}
+		});
+	}
+
+	private static Map<ScopePath, ComplexConfigDTO> getLoadResult(final FutureTask<Map<ScopePath, ComplexConfigDTO>> load) {
+		try {
+			return load.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while loading configurations!", e); //$NON-NLS-1$
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
 		}
-		return getPersisterForScopePath(scopePath).loadConfiguration(scopePath);
+	}
+
+	@Override
+	public Map<ScopePath, Long> getVersions(final Collection<ScopePath> scopePaths) {
+		Assert.paramNotNull(scopePaths, "scopePaths"); //$NON-NLS-1$
+		final boolean cacheEnabled = Boolean.TRUE.equals(this.cacheEnabled.get());
+		final Map<ScopePath, Long> versions = new LinkedHashMap<ScopePath, Long>();
+		final List<ScopePath> missingPaths = new ArrayList<ScopePath>();
+		for (final ScopePath scopePath : scopePaths) {
+			final CacheEntry<ComplexConfigDTO> cacheEntry = cacheEnabled ? configCache.get(scopePath) : null;
+			if (cacheEntry != null) {
+				versions.put(scopePath, getVersion(cacheEntry.getElement()));
+			} else {
+				missingPaths.add(scopePath);
+			}
+		}
+		// the probed versions are not cached because the configurations themselves were not loaded
+		for (final Map.Entry<ConfigPersister, List<ScopePath>> entry : groupByPersister(missingPaths).entrySet()) {
+			versions.putAll(ConfigPersisters.getVersions(entry.getKey(), entry.getValue()));
+		}
+		final Map<ScopePath, Long> result = new LinkedHashMap<ScopePath, Long>();
+		for (final ScopePath scopePath : scopePaths) {
+			result.put(scopePath, versions.get(scopePath));
+		}
+		return result;
+	}
+
+	private static Long getVersion(final ComplexConfigDTO config) {
+		return config != null ? Long.valueOf(config.getVersion()) : null;
+	}
+
+	@Override
+	public ComplexConfigDTO loadIfNewer(final ScopePath scopePath, final long knownVersion) {
+		Assert.paramNotNull(scopePath, "scopePath"); //$NON-NLS-1$
+		if (Boolean.TRUE.equals(cacheEnabled.get())) {
+			// a miss loads the whole configuration anyway to cache it
+			final ComplexConfigDTO config = loadConfiguration(scopePath);
+			return config != null && config.getVersion() > knownVersion ? config : null;
+		}
+		return ConfigPersisters.loadIfNewer(getPersisterForScopePath(scopePath), scopePath, knownVersion);
+	}
+
+	private Map<ConfigPersister, List<ScopePath>> groupByPersister(final Collection<ScopePath> scopePaths) {
+		final Map<ConfigPersister, List<ScopePath>> result = new LinkedHashMap<ConfigPersister, List<ScopePath>>();
+		for (final ScopePath scopePath : scopePaths) {
+			final ConfigPersister persister = getPersisterForScopePath(scopePath);
+			List<ScopePath> persisterScopePaths = result.get(persister);
+			if (persisterScopePaths == null) {
+				persisterScopePaths = new ArrayList<ScopePath>();
+				result.put(persister, persisterScopePaths);
+			}
+			persisterScopePaths.add(scopePath);
+		}
+		return result;
+	}
+
+	private Map<ConfigPersister, List<ComplexConfigDTO>> groupConfigsByPersister(final Collection<ComplexConfigDTO> configDTOs) {
+		final Map<ConfigPersister, List<ComplexConfigDTO>> result = new LinkedHashMap<ConfigPersister, List<ComplexConfigDTO>>();
+		for (final ComplexConfigDTO configDTO : configDTOs) {
+			final ConfigPersister persister = getPersisterForScopePath(configDTO.getDefiningScopePath());
+			List<ComplexConfigDTO> persisterConfigs = result.get(persister);
+			if (persisterConfigs == null) {
+				persisterConfigs = new ArrayList<ComplexConfigDTO>();
+				result.put(persister, persisterConfigs);
+			}
+			persisterConfigs.add(configDTO);
+		}
+		return result;
 	}
 
 	@Override
@@ -196,6 +412,48 @@ public final class ConfigPersistenceServiceImpl implements ConfigPersistenceServ
 		}
 	}
 
+	@Override
+	public void saveConfigurations(final Collection<ComplexConfigDTO> configDTOs) {
+		Assert.paramNotNull(configDTOs, "configDTOs"); //$NON-NLS-1$
+		for (final Map.Entry<ConfigPersister, List<ComplexConfigDTO>> entry : groupConfigsByPersister(configDTOs).entrySet()) {
+			try {
+				ConfigPersisters.saveConfigurations(entry.getKey(), entry.getValue());
+			} catch (final RuntimeException e) {
+				// some configurations may have been saved, so the cache doesn't know the state of any of them
+				removeFromCache(entry.getValue());
+				throw e;
+			}
+			putIntoCache(entry.getValue());
+		}
+	}
+
+	@Override
+	public void updateConfigurations(final Collection<ComplexConfigDTO> configDTOs) {
+		Assert.paramNotNull(configDTOs, "configDTOs"); //$NON-NLS-1$
+		for (final Map.Entry<ConfigPersister, List<ComplexConfigDTO>> entry : groupConfigsByPersister(configDTOs).entrySet()) {
+			try {
+				ConfigPersisters.updateConfigurations(entry.getKey(), entry.getValue());
+			} catch (final RuntimeException e) {
+				// some configurations may have been updated, so the cache doesn't know the state of any of them
+				removeFromCache(entry.getValue());
+				throw e;
+			}
+			putIntoCache(entry.getValue());
+		}
+	}
+
+	private void putIntoCache(final Collection<ComplexConfigDTO> configs) {
+		for (final ComplexConfigDTO config : configs) {
+			putIntoCache(config, config.getDefiningScopePath());
+		}
+	}
+
+	private void removeFromCache(final Collection<ComplexConfigDTO> configs) {
+		for (final ComplexConfigDTO config : configs) {
+			removeFromCache(config.getDefiningScopePath());
+		}
+	}
+
 	private void putIntoCache(final ComplexConfigDTO config, final ScopePath scopePath) {
 		if (Boolean.TRUE.equals(cacheEnabled.get())) {
 			final CacheEntry<ComplexConfigDTO> cacheEntry = new CacheEntry<ComplexConfigDTO>(config);
@@ -215,4 +473,39 @@ public final class ConfigPersistenceServiceImpl implements ConfigPersistenceServ
 			}
 		}
 	}
+
+	@Override
+	public void setCachePolicy(final CachePolicy policy) {
+		Assert.paramNotNull(policy, "policy"); //$NON-NLS-1$
+		configCache.setPolicy(policy);
+		LOG.info("set cache policy: " + policy); //$NON-NLS-1$
+	}
+
+	@Override
+	public CachePolicy getCachePolicy() {
+		return configCache.getPolicy();
+	}
+
+	private static ExecutorService createDefaultLoadExecutor() {
+		final ThreadPoolExecutor result = new ThreadPoolExecutor(
+			MAX_PARALLEL_LOADS,
+			MAX_PARALLEL_LOADS,
+			LOADER_KEEP_ALIVE_SECONDS,
+			TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(),
+			new LoaderThreadFactory());
+		result.allowCoreThreadTimeOut(true);
+		return result;
+	}
+
+	private static final class LoaderThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadCount = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			final Thread thread = new Thread(runnable, "ConfigLoader-" + threadCount.incrementAndGet()); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
 }
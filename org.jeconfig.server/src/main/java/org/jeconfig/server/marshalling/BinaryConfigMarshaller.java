@@ -0,0 +1,476 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.server.marshalling;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.api.dto.ConfigDTO;
+import org.jeconfig.api.dto.ConfigListDTO;
+import org.jeconfig.api.dto.ConfigMapDTO;
+import org.jeconfig.api.dto.ConfigSetDTO;
+import org.jeconfig.api.dto.ConfigSimpleValueDTO;
+import org.jeconfig.api.exception.StoreConfigException;
+import org.jeconfig.api.scope.Scope;
+import org.jeconfig.api.scope.ScopePath;
+import org.jeconfig.api.scope.ScopePathBuilder;
+import org.jeconfig.api.util.Assert;
+import org.jeconfig.common.scope.InternalScopePathBuilderFactory;
+
+/**
+ * Marshals configurations to a compact binary format.<br>
+ * Each DTO is written as a tag (its kind) followed by its fields; numbers are written as variable-length
+ * integers. Strings and scope paths are written once per configuration and referenced by their index afterwards,
+ * so repeated property types, property names and scope paths only take one or two bytes.<br>
+ * <br>
+ * This class is thread-safe.
+ */
+public final class BinaryConfigMarshaller implements ConfigMarshaller {
+	private static final int MAGIC = 0x4A43424D;
+	private static final int FORMAT_VERSION = 1;
+	private static final int BUFFER_SIZE = 4096;
+	private static final String STRING_ENCODING = "UTF-8"; //$NON-NLS-1$
+	/** Limits the memory allocated for collections before their items were read. */
+	private static final int MAX_INITIAL_CAPACITY = 64;
+	/** Limits the memory allocated for strings before their bytes were read. */
+	private static final int MAX_INITIAL_STRING_BYTES = 8192;
+	/** Limits the recursion of the reader, so a corrupt configuration can't overflow the stack. */
+	private static final int MAX_NESTING_DEPTH = 512;
+
+	private static final int TAG_NULL = 0;
+	private static final int TAG_COMPLEX = 1;
+	private static final int TAG_SIMPLE = 2;
+	private static final int TAG_LIST = 3;
+	private static final int TAG_SET = 4;
+	private static final int TAG_MAP = 5;
+
+	private static final int FLAG_POLYMORPH = 1;
+	private static final int FLAG_NULLED = 2;
+	private static final int FLAG_HAS_ITEMS = 4;
+
+	// references to strings and scope paths: 0 is null, 1 is followed by a new value, n > 1 is the value with index n - 2
+	private static final int REF_NULL = 0;
+	private static final int REF_NEW = 1;
+	private static final int REF_FIRST_INDEX = 2;
+
+	@Override
+	public void marshal(final OutputStream out, final ComplexConfigDTO configurationObject) {
+		Assert.paramNotNull(out, "out"); //$NON-NLS-1$
+		Assert.paramNotNull(configurationObject, "configurationObject"); //$NON-NLS-1$
+		try {
+			final DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+			dataOut.writeInt(MAGIC);
+			dataOut.writeByte(FORMAT_VERSION);
+			new Writer(dataOut).writeConfig(configurationObject);
+			dataOut.flush();
+		} catch (final IOException e) {
+			throw new StoreConfigException("Error while marshalling the configuration!", e); //$NON-NLS-1$
+		}
+	}
+
+	@Override
+	public ComplexConfigDTO unmarshal(final InputStream in) {
+		Assert.paramNotNull(in, "in"); //$NON-NLS-1$
+		try {
+			final DataInputStream dataIn = new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+			if (dataIn.readInt() != MAGIC) {
+				throw new StoreConfigException("The data is not a binary configuration!"); //$NON-NLS-1$
+			}
+			final int formatVersion = dataIn.readUnsignedByte();
+			if (formatVersion != FORMAT_VERSION) {
+				throw new StoreConfigException("Unsupported format version of binary configuration: " + formatVersion); //$NON-NLS-1$
+			}
+			final ConfigDTO config = new Reader(dataIn).readConfig();
+			if (!(config instanceof ComplexConfigDTO)) {
+				throw new StoreConfigException("The binary configuration doesn't contain a complex configuration!"); //$NON-NLS-1$
+			}
+			return (ComplexConfigDTO) config;
+		} catch (final EOFException e) {
+			throw new StoreConfigException("The binary configuration is truncated!", e); //$NON-NLS-1$
+		} catch (final IOException e) {
+			throw new StoreConfigException("Error while unmarshalling the configuration!", e); //$NON-NLS-1$
+		}
+	}
+
+	private static final class Writer {
+		private final DataOutputStream out;
+		private final Map<String, Integer> strings = new HashMap<String, Integer>();
+		private final Map<ScopePath, Integer> scopePaths = new HashMap<ScopePath, Integer>();
+
+		Writer(final DataOutputStream out) {
+			this.out = out;
+		}
+
+		void writeConfig(final ConfigDTO config) throws IOException {
+			if (config == null) {
+				out.writeByte(TAG_NULL);
+			} else if (config instanceof ComplexConfigDTO) {
+				final ComplexConfigDTO complexConfig = (ComplexConfigDTO) config;
+				writeHeader(TAG_COMPLEX, complexConfig, complexConfig.isNulled() ? FLAG_NULLED : 0);
+				writeLong(complexConfig.getClassVersion());
+				writeString(complexConfig.getIdPropertyName());
+				writeComplexProperties(complexConfig);
+			} else if (config instanceof ConfigSimpleValueDTO) {
+				writeHeader(TAG_SIMPLE, config, 0);
+				writeString(((ConfigSimpleValueDTO) config).getValue());
+			} else if (config instanceof ConfigListDTO) {
+				writeItems(TAG_LIST, config, ((ConfigListDTO) config).getItems());
+			} else if (config instanceof ConfigSetDTO) {
+				writeItems(TAG_SET, config, ((ConfigSetDTO) config).getItems());
+			} else if (config instanceof ConfigMapDTO) {
+				final Map<String, ConfigDTO> map = ((ConfigMapDTO) config).getMap();
+				writeHeader(TAG_MAP, config, map != null ? FLAG_HAS_ITEMS : 0);
+				if (map != null) {
+					writeInt(map.size());
+					for (final Map.Entry<String, ConfigDTO> entry : map.entrySet()) {
+						writeString(entry.getKey());
+						writeConfig(entry.getValue());
+					}
+				}
+			} else {
+				throw new StoreConfigException("Got unknown configuration: " + config); //$NON-NLS-1$
+			}
+		}
+
+		private void writeHeader(final int tag, final ConfigDTO config, final int flags) throws IOException {
+			out.writeByte(tag);
+			out.writeByte(flags | (config.isPolymorph() ? FLAG_POLYMORPH : 0));
+			writeString(config.getPropertyType());
+			writeString(config.getPropertyName());
+			writeString(config.getParentScopeName());
+			writeLong(config.getVersion());
+			writeLong(config.getParentVersion());
+			writeScopePath(config.getDefiningScopePath());
+		}
+
+		private void writeComplexProperties(final ComplexConfigDTO config) throws IOException {
+			final Set<ConfigSimpleValueDTO> simpleProperties = config.getSimpleProperties();
+			final Set<ComplexConfigDTO> complexProperties = config.getComplexProperties();
+			final Set<ConfigListDTO> listProperties = config.getListProperties();
+			final Set<ConfigSetDTO> setProperties = config.getSetProperties();
+			final Set<ConfigMapDTO> mapProperties = config.getMapProperties();
+			writeInt(simpleProperties.size()
+				+ complexProperties.size()
+				+ listProperties.size()
+				+ setProperties.size()
+				+ mapProperties.size());
+			writeConfigs(simpleProperties);
+			writeConfigs(complexProperties);
+			writeConfigs(listProperties);
+			writeConfigs(setProperties);
+			writeConfigs(mapProperties);
+		}
+
+		private void writeItems(final int tag, final ConfigDTO config, final Collection<ConfigDTO> items) throws IOException {
+			writeHeader(tag, config, items != null ? FLAG_HAS_ITEMS : 0);
+			if (items != null) {
+				writeInt(items.size());
+				writeConfigs(items);
+			}
+		}
+
+		private void writeConfigs(final Collection<? extends ConfigDTO> configs) throws IOException {
+			for (final ConfigDTO config : configs) {
+				writeConfig(config);
+			}
+		}
+
+		private void writeScopePath(final ScopePath scopePath) throws IOException {
+			if (scopePath == null) {
+				writeInt(REF_NULL);
+				return;
+			}
+			final Integer index = scopePaths.get(scopePath);
+			if (index != null) {
+				writeInt(REF_FIRST_INDEX + index.intValue());
+				return;
+			}
+			scopePaths.put(scopePath, Integer.valueOf(scopePaths.size()));
+			writeInt(REF_NEW);
+			final List<Scope> scopes = scopePath.getScopes();
+			writeInt(scopes.size());
+			for (final Scope scope : scopes) {
+				writeString(scope.getName());
+				final Map<String, String> properties = scope.getProperties();
+				writeInt(properties.size());
+				for (final Map.Entry<String, String> entry : properties.entrySet()) {
+					writeString(entry.getKey());
+					writeString(entry.getValue());
+				}
+			}
+		}
+
+		private void writeString(final String value) throws IOException {
+			if (value == null) {
+				writeInt(REF_NULL);
+				return;
+			}
+			final Integer index = strings.get(value);
+			if (index != null) {
+				writeInt(REF_FIRST_INDEX + index.intValue());
+				return;
+			}
+			strings.put(value, Integer.valueOf(strings.size()));
+			writeInt(REF_NEW);
+			final byte[] bytes = value.getBytes(STRING_ENCODING);
+			writeInt(bytes.length);
+			out.write(bytes);
+		}
+
+		private void writeInt(final int value) throws IOException {
+			writeVarLong(value & 0xFFFFFFFFL);
+		}
+
+		/**
+		 * Writes a signed long as zig-zag encoded variable-length integer, so small negative values are short too.
+		 */
+		private void writeLong(final long value) throws IOException {
+			writeVarLong((value << 1) ^ (value >> 63));
+		}
+
+		private void writeVarLong(final long value) throws IOException {
+			long remaining = value;
+			while ((remaining & ~0x7FL) != 0) {
+				out.writeByte((int) ((remaining & 0x7F) | 0x80));
+				remaining >>>= 7;
+			}
+			out.writeByte((int) remaining);
+		}
+	}
+
+	private static final class Reader {
+		private final DataInputStream in;
+		private final List<String> strings = new ArrayList<String>();
+		private final List<ScopePath> scopePaths = new ArrayList<ScopePath>();
+		private final InternalScopePathBuilderFactory scopePathBuilderFactory = new InternalScopePathBuilderFactory();
+		private int depth;
+
+		Reader(final DataInputStream in) {
+			this.in = in;
+		}
+
+		ConfigDTO readConfig() throws IOException {
+			if (depth >= MAX_NESTING_DEPTH) {
+				throw new StoreConfigException(
+					"The binary configuration is nested deeper than " + MAX_NESTING_DEPTH + " levels!"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			depth++;
+			try {
+				return readTaggedConfig();
+			} finally {
+				depth--;
+			}
+		}
+
+		private ConfigDTO readTaggedConfig() throws IOException {
+			final int tag = in.readUnsignedByte();
+			switch (tag) {
+				case TAG_NULL:
+					return null;
+				case TAG_COMPLEX: {
+					final ComplexConfigDTO config = new ComplexConfigDTO();
+					final int flags = readHeader(config);
+					config.setNulled((flags & FLAG_NULLED) != 0);
+					config.setClassVersion(readLong());
+					config.setIdPropertyName(readString());
+					final int propertyCount = readInt();
+					for (int i = 0; i < propertyCount; i++) {
+						final ConfigDTO property = readConfig();
+						if (property == null) {
+							throw new StoreConfigException("The binary configuration contains a null property!"); //$NON-NLS-1$
+						}
+						config.addProperty(property);
+					}
+					return config;
+				}
+				case TAG_SIMPLE: {
+					final ConfigSimpleValueDTO config = new ConfigSimpleValueDTO();
+					readHeader(config);
+					config.setValue(readString());
+					return config;
+				}
+				case TAG_LIST: {
+					final ConfigListDTO config = new ConfigListDTO();
+					if ((readHeader(config) & FLAG_HAS_ITEMS) != 0) {
+						final int size = readInt();
+						final List<ConfigDTO> items = new ArrayList<ConfigDTO>(Math.min(size, MAX_INITIAL_CAPACITY));
+						for (int i = 0; i < size; i++) {
+							items.add(readConfig());
+						}
+						config.setItems(items);
+					}
+					return config;
+				}
+				case TAG_SET: {
+					final ConfigSetDTO config = new ConfigSetDTO();
+					if ((readHeader(config) & FLAG_HAS_ITEMS) != 0) {
+						final int size = readInt();
+						final Set<ConfigDTO> items = new HashSet<ConfigDTO>();
+						for (int i = 0; i < size; i++) {
+							items.add(readConfig());
+						}
+						config.setItems(items);
+					}
+					return config;
+				}
+				case TAG_MAP: {
+					final ConfigMapDTO config = new ConfigMapDTO();
+					if ((readHeader(config) & FLAG_HAS_ITEMS) != 0) {
+						final int size = readInt();
+						final Map<String, ConfigDTO> map = new HashMap<String, ConfigDTO>();
+						for (int i = 0; i < size; i++) {
+							final String key = readString();
+							map.put(key, readConfig());
+						}
+						config.setMap(map);
+					}
+					return config;
+				}
+				default:
+					throw new StoreConfigException("Unknown tag in binary configuration: " + tag); //$NON-NLS-1$
+			}
+		}
+
+		/**
+		 * @return the flags of the DTO
+		 */
+		private int readHeader(final ConfigDTO config) throws IOException {
+			final int flags = in.readUnsignedByte();
+			config.setPolymorph((flags & FLAG_POLYMORPH) != 0);
+			config.setPropertyType(readString());
+			config.setPropertyName(readString());
+			config.setParentScopeName(readString());
+			config.setVersion(readLong());
+			config.setParentVersion(readLong());
+			config.setDefiningScopePath(readScopePath());
+			return flags;
+		}
+
+		private ScopePath readScopePath() throws IOException {
+			final int ref = readInt();
+			if (ref == REF_NULL) {
+				return null;
+			}
+			if (ref != REF_NEW) {
+				return getReferenced(scopePaths, ref);
+			}
+			final ScopePathBuilder builder = scopePathBuilderFactory.createBuilder();
+			final int scopeCount = readInt();
+			for (int i = 0; i < scopeCount; i++) {
+				final String name = readString();
+				final int propertyCount = readInt();
+				final Map<String, String> properties = new HashMap<String, String>();
+				for (int j = 0; j < propertyCount; j++) {
+					final String key = readString();
+					properties.put(key, readString());
+				}
+				builder.append(name, properties);
+			}
+			final ScopePath scopePath = builder.create();
+			scopePaths.add(scopePath);
+			return scopePath;
+		}
+
+		private String readString() throws IOException {
+			final int ref = readInt();
+			if (ref == REF_NULL) {
+				return null;
+			}
+			if (ref != REF_NEW) {
+				return getReferenced(strings, ref);
+			}
+			final byte[] bytes = readBytes(readInt());
+			final String value = new String(bytes, STRING_ENCODING);
+			strings.add(value);
+			return value;
+		}
+
+		/**
+		 * Reads the given number of bytes. The length isn't trusted, so the array only grows
+		 * with the bytes actually read and a huge length of a corrupt configuration fails at the end of the data.
+		 */
+		private byte[] readBytes(final int length) throws IOException {
+			byte[] bytes = new byte[Math.min(length, MAX_INITIAL_STRING_BYTES)];
+			in.readFully(bytes);
+			while (bytes.length < length) {
+				final int count = bytes.length;
+				bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * count));
+				in.readFully(bytes, count, bytes.length - count);
+			}
+			return bytes;
+		}
+
+		private <T> T getReferenced(final List<T> values, final int ref) {
+			final int index = ref - REF_FIRST_INDEX;
+			if (index < 0 || index >= values.size()) {
+				throw new StoreConfigException("Invalid reference in binary configuration: " + ref); //$NON-NLS-1$
+			}
+			return values.get(index);
+		}
+
+		private int readInt() throws IOException {
+			final long value = readVarLong();
+			if (value < 0 || value > Integer.MAX_VALUE) {
+				throw new StoreConfigException("Invalid number in binary configuration: " + value); //$NON-NLS-1$
+			}
+			return (int) value;
+		}
+
+		private long readLong() throws IOException {
+			final long value = readVarLong();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		private long readVarLong() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				final int b = in.readUnsignedByte();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new StoreConfigException("Malformed variable-length number in binary configuration!"); //$NON-NLS-1$
+		}
+	}
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.server.marshalling;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.api.exception.StoreConfigException;
+import org.jeconfig.api.util.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decorates a {@link ConfigMarshaller} and compresses its output with {@link Deflater}.<br>
+ * A preset dictionary created by {@link #createDictionary(ConfigMarshaller, Collection)} from existing configurations
+ * improves the compression of small configurations because the recurring names are known in advance.<br>
+ * Compressed data starts with a magic header; data without it is passed to the inner marshaller unchanged,
+ * so configurations which were stored before the compression was enabled can still be loaded.<br>
+ * <br>
+ * This class is thread-safe.
+ */
+public final class CompressingConfigMarshaller implements ConfigMarshaller {
+	private static final Logger LOG = LoggerFactory.getLogger(CompressingConfigMarshaller.class);
+
+	private static final int MAGIC = 0x4A43435A;
+	private static final int MAGIC_LENGTH = 4;
+	private static final int HEADER_SIZE = MAGIC_LENGTH + 6;
+	private static final int FORMAT_VERSION = 1;
+	private static final int FLAG_DICTIONARY = 1;
+	private static final int BUFFER_SIZE = 4096;
+
+	/** Deflate can't reference data which is further away than 32KB. */
+	private static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+	private static final int DICTIONARY_SEGMENT_LENGTH = 16;
+	private static final int MAX_DICTIONARY_CANDIDATES = 64 * 1024;
+	// maps bytes to chars 1:1, so byte sequences can be counted and searched as strings
+	private static final String DICTIONARY_ENCODING = "ISO-8859-1"; //$NON-NLS-1$
+
+	private final ConfigMarshaller marshaller;
+	private final byte[] dictionary;
+	private final int dictionaryChecksum;
+	private final int level;
+	private final AtomicLong uncompressedBytes = new AtomicLong();
+	private final AtomicLong compressedBytes = new AtomicLong();
+
+	/**
+	 * Creates a new marshaller which compresses without dictionary.
+	 * 
+	 * @param marshaller the marshaller which creates the data to compress
+	 */
+	public CompressingConfigMarshaller(final ConfigMarshaller marshaller) {
+		this(marshaller, null, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Creates a new marshaller.
+	 * 
+	 * @param marshaller the marshaller which creates the data to compress
+	 * @param dictionary the preset dictionary; may be <code>null</code>. Data compressed with a dictionary
+	 *            can only be unmarshalled with the same dictionary.
+	 * @param level the compression level (see {@link Deflater})
+	 */
+	public CompressingConfigMarshaller(final ConfigMarshaller marshaller, final byte[] dictionary, final int level) {
+		Assert.paramNotNull(marshaller, "marshaller"); //$NON-NLS-1$
+		if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+			throw new IllegalArgumentException("Invalid compression level: " + level); //$NON-NLS-1$
+		}
+		this.marshaller = marshaller;
+		this.dictionary = dictionary != null && dictionary.length > 0 ? dictionary.clone() : null;
+		this.dictionaryChecksum = computeChecksum(this.dictionary);
+		this.level = level;
+	}
+
+	@Override
+	public void marshal(final OutputStream out, final ComplexConfigDTO configurationObject) {
+		Assert.paramNotNull(out, "out"); //$NON-NLS-1$
+		Assert.paramNotNull(configurationObject, "configurationObject"); //$NON-NLS-1$
+		final Deflater deflater = new Deflater(level);
+		try {
+			final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream(HEADER_SIZE);
+			final DataOutputStream header = new DataOutputStream(headerBytes);
+			header.writeInt(MAGIC);
+			header.writeByte(FORMAT_VERSION);
+			if (dictionary != null) {
+				header.writeByte(FLAG_DICTIONARY);
+				header.writeInt(dictionaryChecksum);
+				deflater.setDictionary(dictionary);
+			} else {
+				header.writeByte(0);
+			}
+			headerBytes.writeTo(out);
+
+			final DeflaterOutputStream deflaterOut = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+			marshaller.marshal(deflaterOut, configurationObject);
+			deflaterOut.finish();
+			deflaterOut.flush();
+
+			uncompressedBytes.addAndGet(deflater.getBytesRead());
+			compressedBytes.addAndGet(deflater.getBytesWritten());
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Compressed configuration from " //$NON-NLS-1$
+					+ deflater.getBytesRead()
+					+ " to " //$NON-NLS-1$
+					+ deflater.getBytesWritten()
+					+ " bytes"); //$NON-NLS-1$
+			}
+		} catch (final IOException e) {
+			throw new StoreConfigException("Error while compressing the configuration!", e); //$NON-NLS-1$
+		} finally {
+			deflater.end();
+		}
+	}
+
+	@Override
+	public ComplexConfigDTO unmarshal(final InputStream in) {
+		Assert.paramNotNull(in, "in"); //$NON-NLS-1$
+		final BufferedInputStream bufferedIn = new BufferedInputStream(in, BUFFER_SIZE);
+		try {
+			bufferedIn.mark(MAGIC_LENGTH);
+			if (!readMagic(bufferedIn)) {
+				bufferedIn.reset();
+				return marshaller.unmarshal(bufferedIn);
+			}
+
+			final DataInputStream header = new DataInputStream(bufferedIn);
+			final int formatVersion = header.readUnsignedByte();
+			if (formatVersion != FORMAT_VERSION) {
+				throw new StoreConfigException("Unsupported format version of compressed configuration: " + formatVersion); //$NON-NLS-1$
+			}
+			final boolean usesDictionary = (header.readUnsignedByte() & FLAG_DICTIONARY) != 0;
+			if (usesDictionary) {
+				final int checksum = header.readInt();
+				if (dictionary == null || checksum != dictionaryChecksum) {
+					throw new StoreConfigException("The configuration was compressed with another dictionary!"); //$NON-NLS-1$
+				}
+			}
+
+			final Inflater inflater = new Inflater();
+			try {
+				return marshaller.unmarshal(new DictionaryInflaterInputStream(
+					bufferedIn,
+					inflater,
+					usesDictionary ? dictionary : null));
+			} finally {
+				inflater.end();
+			}
+		} catch (final EOFException e) {
+			throw new StoreConfigException("The compressed configuration is truncated!", e); //$NON-NLS-1$
+		} catch (final IOException e) {
+			throw new StoreConfigException("Error while decompressing the configuration!", e); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * @return the number of bytes created by the inner marshaller since this marshaller has been created
+	 */
+	public long getUncompressedByteCount() {
+		return uncompressedBytes.get();
+	}
+
+	/**
+	 * @return the number of compressed bytes (without header) written since this marshaller has been created
+	 */
+	public long getCompressedByteCount() {
+		return compressedBytes.get();
+	}
+
+	/**
+	 * @return the size of the compressed data divided by the size of the uncompressed data of all marshalled
+	 *         configurations; 1 if nothing has been marshalled yet
+	 */
+	public double getCompressionRatio() {
+		final long uncompressed = uncompressedBytes.get();
+		if (uncompressed == 0) {
+			return 1.0;
+		}
+		return (double) compressedBytes.get() / uncompressed;
+	}
+
+	/**
+	 * Creates a preset dictionary from byte sequences which occur often in the marshalled samples.
+	 * The most frequent sequences are placed at the end of the dictionary where they can be referenced cheaply.
+	 * 
+	 * @param marshaller the marshaller which will be decorated with the dictionary
+	 * @param samples typical configurations
+	 * @return the dictionary; empty if the samples don't contain recurring data
+	 */
+	public static byte[] createDictionary(final ConfigMarshaller marshaller, final Collection<ComplexConfigDTO> samples) {
+		Assert.paramNotNull(marshaller, "marshaller"); //$NON-NLS-1$
+		Assert.paramNotNull(samples, "samples"); //$NON-NLS-1$
+		try {
+			final Map<String, SegmentCount> counts = new HashMap<String, SegmentCount>();
+			int position = 0;
+			for (final ComplexConfigDTO sample : samples) {
+				final ByteArrayOutputStream out = new ByteArrayOutputStream();
+				marshaller.marshal(out, sample);
+				final String data = new String(out.toByteArray(), DICTIONARY_ENCODING);
+				for (int i = 0; i + DICTIONARY_SEGMENT_LENGTH <= data.length(); i++, position++) {
+					final String segment = data.substring(i, i + DICTIONARY_SEGMENT_LENGTH);
+					final SegmentCount count = counts.get(segment);
+					if (count == null) {
+						counts.put(segment, new SegmentCount(segment, position));
+					} else {
+						count.count++;
+					}
+				}
+			}
+			return toDictionary(selectCandidates(counts.values())).getBytes(DICTIONARY_ENCODING);
+		} catch (final UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return the recurring segments ordered by their frequency; overlapping segments of the same string are
+	 *         adjacent because equally frequent segments are ordered by their first occurrence
+	 */
+	private static List<SegmentCount> selectCandidates(final Collection<SegmentCount> counts) {
+		final List<SegmentCount> candidates = new ArrayList<SegmentCount>();
+		for (final SegmentCount count : counts) {
+			if (count.count > 1) {
+				candidates.add(count);
+			}
+		}
+		Collections.sort(candidates, new Comparator<SegmentCount>() {
+			@Override
+			public int compare(final SegmentCount o1, final SegmentCount o2) {
+				if (o1.count != o2.count) {
+					return o1.count > o2.count ? -1 : 1;
+				}
+				return o1.firstPosition < o2.firstPosition ? -1 : (o1.firstPosition == o2.firstPosition ? 0 : 1);
+			}
+		});
+		return candidates.size() > MAX_DICTIONARY_CANDIDATES ? candidates.subList(0, MAX_DICTIONARY_CANDIDATES) : candidates;
+	}
+
+	private static String toDictionary(final List<SegmentCount> candidates) {
+		// overlapping segments are merged into pieces
+		final List<StringBuilder> pieces = new ArrayList<StringBuilder>();
+		final StringBuilder all = new StringBuilder();
+		for (final SegmentCount candidate : candidates) {
+			final String segment = candidate.segment;
+			if (all.indexOf(segment) >= 0) {
+				continue;
+			}
+			final StringBuilder lastPiece = pieces.isEmpty() ? null : pieces.get(pieces.size() - 1);
+			final int overlap = lastPiece != null ? getOverlap(lastPiece, segment) : 0;
+			final String added = segment.substring(overlap);
+			if (all.length() + added.length() > MAX_DICTIONARY_SIZE) {
+				break;
+			}
+			if (overlap > 0) {
+				lastPiece.append(added);
+			} else {
+				pieces.add(new StringBuilder(segment));
+				all.append('\0');
+			}
+			all.append(added);
+		}
+
+		final StringBuilder result = new StringBuilder();
+		for (int i = pieces.size() - 1; i >= 0; i--) {
+			result.append(pieces.get(i));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * @return the length of the longest suffix of the piece which is a prefix of the segment
+	 */
+	private static int getOverlap(final StringBuilder piece, final String segment) {
+		for (int overlap = Math.min(piece.length(), segment.length() - 1); overlap > 0; overlap--) {
+			if (piece.substring(piece.length() - overlap).equals(segment.substring(0, overlap))) {
+				return overlap;
+			}
+		}
+		return 0;
+	}
+
+	private static int computeChecksum(final byte[] data) {
+		if (data == null) {
+			return 0;
+		}
+		final Adler32 checksum = new Adler32();
+		checksum.update(data);
+		return (int) checksum.getValue();
+	}
+
+	private static boolean readMagic(final InputStream in) throws IOException {
+		int magic = 0;
+		for (int i = 0; i < MAGIC_LENGTH; i++) {
+			final int b = in.read();
+			if (b < 0) {
+				return false;
+			}
+			magic = (magic << 8) | b;
+		}
+		return magic == MAGIC;
+	}
+
+	private static final class SegmentCount {
+		private final String segment;
+		private final int firstPosition;
+		private int count = 1;
+
+		SegmentCount(final String segment, final int firstPosition) {
+			this.segment = segment;
+			this.firstPosition = firstPosition;
+		}
+	}
+
+	/**
+	 * Sets the preset dictionary when the inflater asks for it; {@link InflaterInputStream} would just stop reading.
+	 */
+	private static final class DictionaryInflaterInputStream extends InflaterInputStream {
+		private final byte[] dictionary;
+
+		DictionaryInflaterInputStream(final InputStream in, final Inflater inflater, final byte[] dictionary) {
+			super(in, inflater, BUFFER_SIZE);
+			this.dictionary = dictionary;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read < 0 && inf.needsDictionary()) {
+				if (dictionary == null) {
+					throw new IOException("The compressed data needs a dictionary!"); //$NON-NLS-1$
+				}
+				inf.setDictionary(dictionary);
+				read = super.read(b, off, len);
+			}
+			if (read < 0 && !inf.finished()) {
+				throw new EOFException("Unexpected end of compressed data"); //$NON-NLS-1$
+			}
+			return read;
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.server.marshalling;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * A growable buffer for marshalled configurations which hands out its content without copying it:
+ * a marshaller writes into the buffer (it's an {@link OutputStream}) and the persister reads the content
+ * as {@link ByteBuffer}, as {@link InputStream} or writes it to a channel.<br>
+ * The views share the content of the buffer and become invalid when the buffer is written or reset.
+ * Buffers can be reused with {@link #reset()} or a {@link ConfigBufferPool}.<br>
+ * <br>
+ * This class is not thread-safe.
+ */
+public final class ConfigBuffer extends OutputStream {
+	private static final int DEFAULT_CAPACITY = 8192;
+
+	private byte[] bytes;
+	private int size;
+
+	/**
+	 * Creates a new buffer with the default capacity.
+	 */
+	public ConfigBuffer() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new buffer.
+	 * 
+	 * @param initialCapacity the initial capacity in bytes; the expected size avoids growing the buffer
+	 */
+	public ConfigBuffer(final int initialCapacity) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("Negative capacity: " + initialCapacity); //$NON-NLS-1$
+		}
+		bytes = new byte[initialCapacity];
+	}
+
+	@Override
+	public void write(final int b) {
+		ensureCapacity(size + 1);
+		bytes[size++] = (byte) b;
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len) {
+		if (off < 0 || len < 0 || off > b.length - len) {
+			throw new IndexOutOfBoundsException();
+		}
+		ensureCapacity(size + len);
+		System.arraycopy(b, off, bytes, size, len);
+		size += len;
+	}
+
+	/**
+	 * Grows the buffer if it can't hold the given number of bytes.
+	 * 
+	 * @param minCapacity the needed capacity in bytes
+	 */
+	public void ensureCapacity(final int minCapacity) {
+		if (minCapacity < 0) {
+			throw new OutOfMemoryError("The buffer can't hold more than " + Integer.MAX_VALUE + " bytes"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		if (minCapacity > bytes.length) {
+			final int doubledCapacity = bytes.length << 1;
+			bytes = Arrays.copyOf(bytes, doubledCapacity < 0 ? Integer.MAX_VALUE : Math.max(doubledCapacity, minCapacity));
+		}
+	}
+
+	/**
+	 * Discards the content; the capacity is kept.
+	 */
+	public void reset() {
+		size = 0;
+	}
+
+	/**
+	 * @return the number of bytes in the buffer
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of bytes the buffer can hold without growing
+	 */
+	public int capacity() {
+		return bytes.length;
+	}
+
+	/**
+	 * @return a byte buffer which is backed by the content of this buffer (the content isn't copied)
+	 */
+	public ByteBuffer toByteBuffer() {
+		return ByteBuffer.wrap(bytes, 0, size);
+	}
+
+	/**
+	 * @return an input stream which reads the content of this buffer (the content isn't copied)
+	 */
+	public InputStream toInputStream() {
+		return new ByteArrayInputStream(bytes, 0, size);
+	}
+
+	/**
+	 * @return a copy of the content
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(bytes, size);
+	}
+
+	/**
+	 * Writes the content to a channel.
+	 * 
+	 * @param channel the target channel
+	 * @throws IOException if the channel can't be written
+	 */
+	public void writeTo(final WritableByteChannel channel) throws IOException {
+		final ByteBuffer content = toByteBuffer();
+		while (content.hasRemaining()) {
+			channel.write(content);
+		}
+	}
+
+	/**
+	 * Writes the content to a stream.
+	 * 
+	 * @param out the target stream
+	 * @throws IOException if the stream can't be written
+	 */
+	public void writeTo(final OutputStream out) throws IOException {
+		out.write(bytes, 0, size);
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.server.marshalling;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded pool of {@link ConfigBuffer}s, so marshalling doesn't allocate a new buffer for each configuration.<br>
+ * Buffers which grew beyond the maximum retained capacity (e.g. for a single huge configuration) are not pooled
+ * again, so the pool doesn't keep much memory forever.<br>
+ * <br>
+ * This class is thread-safe.
+ */
+public final class ConfigBufferPool {
+	private static final int DEFAULT_MAX_POOLED_BUFFERS = 8;
+	private static final int DEFAULT_INITIAL_CAPACITY = 8192;
+	private static final int DEFAULT_MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+	private final BlockingQueue<ConfigBuffer> buffers;
+	private final int initialCapacity;
+	private final int maxRetainedCapacity;
+
+	/**
+	 * Creates a new pool with default settings.
+	 */
+	public ConfigBufferPool() {
+		this(DEFAULT_MAX_POOLED_BUFFERS, DEFAULT_INITIAL_CAPACITY, DEFAULT_MAX_RETAINED_CAPACITY);
+	}
+
+	/**
+	 * Creates a new pool.
+	 * 
+	 * @param maxPooledBuffers the maximum number of idle buffers in the pool
+	 * @param initialCapacity the capacity of new buffers in bytes
+	 * @param maxRetainedCapacity buffers with a greater capacity are discarded when they are released
+	 */
+	public ConfigBufferPool(final int maxPooledBuffers, final int initialCapacity, final int maxRetainedCapacity) {
+		if (maxPooledBuffers < 1) {
+			throw new IllegalArgumentException("The pool must hold at least one buffer: " + maxPooledBuffers); //$NON-NLS-1$
+		}
+		if (initialCapacity < 0 || maxRetainedCapacity < initialCapacity) {
+			throw new IllegalArgumentException("Invalid capacities: " + initialCapacity + ", " + maxRetainedCapacity); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		this.buffers = new ArrayBlockingQueue<ConfigBuffer>(maxPooledBuffers);
+		this.initialCapacity = initialCapacity;
+		this.maxRetainedCapacity = maxRetainedCapacity;
+	}
+
+	/**
+	 * Takes an empty buffer from the pool or creates a new one if the pool is empty.
+	 * 
+	 * @return an empty buffer; must be released after use
+	 */
+	public ConfigBuffer acquire() {
+		final ConfigBuffer buffer = buffers.poll();
+		return buffer != null ? buffer : new ConfigBuffer(initialCapacity);
+	}
+
+	/**
+	 * Returns a buffer to the pool. The buffer and its views must not be used afterwards.
+	 * 
+	 * @param buffer the buffer to release; may be <code>null</code>
+	 */
+	public void release(final ConfigBuffer buffer) {
+		if (buffer != null && buffer.capacity() <= maxRetainedCapacity) {
+			buffer.reset();
+			buffers.offer(buffer);
+		}
+	}
+
+	/**
+	 * @return the number of idle buffers in the pool
+	 */
+	public int getPooledBufferCount() {
+		return buffers.size();
+	}
+}
@@ -0,0 +1,767 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.server.marshalling;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.api.dto.ConfigDTO;
+import org.jeconfig.api.dto.ConfigListDTO;
+import org.jeconfig.api.dto.ConfigMapDTO;
+import org.jeconfig.api.dto.ConfigSetDTO;
+import org.jeconfig.api.dto.ConfigSimpleValueDTO;
+import org.jeconfig.api.exception.StoreConfigException;
+import org.jeconfig.api.scope.Scope;
+import org.jeconfig.api.scope.ScopePath;
+import org.jeconfig.api.util.Assert;
+import org.jeconfig.common.scope.ScopeImpl;
+import org.jeconfig.common.scope.ScopePathImpl;
+
+/**
+ * Marshals configurations to the XML format of the {@link XStreamXmlMarshaller} with a hand-written StAX
+ * reader and writer instead of reflection.<br>
+ * Both marshallers can read each other's output: the same element names and aliases are used and objects
+ * which occur more than once (usually scope paths) are written as XStream's relative XPath references.
+ * Like XStream, the platform's default encoding is used and no XML declaration is written.<br>
+ * <br>
+ * This class is thread-safe.
+ */
+public final class StaxXmlMarshaller implements ConfigMarshaller {
+	private static final String COMPLEX_ALIAS = "ConfigClass"; //$NON-NLS-1$
+	private static final String SIMPLE_ALIAS = "ConfigSimpleValue"; //$NON-NLS-1$
+	private static final String SET_ALIAS = "ConfigSet"; //$NON-NLS-1$
+	private static final String LIST_ALIAS = "ConfigList"; //$NON-NLS-1$
+	private static final String MAP_ALIAS = "ConfigMap"; //$NON-NLS-1$
+
+	private static final String NULL_ELEMENT = "null"; //$NON-NLS-1$
+	private static final String STRING_ELEMENT = "string"; //$NON-NLS-1$
+	private static final String ENTRY_ELEMENT = "entry"; //$NON-NLS-1$
+	private static final String SCOPE_PATH_ELEMENT = "definingScopePath"; //$NON-NLS-1$
+	private static final String PROPERTY_TYPE_ELEMENT = "propertyType"; //$NON-NLS-1$
+	private static final String PROPERTY_NAME_ELEMENT = "propertyName"; //$NON-NLS-1$
+	private static final String POLYMORPH_ELEMENT = "polymorph"; //$NON-NLS-1$
+	private static final String PARENT_SCOPE_NAME_ELEMENT = "parentScopeName"; //$NON-NLS-1$
+	private static final String PARENT_VERSION_ELEMENT = "parentVersion"; //$NON-NLS-1$
+	private static final String VERSION_ELEMENT = "version"; //$NON-NLS-1$
+	private static final String CLASS_VERSION_ELEMENT = "classVersion"; //$NON-NLS-1$
+	private static final String LIST_PROPERTIES_ELEMENT = "listProperties"; //$NON-NLS-1$
+	private static final String SIMPLE_PROPERTIES_ELEMENT = "simpleProperties"; //$NON-NLS-1$
+	private static final String SET_PROPERTIES_ELEMENT = "setProperties"; //$NON-NLS-1$
+	private static final String MAP_PROPERTIES_ELEMENT = "mapProperties"; //$NON-NLS-1$
+	private static final String COMPLEX_PROPERTIES_ELEMENT = "complexProperties"; //$NON-NLS-1$
+	private static final String ID_PROPERTY_NAME_ELEMENT = "idPropertyName"; //$NON-NLS-1$
+	private static final String NULLED_ELEMENT = "nulled"; //$NON-NLS-1$
+	private static final String VALUE_ELEMENT = "value"; //$NON-NLS-1$
+	private static final String ITEMS_ELEMENT = "items"; //$NON-NLS-1$
+	private static final String MAP_ELEMENT = "map"; //$NON-NLS-1$
+	private static final String SCOPES_ELEMENT = "scopes"; //$NON-NLS-1$
+	private static final String SCOPE_ELEMENT = ScopeImpl.class.getName();
+	private static final String SCOPE_NAME_ELEMENT = "scopeName"; //$NON-NLS-1$
+	private static final String PROPERTIES_ELEMENT = "properties"; //$NON-NLS-1$
+
+	private static final String CLASS_ATTRIBUTE = "class"; //$NON-NLS-1$
+	private static final String REFERENCE_ATTRIBUTE = "reference"; //$NON-NLS-1$
+	private static final String SCOPE_PATH_CLASS = ScopePathImpl.class.getName();
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final XMLInputFactory inputFactory;
+	private final XMLOutputFactory outputFactory;
+
+	public StaxXmlMarshaller() {
+		inputFactory = XMLInputFactory.newInstance();
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		outputFactory = XMLOutputFactory.newInstance();
+	}
+
+	@Override
+	public void marshal(final OutputStream out, final ComplexConfigDTO configurationObject) {
+		Assert.paramNotNull(out, "out"); //$NON-NLS-1$
+		Assert.paramNotNull(configurationObject, "configurationObject"); //$NON-NLS-1$
+		try {
+			final BufferedWriter streamWriter = new BufferedWriter(new OutputStreamWriter(out), BUFFER_SIZE);
+			final XMLStreamWriter xmlWriter;
+			// the factories are not guaranteed to be thread-safe
+			synchronized (outputFactory) {
+				xmlWriter = outputFactory.createXMLStreamWriter(streamWriter);
+			}
+			new Writer(xmlWriter).writeRoot(configurationObject);
+			xmlWriter.close();
+			streamWriter.flush();
+		} catch (final XMLStreamException e) {
+			throw new StoreConfigException("Error while marshalling the configuration!", e); //$NON-NLS-1$
+		} catch (final IOException e) {
+			throw new StoreConfigException("Error while marshalling the configuration!", e); //$NON-NLS-1$
+		}
+	}
+
+	@Override
+	public ComplexConfigDTO unmarshal(final InputStream in) {
+		Assert.paramNotNull(in, "in"); //$NON-NLS-1$
+		try {
+			final XMLStreamReader xmlReader;
+			synchronized (inputFactory) {
+				xmlReader = inputFactory.createXMLStreamReader(new BufferedReader(new InputStreamReader(in), BUFFER_SIZE));
+			}
+			try {
+				return new Reader(xmlReader).readRoot();
+			} finally {
+				xmlReader.close();
+			}
+		} catch (final XMLStreamException e) {
+			throw new StoreConfigException("Error while unmarshalling the configuration!", e); //$NON-NLS-1$
+		} catch (final NumberFormatException e) {
+			throw new StoreConfigException("The configuration contains an invalid number!", e); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Tracks the path of the current element the same way as XStream does: an element which is not the first
+	 * child with its name gets its 1-based index appended, e.g. <code>entry[2]</code>.
+	 */
+	private static final class PathTracker {
+		private final List<String> segments = new ArrayList<String>();
+		// the counts of the child element names per level; index 0 holds the root element
+		private final List<Map<String, Integer>> childCounts = new ArrayList<Map<String, Integer>>();
+
+		PathTracker() {
+			childCounts.add(null);
+		}
+
+		void push(final String name) {
+			final int level = segments.size();
+			Map<String, Integer> counts = childCounts.get(level);
+			if (counts == null) {
+				counts = new HashMap<String, Integer>();
+				childCounts.set(level, counts);
+			}
+			final Integer count = counts.get(name);
+			final int index = count != null ? count.intValue() + 1 : 1;
+			counts.put(name, Integer.valueOf(index));
+			segments.add(index == 1 ? name : name + "[" + index + "]"); //$NON-NLS-1$ //$NON-NLS-2$
+			childCounts.add(null);
+		}
+
+		void pop() {
+			segments.remove(segments.size() - 1);
+			childCounts.remove(childCounts.size() - 1);
+		}
+
+		List<String> getSegments() {
+			return new ArrayList<String>(segments);
+		}
+
+		String getPath() {
+			return toPath(segments);
+		}
+
+		/**
+		 * @return the path of the target relative to the current element
+		 */
+		String getRelativePath(final List<String> target) {
+			int common = 0;
+			while (common < segments.size() && common < target.size() && segments.get(common).equals(target.get(common))) {
+				common++;
+			}
+			final StringBuilder sb = new StringBuilder();
+			for (int i = common; i < segments.size(); i++) {
+				sb.append("../"); //$NON-NLS-1$
+			}
+			for (int i = common; i < target.size(); i++) {
+				if (i > common) {
+					sb.append('/');
+				}
+				sb.append(target.get(i));
+			}
+			return sb.toString();
+		}
+
+		/**
+		 * @return the absolute path of the given reference which is relative to the current element
+		 */
+		String resolve(final String reference) {
+			final List<String> result = reference.startsWith("/") ? new ArrayList<String>() : getSegments(); //$NON-NLS-1$
+			for (final String segment : reference.split("/")) { //$NON-NLS-1$
+				if ("..".equals(segment)) { //$NON-NLS-1$
+					if (result.isEmpty()) {
+						throw new StoreConfigException("Invalid reference in configuration: " + reference); //$NON-NLS-1$
+					}
+					result.remove(result.size() - 1);
+				} else if (segment.length() > 0 && !".".equals(segment)) { //$NON-NLS-1$
+					result.add(segment.endsWith("[1]") ? segment.substring(0, segment.length() - 3) : segment); //$NON-NLS-1$
+				}
+			}
+			return toPath(result);
+		}
+
+		private static String toPath(final List<String> pathSegments) {
+			final StringBuilder sb = new StringBuilder();
+			for (final String segment : pathSegments) {
+				sb.append('/').append(segment);
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Writes the XML indented like XStream's pretty print writer.
+	 */
+	private static final class Writer {
+		private final XMLStreamWriter out;
+		private final PathTracker path = new PathTracker();
+		private final Map<Object, List<String>> writtenObjects = new IdentityHashMap<Object, List<String>>();
+		private final List<String> indents = new ArrayList<String>();
+		private int depth;
+		// the start tag of the current element is written lazily because empty elements are closed immediately
+		private String pendingElement;
+		private String pendingClass;
+		private String pendingReference;
+		private boolean readyForNewLine;
+
+		Writer(final XMLStreamWriter out) {
+			this.out = out;
+		}
+
+		void writeRoot(final ComplexConfigDTO config) throws XMLStreamException {
+			writeConfig(config);
+			out.flush();
+		}
+
+		private void writeConfig(final ConfigDTO config) throws XMLStreamException {
+			if (config == null) {
+				startElement(NULL_ELEMENT);
+				endElement();
+				return;
+			}
+			if (config instanceof ComplexConfigDTO) {
+				startElement(COMPLEX_ALIAS);
+				if (!writeReference(config)) {
+					final ComplexConfigDTO complexConfig = (ComplexConfigDTO) config;
+					writeHeader(config);
+					writeTextElement(CLASS_VERSION_ELEMENT, String.valueOf(complexConfig.getClassVersion()));
+					writeProperties(LIST_PROPERTIES_ELEMENT, complexConfig.getListProperties());
+					writeProperties(SIMPLE_PROPERTIES_ELEMENT, complexConfig.getSimpleProperties());
+					writeProperties(SET_PROPERTIES_ELEMENT, complexConfig.getSetProperties());
+					writeProperties(MAP_PROPERTIES_ELEMENT, complexConfig.getMapProperties());
+					writeProperties(COMPLEX_PROPERTIES_ELEMENT, complexConfig.getComplexProperties());
+					writeTextElement(ID_PROPERTY_NAME_ELEMENT, complexConfig.getIdPropertyName());
+					writeTextElement(NULLED_ELEMENT, String.valueOf(complexConfig.isNulled()));
+				}
+			} else if (config instanceof ConfigSimpleValueDTO) {
+				startElement(SIMPLE_ALIAS);
+				if (!writeReference(config)) {
+					writeHeader(config);
+					writeTextElement(VALUE_ELEMENT, ((ConfigSimpleValueDTO) config).getValue());
+				}
+			} else if (config instanceof ConfigListDTO) {
+				startElement(LIST_ALIAS);
+				if (!writeReference(config)) {
+					writeHeader(config);
+					writeItems(((ConfigListDTO) config).getItems());
+				}
+			} else if (config instanceof ConfigSetDTO) {
+				startElement(SET_ALIAS);
+				if (!writeReference(config)) {
+					writeHeader(config);
+					writeItems(((ConfigSetDTO) config).getItems());
+				}
+			} else if (config instanceof ConfigMapDTO) {
+				startElement(MAP_ALIAS);
+				if (!writeReference(config)) {
+					writeHeader(config);
+					writeMap(((ConfigMapDTO) config).getMap());
+				}
+			} else {
+				throw new StoreConfigException("Got unknown configuration: " + config); //$NON-NLS-1$
+			}
+			endElement();
+		}
+
+		private void writeHeader(final ConfigDTO config) throws XMLStreamException {
+			writeScopePath(config.getDefiningScopePath());
+			writeTextElement(PROPERTY_TYPE_ELEMENT, config.getPropertyType());
+			writeTextElement(PROPERTY_NAME_ELEMENT, config.getPropertyName());
+			writeTextElement(POLYMORPH_ELEMENT, String.valueOf(config.isPolymorph()));
+			writeTextElement(PARENT_SCOPE_NAME_ELEMENT, config.getParentScopeName());
+			writeTextElement(PARENT_VERSION_ELEMENT, String.valueOf(config.getParentVersion()));
+			writeTextElement(VERSION_ELEMENT, String.valueOf(config.getVersion()));
+		}
+
+		private void writeProperties(final String name, final Collection<? extends ConfigDTO> properties)
+				throws XMLStreamException {
+			startElement(name);
+			for (final ConfigDTO property : properties) {
+				startElement(ENTRY_ELEMENT);
+				writeString(property.getPropertyName());
+				writeConfig(property);
+				endElement();
+			}
+			endElement();
+		}
+
+		private void writeItems(final Collection<ConfigDTO> items) throws XMLStreamException {
+			if (items != null) {
+				startElement(ITEMS_ELEMENT);
+				for (final ConfigDTO item : items) {
+					writeConfig(item);
+				}
+				endElement();
+			}
+		}
+
+		private void writeMap(final Map<String, ConfigDTO> map) throws XMLStreamException {
+			if (map != null) {
+				startElement(MAP_ELEMENT);
+				for (final Map.Entry<String, ConfigDTO> entry : map.entrySet()) {
+					startElement(ENTRY_ELEMENT);
+					writeString(entry.getKey());
+					writeConfig(entry.getValue());
+					endElement();
+				}
+				endElement();
+			}
+		}
+
+		private void writeScopePath(final ScopePath scopePath) throws XMLStreamException {
+			if (scopePath == null) {
+				return;
+			}
+			startElement(SCOPE_PATH_ELEMENT);
+			pendingClass = SCOPE_PATH_CLASS;
+			if (!writeReference(scopePath)) {
+				startElement(SCOPES_ELEMENT);
+				for (final Scope scope : scopePath.getScopes()) {
+					startElement(SCOPE_ELEMENT);
+					if (!writeReference(scope)) {
+						writeTextElement(SCOPE_NAME_ELEMENT, scope.getName());
+						startElement(PROPERTIES_ELEMENT);
+						for (final Map.Entry<String, String> entry : scope.getProperties().entrySet()) {
+							startElement(ENTRY_ELEMENT);
+							writeString(entry.getKey());
+							writeString(entry.getValue());
+							endElement();
+						}
+						endElement();
+					}
+					endElement();
+				}
+				endElement();
+			}
+			endElement();
+		}
+
+		/**
+		 * Writes a reference to the object if it has been written before; remembers the path of the object otherwise.
+		 * 
+		 * @return <code>true</code> if a reference has been written
+		 */
+		private boolean writeReference(final Object object) {
+			final List<String> target = writtenObjects.get(object);
+			if (target != null) {
+				pendingReference = path.getRelativePath(target);
+				return true;
+			}
+			writtenObjects.put(object, path.getSegments());
+			return false;
+		}
+
+		private void writeString(final String value) throws XMLStreamException {
+			if (value == null) {
+				startElement(NULL_ELEMENT);
+				endElement();
+			} else {
+				writeTextElement(STRING_ELEMENT, value);
+			}
+		}
+
+		private void writeTextElement(final String name, final String text) throws XMLStreamException {
+			if (text != null) {
+				startElement(name);
+				flushPending(false);
+				writeText(text);
+				readyForNewLine = false;
+				endElement();
+			}
+		}
+
+		/**
+		 * Escapes carriage returns and other control characters like XStream does; they would get lost otherwise.
+		 */
+		private void writeText(final String text) throws XMLStreamException {
+			int start = 0;
+			for (int i = 0; i < text.length(); i++) {
+				final char c = text.charAt(i);
+				if (c < ' ' && c != '\t' && c != '\n') {
+					if (i > start) {
+						out.writeCharacters(text.substring(start, i));
+					}
+					out.writeEntityRef("#x" + Integer.toHexString(c)); //$NON-NLS-1$
+					start = i + 1;
+				}
+			}
+			if (start == 0) {
+				out.writeCharacters(text);
+			} else if (start < text.length()) {
+				out.writeCharacters(text.substring(start));
+			}
+		}
+
+		private void startElement(final String name) throws XMLStreamException {
+			flushPending(false);
+			if (depth > 0) {
+				out.writeCharacters(getIndent(depth));
+			}
+			path.push(name);
+			pendingElement = name;
+			depth++;
+		}
+
+		private void endElement() throws XMLStreamException {
+			depth--;
+			if (pendingElement != null) {
+				flushPending(true);
+			} else {
+				if (readyForNewLine) {
+					out.writeCharacters(getIndent(depth));
+				}
+				out.writeEndElement();
+			}
+			readyForNewLine = true;
+			path.pop();
+		}
+
+		private void flushPending(final boolean empty) throws XMLStreamException {
+			if (pendingElement == null) {
+				return;
+			}
+			if (empty) {
+				out.writeEmptyElement(pendingElement);
+			} else {
+				out.writeStartElement(pendingElement);
+			}
+			if (pendingClass != null) {
+				out.writeAttribute(CLASS_ATTRIBUTE, pendingClass);
+			}
+			if (pendingReference != null) {
+				out.writeAttribute(REFERENCE_ATTRIBUTE, pendingReference);
+			}
+			pendingElement = null;
+			pendingClass = null;
+			pendingReference = null;
+		}
+
+		private String getIndent(final int level) {
+			while (indents.size() <= level) {
+				final StringBuilder sb = new StringBuilder("\n"); //$NON-NLS-1$
+				for (int i = 0; i < indents.size(); i++) {
+					sb.append("  "); //$NON-NLS-1$
+				}
+				indents.add(sb.toString());
+			}
+			return indents.get(level);
+		}
+	}
+
+	private static final class Reader {
+		private final XMLStreamReader in;
+		private final PathTracker path = new PathTracker();
+		private final Map<String, Object> readObjects = new HashMap<String, Object>();
+
+		Reader(final XMLStreamReader in) {
+			this.in = in;
+		}
+
+		ComplexConfigDTO readRoot() throws XMLStreamException {
+			if (in.nextTag() != XMLStreamConstants.START_ELEMENT) {
+				throw new StoreConfigException("The XML doesn't contain a configuration!"); //$NON-NLS-1$
+			}
+			path.push(in.getLocalName());
+			final ConfigDTO config = readConfig();
+			if (!(config instanceof ComplexConfigDTO)) {
+				throw new StoreConfigException("The XML doesn't contain a complex configuration!"); //$NON-NLS-1$
+			}
+			return (ComplexConfigDTO) config;
+		}
+
+		/**
+		 * Reads the DTO of the current element.
+		 */
+		private ConfigDTO readConfig() throws XMLStreamException {
+			final String name = in.getLocalName();
+			if (NULL_ELEMENT.equals(name)) {
+				skipElement();
+				return null;
+			}
+			final ConfigDTO referenced = readReference(ConfigDTO.class);
+			if (referenced != null) {
+				return referenced;
+			}
+
+			final ConfigDTO config;
+			if (COMPLEX_ALIAS.equals(name)) {
+				config = new ComplexConfigDTO();
+			} else if (SIMPLE_ALIAS.equals(name)) {
+				config = new ConfigSimpleValueDTO();
+			} else if (LIST_ALIAS.equals(name)) {
+				config = new ConfigListDTO();
+			} else if (SET_ALIAS.equals(name)) {
+				config = new ConfigSetDTO();
+			} else if (MAP_ALIAS.equals(name)) {
+				config = new ConfigMapDTO();
+			} else {
+				throw new StoreConfigException("Unknown configuration element: " + name); //$NON-NLS-1$
+			}
+			readObjects.put(path.getPath(), config);
+
+			while (nextChild()) {
+				readField(config, in.getLocalName());
+			}
+			return config;
+		}
+
+		private void readField(final ConfigDTO config, final String name) throws XMLStreamException {
+			if (SCOPE_PATH_ELEMENT.equals(name)) {
+				config.setDefiningScopePath(readScopePath());
+			} else if (PROPERTY_TYPE_ELEMENT.equals(name)) {
+				config.setPropertyType(readText());
+			} else if (PROPERTY_NAME_ELEMENT.equals(name)) {
+				config.setPropertyName(readText());
+			} else if (POLYMORPH_ELEMENT.equals(name)) {
+				config.setPolymorph(Boolean.parseBoolean(readText()));
+			} else if (PARENT_SCOPE_NAME_ELEMENT.equals(name)) {
+				config.setParentScopeName(readText());
+			} else if (PARENT_VERSION_ELEMENT.equals(name)) {
+				config.setParentVersion(Long.parseLong(readText()));
+			} else if (VERSION_ELEMENT.equals(name)) {
+				config.setVersion(Long.parseLong(readText()));
+			} else if (config instanceof ComplexConfigDTO) {
+				readComplexField((ComplexConfigDTO) config, name);
+			} else if (config instanceof ConfigSimpleValueDTO && VALUE_ELEMENT.equals(name)) {
+				((ConfigSimpleValueDTO) config).setValue(readText());
+			} else if (config instanceof ConfigListDTO && ITEMS_ELEMENT.equals(name)) {
+				final List<ConfigDTO> items = new ArrayList<ConfigDTO>();
+				while (nextChild()) {
+					items.add(readConfig());
+				}
+				((ConfigListDTO) config).setItems(items);
+			} else if (config instanceof ConfigSetDTO && ITEMS_ELEMENT.equals(name)) {
+				final Set<ConfigDTO> items = new HashSet<ConfigDTO>();
+				while (nextChild()) {
+					items.add(readConfig());
+				}
+				((ConfigSetDTO) config).setItems(items);
+			} else if (config instanceof ConfigMapDTO && MAP_ELEMENT.equals(name)) {
+				final Map<String, ConfigDTO> map = new HashMap<String, ConfigDTO>();
+				while (nextChild()) {
+					final String key = readEntryKey();
+					expectChild();
+					map.put(key, readConfig());
+					expectEnd();
+				}
+				((ConfigMapDTO) config).setMap(map);
+			} else {
+				throw new StoreConfigException("Unknown element in configuration: " + name); //$NON-NLS-1$
+			}
+		}
+
+		private void readComplexField(final ComplexConfigDTO config, final String name) throws XMLStreamException {
+			if (CLASS_VERSION_ELEMENT.equals(name)) {
+				config.setClassVersion(Long.parseLong(readText()));
+			} else if (ID_PROPERTY_NAME_ELEMENT.equals(name)) {
+				config.setIdPropertyName(readText());
+			} else if (NULLED_ELEMENT.equals(name)) {
+				config.setNulled(Boolean.parseBoolean(readText()));
+			} else if (LIST_PROPERTIES_ELEMENT.equals(name)
+				|| SIMPLE_PROPERTIES_ELEMENT.equals(name)
+				|| SET_PROPERTIES_ELEMENT.equals(name)
+				|| MAP_PROPERTIES_ELEMENT.equals(name)
+				|| COMPLEX_PROPERTIES_ELEMENT.equals(name)) {
+				while (nextChild()) {
+					readEntryKey();
+					expectChild();
+					final ConfigDTO property = readConfig();
+					if (property == null) {
+						throw new StoreConfigException("The configuration contains a null property!"); //$NON-NLS-1$
+					}
+					config.addProperty(property);
+					expectEnd();
+				}
+			} else {
+				throw new StoreConfigException("Unknown element in configuration: " + name); //$NON-NLS-1$
+			}
+		}
+
+		private ScopePath readScopePath() throws XMLStreamException {
+			final ScopePath referenced = readReference(ScopePath.class);
+			if (referenced != null) {
+				return referenced;
+			}
+			final String elementPath = path.getPath();
+			final List<Scope> scopes = new ArrayList<Scope>();
+			while (nextChild()) {
+				if (!SCOPES_ELEMENT.equals(in.getLocalName())) {
+					throw new StoreConfigException("Unknown element in scope path: " + in.getLocalName()); //$NON-NLS-1$
+				}
+				while (nextChild()) {
+					scopes.add(readScope());
+				}
+			}
+			if (scopes.isEmpty()) {
+				throw new StoreConfigException("The configuration contains a scope path without scopes!"); //$NON-NLS-1$
+			}
+			final ScopePath scopePath = new ScopePathImpl(scopes);
+			readObjects.put(elementPath, scopePath);
+			return scopePath;
+		}
+
+		private Scope readScope() throws XMLStreamException {
+			final Scope referenced = readReference(Scope.class);
+			if (referenced != null) {
+				return referenced;
+			}
+			final String elementPath = path.getPath();
+			String scopeName = null;
+			final Map<String, String> properties = new HashMap<String, String>();
+			while (nextChild()) {
+				final String name = in.getLocalName();
+				if (SCOPE_NAME_ELEMENT.equals(name)) {
+					scopeName = readText();
+				} else if (PROPERTIES_ELEMENT.equals(name)) {
+					while (nextChild()) {
+						final String key = readEntryKey();
+						expectChild();
+						properties.put(key, readString());
+						expectEnd();
+					}
+				} else {
+					throw new StoreConfigException("Unknown element in scope: " + name); //$NON-NLS-1$
+				}
+			}
+			if (scopeName == null) {
+				throw new StoreConfigException("The configuration contains a scope without name!"); //$NON-NLS-1$
+			}
+			final Scope scope = new ScopeImpl(scopeName, properties);
+			readObjects.put(elementPath, scope);
+			return scope;
+		}
+
+		/**
+		 * Resolves the reference of the current element if it has one.
+		 * 
+		 * @return the referenced object or <code>null</code> if the element isn't a reference
+		 */
+		private <T> T readReference(final Class<T> type) throws XMLStreamException {
+			final String reference = in.getAttributeValue(null, REFERENCE_ATTRIBUTE);
+			if (reference == null) {
+				return null;
+			}
+			final Object referenced = readObjects.get(path.resolve(reference));
+			if (!type.isInstance(referenced)) {
+				throw new StoreConfigException("Invalid reference in configuration: " + reference); //$NON-NLS-1$
+			}
+			skipElement();
+			return type.cast(referenced);
+		}
+
+		/**
+		 * Reads the key of an entry element.
+		 */
+		private String readEntryKey() throws XMLStreamException {
+			expectChild();
+			return readString();
+		}
+
+		private String readString() throws XMLStreamException {
+			if (NULL_ELEMENT.equals(in.getLocalName())) {
+				skipElement();
+				return null;
+			}
+			return readText();
+		}
+
+		private String readText() throws XMLStreamException {
+			final String text = in.getElementText();
+			path.pop();
+			return text;
+		}
+
+		private void skipElement() throws XMLStreamException {
+			while (nextChild()) {
+				skipElement();
+			}
+		}
+
+		/**
+		 * Moves to the next child element of the current element or to the end of the current element.
+		 * 
+		 * @return <code>true</code> if a child element has been found
+		 */
+		private boolean nextChild() throws XMLStreamException {
+			if (in.nextTag() == XMLStreamConstants.START_ELEMENT) {
+				path.push(in.getLocalName());
+				return true;
+			}
+			path.pop();
+			return false;
+		}
+
+		private void expectChild() throws XMLStreamException {
+			if (!nextChild()) {
+				throw new StoreConfigException("Missing element in configuration at " + path.getPath()); //$NON-NLS-1$
+			}
+		}
+
+		private void expectEnd() throws XMLStreamException {
+			if (nextChild()) {
+				throw new StoreConfigException("Unexpected element in configuration: " + in.getLocalName()); //$NON-NLS-1$
+			}
+		}
+	}
+}
@@ -27,54 +27,179 @@
 
 package org.jeconfig.server.persister;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.jeconfig.api.dto.ComplexConfigDTO;
 import org.jeconfig.api.exception.StaleConfigException;
-import org.jeconfig.api.persister.ConfigPersister;
-import org.jeconfig.api.scope.Scope;
+import org.jeconfig.api.persister.BulkConfigPersister;
+import org.jeconfig.api.persister.VersionedConfigPersister;
 import org.jeconfig.api.scope.ScopePath;
-
-public class InMemoryPersister implements ConfigPersister {
+import org.jeconfig.common.datastructure.ScopePathIndex;
+
+/**
+ * A persister which keeps the configurations in memory.<br>
+ * Loads of single configurations and single updates don't block each other: an update replaces the
+ * stored configuration with compare-and-set, so of several concurrent updates based on the same version
+ * only one succeeds.
+ * Saves and deletes are serialized, because they also modify the index of the scope paths
+ * which is used by listScopes, deleteAllOccurences and deletes of children.<br>
+ * Bulk saves and updates are applied exclusively, so bulk loads see either all or none of their configurations.<br>
+ * <br>
+ * This class is thread-safe.
+ */
+public class InMemoryPersister implements BulkConfigPersister, VersionedConfigPersister {
 	public static final String ID = "InMemoryPersister"; //$NON-NLS-1$
 
-	private final Map<ScopePath, ComplexConfigDTO> savedObjects;
+	private final ConcurrentMap<ScopePath, StoredConfig> savedObjects;
+	// guarded by structureLock, queries read it without the lock
+	private final ScopePathIndex scopeIndex;
+	/** Serializes the insertions and removals of the saved objects together with the index. */
+	private final Object structureLock;
+	/**
+	 * Held exclusively by bulk saves and updates; single updates and bulk loads share it.
+	 * Bulk operations also hold the structure lock, so nothing else modifies the saved objects meanwhile.
+	 */
+	private final ReadWriteLock bulkLock;
 
 	public InMemoryPersister() {
-		savedObjects = new HashMap<ScopePath, ComplexConfigDTO>();
+		savedObjects = new ConcurrentHashMap<ScopePath, StoredConfig>();
+		scopeIndex = new ScopePathIndex();
+		structureLock = new Object();
+		bulkLock = new ReentrantReadWriteLock();
 	}
 
 	@Override
 	public void saveConfiguration(final ComplexConfigDTO configDTO) {
-		if (savedObjects.containsKey(configDTO.getDefiningScopePath())) {
-			throw new StaleConfigException(configDTO.getDefiningScopePath(), "Can't save a configuration which already exists."); //$NON-NLS-1$
+		synchronized (structureLock) {
+			if (savedObjects.putIfAbsent(configDTO.getDefiningScopePath(), new StoredConfig(configDTO)) != null) {
+				throw new StaleConfigException(
+					configDTO.getDefiningScopePath(),
+					"Can't save a configuration which already exists."); //$NON-NLS-1$
+			}
+			scopeIndex.add(configDTO.getDefiningScopePath());
 		}
-		savedObjects.put(configDTO.getDefiningScopePath(), configDTO);
 	}
 
 	@Override
 	public ComplexConfigDTO loadConfiguration(final ScopePath scopePath) {
-		return savedObjects.get(scopePath);
+		final StoredConfig storedConfig = savedObjects.get(scopePath);
+		return storedConfig != null ? storedConfig.configDTO : null;
+	}
+
+	@Override
+	public Map<ScopePath, ComplexConfigDTO> loadConfigurations(final Collection<ScopePath> scopePaths) {
+		final Map<ScopePath, ComplexConfigDTO> result = new LinkedHashMap<ScopePath, ComplexConfigDTO>();
+		bulkLock.readLock().lock();
+		try {
+			for (final ScopePath scopePath : scopePaths) {
+				result.put(scopePath, loadConfiguration(scopePath));
+			}
+		} finally {
+			bulkLock.readLock().unlock();
+		}
+		return result;
+	}
+
+	@Override
+	public Map<ScopePath, Long> getVersions(final Collection<ScopePath> scopePaths) {
+		final Map<ScopePath, Long> result = new LinkedHashMap<ScopePath, Long>();
+		bulkLock.readLock().lock();
+		try {
+			for (final ScopePath scopePath : scopePaths) {
+				final StoredConfig storedConfig = savedObjects.get(scopePath);
+				result.put(scopePath, storedConfig != null ? Long.valueOf(storedConfig.version) : null);
+			}
+		} finally {
+			bulkLock.readLock().unlock();
+		}
+		return result;
+	}
+
+	@Override
+	public ComplexConfigDTO loadIfNewer(final ScopePath scopePath, final long knownVersion) {
+		final StoredConfig storedConfig = savedObjects.get(scopePath);
+		if (storedConfig != null && storedConfig.version > knownVersion) {
+			return storedConfig.configDTO;
+		}
+		return null;
+	}
+
+	@Override
+	public void saveConfigurations(final Collection<ComplexConfigDTO> configDTOs) {
+		synchronized (structureLock) {
+			// check all configurations first to save either all or none of them
+			for (final ComplexConfigDTO configDTO : configDTOs) {
+				if (savedObjects.containsKey(configDTO.getDefiningScopePath())) {
+					throw new StaleConfigException(
+						configDTO.getDefiningScopePath(),
+						"Can't save a configuration which already exists."); //$NON-NLS-1$
+				}
+			}
+			bulkLock.writeLock().lock();
+			try {
+				for (final ComplexConfigDTO configDTO : configDTOs) {
+					savedObjects.put(configDTO.getDefiningScopePath(), new StoredConfig(configDTO));
+					scopeIndex.add(configDTO.getDefiningScopePath());
+				}
+			} finally {
+				bulkLock.writeLock().unlock();
+			}
+		}
 	}
 
 	@Override
 	public void updateConfiguration(final ComplexConfigDTO configDTO) {
-		if (!savedObjects.containsKey(configDTO.getDefiningScopePath())) {
+		final StoredConfig newConfig = new StoredConfig(configDTO);
+		bulkLock.readLock().lock();
+		try {
+			while (true) {
+				final StoredConfig storedConfig = getUpdatableConfig(configDTO);
+				if (savedObjects.replace(configDTO.getDefiningScopePath(), storedConfig, newConfig)) {
+					return;
+				}
+				// updated or deleted concurrently; the next check fails unless the stored version is still older
+			}
+		} finally {
+			bulkLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void updateConfigurations(final Collection<ComplexConfigDTO> configDTOs) {
+		// saves, deletes and single updates can't modify the configurations between the check and the update
+		synchronized (structureLock) {
+			bulkLock.writeLock().lock();
+			try {
+				// check all configurations first to update either all or none of them
+				for (final ComplexConfigDTO configDTO : configDTOs) {
+					getUpdatableConfig(configDTO);
+				}
+				for (final ComplexConfigDTO configDTO : configDTOs) {
+					savedObjects.put(configDTO.getDefiningScopePath(), new StoredConfig(configDTO));
+				}
+			} finally {
+				bulkLock.writeLock().unlock();
+			}
+		}
+	}
+
+	private StoredConfig getUpdatableConfig(final ComplexConfigDTO configDTO) {
+		final StoredConfig storedConfig = savedObjects.get(configDTO.getDefiningScopePath());
+		if (storedConfig == null) {
 			throw new StaleConfigException(configDTO.getDefiningScopePath(), "The configuration to update doesnt exist"); //$NON-NLS-1$
 		}
-		final long olderVersion = savedObjects.get(configDTO.getDefiningScopePath()).getVersion();
-		final long newVersion = configDTO.getVersion();
-		if (newVersion <= olderVersion) {
+		if (configDTO.getVersion() <= storedConfig.version) {
 			throw new StaleConfigException(
 				configDTO.getDefiningScopePath(),
 				"The configuration to update is not newer than the existing one"); //$NON-NLS-1$
 		}
-		savedObjects.put(configDTO.getDefiningScopePath(), configDTO);
+		return storedConfig;
 	}
 
 	@Override
@@ -84,47 +209,46 @@ public class InMemoryPersister implements ConfigPersister {
 
 	@Override
 	public Collection<ScopePath> listScopes(final String scopeName, final Map<String, String> properties) {
-		final List<ScopePath> resultList = new ArrayList<ScopePath>();
-
-		for (final ScopePath tmpScopePath : savedObjects.keySet()) {
-			for (final Scope tmpScope : tmpScopePath.getScopes()) {
-				if (tmpScope.getName().equals(scopeName) && tmpScope.containsAllProperties(properties)) {
-					resultList.add(tmpScopePath);
-				}
-			}
-		}
-
-		return resultList;
+		return scopeIndex.getPathsContaining(scopeName, properties);
 	}
 
 	@Override
 	public void delete(final ScopePath scopePath, final boolean deleteChildren) {
-		if (deleteChildren) {
-			for (final Iterator<ScopePath> it = savedObjects.keySet().iterator(); it.hasNext();) {
-				final ScopePath tmpScopePath = it.next();
-				if (tmpScopePath.startsPathWith(scopePath)) {
-					it.remove();
+		synchronized (structureLock) {
+			if (deleteChildren) {
+				for (final ScopePath childPath : scopeIndex.getPathsStartingWith(scopePath)) {
+					remove(childPath);
 				}
+			} else {
+				remove(scopePath);
 			}
-		} else {
-			savedObjects.remove(scopePath);
 		}
 	}
 
 	@Override
 	public void deleteAllOccurences(final String scopeName, final Map<String, String> properties) {
-
-		for (final Iterator<ScopePath> it = savedObjects.keySet().iterator(); it.hasNext();) {
-			final ScopePath tmpScopePath = it.next();
-
-			for (final Scope tmpScope : tmpScopePath.getScopes()) {
-				if (tmpScope.getName().equals(scopeName)) {
-					if (tmpScope.containsAllProperties(properties)) {
-						it.remove();
-					}
-				}
+		synchronized (structureLock) {
+			for (final ScopePath scopePath : scopeIndex.getPathsContaining(scopeName, properties)) {
+				remove(scopePath);
 			}
 		}
 	}
 
+	private void remove(final ScopePath scopePath) {
+		savedObjects.remove(scopePath);
+		scopeIndex.remove(scopePath);
+	}
+
+	/**
+	 * A stored configuration. Compared by identity, so compare-and-set detects every concurrent update.
+	 */
+	private static final class StoredConfig {
+		private final ComplexConfigDTO configDTO;
+		private final long version;
+
+		StoredConfig(final ComplexConfigDTO configDTO) {
+			this.configDTO = configDTO;
+			this.version = configDTO.getVersion();
+		}
+	}
 }
@@ -38,12 +38,22 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.Assert;
 
+import org.easymock.IAnswer;
+import org.jeconfig.api.cache.CacheEvictionListener;
+import org.jeconfig.api.cache.CachePolicy;
+import org.jeconfig.api.cache.EvictionCause;
 import org.jeconfig.api.dto.ComplexConfigDTO;
 import org.jeconfig.api.exception.StaleConfigException;
+import org.jeconfig.api.persister.BulkConfigPersister;
 import org.jeconfig.api.persister.ConfigPersister;
 import org.jeconfig.api.persister.PersisterSelector;
 import org.jeconfig.api.scope.ClassScopeDescriptor;
@@ -301,6 +311,203 @@ public class ConfigPersistenceServiceTest {
 		Assert.assertEquals(dto2, loaded2);
 	}
 
+	@Test
+	public void testDeleteInvalidatesOnlyDeletedConfigs() {
+		final ScopePath scopeA = createDummyScope("a");
+		final ScopePath scopeB = createDummyScope("b");
+		expect(persister.getId()).andReturn("1").times(2);
+		expect(persister.loadConfiguration(scopeA)).andReturn(dto1).times(2);
+		expect(persister.loadConfiguration(scopeB)).andReturn(dto3);
+		persister.delete(scopeA, true);
+		persister.deleteAllOccurences("a", Collections.<String, String> emptyMap());
+		replay(persister);
+
+		persistenceService.setConfigPersister(persister);
+		persistenceService.loadConfiguration(scopeA);
+		persistenceService.loadConfiguration(scopeB);
+
+		persistenceService.delete(scopeA, true);
+		persistenceService.loadConfiguration(scopeA);
+		persistenceService.loadConfiguration(scopeB);
+
+		persistenceService.deleteAllOccurences("a", Collections.<String, String> emptyMap());
+		persistenceService.loadConfiguration(scopeB);
+		verify(persister);
+	}
+
+	@Test
+	public void testCachePolicyWithEvictionListener() {
+		final ScopePath scopeA = createDummyScope("a");
+		final ScopePath scopeB = createDummyScope("b");
+		expect(persister.getId()).andReturn("1").times(2);
+		expect(persister.loadConfiguration(scopeA)).andReturn(dto1).times(2);
+		expect(persister.loadConfiguration(scopeB)).andReturn(dto3);
+		replay(persister);
+
+		final Map<ScopePath, EvictionCause> evicted = new HashMap<ScopePath, EvictionCause>();
+		persistenceService.setCachePolicy(new CachePolicy.Builder().maxEntries(1).addEvictionListener(new CacheEvictionListener() {
+			@Override
+			public void configEvicted(final ScopePath scopePath, final ComplexConfigDTO config, final EvictionCause cause) {
+				evicted.put(scopePath, cause);
+			}
+		}).create());
+		persistenceService.setConfigPersister(persister);
+
+		Assert.assertEquals(dto1, persistenceService.loadConfiguration(scopeA));
+		Assert.assertEquals(dto3, persistenceService.loadConfiguration(scopeB));
+		Assert.assertEquals(Collections.singletonMap(scopeA, EvictionCause.SIZE), evicted);
+
+		Assert.assertEquals(dto1, persistenceService.loadConfiguration(scopeA));
+		verify(persister);
+	}
+
+	@Test
+	public void testCachePolicyWithRefresh() throws InterruptedException {
+		final ScopePath scopeA = createDummyScope("a");
+		expect(persister.getId()).andReturn("1").times(2);
+		expect(persister.loadConfiguration(scopeA)).andReturn(dto1);
+		expect(persister.loadConfiguration(scopeA)).andReturn(dto2);
+		replay(persister);
+
+		persistenceService.setCachePolicy(new CachePolicy.Builder().maxEntries(10).refreshAfterWrite(1, TimeUnit.MILLISECONDS).create());
+		persistenceService.setConfigPersister(persister);
+
+		Assert.assertEquals(dto1, persistenceService.loadConfiguration(scopeA));
+		Thread.sleep(10);
+		Assert.assertEquals(dto2, persistenceService.loadConfiguration(scopeA));
+		verify(persister);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testLoadConfigurationsGroupsByPersister() {
+		final ScopePath scopeA = createDummyScope("a");
+		final ScopePath scopeB = createDummyScope("b");
+		final ScopePath scopeC = createDummyScope("c");
+		final BulkConfigPersister bulkPersister = createMock(BulkConfigPersister.class);
+		final Map<ScopePath, ComplexConfigDTO> bulkResult = new LinkedHashMap<ScopePath, ComplexConfigDTO>();
+		bulkResult.put(scopeA, dto1);
+		bulkResult.put(scopeC, null);
+
+		expect(bulkPersister.getId()).andReturn("1").times(2);
+		expect(persister2.getId()).andReturn("2").times(2);
+		expect(persisterSelector.getPersisterId(eq(scopeA), (Collection<String>) anyObject())).andReturn("1").anyTimes();
+		expect(persisterSelector.getPersisterId(eq(scopeB), (Collection<String>) anyObject())).andReturn("2").anyTimes();
+		expect(persisterSelector.getPersisterId(eq(scopeC), (Collection<String>) anyObject())).andReturn("1").anyTimes();
+		expect(bulkPersister.loadConfigurations(Arrays.asList(scopeA, scopeC))).andReturn(bulkResult);
+		expect(persister2.loadConfiguration(scopeB)).andReturn(dto3);
+		replay(bulkPersister, persister2, persisterSelector);
+
+		persistenceService.setPersisterSelector(persisterSelector);
+		persistenceService.setConfigPersisters(new ConfigPersister[] {bulkPersister, persister2});
+
+		final Map<ScopePath, ComplexConfigDTO> result = persistenceService.loadConfigurations(Arrays.asList(scopeA, scopeB, scopeC));
+		Assert.assertEquals(Arrays.asList(scopeA, scopeB, scopeC), Arrays.asList(result.keySet().toArray()));
+		Assert.assertSame(dto1, result.get(scopeA));
+		Assert.assertSame(dto3, result.get(scopeB));
+		Assert.assertNull(result.get(scopeC));
+
+		// served from the cache
+		Assert.assertEquals(result, persistenceService.loadConfigurations(Arrays.asList(scopeA, scopeB, scopeC)));
+		verify(bulkPersister, persister2, persisterSelector);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testLoadConfigurationsLoadsConcurrently() {
+		final ScopePath scopeA = createDummyScope("a");
+		final ScopePath scopeB = createDummyScope("b");
+		final ScopePath scopeC = createDummyScope("c");
+		// a mock serializes its calls, so every scope path is loaded by its own persister
+		final ConfigPersister persister3 = createMock(ConfigPersister.class);
+		// every load waits until all loads have been started; sequential loads would time out
+		final CountDownLatch startedLoads = new CountDownLatch(3);
+		final IAnswer<ComplexConfigDTO> awaitAllLoads = new IAnswer<ComplexConfigDTO>() {
+			@Override
+			public ComplexConfigDTO answer() throws Throwable {
+				startedLoads.countDown();
+				Assert.assertTrue(startedLoads.await(5, TimeUnit.SECONDS));
+				return null;
+			}
+		};
+
+		expect(persister.getId()).andReturn("1").times(2);
+		expect(persister2.getId()).andReturn("2").times(2);
+		expect(persister3.getId()).andReturn("3").times(2);
+		expect(persisterSelector.getPersisterId(eq(scopeA), (Collection<String>) anyObject())).andReturn("1").anyTimes();
+		expect(persisterSelector.getPersisterId(eq(scopeB), (Collection<String>) anyObject())).andReturn("2").anyTimes();
+		expect(persisterSelector.getPersisterId(eq(scopeC), (Collection<String>) anyObject())).andReturn("3").anyTimes();
+		expect(persister.loadConfiguration(scopeA)).andAnswer(awaitAllLoads);
+		expect(persister2.loadConfiguration(scopeB)).andAnswer(awaitAllLoads);
+		expect(persister3.loadConfiguration(scopeC)).andAnswer(awaitAllLoads);
+		replay(persister, persister2, persister3, persisterSelector);
+
+		persistenceService.setCacheEnabled(false);
+		persistenceService.setPersisterSelector(persisterSelector);
+		persistenceService.setConfigPersisters(new ConfigPersister[] {persister, persister2, persister3});
+
+		final Map<ScopePath, ComplexConfigDTO> result = persistenceService.loadConfigurations(Arrays.asList(scopeC, scopeA, scopeB));
+		Assert.assertEquals(Arrays.asList(scopeC, scopeA, scopeB), Arrays.asList(result.keySet().toArray()));
+		Assert.assertNull(result.get(scopeA));
+		verify(persister, persister2, persister3, persisterSelector);
+	}
+
+	@Test
+	public void testLoadConfigurationsUsesGivenExecutor() {
+		final AtomicInteger executedLoads = new AtomicInteger();
+		persistenceService = new ConfigPersistenceServiceImpl(new Executor() {
+			@Override
+			public void execute(final Runnable command) {
+				executedLoads.incrementAndGet();
+				command.run();
+			}
+		});
+
+		final Map<ScopePath, ComplexConfigDTO> result = loadWithThreePersisters();
+		// the calling thread runs the first load itself
+		Assert.assertEquals(2, executedLoads.get());
+		Assert.assertSame(dto1, result.get(createDummyScope("a")));
+		persistenceService.close();
+	}
+
+	@Test
+	public void testLoadConfigurationsAfterClose() {
+		persistenceService.close();
+
+		final Map<ScopePath, ComplexConfigDTO> result = loadWithThreePersisters();
+		Assert.assertSame(dto1, result.get(createDummyScope("a")));
+		Assert.assertSame(dto3, result.get(createDummyScope("b")));
+		Assert.assertNull(result.get(createDummyScope("c")));
+	}
+
+	/**
+	 * Loads the scope paths a, b and c which are stored by different persisters.
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<ScopePath, ComplexConfigDTO> loadWithThreePersisters() {
+		final ScopePath scopeA = createDummyScope("a");
+		final ScopePath scopeB = createDummyScope("b");
+		final ScopePath scopeC = createDummyScope("c");
+		final ConfigPersister persister3 = createMock(ConfigPersister.class);
+		expect(persister.getId()).andReturn("1").times(2);
+		expect(persister2.getId()).andReturn("2").times(2);
+		expect(persister3.getId()).andReturn("3").times(2);
+		expect(persisterSelector.getPersisterId(eq(scopeA), (Collection<String>) anyObject())).andReturn("1").anyTimes();
+		expect(persisterSelector.getPersisterId(eq(scopeB), (Collection<String>) anyObject())).andReturn("2").anyTimes();
+		expect(persisterSelector.getPersisterId(eq(scopeC), (Collection<String>) anyObject())).andReturn("3").anyTimes();
+		expect(persister.loadConfiguration(scopeA)).andReturn(dto1);
+		expect(persister2.loadConfiguration(scopeB)).andReturn(dto3);
+		expect(persister3.loadConfiguration(scopeC)).andReturn(null);
+		replay(persister, persister2, persister3, persisterSelector);
+
+		persistenceService.setPersisterSelector(persisterSelector);
+		persistenceService.setConfigPersisters(new ConfigPersister[] {persister, persister2, persister3});
+
+		final Map<ScopePath, ComplexConfigDTO> result = persistenceService.loadConfigurations(Arrays.asList(scopeA, scopeB, scopeC));
+		verify(persister, persister2, persister3, persisterSelector);
+		return result;
+	}
+
 	@SuppressWarnings("unchecked")
 	@Test
 	public void testSetPersisterSelector() {
@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.server.marshalling;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.Assert;
+
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.api.dto.ConfigDTO;
+import org.jeconfig.api.dto.ConfigListDTO;
+import org.jeconfig.api.dto.ConfigMapDTO;
+import org.jeconfig.api.dto.ConfigSetDTO;
+import org.jeconfig.api.dto.ConfigSimpleValueDTO;
+import org.jeconfig.api.exception.StoreConfigException;
+import org.jeconfig.api.scope.ClassScopeDescriptor;
+import org.jeconfig.api.scope.CodeDefaultScopeDescriptor;
+import org.jeconfig.api.scope.ScopePath;
+import org.jeconfig.api.scope.ScopePathBuilder;
+import org.jeconfig.common.scope.InternalScopePathBuilderFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class BinaryConfigMarshallerTest {
+
+	private BinaryConfigMarshaller marshaller;
+
+	@Before
+	public void setUp() {
+		marshaller = new BinaryConfigMarshaller();
+	}
+
+	@Test
+	public void testRoundTripOfAllKinds() {
+		final ScopePath scopePath = createScopePath("user", "hugo");
+		final ComplexConfigDTO config = createConfig(scopePath);
+
+		final ComplexConfigDTO result = roundTrip(config);
+		Assert.assertEquals(config, result);
+		Assert.assertEquals(scopePath, result.getDefiningScopePath());
+		Assert.assertEquals(config.getClassVersion(), result.getClassVersion());
+		Assert.assertEquals(config.getIdPropertyName(), result.getIdPropertyName());
+		Assert.assertEquals(scopePath, result.getSimpleValueProperty("simple").getDefiningScopePath());
+		Assert.assertEquals(scopePath, result.getComplexProperty("complex").getDefiningScopePath());
+
+		final ComplexConfigDTO nested = result.getComplexProperty("complex");
+		Assert.assertTrue(nested.isNulled());
+		Assert.assertTrue(nested.isPolymorph());
+		Assert.assertEquals("parentScope", nested.getParentScopeName());
+		Assert.assertEquals(7, nested.getParentVersion());
+		final ScopePath parentPath = createScopePath("global", null);
+		Assert.assertEquals(parentPath, nested.getSimpleValueProperty("inherited").getDefiningScopePath());
+
+		Assert.assertNull(result.getListProperty("nullList").getItems());
+		Assert.assertNull(result.getSetProperty("nullSet").getItems());
+		Assert.assertNull(result.getMapProperty("nullMap").getMap());
+		Assert.assertNull(result.getListProperty("list").getItems().get(1));
+		Assert.assertTrue(result.getMapProperty("map").getMap().containsKey("nullValue"));
+		Assert.assertNull(result.getMapProperty("map").getMap().get("nullValue"));
+	}
+
+	@Test
+	public void testRoundTripOfSpecialStrings() {
+		final ComplexConfigDTO config = new ComplexConfigDTO();
+		final StringBuilder longValue = new StringBuilder();
+		for (int i = 0; i < 70000; i++) {
+			longValue.append((char) ('a' + i % 26));
+		}
+		config.addSimpleValueProperty(new ConfigSimpleValueDTO("String", "evil", null, "<<<&äöü€\0"));
+		config.addSimpleValueProperty(new ConfigSimpleValueDTO("String", "empty", null, ""));
+		config.addSimpleValueProperty(new ConfigSimpleValueDTO("String", "null", null, null));
+		config.addSimpleValueProperty(new ConfigSimpleValueDTO("String", "long", null, longValue.toString()));
+
+		final ComplexConfigDTO result = roundTrip(config);
+		Assert.assertEquals(config, result);
+		Assert.assertEquals("", result.getSimpleValueProperty("empty").getValue());
+		Assert.assertNull(result.getSimpleValueProperty("null").getValue());
+		Assert.assertNull(result.getDefiningScopePath());
+	}
+
+	@Test
+	public void testRoundTripOfExtremeVersions() {
+		final ComplexConfigDTO config = new ComplexConfigDTO();
+		config.setVersion(Long.MAX_VALUE);
+		config.setParentVersion(Long.MIN_VALUE);
+		config.setClassVersion(-1);
+
+		final ComplexConfigDTO result = roundTrip(config);
+		Assert.assertEquals(Long.MAX_VALUE, result.getVersion());
+		Assert.assertEquals(Long.MIN_VALUE, result.getParentVersion());
+		Assert.assertEquals(-1, result.getClassVersion());
+	}
+
+	@Test
+	public void testIsSmallerThanXml() {
+		final ComplexConfigDTO config = createConfig(createScopePath("user", "hugo"));
+		final int binarySize = marshal(marshaller, config).length;
+		final int xmlSize = marshal(new XStreamXmlMarshaller(), config).length;
+		Assert.assertTrue("binary: " + binarySize + ", xml: " + xmlSize, binarySize * 4 < xmlSize);
+	}
+
+	@Test(expected = StoreConfigException.class)
+	public void testUnmarshalXml() {
+		final byte[] xml = marshal(new XStreamXmlMarshaller(), new ComplexConfigDTO());
+		marshaller.unmarshal(new ByteArrayInputStream(xml));
+	}
+
+	@Test(expected = StoreConfigException.class)
+	public void testUnmarshalTruncated() {
+		final byte[] bytes = marshal(marshaller, createConfig(createScopePath("user", "hugo")));
+		marshaller.unmarshal(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length / 2)));
+	}
+
+	@Test(expected = StoreConfigException.class)
+	public void testUnmarshalTruncatedString() {
+		final StringBuilder longType = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			longType.append((char) ('a' + i % 26));
+		}
+		final ComplexConfigDTO config = new ComplexConfigDTO();
+		config.setPropertyType(longType.append("End").toString());
+		final byte[] bytes = marshal(marshaller, config);
+		// the string is larger than the initially allocated bytes
+		final int typeEnd = indexOf(bytes, "End".getBytes()) + "End".length();
+		marshaller.unmarshal(new ByteArrayInputStream(Arrays.copyOf(bytes, typeEnd - 1)));
+	}
+
+	@Test(expected = StoreConfigException.class)
+	public void testUnmarshalHugeStringLength() {
+		// Integer.MAX_VALUE as variable-length number
+		marshaller.unmarshal(new ByteArrayInputStream(createStringHeader(0xFF, 0xFF, 0xFF, 0xFF, 0x07, 'a', 'b', 'c')));
+	}
+
+	@Test(expected = StoreConfigException.class)
+	public void testUnmarshalNegativeStringLength() {
+		// a 64 bit number which would be -1 as int
+		final byte[] bytes = createStringHeader(0xFF, 0xFF, 0xFF, 0xFF, 0x8F, 0x80, 0x80, 0x80, 0x80, 0x01, 'a');
+		marshaller.unmarshal(new ByteArrayInputStream(bytes));
+	}
+
+	@Test
+	public void testUnmarshalNestedConfiguration() {
+		final ComplexConfigDTO result = marshaller.unmarshal(new ByteArrayInputStream(createNestedLists(100)));
+		// the property name isn't set in the binary data
+		ConfigListDTO list = result.getListProperty(null);
+		for (int i = 1; i < 100; i++) {
+			list = (ConfigListDTO) list.getItems().get(0);
+		}
+		Assert.assertEquals(Arrays.asList((ConfigDTO) null), list.getItems());
+	}
+
+	@Test(expected = StoreConfigException.class)
+	public void testUnmarshalDeeplyNestedConfiguration() {
+		marshaller.unmarshal(new ByteArrayInputStream(createNestedLists(100000)));
+	}
+
+	/**
+	 * Creates a binary complex configuration with a property of nested lists; the innermost list contains null.
+	 */
+	private static byte[] createNestedLists(final int levels) {
+		// magic, format version, complex tag, flags, 3 null strings, versions, null scope path, class version,
+		// null id property, one property
+		final int[] header = {0x4A, 0x43, 0x42, 0x4D, 1, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1};
+		// list tag, flags with items, 3 null strings, versions, null scope path, one item
+		final int[] list = {3, 4, 0, 0, 0, 0, 0, 0, 1};
+		final byte[] bytes = new byte[header.length + levels * list.length + 1];
+		for (int i = 0; i < header.length; i++) {
+			bytes[i] = (byte) header[i];
+		}
+		for (int i = header.length; i < bytes.length - 1; i++) {
+			bytes[i] = (byte) list[(i - header.length) % list.length];
+		}
+		// the last byte is the null tag
+		return bytes;
+	}
+
+	/**
+	 * Creates the start of a binary complex configuration whose property type is a new string
+	 * followed by the given bytes.
+	 */
+	private static byte[] createStringHeader(final int... stringBytes) {
+		// magic, format version, complex tag, flags, reference to a new string
+		final int[] header = {0x4A, 0x43, 0x42, 0x4D, 1, 1, 0, 1};
+		final byte[] bytes = new byte[header.length + stringBytes.length];
+		for (int i = 0; i < header.length; i++) {
+			bytes[i] = (byte) header[i];
+		}
+		for (int i = 0; i < stringBytes.length; i++) {
+			bytes[header.length + i] = (byte) stringBytes[i];
+		}
+		return bytes;
+	}
+
+	private static int indexOf(final byte[] bytes, final byte[] part) {
+		for (int i = 0; i + part.length <= bytes.length; i++) {
+			if (Arrays.equals(part, Arrays.copyOfRange(bytes, i, i + part.length))) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("Not found");
+	}
+
+	private ComplexConfigDTO roundTrip(final ComplexConfigDTO config) {
+		return marshaller.unmarshal(new ByteArrayInputStream(marshal(marshaller, config)));
+	}
+
+	private static byte[] marshal(final ConfigMarshaller configMarshaller, final ComplexConfigDTO config) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		configMarshaller.marshal(out, config);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Creates a configuration which contains all kinds of DTOs.
+	 */
+	static ComplexConfigDTO createConfig(final ScopePath scopePath) {
+		final ComplexConfigDTO config = new ComplexConfigDTO();
+		config.setPropertyType("org.jeconfig.test.TestConfiguration");
+		config.setDefiningScopePath(scopePath);
+		config.setVersion(3);
+		config.setClassVersion(2);
+		config.setIdPropertyName("id");
+		config.addSimpleValueProperty(new ConfigSimpleValueDTO("Integer", "simple", scopePath, "123"));
+
+		final ComplexConfigDTO nested = new ComplexConfigDTO();
+		nested.setPropertyType("org.jeconfig.test.Nested");
+		nested.setPropertyName("complex");
+		nested.setDefiningScopePath(scopePath);
+		nested.setPolymorph(true);
+		nested.setNulled(true);
+		nested.setParentScopeName("parentScope");
+		nested.setParentVersion(7);
+		nested.addSimpleValueProperty(new ConfigSimpleValueDTO("String", "inherited", createScopePath("global", null), "x"));
+		config.addComplexProperty(nested);
+
+		final ConfigListDTO list = new ConfigListDTO();
+		list.setPropertyType("Integer");
+		list.setPropertyName("list");
+		list.setDefiningScopePath(scopePath);
+		final List<ConfigDTO> listItems = new ArrayList<ConfigDTO>();
+		listItems.add(new ConfigSimpleValueDTO("Integer", null, scopePath, "1"));
+		listItems.add(null);
+		listItems.add(new ConfigSimpleValueDTO("Integer", null, scopePath, "3"));
+		list.setItems(listItems);
+		config.addListProperty(list);
+
+		final ConfigListDTO nullList = new ConfigListDTO();
+		nullList.setPropertyName("nullList");
+		config.addListProperty(nullList);
+
+		final ConfigSetDTO set = new ConfigSetDTO("String", "set", false, scopePath);
+		final Set<ConfigDTO> setItems = new HashSet<ConfigDTO>();
+		setItems.add(new ConfigSimpleValueDTO("String", null, scopePath, "a"));
+		final ComplexConfigDTO complexItem = new ComplexConfigDTO();
+		complexItem.setPropertyType("org.jeconfig.test.Item");
+		complexItem.addSimpleValueProperty(new ConfigSimpleValueDTO("String", "name", scopePath, "b"));
+		setItems.add(complexItem);
+		set.setItems(setItems);
+		config.addSetProperty(set);
+		config.addSetProperty(new ConfigSetDTO("String", "nullSet", false, scopePath));
+
+		final ConfigMapDTO map = new ConfigMapDTO();
+		map.setPropertyType("String");
+		map.setPropertyName("map");
+		map.setDefiningScopePath(scopePath);
+		final Map<String, ConfigDTO> entries = new HashMap<String, ConfigDTO>();
+		for (int i = 0; i < 10; i++) {
+			entries.put("key" + i, new ConfigSimpleValueDTO("String", null, scopePath, "value" + i));
+		}
+		entries.put("nullValue", null);
+		map.setMap(entries);
+		config.addMapProperty(map);
+
+		final ConfigMapDTO nullMap = new ConfigMapDTO();
+		nullMap.setPropertyName("nullMap");
+		config.addMapProperty(nullMap);
+		return config;
+	}
+
+	static ScopePath createScopePath(final String scopeName, final String userName) {
+		final Map<String, String> classProps = new HashMap<String, String>();
+		classProps.put(ClassScopeDescriptor.PROP_CLASS_NAME, "org.jeconfig.test.TestConfiguration");
+		final ScopePathBuilder builder = new InternalScopePathBuilderFactory().createBuilder();
+		builder.append(ClassScopeDescriptor.NAME, classProps);
+		builder.append(CodeDefaultScopeDescriptor.NAME);
+		if (userName != null) {
+			final Map<String, String> props = new HashMap<String, String>();
+			props.put("userName", userName);
+			builder.append(scopeName, props);
+		} else {
+			builder.append(scopeName);
+		}
+		return builder.create();
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.server.marshalling;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import junit.framework.Assert;
+
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.api.exception.StoreConfigException;
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class CompressingConfigMarshallerTest {
+
+	@Test
+	public void testRoundTripWithoutDictionary() {
+		final CompressingConfigMarshaller marshaller = new CompressingConfigMarshaller(new XStreamXmlMarshaller());
+		final ComplexConfigDTO config = createConfig("hugo");
+
+		final byte[] bytes = marshal(marshaller, config);
+		Assert.assertEquals(config, unmarshal(marshaller, bytes));
+		final int xmlSize = marshal(new XStreamXmlMarshaller(), config).length;
+		Assert.assertTrue("compressed: " + bytes.length + ", xml: " + xmlSize, bytes.length * 10 < xmlSize);
+		Assert.assertEquals(xmlSize, marshaller.getUncompressedByteCount());
+		Assert.assertTrue(marshaller.getCompressedByteCount() < bytes.length);
+		Assert.assertTrue(marshaller.getCompressionRatio() < 0.1);
+	}
+
+	@Test
+	public void testRoundTripWithDictionary() {
+		final List<ComplexConfigDTO> samples = new ArrayList<ComplexConfigDTO>();
+		samples.add(createConfig("hugo"));
+		samples.add(createConfig("egon"));
+		final byte[] dictionary = CompressingConfigMarshaller.createDictionary(new StaxXmlMarshaller(), samples);
+		Assert.assertTrue(dictionary.length > 0);
+		Assert.assertTrue(dictionary.length <= 32 * 1024);
+
+		final CompressingConfigMarshaller marshaller = new CompressingConfigMarshaller(
+			new StaxXmlMarshaller(),
+			dictionary,
+			Deflater.DEFAULT_COMPRESSION);
+		final ComplexConfigDTO config = createConfig("otto");
+		final byte[] bytes = marshal(marshaller, config);
+		Assert.assertEquals(config, unmarshal(marshaller, bytes));
+
+		final int sizeWithoutDictionary = marshal(new CompressingConfigMarshaller(new StaxXmlMarshaller()), config).length;
+		Assert.assertTrue("with: " + bytes.length + ", without: " + sizeWithoutDictionary, bytes.length < sizeWithoutDictionary);
+	}
+
+	@Test
+	public void testUnmarshalUncompressed() {
+		final ComplexConfigDTO config = createConfig("hugo");
+		final CompressingConfigMarshaller xmlMarshaller = new CompressingConfigMarshaller(new XStreamXmlMarshaller());
+		Assert.assertEquals(config, unmarshal(xmlMarshaller, marshal(new XStreamXmlMarshaller(), config)));
+
+		final CompressingConfigMarshaller binaryMarshaller = new CompressingConfigMarshaller(new BinaryConfigMarshaller());
+		Assert.assertEquals(config, unmarshal(binaryMarshaller, marshal(new BinaryConfigMarshaller(), config)));
+	}
+
+	@Test(expected = StoreConfigException.class)
+	public void testUnmarshalWithOtherDictionary() {
+		final CompressingConfigMarshaller marshaller = new CompressingConfigMarshaller(
+			new BinaryConfigMarshaller(),
+			"ConfigSimpleValue".getBytes(),
+			Deflater.BEST_COMPRESSION);
+		final CompressingConfigMarshaller otherMarshaller = new CompressingConfigMarshaller(
+			new BinaryConfigMarshaller(),
+			"ConfigClass".getBytes(),
+			Deflater.BEST_COMPRESSION);
+		unmarshal(otherMarshaller, marshal(marshaller, createConfig("hugo")));
+	}
+
+	@Test(expected = StoreConfigException.class)
+	public void testUnmarshalTruncated() {
+		final CompressingConfigMarshaller marshaller = new CompressingConfigMarshaller(new BinaryConfigMarshaller());
+		final byte[] bytes = marshal(marshaller, createConfig("hugo"));
+		unmarshal(marshaller, Arrays.copyOf(bytes, bytes.length / 2));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidLevel() {
+		new CompressingConfigMarshaller(new BinaryConfigMarshaller(), null, 10);
+	}
+
+	private static ComplexConfigDTO createConfig(final String userName) {
+		return BinaryConfigMarshallerTest.createConfig(BinaryConfigMarshallerTest.createScopePath("user", userName));
+	}
+
+	private static byte[] marshal(final ConfigMarshaller marshaller, final ComplexConfigDTO config) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		marshaller.marshal(out, config);
+		return out.toByteArray();
+	}
+
+	private static ComplexConfigDTO unmarshal(final ConfigMarshaller marshaller, final byte[] bytes) {
+		return marshaller.unmarshal(new ByteArrayInputStream(bytes));
+	}
+}
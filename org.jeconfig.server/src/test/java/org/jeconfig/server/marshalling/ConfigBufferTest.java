@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.server.marshalling;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class ConfigBufferTest {
+
+	@Test
+	public void testGrowAndShareContent() throws IOException {
+		final ConfigBuffer buffer = new ConfigBuffer(2);
+		buffer.write(1);
+		buffer.write(new byte[] {2, 3, 4, 5}, 1, 3);
+		Assert.assertEquals(4, buffer.size());
+		Assert.assertTrue(buffer.capacity() >= 4);
+		Assert.assertTrue(Arrays.equals(new byte[] {1, 3, 4, 5}, buffer.toByteArray()));
+
+		final ByteBuffer byteBuffer = buffer.toByteBuffer();
+		Assert.assertEquals(4, byteBuffer.remaining());
+		Assert.assertEquals(3, byteBuffer.get(1));
+
+		final InputStream in = buffer.toInputStream();
+		Assert.assertEquals(4, in.available());
+		Assert.assertEquals(1, in.read());
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		buffer.writeTo(Channels.newChannel(out));
+		Assert.assertTrue(Arrays.equals(buffer.toByteArray(), out.toByteArray()));
+
+		final int capacity = buffer.capacity();
+		buffer.reset();
+		Assert.assertEquals(0, buffer.size());
+		Assert.assertEquals(capacity, buffer.capacity());
+	}
+
+	@Test
+	public void testMarshalAndUnmarshalWithoutCopy() {
+		final ComplexConfigDTO config = BinaryConfigMarshallerTest.createConfig(
+				BinaryConfigMarshallerTest.createScopePath("user", "hugo"));
+		final ConfigMarshaller marshaller = new BinaryConfigMarshaller();
+		final ConfigBuffer buffer = new ConfigBuffer(16);
+		marshaller.marshal(buffer, config);
+
+		Assert.assertEquals(config, marshaller.unmarshal(buffer.toInputStream()));
+		Assert.assertEquals(config, marshaller.unmarshal(new ByteBufferInputStream(buffer.toByteBuffer())));
+	}
+
+	@Test
+	public void testByteBufferInputStream() throws IOException {
+		final ByteBuffer source = ByteBuffer.wrap(new byte[] {9, 1, 2, 3, (byte) 200});
+		source.position(1);
+		final ByteBufferInputStream in = new ByteBufferInputStream(source);
+		Assert.assertEquals(4, in.available());
+		Assert.assertEquals(1, in.read());
+		in.mark(10);
+		final byte[] bytes = new byte[10];
+		Assert.assertEquals(3, in.read(bytes, 0, 10));
+		Assert.assertEquals(200, bytes[2] & 0xFF);
+		Assert.assertEquals(-1, in.read());
+		in.reset();
+		Assert.assertEquals(1, in.skip(1));
+		Assert.assertEquals(3, in.read());
+		Assert.assertEquals(1, source.position());
+	}
+
+	@Test
+	public void testPoolReusesBuffers() {
+		final ConfigBufferPool pool = new ConfigBufferPool(1, 16, 64);
+		final ConfigBuffer buffer = pool.acquire();
+		buffer.write(1);
+		pool.release(buffer);
+		Assert.assertEquals(1, pool.getPooledBufferCount());
+
+		final ConfigBuffer reused = pool.acquire();
+		Assert.assertSame(buffer, reused);
+		Assert.assertEquals(0, reused.size());
+		Assert.assertEquals(0, pool.getPooledBufferCount());
+
+		// the pool holds only one buffer
+		pool.release(reused);
+		pool.release(new ConfigBuffer(16));
+		Assert.assertEquals(1, pool.getPooledBufferCount());
+	}
+
+	@Test
+	public void testPoolDiscardsGrownBuffers() {
+		final ConfigBufferPool pool = new ConfigBufferPool(4, 16, 64);
+		final ConfigBuffer buffer = pool.acquire();
+		buffer.write(new byte[100], 0, 100);
+		pool.release(buffer);
+		Assert.assertEquals(0, pool.getPooledBufferCount());
+	}
+}
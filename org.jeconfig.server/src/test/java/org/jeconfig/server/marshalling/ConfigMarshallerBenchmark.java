@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.server.marshalling;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.api.dto.ConfigDTO;
+import org.jeconfig.api.dto.ConfigListDTO;
+import org.jeconfig.api.dto.ConfigMapDTO;
+import org.jeconfig.api.dto.ConfigSimpleValueDTO;
+import org.jeconfig.api.scope.ClassScopeDescriptor;
+import org.jeconfig.api.scope.CodeDefaultScopeDescriptor;
+import org.jeconfig.api.scope.ScopePath;
+import org.jeconfig.api.scope.ScopePathBuilder;
+import org.jeconfig.common.scope.InternalScopePathBuilderFactory;
+
+/**
+ * Simple benchmark which compares the serialized size and the marshal and unmarshal times
+ * of the {@link ConfigMarshaller} implementations for small, medium and huge configurations.<br>
+ * <br>
+ * This is not a unit test; run it manually with the main method.
+ */
+@SuppressWarnings("nls")
+public final class ConfigMarshallerBenchmark {
+	/** The names of the benchmarked configuration sizes, each size has ten times the properties of the previous one. */
+	private static final String[] SIZE_NAMES = new String[] {"small", "medium", "huge"};
+	private static final int[] SIZE_FACTORS = new int[] {1, 10, 100};
+	/** The number of properties marshalled per size; the smaller configurations are marshalled more often. */
+	private static final int PROPERTIES_PER_RUN = 200000;
+	private static final int WARM_UP_ROUNDS = 2;
+
+	private ConfigMarshallerBenchmark() {}
+
+	public static void main(final String[] args) {
+		final ConfigMarshaller[] marshallers = new ConfigMarshaller[] {
+				new XStreamXmlMarshaller(),
+				new StaxXmlMarshaller(),
+				new BinaryConfigMarshaller(),
+				new CompressingConfigMarshaller(new StaxXmlMarshaller())};
+		final ScopePath scopePath = createScopePath();
+		for (int i = 0; i < SIZE_NAMES.length; i++) {
+			final ComplexConfigDTO config = createConfig(scopePath, SIZE_FACTORS[i]);
+			final int iterations = Math.max(1, PROPERTIES_PER_RUN / (100 * SIZE_FACTORS[i]));
+			for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+				for (final ConfigMarshaller marshaller : marshallers) {
+					run(marshaller, config, iterations);
+				}
+			}
+			for (final ConfigMarshaller marshaller : marshallers) {
+				System.out.println(SIZE_NAMES[i] + ", " + marshaller.getClass().getSimpleName() + ": "
+					+ run(marshaller, config, iterations));
+			}
+		}
+	}
+
+	private static String run(final ConfigMarshaller marshaller, final ComplexConfigDTO config, final int iterations) {
+		byte[] bytes = null;
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			marshaller.marshal(out, config);
+			bytes = out.toByteArray();
+		}
+		final double marshalTime = (System.nanoTime() - start) / 1000.0 / iterations;
+
+		start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			if (!config.equals(marshaller.unmarshal(new ByteArrayInputStream(bytes)))) {
+				throw new IllegalStateException("The configuration didn't survive the round trip!");
+			}
+		}
+		final double unmarshalTime = (System.nanoTime() - start) / 1000.0 / iterations;
+		return bytes.length + " bytes, marshal " + marshalTime + " us, unmarshal " + unmarshalTime + " us";
+	}
+
+	/**
+	 * Creates a configuration with about 100 properties and items per size factor.
+	 */
+	private static ComplexConfigDTO createConfig(final ScopePath scopePath, final int sizeFactor) {
+		final ComplexConfigDTO config = new ComplexConfigDTO();
+		config.setPropertyType("org.jeconfig.benchmark.BenchmarkConfiguration");
+		config.setDefiningScopePath(scopePath);
+		config.setVersion(1);
+		config.setClassVersion(1);
+		for (int i = 0; i < 20 * sizeFactor; i++) {
+			config.addSimpleValueProperty(new ConfigSimpleValueDTO("Integer", "simple" + i, scopePath, String.valueOf(i)));
+		}
+		for (int i = 0; i < 5 * sizeFactor; i++) {
+			final ComplexConfigDTO nested = new ComplexConfigDTO();
+			nested.setPropertyType("org.jeconfig.benchmark.NestedConfiguration");
+			nested.setPropertyName("nested" + i);
+			nested.setDefiningScopePath(scopePath);
+			nested.addSimpleValueProperty(new ConfigSimpleValueDTO("String", "name", scopePath, "nested" + i));
+			nested.addSimpleValueProperty(new ConfigSimpleValueDTO("Boolean", "enabled", scopePath, "true"));
+			config.addComplexProperty(nested);
+		}
+
+		final ConfigListDTO list = new ConfigListDTO();
+		list.setPropertyType("Integer");
+		list.setPropertyName("list");
+		list.setDefiningScopePath(scopePath);
+		final List<ConfigDTO> items = new ArrayList<ConfigDTO>();
+		for (int i = 0; i < 50 * sizeFactor; i++) {
+			items.add(new ConfigSimpleValueDTO("Integer", null, scopePath, String.valueOf(i)));
+		}
+		list.setItems(items);
+		config.addListProperty(list);
+
+		final ConfigMapDTO map = new ConfigMapDTO();
+		map.setPropertyType("String");
+		map.setPropertyName("map");
+		map.setDefiningScopePath(scopePath);
+		final Map<String, ConfigDTO> entries = new HashMap<String, ConfigDTO>();
+		for (int i = 0; i < 20 * sizeFactor; i++) {
+			entries.put("key" + i, new ConfigSimpleValueDTO("String", null, scopePath, "value" + i));
+		}
+		map.setMap(entries);
+		config.addMapProperty(map);
+		return config;
+	}
+
+	private static ScopePath createScopePath() {
+		final Map<String, String> classProps = new HashMap<String, String>();
+		classProps.put(ClassScopeDescriptor.PROP_CLASS_NAME, "org.jeconfig.benchmark.BenchmarkConfiguration");
+		final Map<String, String> userProps = new HashMap<String, String>();
+		userProps.put("userName", "hugo");
+		final ScopePathBuilder builder = new InternalScopePathBuilderFactory().createBuilder();
+		builder.append(ClassScopeDescriptor.NAME, classProps);
+		builder.append(CodeDefaultScopeDescriptor.NAME);
+		builder.append("user", userProps);
+		return builder.create();
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2011: Edmund Wagner, Wolfram Weidel
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * * Neither the name of the jeconfig nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jeconfig.server.marshalling;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.jeconfig.api.dto.ComplexConfigDTO;
+import org.jeconfig.api.dto.ConfigDTO;
+import org.jeconfig.api.dto.ConfigListDTO;
+import org.jeconfig.api.dto.ConfigSimpleValueDTO;
+import org.jeconfig.api.exception.StoreConfigException;
+import org.jeconfig.api.scope.ScopePath;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class StaxXmlMarshallerTest {
+
+	private StaxXmlMarshaller marshaller;
+	private XStreamXmlMarshaller xStreamMarshaller;
+
+	@Before
+	public void setUp() {
+		marshaller = new StaxXmlMarshaller();
+		xStreamMarshaller = new XStreamXmlMarshaller();
+	}
+
+	@Test
+	public void testRoundTripOfAllKinds() {
+		final ScopePath scopePath = BinaryConfigMarshallerTest.createScopePath("user", "hugo");
+		final ComplexConfigDTO config = BinaryConfigMarshallerTest.createConfig(scopePath);
+
+		final ComplexConfigDTO result = unmarshal(marshaller, marshal(marshaller, config));
+		assertEqualConfigs(config, result);
+		Assert.assertSame(result.getDefiningScopePath(), result.getSimpleValueProperty("simple").getDefiningScopePath());
+		Assert.assertNull(result.getListProperty("nullList").getItems());
+		Assert.assertNull(result.getSetProperty("nullSet").getItems());
+		Assert.assertNull(result.getMapProperty("nullMap").getMap());
+		Assert.assertNull(result.getListProperty("list").getItems().get(1));
+		Assert.assertTrue(result.getMapProperty("map").getMap().containsKey("nullValue"));
+	}
+
+	@Test
+	public void testReadsXmlOfXStream() {
+		final ComplexConfigDTO config = BinaryConfigMarshallerTest.createConfig(
+				BinaryConfigMarshallerTest.createScopePath("user", "hugo"));
+
+		final ComplexConfigDTO result = unmarshal(marshaller, marshal(xStreamMarshaller, config));
+		assertEqualConfigs(config, result);
+		Assert.assertSame(result.getDefiningScopePath(), result.getSimpleValueProperty("simple").getDefiningScopePath());
+	}
+
+	@Test
+	public void testXStreamReadsXml() {
+		final ComplexConfigDTO config = BinaryConfigMarshallerTest.createConfig(
+				BinaryConfigMarshallerTest.createScopePath("user", "hugo"));
+
+		final ComplexConfigDTO result = unmarshal(xStreamMarshaller, marshal(marshaller, config));
+		assertEqualConfigs(config, result);
+		Assert.assertSame(result.getDefiningScopePath(), result.getSimpleValueProperty("simple").getDefiningScopePath());
+	}
+
+	@Test
+	public void testWritesSameXmlAsXStream() {
+		// scopes shared by the parent path and at most one entry per map, so the order of the entries is the same
+		final ScopePath scopePath = BinaryConfigMarshallerTest.createScopePath("user", "hugo");
+		final ScopePath parentPath = scopePath.getParentPath();
+		final ComplexConfigDTO config = new ComplexConfigDTO();
+		config.setPropertyType("org.jeconfig.test.TestConfiguration");
+		config.setDefiningScopePath(scopePath);
+		config.setParentScopeName("codeDefault");
+		config.setVersion(2);
+		config.addSimpleValueProperty(new ConfigSimpleValueDTO("String", "simple", parentPath, "<a & b>"));
+
+		final ComplexConfigDTO nested = new ComplexConfigDTO();
+		nested.setPropertyType("org.jeconfig.test.Nested");
+		nested.setPropertyName("complex");
+		nested.setDefiningScopePath(scopePath);
+		final ConfigListDTO list = new ConfigListDTO();
+		list.setPropertyType("Integer");
+		list.setPropertyName("list");
+		list.setDefiningScopePath(parentPath);
+		final List<ConfigDTO> items = new ArrayList<ConfigDTO>();
+		items.add(new ConfigSimpleValueDTO("Integer", null, scopePath, "1"));
+		items.add(null);
+		items.add(new ConfigSimpleValueDTO("Integer", null, parentPath, ""));
+		list.setItems(items);
+		nested.addListProperty(list);
+		config.addComplexProperty(nested);
+
+		final String xml = new String(marshal(marshaller, config));
+		Assert.assertEquals(new String(marshal(xStreamMarshaller, config)), xml);
+		assertEqualConfigs(config, unmarshal(marshaller, xml.getBytes()));
+	}
+
+	@Test
+	public void testSpecialStrings() {
+		final ComplexConfigDTO config = new ComplexConfigDTO();
+		config.addSimpleValueProperty(new ConfigSimpleValueDTO("String", "evil", null, "<<<&>\"' ]]> </ConfigClass>"));
+		config.addSimpleValueProperty(new ConfigSimpleValueDTO("String", "whitespace", null, " a\r\nb\tc\r "));
+		config.addSimpleValueProperty(new ConfigSimpleValueDTO("String", "empty", null, ""));
+		config.addSimpleValueProperty(new ConfigSimpleValueDTO("String", "null", null, null));
+
+		final ComplexConfigDTO result = unmarshal(marshaller, marshal(marshaller, config));
+		Assert.assertEquals(config, result);
+		Assert.assertEquals(" a\r\nb\tc\r ", result.getSimpleValueProperty("whitespace").getValue());
+		Assert.assertEquals("", result.getSimpleValueProperty("empty").getValue());
+		Assert.assertNull(result.getSimpleValueProperty("null").getValue());
+		Assert.assertEquals(config, unmarshal(xStreamMarshaller, marshal(marshaller, config)));
+		Assert.assertEquals(config, unmarshal(marshaller, marshal(xStreamMarshaller, config)));
+	}
+
+	@Test(expected = StoreConfigException.class)
+	public void testUnmarshalBinary() {
+		final byte[] bytes = marshal(new BinaryConfigMarshaller(), new ComplexConfigDTO());
+		marshaller.unmarshal(new ByteArrayInputStream(bytes));
+	}
+
+	@Test(expected = StoreConfigException.class)
+	public void testUnmarshalUnknownElement() {
+		unmarshal(marshaller, "<ConfigClass><unknown>1</unknown></ConfigClass>".getBytes());
+	}
+
+	@Test(expected = StoreConfigException.class)
+	public void testUnmarshalInvalidReference() {
+		unmarshal(marshaller, "<ConfigClass><definingScopePath reference=\"../foo\"/></ConfigClass>".getBytes());
+	}
+
+	private static void assertEqualConfigs(final ComplexConfigDTO expected, final ComplexConfigDTO actual) {
+		// the DTOs don't compare their scope paths
+		Assert.assertEquals(expected, actual);
+		Assert.assertEquals(expected.getDefiningScopePath(), actual.getDefiningScopePath());
+		final ComplexConfigDTO nested = actual.getComplexProperty("complex");
+		Assert.assertEquals(expected.getComplexProperty("complex").getDefiningScopePath(), nested.getDefiningScopePath());
+		final ConfigSimpleValueDTO inherited = nested.getSimpleValueProperty("inherited");
+		if (inherited != null) {
+			Assert.assertEquals(
+					expected.getComplexProperty("complex").getSimpleValueProperty("inherited").getDefiningScopePath(),
+					inherited.getDefiningScopePath());
+		}
+	}
+
+	private static byte[] marshal(final ConfigMarshaller configMarshaller, final ComplexConfigDTO config) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		configMarshaller.marshal(out, config);
+		return out.toByteArray();
+	}
+
+	private static ComplexConfigDTO unmarshal(final ConfigMarshaller configMarshaller, final byte[] bytes) {
+		return configMarshaller.unmarshal(new ByteArrayInputStream(bytes));
+	}
+}
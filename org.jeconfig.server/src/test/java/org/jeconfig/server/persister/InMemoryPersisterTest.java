@@ -29,10 +29,16 @@ package org.jeconfig.server.persister;
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jeconfig.api.dto.ComplexConfigDTO;
 import org.jeconfig.api.exception.StaleConfigException;
@@ -153,6 +159,169 @@ public class InMemoryPersisterTest {
 		assertTrue(persister.listScopes("a", EMPTY_MAP).isEmpty());
 	}
 
+	@Test
+	public void testConcurrentUpdatesOfSameVersion() throws InterruptedException {
+		persister.saveConfiguration(testConfig);
+		final int threadCount = 8;
+		final AtomicInteger successes = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < threadCount; i++) {
+			final Thread thread = new Thread() {
+				@Override
+				public void run() {
+					final ComplexConfigDTO update = createTestConfigDTO(testConfig.getDefiningScopePath());
+					update.setVersion(2);
+					try {
+						start.await();
+						persister.updateConfiguration(update);
+						successes.incrementAndGet();
+					} catch (final StaleConfigException e) {
+						// expected for all but one thread
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			};
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(1, successes.get());
+		assertEquals(2, persister.loadConfiguration(testConfig.getDefiningScopePath()).getVersion());
+	}
+
+	@Test
+	public void testConcurrentIncrementingUpdates() throws InterruptedException {
+		persister.saveConfiguration(testConfig);
+		final int threadCount = 4;
+		final int updatesPerThread = 250;
+		final List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < threadCount; i++) {
+			final Thread thread = new Thread() {
+				@Override
+				public void run() {
+					int updates = 0;
+					while (updates < updatesPerThread) {
+						final long version = persister.loadConfiguration(testConfig.getDefiningScopePath()).getVersion();
+						final ComplexConfigDTO update = createTestConfigDTO(testConfig.getDefiningScopePath());
+						update.setVersion(version + 1);
+						try {
+							persister.updateConfiguration(update);
+							updates++;
+						} catch (final StaleConfigException e) {
+							// retry with the new version
+						}
+					}
+				}
+			};
+			thread.start();
+			threads.add(thread);
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		// every successful update incremented the version by one
+		final long expectedVersion = 1 + threadCount * updatesPerThread;
+		assertEquals(expectedVersion, persister.loadConfiguration(testConfig.getDefiningScopePath()).getVersion());
+	}
+
+	@Test
+	public void testConcurrentBulkAndSingleUpdates() throws InterruptedException {
+		final ScopePath pathA = createDummyScope("a");
+		final ScopePath pathB = createDummyScope("b");
+		persister.saveConfigurations(Arrays.asList(createTestConfigDTO(pathA), createTestConfigDTO(pathB)));
+		final int updatesPerThread = 10000;
+		final AtomicInteger bulkUpdates = new AtomicInteger();
+		final AtomicInteger singleUpdates = new AtomicInteger();
+		final AtomicInteger partialReads = new AtomicInteger();
+		final AtomicBoolean done = new AtomicBoolean();
+
+		// the version of b exceeds the version of a by the number of single updates of b
+		final Thread bulkUpdater = new Thread() {
+			@Override
+			public void run() {
+				for (int i = 0; i < updatesPerThread; i++) {
+					final Map<ScopePath, Long> versions = persister.getVersions(Arrays.asList(pathA, pathB));
+					final ComplexConfigDTO updateA = createTestConfigDTO(pathA);
+					updateA.setVersion(versions.get(pathA).longValue() + 1);
+					final ComplexConfigDTO updateB = createTestConfigDTO(pathB);
+					updateB.setVersion(versions.get(pathB).longValue() + 1);
+					try {
+						persister.updateConfigurations(Arrays.asList(updateA, updateB));
+						bulkUpdates.incrementAndGet();
+					} catch (final StaleConfigException e) {
+						// b was updated alone meanwhile
+					}
+				}
+			}
+		};
+		final Thread singleUpdater = new Thread() {
+			@Override
+			public void run() {
+				for (int i = 0; i < updatesPerThread; i++) {
+					final ComplexConfigDTO updateB = createTestConfigDTO(pathB);
+					updateB.setVersion(persister.loadConfiguration(pathB).getVersion() + 1);
+					try {
+						persister.updateConfiguration(updateB);
+						singleUpdates.incrementAndGet();
+					} catch (final StaleConfigException e) {
+						// b was updated by the bulk update meanwhile
+					}
+				}
+			}
+		};
+		final Thread reader = new Thread() {
+			@Override
+			public void run() {
+				while (!done.get()) {
+					final long singleUpdatesBefore = singleUpdates.get();
+					final Map<ScopePath, Long> versions = persister.getVersions(Arrays.asList(pathA, pathB));
+					// a bulk update increments both versions, so b can't lag behind a
+					if (versions.get(pathB).longValue() - versions.get(pathA).longValue() < singleUpdatesBefore) {
+						partialReads.incrementAndGet();
+					}
+				}
+			}
+		};
+		reader.start();
+		bulkUpdater.start();
+		singleUpdater.start();
+		bulkUpdater.join();
+		singleUpdater.join();
+		done.set(true);
+		reader.join();
+
+		assertEquals(0, partialReads.get());
+		assertEquals(1 + bulkUpdates.get(), persister.loadConfiguration(pathA).getVersion());
+		assertEquals(1 + bulkUpdates.get() + singleUpdates.get(), persister.loadConfiguration(pathB).getVersion());
+	}
+
+	@Test
+	public void testListScopesWithProperties() {
+		final Map<String, String> hugoProps = new HashMap<String, String>();
+		hugoProps.put("userName", "hugo");
+		final Map<String, String> fritzProps = new HashMap<String, String>();
+		fritzProps.put("userName", "fritz");
+		final ComplexConfigDTO hugoConfig = createTestConfigDTO(createDummyScope("user", hugoProps));
+		persister.saveConfiguration(hugoConfig);
+		persister.saveConfiguration(createTestConfigDTO(createDummyScope("user", fritzProps)));
+
+		assertEquals(2, persister.listScopes("user", EMPTY_MAP).size());
+		final Collection<ScopePath> hugoScopes = persister.listScopes("user", hugoProps);
+		assertEquals(1, hugoScopes.size());
+		assertEquals(hugoConfig.getDefiningScopePath(), hugoScopes.iterator().next());
+
+		persister.deleteAllOccurences("user", hugoProps);
+		assertEquals(1, persister.listScopes("user", EMPTY_MAP).size());
+		assertTrue(persister.listScopes("user", hugoProps).isEmpty());
+	}
+
 	private ComplexConfigDTO createTestConfigDTO(final ScopePath path) {
 		final ComplexConfigDTO configuration = new ComplexConfigDTO();
 		configuration.setPolymorph(false);
@@ -178,6 +347,13 @@ public class InMemoryPersisterTest {
 		return scopePathBuilder.create();
 	}
 
+	private ScopePath createDummyScope(final String userScope, final Map<String, String> properties) {
+		final ScopePathBuilder scopePathBuilder = new InternalScopePathBuilderFactory().createBuilder();
+		appendDefaultScopes(scopePathBuilder);
+		scopePathBuilder.append(userScope, properties);
+		return scopePathBuilder.create();
+	}
+
 	private void appendDefaultScopes(final ScopePathBuilder builder) {
 		final Map<String, String> classProps = new HashMap<String, String>();
 		classProps.put(ClassScopeDescriptor.PROP_CLASS_NAME, "class.name");